@@ -0,0 +1,281 @@
+package black.alias.diadem;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Replays the GL command stream recorded by renderer.js when the command buffer mode is on.
+ * JS encodes void bridge calls into an off-heap arena of 32-bit words instead of crossing into
+ * Java per call; the stream is executed here once per frame, or earlier whenever JS needs a
+ * return value. Word 0 of the arena holds the write cursor, commands follow as
+ * [opcode, args...] with floats stored bit-for-bit in their word.
+ */
+public class CommandExecutor {
+	private static final int ARENA_BYTES = 4 * 1024 * 1024;
+	private static final int HEADER = 1;
+
+	/**
+	 * Recordable commands. The name is the gl.* method it replaces; the signature lists the
+	 * argument words: i = int, f = float, F = float array, I = int array (length then data).
+	 */
+	enum Command {
+		ACTIVE_TEXTURE("activeTexture", "i"),
+		BIND_TEXTURE("bindTexture", "ii"),
+		BIND_BUFFER("bindBuffer", "ii"),
+		BIND_BUFFER_BASE("bindBufferBase", "iii"),
+		BIND_BUFFER_RANGE("bindBufferRange", "iiiii"),
+		BIND_VERTEX_ARRAY("bindVertexArray", "i"),
+		BIND_FRAMEBUFFER("bindFramebuffer", "ii"),
+		BIND_RENDERBUFFER("bindRenderbuffer", "ii"),
+		USE_PROGRAM("useProgram", "i"),
+		ENABLE("enable", "i"),
+		DISABLE("disable", "i"),
+		BLEND_FUNC("blendFunc", "ii"),
+		BLEND_FUNC_SEPARATE("blendFuncSeparate", "iiii"),
+		BLEND_EQUATION("blendEquation", "i"),
+		BLEND_EQUATION_SEPARATE("blendEquationSeparate", "ii"),
+		BLEND_COLOR("blendColor", "ffff"),
+		DEPTH_FUNC("depthFunc", "i"),
+		DEPTH_MASK("depthMask", "i"),
+		DEPTH_RANGE("depthRange", "ff", 0f, 1f),
+		COLOR_MASK("colorMask", "iiii"),
+		CULL_FACE("cullFace", "i"),
+		FRONT_FACE("frontFace", "i"),
+		STENCIL_FUNC("stencilFunc", "iii"),
+		STENCIL_FUNC_SEPARATE("stencilFuncSeparate", "iiii"),
+		STENCIL_OP("stencilOp", "iii"),
+		STENCIL_OP_SEPARATE("stencilOpSeparate", "iiii"),
+		STENCIL_MASK("stencilMask", "i"),
+		STENCIL_MASK_SEPARATE("stencilMaskSeparate", "ii"),
+		POLYGON_OFFSET("polygonOffset", "ff"),
+		LINE_WIDTH("lineWidth", "f", 1f),
+		SCISSOR("scissor", "iiii"),
+		VIEWPORT("viewport", "iiii"),
+		CLEAR("clear", "i"),
+		CLEAR_COLOR("clearColor", "ffff"),
+		CLEAR_DEPTH("clearDepth", "f", 1f),
+		CLEAR_STENCIL("clearStencil", "i"),
+		PIXEL_STOREI("pixelStorei", "ii"),
+		TEX_PARAMETERI("texParameteri", "iii"),
+		ENABLE_VERTEX_ATTRIB_ARRAY("enableVertexAttribArray", "i"),
+		DISABLE_VERTEX_ATTRIB_ARRAY("disableVertexAttribArray", "i"),
+		VERTEX_ATTRIB_POINTER("vertexAttribPointer", "iiiiii"),
+		VERTEX_ATTRIB_IPOINTER("vertexAttribIPointer", "iiiii"),
+		VERTEX_ATTRIB_DIVISOR("vertexAttribDivisor", "ii"),
+		DRAW_ARRAYS("drawArrays", "iii"),
+		DRAW_ELEMENTS("drawElements", "iiii"),
+		DRAW_ARRAYS_INSTANCED("drawArraysInstanced", "iiii"),
+		DRAW_ELEMENTS_INSTANCED("drawElementsInstanced", "iiiii"),
+		UNIFORM1F("uniform1f", "if"),
+		UNIFORM2F("uniform2f", "iff"),
+		UNIFORM3F("uniform3f", "ifff"),
+		UNIFORM4F("uniform4f", "iffff"),
+		UNIFORM1I("uniform1i", "ii"),
+		UNIFORM1FV("uniform1fv", "iF"),
+		UNIFORM2FV("uniform2fv", "iF"),
+		UNIFORM3FV("uniform3fv", "iF"),
+		UNIFORM4FV("uniform4fv", "iF"),
+		UNIFORM1IV("uniform1iv", "iI"),
+		UNIFORM2IV("uniform2iv", "iI"),
+		UNIFORM4IV("uniform4iv", "iI"),
+		UNIFORM_MATRIX2FV("uniformMatrix2fv", "iiF"),
+		UNIFORM_MATRIX3FV("uniformMatrix3fv", "iiF"),
+		UNIFORM_MATRIX4FV("uniformMatrix4fv", "iiF");
+
+		final String method;
+		final String signature;
+		// Values for omitted arguments, as the immediate calls use; 0 when not given
+		final float[] defaults;
+
+		Command(String method, String signature, float... defaults) {
+			this.method = method;
+			this.signature = signature;
+			this.defaults = defaults;
+		}
+	}
+
+	private static final Command[] COMMANDS = Command.values();
+
+	private static boolean enabled = false;
+	private static ByteBuffer arena;
+	private static IntBuffer ints;
+	private static FloatBuffer floats;
+	private static ByteBuffer view;
+
+	// Statistics
+	private static long commands;
+	private static long flushes;
+	private static long frameCommands;
+	private static long frameFlushes;
+
+	/**
+	 * Turns the command buffer mode on or off. Must be set before the JS context is created.
+	 */
+	public static void setEnabled(boolean value) {
+		enabled = value;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * The shared arena, wrapped by renderer.js as an ArrayBuffer. Allocated on first use.
+	 */
+	public static ByteBuffer getArena() {
+		if (arena == null) {
+			arena = ByteBuffer.allocateDirect(ARENA_BYTES).order(ByteOrder.nativeOrder());
+			ints = arena.asIntBuffer();
+			floats = arena.asFloatBuffer();
+			view = arena.duplicate().order(ByteOrder.nativeOrder());
+			ints.put(0, HEADER);
+		}
+		return arena;
+	}
+
+	/**
+	 * Method name and signature of every recordable command, indexed by opcode, as
+	 * "name:signature" or "name:signature:default,default..." when omitted arguments aren't 0.
+	 */
+	public static String[] describe() {
+		String[] result = new String[COMMANDS.length];
+		for (int i = 0; i < COMMANDS.length; i++) {
+			Command command = COMMANDS[i];
+			StringBuilder entry = new StringBuilder(command.method).append(':').append(command.signature);
+			for (int j = 0; j < command.defaults.length; j++) {
+				entry.append(j == 0 ? ':' : ',').append(command.defaults[j]);
+			}
+			result[i] = entry.toString();
+		}
+		return result;
+	}
+
+	/**
+	 * Executes everything recorded since the last flush and rewinds the arena.
+	 */
+	public static void flush() {
+		if (arena == null) {
+			return;
+		}
+		int end = ints.get(0);
+		if (end <= HEADER) {
+			return;
+		}
+		flushes++;
+		int pc = HEADER;
+		while (pc < end) {
+			Command command = COMMANDS[ints.get(pc++)];
+			commands++;
+			switch (command) {
+				case ACTIVE_TEXTURE: GLStateCache.activeTexture(ints.get(pc++)); break;
+				case BIND_TEXTURE: GLStateCache.bindTexture(ints.get(pc++), ints.get(pc++)); break;
+				case BIND_BUFFER: GLStateCache.bindBuffer(ints.get(pc++), ints.get(pc++)); break;
+				case BIND_BUFFER_BASE: GLStateCache.bindBufferBase(ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case BIND_BUFFER_RANGE: GLStateCache.bindBufferRange(ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case BIND_VERTEX_ARRAY: GLStateCache.bindVertexArray(ints.get(pc++)); break;
+				case BIND_FRAMEBUFFER: GLStateCache.bindFramebuffer(ints.get(pc++), ints.get(pc++)); break;
+				case BIND_RENDERBUFFER: GLStateCache.bindRenderbuffer(ints.get(pc++), ints.get(pc++)); break;
+				case USE_PROGRAM: GLStateCache.useProgram(ints.get(pc++)); break;
+				case ENABLE: GLStateCache.enable(ints.get(pc++)); break;
+				case DISABLE: GLStateCache.disable(ints.get(pc++)); break;
+				case BLEND_FUNC: {
+					int src = ints.get(pc++);
+					int dst = ints.get(pc++);
+					GLStateCache.blendFuncSeparate(src, dst, src, dst);
+					break;
+				}
+				case BLEND_FUNC_SEPARATE: GLStateCache.blendFuncSeparate(ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case BLEND_EQUATION: {
+					int mode = ints.get(pc++);
+					GLStateCache.blendEquationSeparate(mode, mode);
+					break;
+				}
+				case BLEND_EQUATION_SEPARATE: GLStateCache.blendEquationSeparate(ints.get(pc++), ints.get(pc++)); break;
+				case BLEND_COLOR: GL14.glBlendColor(floats.get(pc++), floats.get(pc++), floats.get(pc++), floats.get(pc++)); break;
+				case DEPTH_FUNC: GLStateCache.depthFunc(ints.get(pc++)); break;
+				case DEPTH_MASK: GLStateCache.depthMask(ints.get(pc++) != 0); break;
+				case DEPTH_RANGE: GL11.glDepthRange(floats.get(pc++), floats.get(pc++)); break;
+				case COLOR_MASK: GLStateCache.colorMask(ints.get(pc++) != 0, ints.get(pc++) != 0, ints.get(pc++) != 0, ints.get(pc++) != 0); break;
+				case CULL_FACE: GLStateCache.cullFace(ints.get(pc++)); break;
+				case FRONT_FACE: GLStateCache.frontFace(ints.get(pc++)); break;
+				case STENCIL_FUNC: GL11.glStencilFunc(ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case STENCIL_FUNC_SEPARATE: GL20.glStencilFuncSeparate(ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case STENCIL_OP: GL11.glStencilOp(ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case STENCIL_OP_SEPARATE: GL20.glStencilOpSeparate(ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case STENCIL_MASK: GL11.glStencilMask(ints.get(pc++)); break;
+				case STENCIL_MASK_SEPARATE: GL20.glStencilMaskSeparate(ints.get(pc++), ints.get(pc++)); break;
+				case POLYGON_OFFSET: GL11.glPolygonOffset(floats.get(pc++), floats.get(pc++)); break;
+				case LINE_WIDTH: GL11.glLineWidth(floats.get(pc++)); break;
+				case SCISSOR: GL11.glScissor(ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case VIEWPORT: GL11.glViewport(ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case CLEAR: GL11.glClear(ints.get(pc++)); break;
+				case CLEAR_COLOR: GL11.glClearColor(floats.get(pc++), floats.get(pc++), floats.get(pc++), floats.get(pc++)); break;
+				case CLEAR_DEPTH: GL11.glClearDepth(floats.get(pc++)); break;
+				case CLEAR_STENCIL: GL11.glClearStencil(ints.get(pc++)); break;
+				case PIXEL_STOREI: GL11.glPixelStorei(ints.get(pc++), ints.get(pc++)); break;
+				case TEX_PARAMETERI: GL11.glTexParameteri(ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case ENABLE_VERTEX_ATTRIB_ARRAY: GL20.glEnableVertexAttribArray(ints.get(pc++)); break;
+				case DISABLE_VERTEX_ATTRIB_ARRAY: GL20.glDisableVertexAttribArray(ints.get(pc++)); break;
+				case VERTEX_ATTRIB_POINTER: GL20.glVertexAttribPointer(ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++) != 0, ints.get(pc++), ints.get(pc++)); break;
+				case VERTEX_ATTRIB_IPOINTER: GL30.glVertexAttribIPointer(ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case VERTEX_ATTRIB_DIVISOR: GL33.glVertexAttribDivisor(ints.get(pc++), ints.get(pc++)); break;
+				case DRAW_ARRAYS: GL11.glDrawArrays(ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case DRAW_ELEMENTS: GL11.glDrawElements(ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case DRAW_ARRAYS_INSTANCED: GL31.glDrawArraysInstanced(ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case DRAW_ELEMENTS_INSTANCED: GL31.glDrawElementsInstanced(ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++), ints.get(pc++)); break;
+				case UNIFORM1F: UniformCache.uniform1f(ints.get(pc++), floats.get(pc++)); break;
+				case UNIFORM2F: UniformCache.uniform2f(ints.get(pc++), floats.get(pc++), floats.get(pc++)); break;
+				case UNIFORM3F: UniformCache.uniform3f(ints.get(pc++), floats.get(pc++), floats.get(pc++), floats.get(pc++)); break;
+				case UNIFORM4F: UniformCache.uniform4f(ints.get(pc++), floats.get(pc++), floats.get(pc++), floats.get(pc++), floats.get(pc++)); break;
+				case UNIFORM1I: UniformCache.uniform1i(ints.get(pc++), ints.get(pc++)); break;
+				case UNIFORM1FV: pc = uniformArray(UniformCache.FLOAT1, false, pc); break;
+				case UNIFORM2FV: pc = uniformArray(UniformCache.FLOAT2, false, pc); break;
+				case UNIFORM3FV: pc = uniformArray(UniformCache.FLOAT3, false, pc); break;
+				case UNIFORM4FV: pc = uniformArray(UniformCache.FLOAT4, false, pc); break;
+				case UNIFORM1IV: pc = uniformArray(UniformCache.INT1, false, pc); break;
+				case UNIFORM2IV: pc = uniformArray(UniformCache.INT2, false, pc); break;
+				case UNIFORM4IV: pc = uniformArray(UniformCache.INT4, false, pc); break;
+				case UNIFORM_MATRIX2FV: pc = uniformArray(UniformCache.MAT2, true, pc); break;
+				case UNIFORM_MATRIX3FV: pc = uniformArray(UniformCache.MAT3, true, pc); break;
+				case UNIFORM_MATRIX4FV: pc = uniformArray(UniformCache.MAT4, true, pc); break;
+			}
+		}
+		ints.put(0, HEADER);
+	}
+
+	/**
+	 * Rolls the per-frame counters. Called by the render loop after the final flush of the frame.
+	 */
+	public static void endFrame() {
+		frameCommands = commands;
+		frameFlushes = flushes;
+		commands = 0;
+		flushes = 0;
+	}
+
+	/** Commands replayed during the last completed frame. */
+	public static long getFrameCommands() { return frameCommands; }
+
+	/** Times the stream was executed during the last completed frame, including forced flushes. */
+	public static long getFrameFlushes() { return frameFlushes; }
+
+	// Uploads an inline uniform array [location, (transpose), length, data...] straight from
+	// the arena and returns the position after it
+	private static int uniformArray(int kind, boolean matrix, int pc) {
+		int location = ints.get(pc++);
+		boolean transpose = matrix && ints.get(pc++) != 0;
+		int count = ints.get(pc++);
+		view.limit((pc + count) * 4).position(pc * 4);
+		UniformCache.upload(kind, location, transpose, view);
+		view.clear();
+		return pc + count;
+	}
+}
@@ -0,0 +1,298 @@
+package black.alias.diadem.Cooking;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.javagl.jgltf.model.GltfModel;
+import de.javagl.jgltf.model.ImageModel;
+import de.javagl.jgltf.model.MaterialModel;
+import de.javagl.jgltf.model.TextureModel;
+import de.javagl.jgltf.model.io.GltfModelReader;
+import de.javagl.jgltf.model.v2.MaterialModelV2;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.lwjgl.stb.STBImage;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Build-time asset cooker, run by the exec-maven-plugin after compilation. Turns the images in
+ * assets/ (and the images embedded in .glb files) into KTX2 files under assets/.cooked/ that
+ * TextureLoader and GLTFLoader pick up in place of the originals:
+ * <ul>
+ * <li>LDR images get a full mip chain, filtered in linear space for color textures, and are
+ * encoded to BC1 (opaque), BC3 (alpha) or BC7 with -Ddiadem.cook.bc7=true. Names ending in
+ * _rg are encoded to BC5.</li>
+ * <li>HDR images are converted to RGB half float once instead of on every launch.</li>
+ * </ul>
+ * Files are cooked in parallel. A manifest of content hashes makes reruns incremental: sources
+ * whose hash is unchanged and whose outputs exist are skipped, outputs of removed sources are
+ * deleted.
+ *
+ * Usage: AssetCooker &lt;assets dir&gt; &lt;output dir&gt;
+ */
+public class AssetCooker {
+	// Bump when the output of the cooker changes, to invalidate every manifest entry
+	private static final int VERSION = 1;
+	private static final String MANIFEST = "manifest.json";
+	private static final Set<String> LDR = Set.of("png", "jpg", "jpeg", "tga", "bmp");
+
+	private final Path source;
+	private final Path output;
+	private final boolean bc7;
+	private final Map<String, Entry> manifest = new ConcurrentHashMap<>();
+
+	/** One cooked source file, as stored in the manifest. */
+	public static class Entry {
+		public String hash;
+		public List<String> outputs = new ArrayList<>();
+	}
+
+	public AssetCooker(Path source, Path output, boolean bc7) {
+		this.source = source;
+		this.output = output;
+		this.bc7 = bc7;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: AssetCooker <assets dir> <output dir>");
+			System.exit(1);
+		}
+		Path source = Paths.get(args[0]);
+		if (!Files.isDirectory(source)) {
+			System.out.println("No assets to cook in " + source);
+			return;
+		}
+		new AssetCooker(source, Paths.get(args[1]), Boolean.getBoolean("diadem.cook.bc7")).run();
+	}
+
+	public void run() throws IOException {
+		Map<String, Entry> previous = readManifest();
+		List<Path> files;
+		try (Stream<Path> walk = Files.walk(source)) {
+			files = walk.filter(Files::isRegularFile).filter(AssetCooker::isCookable)
+				.filter(path -> !path.startsWith(output)).toList();
+		}
+
+		long start = System.nanoTime();
+		AtomicInteger cooked = new AtomicInteger();
+		files.parallelStream().forEach(file -> {
+			String name = source.relativize(file).toString().replace('\\', '/');
+			try {
+				String hash = hash(Files.readAllBytes(file));
+				Entry entry = previous.get(name);
+				if (entry != null && entry.hash.equals(hash) && entry.outputs.stream().allMatch(out -> Files.exists(output.resolve(out)))) {
+					manifest.put(name, entry);
+					return;
+				}
+				entry = new Entry();
+				entry.hash = hash;
+				cook(file, name, entry.outputs);
+				manifest.put(name, entry);
+				cooked.incrementAndGet();
+			} catch (Exception e) {
+				System.err.println("Warning: Could not cook " + name + ": " + e.getMessage());
+			}
+		});
+
+		// Drop outputs whose source is gone
+		for (Map.Entry<String, Entry> stale : previous.entrySet()) {
+			if (!manifest.containsKey(stale.getKey())) {
+				for (String out : stale.getValue().outputs) {
+					Files.deleteIfExists(output.resolve(out));
+				}
+			}
+		}
+		writeManifest();
+		System.out.printf("Cooked %d of %d assets in %d ms%n", cooked.get(), files.size(), (System.nanoTime() - start) / 1_000_000);
+	}
+
+	private static boolean isCookable(Path file) {
+		String extension = extension(file.getFileName().toString());
+		return LDR.contains(extension) || extension.equals("hdr") || extension.equals("glb");
+	}
+
+	private void cook(Path file, String name, List<String> outputs) throws IOException {
+		String extension = extension(name);
+		byte[] bytes = Files.readAllBytes(file);
+		if (extension.equals("hdr")) {
+			cookHDR(bytes, name + ".ktx2");
+			outputs.add(name + ".ktx2");
+		} else if (extension.equals("glb")) {
+			cookModel(file, name, outputs);
+		} else {
+			String lower = name.toLowerCase();
+			cookImage(bytes, name + ".ktx2", !isData(lower), lower.contains("_rg."));
+			outputs.add(name + ".ktx2");
+		}
+	}
+
+	// Embedded images become <model>.images/<index>.ktx2; material usage decides the color space
+	private void cookModel(Path file, String name, List<String> outputs) throws IOException {
+		GltfModel model = new GltfModelReader().read(file.toUri());
+		List<ImageModel> images = model.getImageModels();
+		boolean[] linear = new boolean[images.size()];
+		for (MaterialModel material : model.getMaterialModels()) {
+			if (material instanceof MaterialModelV2 pbr) {
+				markLinear(images, linear, pbr.getMetallicRoughnessTexture());
+				markLinear(images, linear, pbr.getNormalTexture());
+				markLinear(images, linear, pbr.getOcclusionTexture());
+			}
+		}
+		for (int i = 0; i < images.size(); i++) {
+			ByteBuffer data = images.get(i).getImageData();
+			if (data == null || !data.hasRemaining()) {
+				continue;
+			}
+			byte[] bytes = new byte[data.remaining()];
+			data.duplicate().get(bytes);
+			String out = name + ".images/" + i + ".ktx2";
+			cookImage(bytes, out, !linear[i], false);
+			outputs.add(out);
+		}
+	}
+
+	private static void markLinear(List<ImageModel> images, boolean[] linear, TextureModel texture) {
+		if (texture != null && texture.getImageModel() != null) {
+			int index = images.indexOf(texture.getImageModel());
+			if (index >= 0) {
+				linear[index] = true;
+			}
+		}
+	}
+
+	private void cookImage(byte[] bytes, String out, boolean srgb, boolean twoChannel) throws IOException {
+		int width;
+		int height;
+		byte[] rgba;
+		ByteBuffer encoded = MemoryUtil.memAlloc(bytes.length);
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			var w = stack.mallocInt(1);
+			var h = stack.mallocInt(1);
+			var comp = stack.mallocInt(1);
+			ByteBuffer pixels = STBImage.stbi_load_from_memory(encoded.put(bytes).flip(), w, h, comp, 4);
+			if (pixels == null) {
+				throw new IOException(STBImage.stbi_failure_reason());
+			}
+			width = w.get(0);
+			height = h.get(0);
+			rgba = new byte[width * height * 4];
+			pixels.get(rgba);
+			STBImage.stbi_image_free(pixels);
+		} finally {
+			MemoryUtil.memFree(encoded);
+		}
+
+		BlockEncoder.Format format;
+		if (twoChannel) {
+			format = BlockEncoder.Format.BC5;
+			srgb = false;
+		} else if (bc7) {
+			format = BlockEncoder.Format.BC7;
+		} else {
+			format = hasAlpha(rgba) ? BlockEncoder.Format.BC3 : BlockEncoder.Format.BC1;
+		}
+
+		List<byte[]> levels = new ArrayList<>();
+		int levelWidth = width;
+		int levelHeight = height;
+		byte[] level = rgba;
+		while (true) {
+			levels.add(BlockEncoder.encode(format, level, levelWidth, levelHeight));
+			if (levelWidth == 1 && levelHeight == 1) {
+				break;
+			}
+			level = MipGenerator.downsample(level, levelWidth, levelHeight, srgb);
+			levelWidth = Math.max(1, levelWidth / 2);
+			levelHeight = Math.max(1, levelHeight / 2);
+		}
+		KTX2Writer.write(output.resolve(out), KTX2Writer.vkFormat(format, srgb), width, height, levels);
+	}
+
+	private void cookHDR(byte[] bytes, String out) throws IOException {
+		ByteBuffer encoded = MemoryUtil.memAlloc(bytes.length);
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			var w = stack.mallocInt(1);
+			var h = stack.mallocInt(1);
+			var comp = stack.mallocInt(1);
+			FloatBuffer texels = STBImage.stbi_loadf_from_memory(encoded.put(bytes).flip(), w, h, comp, 3);
+			if (texels == null) {
+				throw new IOException(STBImage.stbi_failure_reason());
+			}
+			try {
+				int count = w.get(0) * h.get(0) * 3;
+				ByteBuffer half = ByteBuffer.allocate(count * 2).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+				for (int i = 0; i < count; i++) {
+					half.putShort(Float.floatToFloat16(texels.get(i)));
+				}
+				KTX2Writer.write(output.resolve(out), KTX2Writer.VK_FORMAT_R16G16B16_SFLOAT, w.get(0), h.get(0), List.of(half.array()));
+			} finally {
+				STBImage.stbi_image_free(texels);
+			}
+		} finally {
+			MemoryUtil.memFree(encoded);
+		}
+	}
+
+	// Non-color maps by naming convention: their mips must not be filtered in sRGB space
+	private static boolean isData(String name) {
+		return name.contains("normal") || name.contains("rough") || name.contains("metal")
+			|| name.contains("_ao") || name.contains("occlusion") || name.contains("_rg.");
+	}
+
+	private static boolean hasAlpha(byte[] rgba) {
+		for (int i = 3; i < rgba.length; i += 4) {
+			if (rgba[i] != (byte) 0xFF) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String hash(byte[] bytes) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update((VERSION + "|" + bc7).getBytes());
+			return HexFormat.of().formatHex(digest.digest(bytes));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private Map<String, Entry> readManifest() {
+		Path file = output.resolve(MANIFEST);
+		if (Files.exists(file)) {
+			try {
+				return new ObjectMapper().readValue(file.toFile(), new TypeReference<Map<String, Entry>>() {});
+			} catch (IOException e) {
+				System.err.println("Warning: Ignoring unreadable cook manifest: " + e.getMessage());
+			}
+		}
+		return Map.of();
+	}
+
+	private void writeManifest() throws IOException {
+		Files.createDirectories(output);
+		new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output.resolve(MANIFEST).toFile(), new TreeMap<>(manifest));
+	}
+
+	private static String extension(String name) {
+		int dot = name.lastIndexOf('.');
+		return dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+	}
+}
@@ -0,0 +1,105 @@
+package black.alias.diadem.Cooking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import black.alias.diadem.Loaders.AssetPack;
+
+/**
+ * Package-time asset packer, run by the exec-maven-plugin after the cooker. Writes every file
+ * under the assets directory, cooked outputs included, into one uncompressed .dpak that
+ * AssetPack maps at startup (see AssetPack for the layout).
+ *
+ * Usage: AssetPacker &lt;assets dir&gt; &lt;output file&gt;
+ */
+public class AssetPacker {
+	private record Item(Path file, byte[] name, long hash, long size) {}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: AssetPacker <assets dir> <output file>");
+			System.exit(1);
+		}
+		Path source = Paths.get(args[0]);
+		if (!Files.isDirectory(source)) {
+			System.out.println("No assets to pack in " + source);
+			return;
+		}
+		pack(source, Paths.get(args[1]));
+	}
+
+	public static void pack(Path source, Path output) throws IOException {
+		long start = System.nanoTime();
+		List<Item> items = new ArrayList<>();
+		try (Stream<Path> walk = Files.walk(source)) {
+			for (Path file : walk.filter(Files::isRegularFile).toList()) {
+				String name = AssetPack.normalize(source.relativize(file).toString());
+				byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+				items.add(new Item(file, bytes, AssetPack.hash(bytes), Files.size(file)));
+			}
+		}
+		items.sort(Comparator.comparingLong(Item::hash));
+
+		// Header and index, then names, then aligned data
+		int namesStart = AssetPack.HEADER_SIZE + items.size() * AssetPack.ENTRY_SIZE;
+		long namesSize = 0;
+		for (Item item : items) {
+			namesSize += item.name.length;
+		}
+		long dataStart = align(namesStart + namesSize);
+		if (dataStart > Integer.MAX_VALUE) {
+			throw new IOException("Asset pack index too large");
+		}
+
+		ByteBuffer index = ByteBuffer.allocate((int) dataStart).order(ByteOrder.LITTLE_ENDIAN);
+		index.putInt(AssetPack.MAGIC).putInt(AssetPack.VERSION).putInt(items.size()).putInt((int) dataStart);
+		int nameOffset = namesStart;
+		long dataOffset = dataStart;
+		for (Item item : items) {
+			index.putLong(item.hash).putLong(dataOffset).putLong(item.size).putInt(nameOffset).putInt(item.name.length);
+			index.put(nameOffset, item.name);
+			nameOffset += item.name.length;
+			dataOffset = align(dataOffset + item.size);
+		}
+		index.clear();
+
+		Files.createDirectories(output.toAbsolutePath().getParent());
+		Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (index.hasRemaining()) {
+				out.write(index);
+			}
+			long position = dataStart;
+			for (Item item : items) {
+				try (FileChannel in = FileChannel.open(item.file, StandardOpenOption.READ)) {
+					long copied = 0;
+					while (copied < item.size) {
+						copied += in.transferTo(copied, item.size - copied, out.position(position + copied));
+					}
+				}
+				position = align(position + item.size);
+			}
+			// Pad the last file so every entry is followed by its alignment
+			if (out.size() < position) {
+				out.write(ByteBuffer.allocate((int) (position - out.size())), out.size());
+			}
+		}
+		Files.move(temp, output, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+		System.out.printf("Packed %d assets (%d MB) into %s in %d ms%n", items.size(), Files.size(output) >> 20, output,
+			(System.nanoTime() - start) / 1_000_000);
+	}
+
+	private static long align(long offset) {
+		return (offset + AssetPack.ALIGNMENT - 1) & -AssetPack.ALIGNMENT;
+	}
+}
@@ -0,0 +1,304 @@
+package black.alias.diadem.Cooking;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Pure Java BC1/BC3/BC5/BC7 block encoders for the asset cooker. Endpoints come from the
+ * principal axis of each 4x4 block, which is fast and close to what offline tools produce for
+ * the single-subset modes. BC7 always uses mode 6 (one RGBA subset, 4-bit indices).
+ */
+public class BlockEncoder {
+	public enum Format {
+		BC1(8), BC3(16), BC5(16), BC7(16);
+
+		public final int blockBytes;
+
+		Format(int blockBytes) {
+			this.blockBytes = blockBytes;
+		}
+	}
+
+	// BC7 4-bit index interpolation weights
+	private static final int[] BC7_WEIGHTS = {0, 4, 9, 13, 17, 21, 26, 30, 34, 38, 43, 47, 51, 55, 60, 64};
+
+	/**
+	 * Encodes one RGBA8 image level. Partial blocks at the right and bottom edges repeat the
+	 * last row/column.
+	 */
+	public static byte[] encode(Format format, byte[] rgba, int width, int height) {
+		int blocksX = (width + 3) / 4;
+		int blocksY = (height + 3) / 4;
+		ByteBuffer out = ByteBuffer.allocate(blocksX * blocksY * format.blockBytes).order(ByteOrder.LITTLE_ENDIAN);
+		int[][] block = new int[16][4];
+		for (int by = 0; by < blocksY; by++) {
+			for (int bx = 0; bx < blocksX; bx++) {
+				for (int i = 0; i < 16; i++) {
+					int x = Math.min(bx * 4 + (i & 3), width - 1);
+					int y = Math.min(by * 4 + (i >> 2), height - 1);
+					int offset = (y * width + x) * 4;
+					for (int c = 0; c < 4; c++) {
+						block[i][c] = rgba[offset + c] & 0xFF;
+					}
+				}
+				switch (format) {
+					case BC1 -> encodeColor(block, out);
+					case BC3 -> {
+						encodeChannel(block, 3, out);
+						encodeColor(block, out);
+					}
+					case BC5 -> {
+						encodeChannel(block, 0, out);
+						encodeChannel(block, 1, out);
+					}
+					case BC7 -> encodeMode6(block, out);
+				}
+			}
+		}
+		return out.array();
+	}
+
+	// BC1 color block, always in four-color mode so it is also valid inside BC3
+	private static void encodeColor(int[][] block, ByteBuffer out) {
+		float[][] ends = endpoints(block, 3);
+		int c0 = to565(ends[1]);
+		int c1 = to565(ends[0]);
+		if (c0 < c1) {
+			int swap = c0;
+			c0 = c1;
+			c1 = swap;
+		}
+		int indices = 0;
+		if (c0 != c1) {
+			int[] p0 = from565(c0);
+			int[] p1 = from565(c1);
+			int[][] palette = {
+				p0, p1,
+				{(2 * p0[0] + p1[0]) / 3, (2 * p0[1] + p1[1]) / 3, (2 * p0[2] + p1[2]) / 3},
+				{(p0[0] + 2 * p1[0]) / 3, (p0[1] + 2 * p1[1]) / 3, (p0[2] + 2 * p1[2]) / 3}
+			};
+			for (int i = 0; i < 16; i++) {
+				indices |= nearest(block[i], palette, 3) << (i * 2);
+			}
+		}
+		out.putShort((short) c0);
+		out.putShort((short) c1);
+		out.putInt(indices);
+	}
+
+	// BC4 block for one channel, eight-value mode
+	private static void encodeChannel(int[][] block, int channel, ByteBuffer out) {
+		int min = 255;
+		int max = 0;
+		for (int[] pixel : block) {
+			min = Math.min(min, pixel[channel]);
+			max = Math.max(max, pixel[channel]);
+		}
+		long indices = 0;
+		if (max != min) {
+			int[] palette = new int[8];
+			palette[0] = max;
+			palette[1] = min;
+			for (int i = 1; i < 7; i++) {
+				palette[i + 1] = ((7 - i) * max + i * min) / 7;
+			}
+			for (int i = 0; i < 16; i++) {
+				int value = block[i][channel];
+				int best = 0;
+				int bestError = Integer.MAX_VALUE;
+				for (int p = 0; p < 8; p++) {
+					int error = Math.abs(palette[p] - value);
+					if (error < bestError) {
+						bestError = error;
+						best = p;
+					}
+				}
+				indices |= (long) best << (i * 3);
+			}
+		}
+		out.put((byte) max);
+		out.put((byte) min);
+		for (int i = 0; i < 6; i++) {
+			out.put((byte) (indices >>> (i * 8)));
+		}
+	}
+
+	// BC7 mode 6: 7-bit RGBA endpoints with a shared p-bit each, 4-bit indices
+	private static void encodeMode6(int[][] block, ByteBuffer out) {
+		float[][] ends = endpoints(block, 4);
+		int[] e0 = new int[4];
+		int[] e1 = new int[4];
+		int p0 = quantize7(ends[0], e0);
+		int p1 = quantize7(ends[1], e1);
+
+		int[][] palette = new int[16][4];
+		for (int i = 0; i < 16; i++) {
+			for (int c = 0; c < 4; c++) {
+				int a = (e0[c] << 1) | p0;
+				int b = (e1[c] << 1) | p1;
+				palette[i][c] = ((64 - BC7_WEIGHTS[i]) * a + BC7_WEIGHTS[i] * b + 32) >> 6;
+			}
+		}
+		int[] indices = new int[16];
+		for (int i = 0; i < 16; i++) {
+			indices[i] = nearest(block[i], palette, 4);
+		}
+		// The anchor index is stored without its top bit, so it must be below 8
+		if (indices[0] >= 8) {
+			int[] swap = e0;
+			e0 = e1;
+			e1 = swap;
+			int p = p0;
+			p0 = p1;
+			p1 = p;
+			for (int i = 0; i < 16; i++) {
+				indices[i] = 15 - indices[i];
+			}
+		}
+
+		BitWriter bits = new BitWriter();
+		bits.write(1 << 6, 7);
+		for (int c = 0; c < 4; c++) {
+			bits.write(e0[c], 7);
+			bits.write(e1[c], 7);
+		}
+		bits.write(p0, 1);
+		bits.write(p1, 1);
+		bits.write(indices[0], 3);
+		for (int i = 1; i < 16; i++) {
+			bits.write(indices[i], 4);
+		}
+		out.putLong(bits.low);
+		out.putLong(bits.high);
+	}
+
+	// Picks the p-bit that reproduces the endpoint best; returns it and fills the 7-bit values
+	private static int quantize7(float[] endpoint, int[] result) {
+		int bestP = 0;
+		float bestError = Float.MAX_VALUE;
+		for (int p = 0; p < 2; p++) {
+			float error = 0;
+			for (int c = 0; c < 4; c++) {
+				int q = Math.clamp(Math.round((endpoint[c] - p) / 2f), 0, 127);
+				float d = ((q << 1) | p) - endpoint[c];
+				error += d * d;
+			}
+			if (error < bestError) {
+				bestError = error;
+				bestP = p;
+			}
+		}
+		for (int c = 0; c < 4; c++) {
+			result[c] = Math.clamp(Math.round((endpoint[c] - bestP) / 2f), 0, 127);
+		}
+		return bestP;
+	}
+
+	// Extremes of the block projected on its principal axis, pulled in slightly to reduce error
+	private static float[][] endpoints(int[][] block, int channels) {
+		float[] mean = new float[channels];
+		for (int[] pixel : block) {
+			for (int c = 0; c < channels; c++) {
+				mean[c] += pixel[c] / 16f;
+			}
+		}
+		float[][] covariance = new float[channels][channels];
+		for (int[] pixel : block) {
+			for (int a = 0; a < channels; a++) {
+				for (int b = 0; b < channels; b++) {
+					covariance[a][b] += (pixel[a] - mean[a]) * (pixel[b] - mean[b]);
+				}
+			}
+		}
+		float[] axis = new float[channels];
+		java.util.Arrays.fill(axis, 1f);
+		for (int iteration = 0; iteration < 8; iteration++) {
+			float[] next = new float[channels];
+			float length = 0;
+			for (int a = 0; a < channels; a++) {
+				for (int b = 0; b < channels; b++) {
+					next[a] += covariance[a][b] * axis[b];
+				}
+				length = Math.max(length, Math.abs(next[a]));
+			}
+			if (length == 0) {
+				break;
+			}
+			for (int a = 0; a < channels; a++) {
+				axis[a] = next[a] / length;
+			}
+		}
+
+		float min = Float.MAX_VALUE;
+		float max = -Float.MAX_VALUE;
+		for (int[] pixel : block) {
+			float t = 0;
+			for (int c = 0; c < channels; c++) {
+				t += (pixel[c] - mean[c]) * axis[c];
+			}
+			min = Math.min(min, t);
+			max = Math.max(max, t);
+		}
+		float norm = 0;
+		for (float a : axis) {
+			norm += a * a;
+		}
+		float inset = (max - min) / 16f;
+		float[][] ends = new float[2][channels];
+		for (int c = 0; c < channels; c++) {
+			float direction = norm > 0 ? axis[c] / norm : 0;
+			ends[0][c] = Math.clamp(mean[c] + (min + inset) * direction, 0f, 255f);
+			ends[1][c] = Math.clamp(mean[c] + (max - inset) * direction, 0f, 255f);
+		}
+		return ends;
+	}
+
+	private static int nearest(int[] pixel, int[][] palette, int channels) {
+		int best = 0;
+		int bestError = Integer.MAX_VALUE;
+		for (int p = 0; p < palette.length; p++) {
+			int error = 0;
+			for (int c = 0; c < channels; c++) {
+				int d = pixel[c] - palette[p][c];
+				error += d * d;
+			}
+			if (error < bestError) {
+				bestError = error;
+				best = p;
+			}
+		}
+		return best;
+	}
+
+	private static int to565(float[] color) {
+		int r = Math.round(color[0] * 31 / 255f);
+		int g = Math.round(color[1] * 63 / 255f);
+		int b = Math.round(color[2] * 31 / 255f);
+		return (r << 11) | (g << 5) | b;
+	}
+
+	private static int[] from565(int color) {
+		int r = (color >> 11) & 31;
+		int g = (color >> 5) & 63;
+		int b = color & 31;
+		return new int[] {(r << 3) | (r >> 2), (g << 2) | (g >> 4), (b << 3) | (b >> 2)};
+	}
+
+	// Little-endian bit stream over a 128-bit block
+	private static class BitWriter {
+		long low;
+		long high;
+		int position;
+
+		void write(int value, int count) {
+			for (int i = 0; i < count; i++, position++) {
+				long bit = (value >>> i) & 1L;
+				if (position < 64) {
+					low |= bit << position;
+				} else {
+					high |= bit << (position - 64);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package black.alias.diadem.Cooking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Writes single-face 2D KTX2 files without supercompression, which is what
+ * CompressedTextureReader loads at runtime. Levels are given largest first and stored
+ * smallest first as the format requires.
+ */
+public class KTX2Writer {
+	private static final byte[] IDENTIFIER = {
+		(byte) 0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+	};
+
+	public static final int VK_FORMAT_R16G16B16_SFLOAT = 90;
+	public static final int VK_FORMAT_BC1_RGB_UNORM = 131;
+	public static final int VK_FORMAT_BC1_RGB_SRGB = 132;
+	public static final int VK_FORMAT_BC3_UNORM = 137;
+	public static final int VK_FORMAT_BC3_SRGB = 138;
+	public static final int VK_FORMAT_BC5_UNORM = 141;
+	public static final int VK_FORMAT_BC7_UNORM = 145;
+	public static final int VK_FORMAT_BC7_SRGB = 146;
+
+	public static int vkFormat(BlockEncoder.Format format, boolean srgb) {
+		return switch (format) {
+			case BC1 -> srgb ? VK_FORMAT_BC1_RGB_SRGB : VK_FORMAT_BC1_RGB_UNORM;
+			case BC3 -> srgb ? VK_FORMAT_BC3_SRGB : VK_FORMAT_BC3_UNORM;
+			case BC5 -> VK_FORMAT_BC5_UNORM;
+			case BC7 -> srgb ? VK_FORMAT_BC7_SRGB : VK_FORMAT_BC7_UNORM;
+		};
+	}
+
+	public static void write(Path file, int vkFormat, int width, int height, List<byte[]> levels) throws IOException {
+		byte[] dfd = dataFormatDescriptor(vkFormat);
+		int alignment = vkFormat == VK_FORMAT_R16G16B16_SFLOAT ? 12 : 16; // lcm(texel block size, 4)
+		int indexEnd = 80 + levels.size() * 24;
+		int dataStart = align(indexEnd + dfd.length, alignment);
+
+		long[] offsets = new long[levels.size()];
+		long position = dataStart;
+		for (int i = levels.size() - 1; i >= 0; i--) {
+			position = align(position, alignment);
+			offsets[i] = position;
+			position += levels.get(i).length;
+		}
+
+		ByteBuffer out = ByteBuffer.allocate(Math.toIntExact(position)).order(ByteOrder.LITTLE_ENDIAN);
+		out.put(IDENTIFIER);
+		out.putInt(vkFormat);
+		out.putInt(vkFormat == VK_FORMAT_R16G16B16_SFLOAT ? 2 : 1); // typeSize
+		out.putInt(width);
+		out.putInt(height);
+		out.putInt(0); // depth
+		out.putInt(0); // layers
+		out.putInt(1); // faces
+		out.putInt(levels.size());
+		out.putInt(0); // supercompression
+		out.putInt(indexEnd);
+		out.putInt(dfd.length);
+		out.putInt(0); // key/value data
+		out.putInt(0);
+		out.putLong(0); // supercompression global data
+		out.putLong(0);
+		for (int i = 0; i < levels.size(); i++) {
+			out.putLong(offsets[i]);
+			out.putLong(levels.get(i).length);
+			out.putLong(levels.get(i).length);
+		}
+		out.put(dfd);
+		for (int i = 0; i < levels.size(); i++) {
+			out.put(Math.toIntExact(offsets[i]), levels.get(i));
+		}
+
+		Files.createDirectories(file.getParent());
+		Path temp = Files.createTempFile(file.getParent(), "cook", ".tmp");
+		Files.write(temp, out.array());
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	// Basic data format descriptor (Khronos DFD 1.3) for the formats the cooker emits
+	private static byte[] dataFormatDescriptor(int vkFormat) {
+		boolean half = vkFormat == VK_FORMAT_R16G16B16_SFLOAT;
+		boolean srgb = vkFormat == VK_FORMAT_BC1_RGB_SRGB || vkFormat == VK_FORMAT_BC3_SRGB || vkFormat == VK_FORMAT_BC7_SRGB;
+		int colorModel;
+		int blockBytes;
+		// {channel, bit offset, bit length}
+		int[][] samples;
+		switch (vkFormat) {
+			case VK_FORMAT_BC1_RGB_UNORM, VK_FORMAT_BC1_RGB_SRGB -> {
+				colorModel = 128;
+				blockBytes = 8;
+				samples = new int[][] {{0, 0, 64}};
+			}
+			case VK_FORMAT_BC3_UNORM, VK_FORMAT_BC3_SRGB -> {
+				colorModel = 130;
+				blockBytes = 16;
+				samples = new int[][] {{15, 0, 64}, {0, 64, 64}};
+			}
+			case VK_FORMAT_BC5_UNORM -> {
+				colorModel = 132;
+				blockBytes = 16;
+				samples = new int[][] {{0, 0, 64}, {1, 64, 64}};
+			}
+			case VK_FORMAT_BC7_UNORM, VK_FORMAT_BC7_SRGB -> {
+				colorModel = 134;
+				blockBytes = 16;
+				samples = new int[][] {{0, 0, 128}};
+			}
+			default -> {
+				colorModel = 1; // RGBSDA
+				blockBytes = 6;
+				samples = new int[][] {{0, 0, 16}, {1, 16, 16}, {2, 32, 16}};
+			}
+		}
+
+		int blockSize = 24 + samples.length * 16;
+		ByteBuffer dfd = ByteBuffer.allocate(4 + blockSize).order(ByteOrder.LITTLE_ENDIAN);
+		dfd.putInt(4 + blockSize);
+		dfd.putInt(0); // vendor 0 (Khronos), descriptor type 0 (basic)
+		dfd.putInt(2 | (blockSize << 16)); // version 2
+		dfd.put((byte) colorModel);
+		dfd.put((byte) 1); // BT.709 primaries
+		dfd.put((byte) (srgb ? 2 : 1)); // transfer function
+		dfd.put((byte) 0); // flags: straight alpha
+		dfd.putInt(half ? 0 : 0x00000303); // texel block dimensions minus one
+		dfd.putLong(blockBytes); // bytesPlane0..7
+		for (int[] sample : samples) {
+			int channelType = sample[0] | (half ? 0xC0 : 0); // float + signed qualifiers
+			dfd.putInt(sample[1] | ((sample[2] - 1) << 16) | (channelType << 24));
+			dfd.putInt(0); // sample position
+			dfd.putInt(half ? 0xBF800000 : 0);
+			dfd.putInt(half ? 0x3F800000 : 0xFFFFFFFF);
+		}
+		return dfd.array();
+	}
+
+	private static int align(int value, int alignment) {
+		return (value + alignment - 1) / alignment * alignment;
+	}
+
+	private static long align(long value, int alignment) {
+		return (value + alignment - 1) / alignment * alignment;
+	}
+}
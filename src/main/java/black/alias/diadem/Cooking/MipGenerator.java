@@ -0,0 +1,52 @@
+package black.alias.diadem.Cooking;
+
+/**
+ * Box-filtered mip levels for RGBA8 images. Color textures are averaged in linear light, so
+ * mips of sRGB content do not darken; alpha and data textures are averaged as stored.
+ */
+public class MipGenerator {
+	private static final float[] SRGB_TO_LINEAR = new float[256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			float c = i / 255f;
+			SRGB_TO_LINEAR[i] = c <= 0.04045f ? c / 12.92f : (float) Math.pow((c + 0.055f) / 1.055f, 2.4f);
+		}
+	}
+
+	/**
+	 * Halves an RGBA8 level in each dimension (down to 1). Odd edges fold the last row/column
+	 * into the previous texel.
+	 */
+	public static byte[] downsample(byte[] rgba, int width, int height, boolean srgb) {
+		int outWidth = Math.max(1, width / 2);
+		int outHeight = Math.max(1, height / 2);
+		byte[] out = new byte[outWidth * outHeight * 4];
+		for (int y = 0; y < outHeight; y++) {
+			int y0 = Math.min(y * 2, height - 1);
+			int y1 = y == outHeight - 1 ? height - 1 : Math.min(y * 2 + 1, height - 1);
+			for (int x = 0; x < outWidth; x++) {
+				int x0 = Math.min(x * 2, width - 1);
+				int x1 = x == outWidth - 1 ? width - 1 : Math.min(x * 2 + 1, width - 1);
+				int target = (y * outWidth + x) * 4;
+				for (int c = 0; c < 4; c++) {
+					float sum = 0;
+					int count = 0;
+					for (int sy = y0; sy <= y1; sy++) {
+						for (int sx = x0; sx <= x1; sx++) {
+							int value = rgba[(sy * width + sx) * 4 + c] & 0xFF;
+							sum += srgb && c < 3 ? SRGB_TO_LINEAR[value] : value / 255f;
+							count++;
+						}
+					}
+					float average = sum / count;
+					if (srgb && c < 3) {
+						average = average <= 0.0031308f ? average * 12.92f : 1.055f * (float) Math.pow(average, 1 / 2.4f) - 0.055f;
+					}
+					out[target + c] = (byte) Math.round(Math.clamp(average, 0f, 1f) * 255f);
+				}
+			}
+		}
+		return out;
+	}
+}
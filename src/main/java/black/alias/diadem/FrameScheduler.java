@@ -0,0 +1,51 @@
+package black.alias.diadem;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hands work from background threads to the GL thread, spread over frames.
+ * Tasks can be posted from any thread; paintGL runs them before the JS callbacks until the
+ * per-frame budget is spent. At least one task runs per frame so the queue always drains.
+ */
+public class FrameScheduler {
+	private static final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	private static long budgetNanos = 4_000_000L;
+
+	/**
+	 * Per-frame time budget for queued GL work, in milliseconds.
+	 */
+	public static void setBudget(int milliseconds) {
+		budgetNanos = Math.max(0, milliseconds) * 1_000_000L;
+	}
+
+	/**
+	 * Queues a task for the GL thread. Safe to call from any thread.
+	 */
+	public static void post(Runnable task) {
+		tasks.add(task);
+	}
+
+	/**
+	 * Runs queued tasks until the budget is spent. Called once per frame on the GL thread.
+	 */
+	public static void runFrame() {
+		long deadline = System.nanoTime() + budgetNanos;
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Exception e) {
+				System.err.println("Error in scheduled GL task: " + e.getMessage());
+				e.printStackTrace();
+			}
+			if (System.nanoTime() >= deadline) {
+				break;
+			}
+		}
+	}
+
+	public static int getPendingCount() {
+		return tasks.size();
+	}
+}
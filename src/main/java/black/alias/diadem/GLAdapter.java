@@ -1,15 +1,23 @@
 package black.alias.diadem;
 
+import org.graalvm.polyglot.Value;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.BufferUtils;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
 public class GLAdapter {
+	// Reusable off-heap staging memory for JS typed array transfers (render thread only)
+	private static ByteBuffer scratch = BufferUtils.createByteBuffer(64 * 1024);
+	private static final byte[] transfer = new byte[256 * 1024];
+	
 	public static void glClearColor(double red, double green, double blue, double alpha) {
 		GL11.glClearColor((float)red, (float)green, (float)blue, (float)alpha);
 	}
@@ -33,6 +41,71 @@ public class GLAdapter {
 		GL12.glTexImage3D(target, level, internalformat, width, height, depth, border, format, type, pixels);
 	}
 	
+	// Typed array overloads, kept under distinct names so a null pixels argument never hits two overloads
+	public static void glTexImage2DView(int target, int level, int internalformat, int width, int height, int border, int format, int type, Value pixels, long srcOffset) {
+		GL11.glTexImage2D(target, level, internalformat, width, height, border, format, type, marshal(pixels, srcOffset, 0));
+	}
+	
+	public static void glTexSubImage2DView(int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Value pixels, long srcOffset) {
+		GL11.glTexSubImage2D(target, level, xoffset, yoffset, width, height, format, type, marshal(pixels, srcOffset, 0));
+	}
+	
+	public static void glTexImage3DView(int target, int level, int internalformat, int width, int height, int depth, int border, int format, int type, Value pixels, long srcOffset) {
+		GL12.glTexImage3D(target, level, internalformat, width, height, depth, border, format, type, marshal(pixels, srcOffset, 0));
+	}
+	
+	public static void glCompressedTexImage2D(int target, int level, int internalformat, int width, int height, int border, Value data, long srcOffset, long length) {
+		GL13.glCompressedTexImage2D(target, level, internalformat, width, height, border, marshal(data, srcOffset, length));
+	}
+	
+	public static void glCompressedTexSubImage2D(int target, int level, int xoffset, int yoffset, int width, int height, int format, Value data, long srcOffset, long length) {
+		GL13.glCompressedTexSubImage2D(target, level, xoffset, yoffset, width, height, format, marshal(data, srcOffset, length));
+	}
+	
+	public static void glCompressedTexImage3D(int target, int level, int internalformat, int width, int height, int depth, int border, Value data, long srcOffset, long length) {
+		GL13.glCompressedTexImage3D(target, level, internalformat, width, height, depth, border, marshal(data, srcOffset, length));
+	}
+	
+	public static void glCompressedTexSubImage3D(int target, int level, int xoffset, int yoffset, int zoffset, int width, int height, int depth, int format, Value data, long srcOffset, long length) {
+		GL13.glCompressedTexSubImage3D(target, level, xoffset, yoffset, zoffset, width, height, depth, format, marshal(data, srcOffset, length));
+	}
+	
+	// Buffer object uploads and readbacks straight from JS typed arrays
+	public static void glBufferData(int target, Value data, int usage) {
+		GL15.glBufferData(target, marshal(data), usage);
+	}
+	
+	// Dynamic updates go through the streaming ring; oversized ones fall back to a direct upload
+	public static void glBufferSubData(int target, long offset, Value data, long srcOffset, long length) {
+		if (!StreamingBuffer.get().upload(target, offset, data, srcOffset, length)) {
+			GL15.glBufferSubData(target, offset, marshal(data, srcOffset, length));
+		}
+	}
+	
+	public static void glGetBufferSubData(int target, long offset, Value dst, long dstOffset, long length) {
+		int size = byteSize(dst, dstOffset, length);
+		ByteBuffer buffer = scratch(size);
+		buffer.limit(size);
+		GL15.glGetBufferSubData(target, offset, buffer);
+		writeBack(buffer, dst, dstOffset);
+	}
+	
+	public static void glReadPixels(int x, int y, int width, int height, int format, int type, Value dst, long dstOffset) {
+		int size = byteSize(dst, dstOffset, 0);
+		ByteBuffer buffer = scratch(size);
+		buffer.limit(size);
+		GL11.glReadPixels(x, y, width, height, format, type, buffer);
+		writeBack(buffer, dst, dstOffset);
+	}
+	
+	// Per-frame bookkeeping, called by the render loop once the JS callbacks have run
+	public static void endFrame() {
+		StreamingBuffer.get().endFrame();
+		GLStateCache.endFrame();
+		UniformCache.endFrame();
+		CommandExecutor.endFrame();
+	}
+	
 	// Uniform functions with proper type casting
 	public static void glUniform1f(int location, double value) {
 		GL20.glUniform1f(location, (float)value);
@@ -128,4 +201,121 @@ public class GLAdapter {
 		buffer.rewind();
 		return buffer;
 	}
+	
+	/**
+	 * Copies the bytes behind a JS ArrayBuffer, typed array or DataView into reusable off-heap
+	 * scratch memory and returns it ready for a single GL call. Direct host ByteBuffers are
+	 * passed through untouched. The returned buffer is only valid until the next marshal.
+	 */
+	public static ByteBuffer marshal(Value data) {
+		return marshal(data, 0, 0);
+	}
+	
+	/**
+	 * Same as marshal(data), restricted to a sub-range. srcOffset and length are counted in
+	 * elements like the WebGL2 overloads; a length of 0 means up to the end of the view.
+	 */
+	public static ByteBuffer marshal(Value data, long srcOffset, long length) {
+		if (data.isHostObject() && data.asHostObject() instanceof ByteBuffer host && host.isDirect()) {
+			return host.slice(host.position(), host.remaining());
+		}
+		ByteBuffer buffer = scratch(byteSize(data, srcOffset, length));
+		copyInto(data, srcOffset, length, buffer);
+		buffer.flip();
+		return buffer;
+	}
+	
+	/**
+	 * Number of bytes covered by the given element range of a JS buffer or view.
+	 */
+	public static int byteSize(Value data, long srcOffset, long length) {
+		int elementSize = elementSize(data);
+		if (length > 0) {
+			return Math.toIntExact(length * elementSize);
+		}
+		long total = data.hasMember("byteLength") ? data.getMember("byteLength").asLong()
+			: data.hasBufferElements() ? data.getBufferSize()
+			: data.getArraySize();
+		return Math.toIntExact(total - srcOffset * elementSize);
+	}
+	
+	/**
+	 * Bulk-copies a JS buffer or view into dst at its current position through the polyglot
+	 * buffer API, advancing the position. Returns the number of bytes written.
+	 */
+	public static int copyInto(Value data, long srcOffset, long length, ByteBuffer dst) {
+		int count = byteSize(data, srcOffset, length);
+		long start = srcOffset * elementSize(data);
+		
+		// Plain JS arrays carry no backing store; treat them as unsigned byte lists
+		if (!data.hasMember("buffer") && !data.hasBufferElements()) {
+			for (int i = 0; i < count; i++) {
+				dst.put((byte) (data.getArrayElement(start + i).asInt() & 0xFF));
+			}
+			return count;
+		}
+		
+		Value backing = data;
+		if (data.hasMember("buffer")) {
+			backing = data.getMember("buffer");
+			start += data.getMember("byteOffset").asLong();
+		}
+		
+		int done = 0;
+		while (done < count) {
+			int chunk = Math.min(transfer.length, count - done);
+			backing.readBuffer(start + done, transfer, 0, chunk);
+			dst.put(transfer, 0, chunk);
+			done += chunk;
+		}
+		return count;
+	}
+	
+	/**
+	 * Writes the remaining bytes of src back into a writable JS buffer or view, starting at
+	 * dstOffset elements into the view. Used by readbacks such as readPixels.
+	 */
+	public static void writeBack(ByteBuffer src, Value dst, long dstOffset) {
+		Value backing = dst;
+		long start = dstOffset * elementSize(dst);
+		if (dst.hasMember("buffer")) {
+			backing = dst.getMember("buffer");
+			start += dst.getMember("byteOffset").asLong();
+		}
+		
+		// Eight bytes per crossing, byte order is irrelevant as long as it matches on both sides
+		ByteBuffer in = src.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		long offset = start;
+		while (in.remaining() >= Long.BYTES) {
+			backing.writeBufferLong(ByteOrder.LITTLE_ENDIAN, offset, in.getLong());
+			offset += Long.BYTES;
+		}
+		while (in.hasRemaining()) {
+			backing.writeBufferByte(offset++, in.get());
+		}
+	}
+	
+	/**
+	 * Copies a JS buffer or view into a heap byte array, for Java APIs such as ImageIO
+	 * that cannot consume direct memory.
+	 */
+	public static byte[] toByteArray(Value data) {
+		ByteBuffer buffer = marshal(data);
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return bytes;
+	}
+	
+	private static int elementSize(Value data) {
+		return data.hasMember("BYTES_PER_ELEMENT") ? data.getMember("BYTES_PER_ELEMENT").asInt() : 1;
+	}
+	
+	// Grows the shared scratch buffer to at least the given size
+	private static ByteBuffer scratch(int size) {
+		if (scratch.capacity() < size) {
+			scratch = BufferUtils.createByteBuffer(Integer.highestOneBit(Math.max(size - 1, 1)) << 1);
+		}
+		scratch.clear();
+		return scratch;
+	}
 }
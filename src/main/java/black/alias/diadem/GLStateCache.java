@@ -0,0 +1,477 @@
+package black.alias.diadem;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Java-side shadow of the GL binding and fixed-function state driven by the WebGL2 bridge.
+ * Calls that would not change anything are dropped before they reach the driver, and
+ * immutable limits are captured once at context creation so getParameter never round-trips.
+ * Anything that changes GL state outside renderer.js must go through here or call reset().
+ */
+public class GLStateCache {
+	private static final int UNKNOWN = -1;
+	private static final int TEXTURE_TARGETS = 4;
+	private static final int BUFFER_TARGETS = 6;
+	private static final int CAPS = 10;
+
+	// Captured once per context
+	private static final Map<Integer, float[]> limits = new HashMap<>();
+	private static final Set<String> extensions = new HashSet<>();
+	private static String vendor = "";
+	private static String renderer = "";
+	private static String version = "";
+
+	// Shadowed state
+	private static int activeUnit;
+	private static int[][] textures = new int[0][];
+	private static final int[] buffers = new int[BUFFER_TARGETS];
+	private static final int[] caps = new int[CAPS];
+	private static int program;
+	private static int vertexArray;
+	private static int drawFramebuffer;
+	private static int readFramebuffer;
+	private static int renderbuffer;
+	private static final int[] blendFunc = new int[4];
+	private static final int[] blendEquation = new int[2];
+	private static int depthFunc;
+	private static int depthMask;
+	private static int colorMask;
+	private static int cullFace;
+	private static int frontFace;
+
+	// Redundant-call statistics
+	private static long hits;
+	private static long misses;
+	private static long frameHits;
+	private static long frameMisses;
+
+	/**
+	 * Captures the immutable context limits and forgets all shadowed state.
+	 * Must be called with the context current, before the bridge issues any calls.
+	 */
+	public static void reset() {
+		limits.clear();
+		extensions.clear();
+		vendor = GL11.glGetString(GL11.GL_VENDOR);
+		renderer = GL11.glGetString(GL11.GL_RENDERER);
+		version = GL11.glGetString(GL11.GL_VERSION);
+		int count = GL11.glGetInteger(GL30.GL_NUM_EXTENSIONS);
+		for (int i = 0; i < count; i++) {
+			extensions.add(GL30.glGetStringi(GL11.GL_EXTENSIONS, i));
+		}
+
+		captureInt(GL11.GL_MAX_TEXTURE_SIZE);
+		captureInt(GL13.GL_MAX_CUBE_MAP_TEXTURE_SIZE);
+		captureInt(GL12.GL_MAX_3D_TEXTURE_SIZE);
+		captureInt(GL30.GL_MAX_ARRAY_TEXTURE_LAYERS);
+		captureInt(GL30.GL_MAX_RENDERBUFFER_SIZE);
+		captureInt(GL20.GL_MAX_TEXTURE_IMAGE_UNITS);
+		captureInt(GL20.GL_MAX_VERTEX_TEXTURE_IMAGE_UNITS);
+		captureInt(GL20.GL_MAX_COMBINED_TEXTURE_IMAGE_UNITS);
+		captureInt(GL20.GL_MAX_VERTEX_ATTRIBS);
+		captureInt(GL20.GL_MAX_DRAW_BUFFERS);
+		captureInt(GL30.GL_MAX_COLOR_ATTACHMENTS);
+		captureInt(GL30.GL_MAX_SAMPLES);
+		captureInt(GL12.GL_MAX_ELEMENTS_VERTICES);
+		captureInt(GL12.GL_MAX_ELEMENTS_INDICES);
+		captureInt(GL31.GL_MAX_UNIFORM_BUFFER_BINDINGS);
+		captureInt(GL31.GL_MAX_UNIFORM_BLOCK_SIZE);
+		captureInt(GL31.GL_MAX_VERTEX_UNIFORM_BLOCKS);
+		captureInt(GL31.GL_MAX_FRAGMENT_UNIFORM_BLOCKS);
+		captureInt(GL31.GL_MAX_COMBINED_UNIFORM_BLOCKS);
+		captureInt(GL31.GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT);
+		captureFloat(GL14.GL_MAX_TEXTURE_LOD_BIAS);
+		captureVector(GL11.GL_MAX_VIEWPORT_DIMS, 2);
+		captureVector(GL12.GL_ALIASED_LINE_WIDTH_RANGE, 2);
+		captureVector(GL11.GL_POINT_SIZE_RANGE, 2);
+		if (hasExtension("GL_EXT_texture_filter_anisotropic") || hasExtension("GL_ARB_texture_filter_anisotropic")) {
+			captureFloat(0x84FF); // MAX_TEXTURE_MAX_ANISOTROPY
+		}
+
+		// WebGL counts uniforms and varyings in vec4s; derive them from components when the
+		// ES2 compatibility queries are missing (GL 3.3 core on macOS)
+		captureVectors(0x8DFB, GL20.GL_MAX_VERTEX_UNIFORM_COMPONENTS);
+		captureVectors(0x8DFD, GL20.GL_MAX_FRAGMENT_UNIFORM_COMPONENTS);
+		captureVectors(0x8DFC, GL30.GL_MAX_VARYING_COMPONENTS);
+		limits.put(0x846D, limits.get(GL11.GL_POINT_SIZE_RANGE));
+
+		int units = (int) limits.getOrDefault(GL20.GL_MAX_COMBINED_TEXTURE_IMAGE_UNITS, new float[] { 32 })[0];
+		textures = new int[units][TEXTURE_TARGETS];
+		invalidate();
+	}
+
+	/**
+	 * Forgets all shadowed state without re-capturing limits, forcing the next call of each kind through.
+	 */
+	public static void invalidate() {
+		activeUnit = UNKNOWN;
+		for (int[] unit : textures) java.util.Arrays.fill(unit, UNKNOWN);
+		java.util.Arrays.fill(buffers, UNKNOWN);
+		java.util.Arrays.fill(caps, UNKNOWN);
+		java.util.Arrays.fill(blendFunc, UNKNOWN);
+		java.util.Arrays.fill(blendEquation, UNKNOWN);
+		program = UNKNOWN;
+		vertexArray = UNKNOWN;
+		drawFramebuffer = UNKNOWN;
+		readFramebuffer = UNKNOWN;
+		renderbuffer = UNKNOWN;
+		depthFunc = UNKNOWN;
+		depthMask = UNKNOWN;
+		colorMask = UNKNOWN;
+		cullFace = UNKNOWN;
+		frontFace = UNKNOWN;
+	}
+
+	// Bindings
+
+	public static void activeTexture(int texture) {
+		int unit = texture - GL13.GL_TEXTURE0;
+		if (unit == activeUnit) { hits++; return; }
+		misses++;
+		activeUnit = unit;
+		GL13.glActiveTexture(texture);
+	}
+
+	public static void bindTexture(int target, int texture) {
+		int slot = textureSlot(target);
+		if (slot < 0 || activeUnit < 0 || activeUnit >= textures.length) {
+			misses++;
+			GL11.glBindTexture(target, texture);
+			return;
+		}
+		if (textures[activeUnit][slot] == texture) { hits++; return; }
+		misses++;
+		textures[activeUnit][slot] = texture;
+		GL11.glBindTexture(target, texture);
+	}
+
+	public static void bindBuffer(int target, int buffer) {
+		int slot = bufferSlot(target);
+		if (slot < 0) {
+			misses++;
+			GL15.glBindBuffer(target, buffer);
+			return;
+		}
+		if (buffers[slot] == buffer) { hits++; return; }
+		misses++;
+		buffers[slot] = buffer;
+		GL15.glBindBuffer(target, buffer);
+	}
+
+	// Indexed binds also replace the generic binding point of the target
+	public static void bindBufferBase(int target, int index, int buffer) {
+		misses++;
+		int slot = bufferSlot(target);
+		if (slot >= 0) buffers[slot] = buffer;
+		GL30.glBindBufferBase(target, index, buffer);
+	}
+
+	public static void bindBufferRange(int target, int index, int buffer, long offset, long size) {
+		misses++;
+		int slot = bufferSlot(target);
+		if (slot >= 0) buffers[slot] = buffer;
+		GL30.glBindBufferRange(target, index, buffer, offset, size);
+	}
+
+	public static void useProgram(int id) {
+		if (program == id) { hits++; return; }
+		misses++;
+		program = id;
+		GL20.glUseProgram(id);
+	}
+
+	// The element array binding belongs to the vertex array object
+	public static void bindVertexArray(int id) {
+		if (vertexArray == id) { hits++; return; }
+		misses++;
+		vertexArray = id;
+		buffers[bufferSlot(GL15.GL_ELEMENT_ARRAY_BUFFER)] = UNKNOWN;
+		GL30.glBindVertexArray(id);
+	}
+
+	public static void bindFramebuffer(int target, int framebuffer) {
+		boolean draw = target != GL30.GL_READ_FRAMEBUFFER;
+		boolean read = target != GL30.GL_DRAW_FRAMEBUFFER;
+		if ((!draw || drawFramebuffer == framebuffer) && (!read || readFramebuffer == framebuffer)) { hits++; return; }
+		misses++;
+		if (draw) drawFramebuffer = framebuffer;
+		if (read) readFramebuffer = framebuffer;
+		GL30.glBindFramebuffer(target, framebuffer);
+	}
+
+	public static void bindRenderbuffer(int target, int id) {
+		if (renderbuffer == id) { hits++; return; }
+		misses++;
+		renderbuffer = id;
+		GL30.glBindRenderbuffer(target, id);
+	}
+
+	// Deleting a bound object reverts its binding points to zero
+
+	public static void deleteTexture(int texture) {
+		for (int[] unit : textures) {
+			for (int i = 0; i < unit.length; i++) {
+				if (unit[i] == texture) unit[i] = 0;
+			}
+		}
+		GL11.glDeleteTextures(texture);
+		GpuMemoryRegistry.deleted(GpuMemoryRegistry.TEXTURE, texture);
+	}
+
+	public static void deleteBuffer(int buffer) {
+		for (int i = 0; i < buffers.length; i++) {
+			if (buffers[i] == buffer) buffers[i] = UNKNOWN;
+		}
+		GL15.glDeleteBuffers(buffer);
+		GpuMemoryRegistry.deleted(GpuMemoryRegistry.BUFFER, buffer);
+	}
+
+	public static void deleteVertexArray(int id) {
+		if (vertexArray == id) {
+			vertexArray = 0;
+			buffers[bufferSlot(GL15.GL_ELEMENT_ARRAY_BUFFER)] = UNKNOWN;
+		}
+		GL30.glDeleteVertexArrays(id);
+	}
+
+	public static void deleteFramebuffer(int framebuffer) {
+		if (drawFramebuffer == framebuffer) drawFramebuffer = 0;
+		if (readFramebuffer == framebuffer) readFramebuffer = 0;
+		GL30.glDeleteFramebuffers(framebuffer);
+	}
+
+	public static void deleteRenderbuffer(int id) {
+		if (renderbuffer == id) renderbuffer = 0;
+		GL30.glDeleteRenderbuffers(id);
+		GpuMemoryRegistry.deleted(GpuMemoryRegistry.RENDERBUFFER, id);
+	}
+
+	// Fixed-function state
+
+	public static void enable(int cap) {
+		setCap(cap, true);
+	}
+
+	public static void disable(int cap) {
+		setCap(cap, false);
+	}
+
+	public static void blendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+		if (blendFunc[0] == srcRGB && blendFunc[1] == dstRGB && blendFunc[2] == srcAlpha && blendFunc[3] == dstAlpha) { hits++; return; }
+		misses++;
+		blendFunc[0] = srcRGB;
+		blendFunc[1] = dstRGB;
+		blendFunc[2] = srcAlpha;
+		blendFunc[3] = dstAlpha;
+		GL14.glBlendFuncSeparate(srcRGB, dstRGB, srcAlpha, dstAlpha);
+	}
+
+	public static void blendEquationSeparate(int modeRGB, int modeAlpha) {
+		if (blendEquation[0] == modeRGB && blendEquation[1] == modeAlpha) { hits++; return; }
+		misses++;
+		blendEquation[0] = modeRGB;
+		blendEquation[1] = modeAlpha;
+		GL20.glBlendEquationSeparate(modeRGB, modeAlpha);
+	}
+
+	public static void depthFunc(int func) {
+		if (depthFunc == func) { hits++; return; }
+		misses++;
+		depthFunc = func;
+		GL11.glDepthFunc(func);
+	}
+
+	public static void depthMask(boolean flag) {
+		int value = flag ? 1 : 0;
+		if (depthMask == value) { hits++; return; }
+		misses++;
+		depthMask = value;
+		GL11.glDepthMask(flag);
+	}
+
+	public static void colorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		int value = (red ? 1 : 0) | (green ? 2 : 0) | (blue ? 4 : 0) | (alpha ? 8 : 0);
+		if (colorMask == value) { hits++; return; }
+		misses++;
+		colorMask = value;
+		GL11.glColorMask(red, green, blue, alpha);
+	}
+
+	public static void cullFace(int mode) {
+		if (cullFace == mode) { hits++; return; }
+		misses++;
+		cullFace = mode;
+		GL11.glCullFace(mode);
+	}
+
+	public static void frontFace(int mode) {
+		if (frontFace == mode) { hits++; return; }
+		misses++;
+		frontFace = mode;
+		GL11.glFrontFace(mode);
+	}
+
+	// Queries
+
+	/**
+	 * Whether getParameter(pname) can be answered without touching the driver.
+	 */
+	public static boolean hasParameter(int pname) {
+		return limits.containsKey(pname) || shadowedParameter(pname) != UNKNOWN;
+	}
+
+	/**
+	 * Captured or shadowed value(s) for pname. Single-valued parameters return a one-element array.
+	 */
+	public static float[] getParameter(int pname) {
+		float[] value = limits.get(pname);
+		if (value != null) return value;
+		return new float[] { shadowedParameter(pname) };
+	}
+
+	public static boolean hasExtension(String name) {
+		return extensions.contains(name);
+	}
+
+	public static String getVendor() { return vendor; }
+	public static String getRenderer() { return renderer; }
+	public static String getVersion() { return version; }
+	public static int getCurrentProgram() { return program; }
+
+	/** Texture bound to target on the active unit, or -1 when not shadowed. */
+	public static int getBoundTexture(int target) {
+		int slot = textureSlot(target);
+		if (slot < 0 || activeUnit < 0 || activeUnit >= textures.length) return UNKNOWN;
+		return textures[activeUnit][slot];
+	}
+
+	/** Buffer bound to target, or -1 when not shadowed. */
+	public static int getBoundBuffer(int target) {
+		int slot = bufferSlot(target);
+		return slot < 0 ? UNKNOWN : buffers[slot];
+	}
+
+	public static int getBoundRenderbuffer() { return renderbuffer; }
+
+	// Statistics
+
+	public static void endFrame() {
+		frameHits = hits;
+		frameMisses = misses;
+		hits = 0;
+		misses = 0;
+	}
+
+	/** Calls dropped as redundant during the last completed frame. */
+	public static long getFrameHits() { return frameHits; }
+
+	/** Calls forwarded to the driver during the last completed frame. */
+	public static long getFrameMisses() { return frameMisses; }
+
+	// Internals
+
+	private static int shadowedParameter(int pname) {
+		switch (pname) {
+			case GL20.GL_CURRENT_PROGRAM: return program;
+			case GL13.GL_ACTIVE_TEXTURE: return activeUnit < 0 ? UNKNOWN : GL13.GL_TEXTURE0 + activeUnit;
+			case GL11.GL_TEXTURE_BINDING_2D: return boundTexture(0);
+			case GL13.GL_TEXTURE_BINDING_CUBE_MAP: return boundTexture(1);
+			case GL30.GL_VERTEX_ARRAY_BINDING: return vertexArray;
+			case GL30.GL_DRAW_FRAMEBUFFER_BINDING: return drawFramebuffer;
+			case GL30.GL_READ_FRAMEBUFFER_BINDING: return readFramebuffer;
+			case GL30.GL_RENDERBUFFER_BINDING: return renderbuffer;
+			case GL15.GL_ARRAY_BUFFER_BINDING: return buffers[bufferSlot(GL15.GL_ARRAY_BUFFER)];
+			case GL15.GL_ELEMENT_ARRAY_BUFFER_BINDING: return buffers[bufferSlot(GL15.GL_ELEMENT_ARRAY_BUFFER)];
+			default: return UNKNOWN;
+		}
+	}
+
+	private static int boundTexture(int slot) {
+		return activeUnit < 0 || activeUnit >= textures.length ? UNKNOWN : textures[activeUnit][slot];
+	}
+
+	private static void setCap(int cap, boolean enabled) {
+		int slot = capSlot(cap);
+		int value = enabled ? 1 : 0;
+		if (slot >= 0 && caps[slot] == value) { hits++; return; }
+		misses++;
+		if (slot >= 0) caps[slot] = value;
+		if (enabled) GL11.glEnable(cap);
+		else GL11.glDisable(cap);
+	}
+
+	private static int textureSlot(int target) {
+		switch (target) {
+			case GL11.GL_TEXTURE_2D: return 0;
+			case GL13.GL_TEXTURE_CUBE_MAP: return 1;
+			case GL12.GL_TEXTURE_3D: return 2;
+			case GL30.GL_TEXTURE_2D_ARRAY: return 3;
+			default: return -1;
+		}
+	}
+
+	// Copy read/write targets are left out on purpose: StreamingBuffer binds them privately
+	private static int bufferSlot(int target) {
+		switch (target) {
+			case GL15.GL_ARRAY_BUFFER: return 0;
+			case GL15.GL_ELEMENT_ARRAY_BUFFER: return 1;
+			case GL31.GL_UNIFORM_BUFFER: return 2;
+			case GL21.GL_PIXEL_UNPACK_BUFFER: return 3;
+			case GL21.GL_PIXEL_PACK_BUFFER: return 4;
+			case GL30.GL_TRANSFORM_FEEDBACK_BUFFER: return 5;
+			default: return -1;
+		}
+	}
+
+	private static int capSlot(int cap) {
+		switch (cap) {
+			case GL11.GL_BLEND: return 0;
+			case GL11.GL_CULL_FACE: return 1;
+			case GL11.GL_DEPTH_TEST: return 2;
+			case GL11.GL_STENCIL_TEST: return 3;
+			case GL11.GL_SCISSOR_TEST: return 4;
+			case GL11.GL_POLYGON_OFFSET_FILL: return 5;
+			case GL13.GL_SAMPLE_ALPHA_TO_COVERAGE: return 6;
+			case GL13.GL_SAMPLE_COVERAGE: return 7;
+			case GL11.GL_DITHER: return 8;
+			case GL30.GL_RASTERIZER_DISCARD: return 9;
+			default: return -1;
+		}
+	}
+
+	private static void captureInt(int pname) {
+		int value = GL11.glGetInteger(pname);
+		if (GL11.glGetError() == GL11.GL_NO_ERROR) limits.put(pname, new float[] { value });
+	}
+
+	private static void captureFloat(int pname) {
+		float value = GL11.glGetFloat(pname);
+		if (GL11.glGetError() == GL11.GL_NO_ERROR) limits.put(pname, new float[] { value });
+	}
+
+	private static void captureVector(int pname, int size) {
+		float[] value = new float[Math.max(size, 4)];
+		GL11.glGetFloatv(pname, value);
+		if (GL11.glGetError() == GL11.GL_NO_ERROR) limits.put(pname, java.util.Arrays.copyOf(value, size));
+	}
+
+	private static void captureVectors(int pname, int componentsPname) {
+		captureInt(pname);
+		if (!limits.containsKey(pname)) {
+			int components = GL11.glGetInteger(componentsPname);
+			if (GL11.glGetError() == GL11.GL_NO_ERROR) limits.put(pname, new float[] { components / 4 });
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package black.alias.diadem;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Periodic JFR snapshot of the GPU memory tracked by GpuMemoryRegistry. A total that keeps
+ * growing across level loads points at scenes whose meshes or textures were never disposed.
+ */
+@Name("diadem.GpuMemory")
+@Label("GPU Memory")
+@Category({ "Diadem", "Rendering" })
+@Description("GPU memory held by buffers, textures and renderbuffers created through the WebGL bridge")
+@Period("1 s")
+@StackTrace(false)
+public class GpuMemoryEvent extends Event {
+	@Label("Buffer Memory")
+	@DataAmount
+	long bufferBytes;
+
+	@Label("Texture Memory")
+	@DataAmount
+	long textureBytes;
+
+	@Label("Renderbuffer Memory")
+	@DataAmount
+	long renderbufferBytes;
+
+	@Label("Total Memory")
+	@DataAmount
+	long totalBytes;
+
+	@Label("Buffers")
+	int buffers;
+
+	@Label("Textures")
+	int textures;
+
+	@Label("Renderbuffers")
+	int renderbuffers;
+}
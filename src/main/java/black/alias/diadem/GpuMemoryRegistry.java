@@ -0,0 +1,393 @@
+package black.alias.diadem;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Accounting of the GPU memory held by buffers, textures and renderbuffers. The bridge reports
+ * every creation (with the JS callsite), allocation and deletion, and the registry keeps an
+ * estimate of each object's size from its dimensions and format. Sizes are what the data
+ * needs, not what the driver actually reserves (padding, compression on the driver side).
+ * Exposed to scripts as diadem.gpuMemory() and to JFR as the periodic diadem.GpuMemory event.
+ * Mutated on the GL thread only; the totals are safe to read from any thread.
+ */
+public class GpuMemoryRegistry {
+	public static final String BUFFER = "buffer";
+	public static final String TEXTURE = "texture";
+	public static final String RENDERBUFFER = "renderbuffer";
+
+	private static final Map<Integer, Resource> buffers = new HashMap<>();
+	private static final Map<Integer, Resource> textures = new HashMap<>();
+	private static final Map<Integer, Resource> renderbuffers = new HashMap<>();
+
+	private static volatile long bufferBytes;
+	private static volatile long textureBytes;
+	private static volatile long renderbufferBytes;
+	private static volatile int bufferCount;
+	private static volatile int textureCount;
+	private static volatile int renderbufferCount;
+	private static boolean eventRegistered;
+
+	/** One GL object and the memory it holds. */
+	public static class Resource {
+		public final String type;
+		public final int id;
+		public final String callsite;
+		private long bytes;
+		private int format;
+		private int width;
+		private int height;
+		private int depth;
+		// Texture images by (face << 8 | level), so respecifying a level replaces its size
+		private final Map<Integer, Long> images = new HashMap<>();
+
+		Resource(String type, int id, String callsite) {
+			this.type = type;
+			this.id = id;
+			this.callsite = callsite;
+		}
+
+		public long getBytes() { return bytes; }
+		/** Buffer usage, or internal format of textures and renderbuffers. */
+		public int getFormat() { return format; }
+		public int getWidth() { return width; }
+		public int getHeight() { return height; }
+		public int getDepth() { return depth; }
+	}
+
+	/**
+	 * Registers a newly created object. callsite says who created it, for finding leaks.
+	 */
+	public static void created(String type, int id, String callsite) {
+		if (id == 0) return;
+		Map<Integer, Resource> resources = resources(type);
+		Resource previous = resources.put(id, new Resource(type, id, callsite));
+		if (previous != null) {
+			add(type, -previous.bytes, 0);
+		} else {
+			add(type, 0, 1);
+		}
+	}
+
+	/**
+	 * Forgets a deleted object and its memory. Called by GLStateCache on every delete.
+	 */
+	public static void deleted(String type, int id) {
+		Resource resource = resources(type).remove(id);
+		if (resource != null) {
+			add(type, -resource.bytes, -1);
+		}
+	}
+
+	// Buffers
+
+	/** bufferData on the buffer bound to target. */
+	public static void bufferData(int target, long size, int usage) {
+		bufferStorage(boundBuffer(target), size, usage);
+	}
+
+	public static void bufferStorage(int buffer, long size, int usage) {
+		Resource resource = resource(BUFFER, buffer);
+		if (resource == null) return;
+		resource.format = usage;
+		resource.width = (int) Math.min(size, Integer.MAX_VALUE);
+		setBytes(resource, size);
+	}
+
+	// Textures
+
+	/** texImage2D/3D of one level (one face of cube maps) of the texture bound to target. */
+	public static void texImage(int target, int level, int internalFormat, int type, int width, int height, int depth) {
+		Resource resource = resource(TEXTURE, boundTexture(target));
+		if (resource == null) return;
+		long bytes = (long) Math.max(width, 0) * Math.max(height, 0) * Math.max(depth, 1) * texelBytes(internalFormat, type);
+		setImage(resource, face(target), level, internalFormat, width, height, depth, bytes);
+	}
+
+	/** compressedTexImage2D/3D of one level of the texture bound to target. */
+	public static void compressedTexImage(int target, int level, int internalFormat, int width, int height, int depth) {
+		Resource resource = resource(TEXTURE, boundTexture(target));
+		if (resource == null) return;
+		setImage(resource, face(target), level, internalFormat, width, height, depth, compressedBytes(internalFormat, width, height, depth));
+	}
+
+	/** texStorage2D/3D on the texture bound to target. */
+	public static void texStorage(int target, int levels, int internalFormat, int width, int height, int depth) {
+		textureStorage(boundTexture(target), target, levels, internalFormat, width, height, depth);
+	}
+
+	public static void textureStorage(int texture, int target, int levels, int internalFormat, int width, int height, int depth) {
+		Resource resource = resource(TEXTURE, texture);
+		if (resource == null) return;
+		resource.images.clear();
+		// Array textures keep their layer count, 3D textures halve depth per level
+		boolean layered = target == GL30.GL_TEXTURE_2D_ARRAY;
+		int faces = target == GL13.GL_TEXTURE_CUBE_MAP ? 6 : 1;
+		for (int level = 0; level < Math.max(levels, 1); level++) {
+			int w = Math.max(1, width >> level);
+			int h = Math.max(1, height >> level);
+			int d = layered ? Math.max(depth, 1) : Math.max(1, depth >> level);
+			for (int face = 0; face < faces; face++) {
+				resource.images.put(face << 8 | level, imageBytes(internalFormat, GL11.GL_UNSIGNED_BYTE, w, h, d));
+			}
+		}
+		resource.format = internalFormat;
+		resource.width = width;
+		resource.height = height;
+		resource.depth = depth;
+		setBytes(resource, sum(resource.images));
+	}
+
+	/** generateMipmap: fills in every level below the base level of the bound texture. */
+	public static void generateMipmap(int target) {
+		Resource resource = resource(TEXTURE, boundTexture(target));
+		if (resource == null || resource.width <= 0) return;
+		boolean layered = target == GL30.GL_TEXTURE_2D_ARRAY;
+		int faces = target == GL13.GL_TEXTURE_CUBE_MAP ? 6 : 1;
+		int levels = 32 - Integer.numberOfLeadingZeros(Math.max(resource.width, Math.max(resource.height, layered ? 1 : resource.depth)));
+		for (int level = 1; level < levels; level++) {
+			int w = Math.max(1, resource.width >> level);
+			int h = Math.max(1, resource.height >> level);
+			int d = layered ? Math.max(resource.depth, 1) : Math.max(1, resource.depth >> level);
+			for (int face = 0; face < faces; face++) {
+				resource.images.put(face << 8 | level, imageBytes(resource.format, GL11.GL_UNSIGNED_BYTE, w, h, d));
+			}
+		}
+		setBytes(resource, sum(resource.images));
+	}
+
+	// Renderbuffers
+
+	/** renderbufferStorage(Multisample) on the bound renderbuffer. */
+	public static void renderbufferStorage(int internalFormat, int samples, int width, int height) {
+		int renderbuffer = GLStateCache.getBoundRenderbuffer();
+		if (renderbuffer < 0) renderbuffer = GL11.glGetInteger(GL30.GL_RENDERBUFFER_BINDING);
+		Resource resource = resource(RENDERBUFFER, renderbuffer);
+		if (resource == null) return;
+		resource.format = internalFormat;
+		resource.width = width;
+		resource.height = height;
+		resource.depth = 1;
+		setBytes(resource, (long) width * height * Math.max(samples, 1) * texelBytes(internalFormat, GL11.GL_UNSIGNED_BYTE));
+	}
+
+	// Queries
+
+	public static long getBufferBytes() { return bufferBytes; }
+	public static long getTextureBytes() { return textureBytes; }
+	public static long getRenderbufferBytes() { return renderbufferBytes; }
+	public static long getTotalBytes() { return bufferBytes + textureBytes + renderbufferBytes; }
+	public static int getBufferCount() { return bufferCount; }
+	public static int getTextureCount() { return textureCount; }
+	public static int getRenderbufferCount() { return renderbufferCount; }
+
+	/**
+	 * Live objects, largest first. Call on the GL thread.
+	 */
+	public static List<Resource> getResources() {
+		List<Resource> all = new ArrayList<>(buffers.size() + textures.size() + renderbuffers.size());
+		all.addAll(buffers.values());
+		all.addAll(textures.values());
+		all.addAll(renderbuffers.values());
+		all.sort(Comparator.comparingLong(Resource::getBytes).reversed());
+		return all;
+	}
+
+	/**
+	 * Emits a GpuMemoryEvent on every JFR period (1 s unless the recording settings say otherwise).
+	 */
+	public static synchronized void registerEvent() {
+		if (eventRegistered) return;
+		eventRegistered = true;
+		FlightRecorder.addPeriodicEvent(GpuMemoryEvent.class, () -> {
+			GpuMemoryEvent event = new GpuMemoryEvent();
+			event.bufferBytes = bufferBytes;
+			event.textureBytes = textureBytes;
+			event.renderbufferBytes = renderbufferBytes;
+			event.totalBytes = getTotalBytes();
+			event.buffers = bufferCount;
+			event.textures = textureCount;
+			event.renderbuffers = renderbufferCount;
+			event.commit();
+		});
+	}
+
+	// Internals
+
+	private static Map<Integer, Resource> resources(String type) {
+		switch (type) {
+			case BUFFER: return buffers;
+			case TEXTURE: return textures;
+			default: return renderbuffers;
+		}
+	}
+
+	// Objects created outside the bridge (or before the registry saw them) are adopted on first allocation
+	private static Resource resource(String type, int id) {
+		if (id <= 0) return null;
+		Resource resource = resources(type).get(id);
+		if (resource == null) {
+			created(type, id, "unknown");
+			resource = resources(type).get(id);
+		}
+		return resource;
+	}
+
+	private static void setImage(Resource resource, int face, int level, int internalFormat, int width, int height, int depth, long bytes) {
+		if (level == 0) {
+			resource.format = internalFormat;
+			resource.width = width;
+			resource.height = height;
+			resource.depth = depth;
+		}
+		resource.images.put(face << 8 | level, bytes);
+		setBytes(resource, sum(resource.images));
+	}
+
+	private static void setBytes(Resource resource, long bytes) {
+		add(resource.type, bytes - resource.bytes, 0);
+		resource.bytes = bytes;
+	}
+
+	private static void add(String type, long bytes, int count) {
+		switch (type) {
+			case BUFFER:
+				bufferBytes += bytes;
+				bufferCount += count;
+				break;
+			case TEXTURE:
+				textureBytes += bytes;
+				textureCount += count;
+				break;
+			default:
+				renderbufferBytes += bytes;
+				renderbufferCount += count;
+				break;
+		}
+	}
+
+	private static long sum(Map<Integer, Long> images) {
+		long total = 0;
+		for (long bytes : images.values()) total += bytes;
+		return total;
+	}
+
+	private static int face(int target) {
+		if (target >= GL13.GL_TEXTURE_CUBE_MAP_POSITIVE_X && target <= GL13.GL_TEXTURE_CUBE_MAP_NEGATIVE_Z) {
+			return target - GL13.GL_TEXTURE_CUBE_MAP_POSITIVE_X;
+		}
+		return 0;
+	}
+
+	private static int boundTexture(int target) {
+		boolean cubeFace = target >= GL13.GL_TEXTURE_CUBE_MAP_POSITIVE_X && target <= GL13.GL_TEXTURE_CUBE_MAP_NEGATIVE_Z;
+		int bindingTarget = cubeFace ? GL13.GL_TEXTURE_CUBE_MAP : target;
+		int texture = GLStateCache.getBoundTexture(bindingTarget);
+		if (texture >= 0) return texture;
+		switch (bindingTarget) {
+			case GL11.GL_TEXTURE_2D: return GL11.glGetInteger(GL11.GL_TEXTURE_BINDING_2D);
+			case GL13.GL_TEXTURE_CUBE_MAP: return GL11.glGetInteger(GL13.GL_TEXTURE_BINDING_CUBE_MAP);
+			case GL12.GL_TEXTURE_3D: return GL11.glGetInteger(GL12.GL_TEXTURE_BINDING_3D);
+			case GL30.GL_TEXTURE_2D_ARRAY: return GL11.glGetInteger(GL30.GL_TEXTURE_BINDING_2D_ARRAY);
+			default: return 0;
+		}
+	}
+
+	private static int boundBuffer(int target) {
+		int buffer = GLStateCache.getBoundBuffer(target);
+		if (buffer >= 0) return buffer;
+		switch (target) {
+			case GL15.GL_ARRAY_BUFFER: return GL11.glGetInteger(GL15.GL_ARRAY_BUFFER_BINDING);
+			case GL15.GL_ELEMENT_ARRAY_BUFFER: return GL11.glGetInteger(GL15.GL_ELEMENT_ARRAY_BUFFER_BINDING);
+			case GL31.GL_UNIFORM_BUFFER: return GL11.glGetInteger(GL31.GL_UNIFORM_BUFFER_BINDING);
+			case GL21.GL_PIXEL_UNPACK_BUFFER: return GL11.glGetInteger(GL21.GL_PIXEL_UNPACK_BUFFER_BINDING);
+			case GL21.GL_PIXEL_PACK_BUFFER: return GL11.glGetInteger(GL21.GL_PIXEL_PACK_BUFFER_BINDING);
+			case GL30.GL_TRANSFORM_FEEDBACK_BUFFER: return GL11.glGetInteger(GL30.GL_TRANSFORM_FEEDBACK_BUFFER_BINDING);
+			case GL31.GL_COPY_READ_BUFFER: return GL11.glGetInteger(GL31.GL_COPY_READ_BUFFER);
+			case GL31.GL_COPY_WRITE_BUFFER: return GL11.glGetInteger(GL31.GL_COPY_WRITE_BUFFER);
+			default: return 0;
+		}
+	}
+
+	private static long imageBytes(int internalFormat, int type, int width, int height, int depth) {
+		long compressed = compressedBytes(internalFormat, width, height, depth);
+		return compressed > 0 ? compressed : (long) width * height * depth * texelBytes(internalFormat, type);
+	}
+
+	// Block-compressed formats: {block width, block height, block bytes}, null when not compressed
+	private static int[] block(int internalFormat) {
+		switch (internalFormat) {
+			case 0x83F0: case 0x83F1: case 0x8C4C: case 0x8C4D: // S3TC DXT1
+			case 0x8DBB: case 0x8DBC: // RGTC1
+			case 0x9270: case 0x9271: // EAC R11
+			case 0x9274: case 0x9275: case 0x9276: case 0x9277: // ETC2 RGB8, punchthrough alpha
+			case 0x8D64: // ETC1
+				return new int[] { 4, 4, 8 };
+			case 0x83F2: case 0x83F3: case 0x8C4E: case 0x8C4F: // S3TC DXT3/5
+			case 0x8DBD: case 0x8DBE: // RGTC2
+			case 0x8E8C: case 0x8E8D: case 0x8E8E: case 0x8E8F: // BPTC
+			case 0x9272: case 0x9273: // EAC RG11
+			case 0x9278: case 0x9279: // ETC2 RGBA8
+				return new int[] { 4, 4, 16 };
+			default:
+				break;
+		}
+		// ASTC, linear and sRGB ranges share the footprint order
+		int astc = internalFormat >= 0x93D0 ? internalFormat - 0x93D0 : internalFormat - 0x93B0;
+		if (astc >= 0 && astc < 14 && (internalFormat <= 0x93BD || internalFormat >= 0x93D0) && internalFormat <= 0x93DD) {
+			int[][] footprints = { {4, 4}, {5, 4}, {5, 5}, {6, 5}, {6, 6}, {8, 5}, {8, 6}, {8, 8},
+				{10, 5}, {10, 6}, {10, 8}, {10, 10}, {12, 10}, {12, 12} };
+			return new int[] { footprints[astc][0], footprints[astc][1], 16 };
+		}
+		return null;
+	}
+
+	private static long compressedBytes(int internalFormat, int width, int height, int depth) {
+		int[] block = block(internalFormat);
+		if (block == null) return 0;
+		long blocksX = (Math.max(width, 1) + block[0] - 1) / block[0];
+		long blocksY = (Math.max(height, 1) + block[1] - 1) / block[1];
+		return blocksX * blocksY * Math.max(depth, 1) * block[2];
+	}
+
+	// Sized formats by their layout, unsized ones (WebGL1 style) by components times type size
+	private static int texelBytes(int internalFormat, int type) {
+		switch (internalFormat) {
+			case 0x8229: case 0x8231: case 0x8232: case 0x8D48: return 1; // R8, R8I/UI, STENCIL_INDEX8
+			case 0x822B: case 0x822D: case 0x8233: case 0x8234: case 0x8237: case 0x8238: case 0x81A5: case 0x8D62: case 0x8056: case 0x8057: return 2;
+			case 0x8051: case 0x8C41: return 3; // RGB8, SRGB8
+			case 0x8058: case 0x8C43: case 0x822E: case 0x822F: case 0x8C3A: case 0x8C3D: case 0x8059: case 0x81A6: case 0x8CAC: case 0x88F0:
+			case 0x8235: case 0x8236: case 0x8239: case 0x823A: case 0x8D7C: case 0x8D8E: return 4;
+			case 0x881B: return 6; // RGB16F
+			case 0x881A: case 0x8230: case 0x823B: case 0x823C: case 0x8CAD: case 0x8D76: case 0x8D88: return 8;
+			case 0x8815: return 12; // RGB32F
+			case 0x8814: case 0x8D70: case 0x8D82: return 16;
+			default: break;
+		}
+		int components;
+		switch (internalFormat) {
+			case GL11.GL_RED: case GL11.GL_ALPHA: case GL11.GL_LUMINANCE: case GL11.GL_DEPTH_COMPONENT: components = 1; break;
+			case GL30.GL_RG: case GL11.GL_LUMINANCE_ALPHA: components = 2; break;
+			case GL11.GL_RGB: components = 3; break;
+			case GL30.GL_DEPTH_STENCIL: return 4;
+			default: components = 4; break;
+		}
+		switch (type) {
+			case GL11.GL_UNSIGNED_BYTE: case GL11.GL_BYTE: return components;
+			case GL11.GL_SHORT: case GL11.GL_UNSIGNED_SHORT: case GL30.GL_HALF_FLOAT: return components * 2;
+			case 0x8033: case 0x8034: case 0x8363: return 2; // packed 4444, 5551, 565
+			default: return components * 4;
+		}
+	}
+}
@@ -2,6 +2,8 @@
 package black.alias.diadem;
 
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
 import org.graalvm.polyglot.io.FileSystem;
 import org.graalvm.polyglot.io.IOAccess;
@@ -10,20 +12,45 @@ import java.io.InputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.FileAttribute;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import black.alias.diadem.Loaders.AssetPack;
 import black.alias.diadem.Loaders.TextureLoader;
+import black.alias.diadem.Loaders.AsyncTextureLoader;
+import black.alias.diadem.Loaders.TextureStreamer;
 import black.alias.diadem.Loaders.GLTFLoader;
 
+/**
+ * JavaScript context running the WebGL2 bridge, Three.js and the game scripts.
+ * Contexts share one polyglot Engine, and the sources they evaluate over and over (bridge,
+ * polyfills, Three.js modules, the per-frame entry point) are built once, so parsed and
+ * compiled code is reused instead of redone. Where the runtime supports it (Oracle GraalVM
+ * native images), the engine also persists its code cache across launches, see getEngine().
+ */
 public class JSContext implements AutoCloseable {
+	private static Engine engine;
+	private static final Map<String, Source> sources = new ConcurrentHashMap<>();
+	private static final Map<String, byte[]> virtualModules = new ConcurrentHashMap<>();
+	private static final Source RUN_CALLBACKS = Source.create("js", "runCallbacks()");
+
 	private final Context jsContext;
 	private final Path THREE_MODULE_PATH = Paths.get("/virtual/three");
 	private TextureLoader textureLoaderInstance = null;
+	private AsyncTextureLoader asyncTextureLoaderInstance = null;
+	private TextureStreamer textureStreamerInstance = null;
 	private GLTFLoader jgltfLoaderInstance = null;
 	
 	public JSContext() {
-		this.jsContext = Context.newBuilder("js")
+		Context.Builder builder = Context.newBuilder("js");
+		Engine shared = getEngine();
+		if (shared != null) {
+			builder.engine(shared);
+		}
+		this.jsContext = builder
 			.allowAllAccess(true)
 			.allowExperimentalOptions(true)
 			.allowIO(IOAccess.newBuilder()
@@ -34,19 +61,95 @@ public class JSContext implements AutoCloseable {
 			.build();
 		
 		try {
-			String bridgeScript = loadBridgeScript();
-			jsContext.eval("js", bridgeScript);
+			jsContext.eval(getResourceSource("/renderer.js", false));
 		} catch (IOException e) {
 			throw new RuntimeException("Failed to load WebGL2 bridge script", e);
 		}
 	}
 	
+	/**
+	 * The engine shared by all contexts. The code cache file (-Ddiadem.jsCache, default
+	 * ~/.diadem/js.cache) is loaded when it exists, and written on closeEngine() when it doesn't
+	 * or could not be loaded. Runtimes without the engine.Cache options use in-memory sharing only,
+	 * except native images, where this returns null: contexts then get their own engine, the only
+	 * kind that can start from the context pre-initialized at image build time.
+	 */
+	public static synchronized Engine getEngine() {
+		if (engine == null) {
+			Path cache = Paths.get(System.getProperty("diadem.jsCache",
+				Paths.get(System.getProperty("user.home"), ".diadem", "js.cache").toString()));
+			if (Files.isRegularFile(cache)) {
+				engine = buildEngine("engine.CacheLoad", cache);
+			}
+			if (engine == null) {
+				engine = buildEngine("engine.CacheStore", cache);
+			}
+			if (engine == null && !"runtime".equals(System.getProperty("org.graalvm.nativeimage.imagecode"))) {
+				engine = Engine.newBuilder("js").build();
+			}
+		}
+		return engine;
+	}
+	
+	// Null when the runtime lacks the option or the cache file is unusable (e.g. stale)
+	private static Engine buildEngine(String cacheOption, Path cache) {
+		Engine built;
+		try {
+			built = Engine.newBuilder("js")
+				.allowExperimentalOptions(true)
+				.option(cacheOption, cache.toString())
+				.build();
+		} catch (RuntimeException e) {
+			return null;
+		}
+		// The store is written on close, so the directory is only needed once the option took
+		if ("engine.CacheStore".equals(cacheOption)) {
+			try {
+				Files.createDirectories(cache.toAbsolutePath().getParent());
+			} catch (IOException e) {
+				System.err.println("Could not create " + cache.toAbsolutePath().getParent() + ": " + e.getMessage());
+			}
+		}
+		return built;
+	}
+	
+	/**
+	 * Closes the shared engine, storing its code cache if enabled. Call after every context
+	 * is closed.
+	 */
+	public static synchronized void closeEngine() {
+		if (engine != null) {
+			engine.close();
+			engine = null;
+		}
+	}
+	
+	/**
+	 * Runs the per-frame JS callbacks (timers, requestAnimationFrame) from a prebuilt source.
+	 */
+	public void runCallbacks() {
+		jsContext.eval(RUN_CALLBACKS);
+	}
+	
 	public void setupModelLoader() {
 		try {
 			// Expose jgltf loader
 			bindFunction("loadGLTF", args -> {
 				String filePath = (String) args[0];
-				return getJGLTFLoader().load(filePath);
+				// Optional options object, e.g. { instanceSharedMeshes: true }
+				Value flag = args.length > 1 && args[1] instanceof Value options && options.hasMembers()
+					? options.getMember("instanceSharedMeshes") : null;
+				boolean instanceSharedMeshes = flag != null && flag.isBoolean() && flag.asBoolean();
+				return getJGLTFLoader().load(filePath, instanceSharedMeshes);
+			});
+			// Returns a Promise; options may also carry onProgress({ phase, loaded, total })
+			bindFunction("loadGLTFAsync", args -> {
+				String filePath = (String) args[0];
+				Value options = args.length > 1 && args[1] instanceof Value value && value.hasMembers() ? value : null;
+				Value flag = options != null ? options.getMember("instanceSharedMeshes") : null;
+				boolean instanceSharedMeshes = flag != null && flag.isBoolean() && flag.asBoolean();
+				Value onProgress = options != null ? options.getMember("onProgress") : null;
+				return getJGLTFLoader().loadAsync(filePath, instanceSharedMeshes, onProgress);
 			});
 		} catch (Exception e) {
 			System.err.println("Failed to setup Model Loader: " + e.getMessage());
@@ -92,10 +195,29 @@ public class JSContext implements AutoCloseable {
 				String texturePath = (String) args[0];
 				return getTextureLoader().loadTexture(texturePath);
 			});
+			bindTextureFunction("loadTextureAsync", args -> {
+				String texturePath = (String) args[0];
+				return getAsyncTextureLoader().loadTextureAsync(texturePath);
+			});
 			bindTextureFunction("loadHDRTexture", args -> {
 				String texturePath = (String) args[0];
 				return getTextureLoader().loadHDRTexture(texturePath);
 			});
+			bindTextureFunction("streamTexture", args -> {
+				String texturePath = (String) args[0];
+				boolean srgb = args.length < 2 || !(args[1] instanceof Value flag) || !flag.isBoolean() || flag.asBoolean();
+				return getTextureStreamer().stream(texturePath, srgb);
+			});
+			bindTextureFunction("getTextureStreamer", args -> getTextureStreamer());
+			bindTextureFunction("loadTextures", args -> {
+				Value paths = (Value) args[0];
+				String[] texturePaths = new String[(int) paths.getArraySize()];
+				for (int i = 0; i < texturePaths.length; i++) {
+					texturePaths[i] = paths.getArrayElement(i).asString();
+				}
+				boolean cooked = args.length < 2 || !(args[1] instanceof Value flag) || !flag.isBoolean() || flag.asBoolean();
+				return getTextureLoader().loadTextures(texturePaths, cooked);
+			});
 			
 			bindTextureFunction("loadTextureWithSize", args -> {
 				if (args.length != 3) {
@@ -139,6 +261,22 @@ public class JSContext implements AutoCloseable {
 		return textureLoaderInstance;
 	}
 	
+	private AsyncTextureLoader getAsyncTextureLoader() {
+		if (asyncTextureLoaderInstance == null) {
+			Value threeJS = jsContext.getBindings("js").getMember("THREE");
+			asyncTextureLoaderInstance = new AsyncTextureLoader(jsContext, threeJS, getTextureLoader());
+		}
+		return asyncTextureLoaderInstance;
+	}
+	
+	private TextureStreamer getTextureStreamer() {
+		if (textureStreamerInstance == null) {
+			Value threeJS = jsContext.getBindings("js").getMember("THREE");
+			textureStreamerInstance = new TextureStreamer(threeJS, getTextureLoader());
+		}
+		return textureStreamerInstance;
+	}
+	
 	private void bindTextureFunction(String functionName, java.util.function.Function<Object[], Object> handler) {
 		jsContext.getBindings("js").putMember(functionName, new org.graalvm.polyglot.proxy.ProxyExecutable() {
 			@Override
@@ -196,37 +334,40 @@ public class JSContext implements AutoCloseable {
 		@Override
 		public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
 			if (THREE_MODULE_PATH.equals(path)) {
-				String content = loadResourceAsString("/three.module.min.js");
-				return createByteChannelFrom(content);
+				return createByteChannelFrom(ByteBuffer.wrap(getVirtualModule("/three.module.min.js")));
 			}
 			
 			String pathStr = path.toString().replace('\\', '/');
 			if ("/virtual/three.core.min.js".equals(pathStr)) {
-				String content = loadResourceAsString("/three.core.min.js");
-				return createByteChannelFrom(content);
+				return createByteChannelFrom(ByteBuffer.wrap(getVirtualModule("/three.core.min.js")));
 			}
-			// Serve packaged resources for scripts and assets
-			if (pathStr.startsWith("/scripts/") || pathStr.startsWith("/assets/")) {
-				String content = loadResourceAsString(pathStr);
+			// Serve assets from the asset pack, scripts from packaged resources
+			if (pathStr.startsWith("/assets/")) {
+				ByteBuffer content = AssetPack.get(pathStr);
+				if (content == null) {
+					throw new NoSuchFileException(pathStr);
+				}
 				return createByteChannelFrom(content);
 			}
+			if (pathStr.startsWith("/scripts/")) {
+				return createByteChannelFrom(ByteBuffer.wrap(loadResourceBytes(pathStr)));
+			}
 			
 			return defaultFS.newByteChannel(path, options, attrs);
 		}
 		
-		private SeekableByteChannel createByteChannelFrom(String content) {
-			byte[] bytes = content.getBytes();
-			
+		// Reads straight from the buffer, e.g. a slice of the mapped asset pack
+		private SeekableByteChannel createByteChannelFrom(ByteBuffer bytes) {
 			return new SeekableByteChannel() {
 				private int position = 0;
 				
 				@Override
 				public int read(ByteBuffer dst) throws IOException {
-					if (position >= bytes.length) {
+					if (position >= bytes.limit()) {
 						return -1;
 					}
-					int remaining = Math.min(dst.remaining(), bytes.length - position);
-					dst.put(bytes, position, remaining);
+					int remaining = Math.min(dst.remaining(), bytes.limit() - position);
+					dst.put(bytes.slice(position, remaining));
 					position += remaining;
 					return remaining;
 				}
@@ -249,7 +390,7 @@ public class JSContext implements AutoCloseable {
 				
 				@Override
 				public long size() throws IOException {
-					return bytes.length;
+					return bytes.limit();
 				}
 				
 				@Override
@@ -311,17 +452,45 @@ public class JSContext implements AutoCloseable {
 		}
 	}
 	
-	private String loadBridgeScript() throws IOException {
-		return loadResourceAsString("/renderer.js");
-	}
-	
-	private String loadResourceAsString(String resourcePath) throws IOException {
-		try (InputStream is = getClass().getResourceAsStream(resourcePath)) {
+	private static byte[] loadResourceBytes(String resourcePath) throws IOException {
+		try (InputStream is = JSContext.class.getResourceAsStream(resourcePath)) {
 			if (is == null) {
-				throw new IOException("Resource not found: " + resourcePath);
+				throw new NoSuchFileException("Resource not found: " + resourcePath);
 			}
-			return new String(is.readAllBytes());
+			return is.readAllBytes();
+		}
+	}
+	
+	// Three.js modules are read once and kept as bytes, every context imports them
+	private static byte[] getVirtualModule(String resourcePath) throws IOException {
+		byte[] bytes = virtualModules.get(resourcePath);
+		if (bytes == null) {
+			bytes = loadResourceBytes(resourcePath);
+			virtualModules.put(resourcePath, bytes);
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Source for a packaged script, built once and named after the resource.
+	 */
+	private static Source getResourceSource(String resourcePath, boolean module) throws IOException {
+		String key = (module ? "module:" : "script:") + resourcePath;
+		Source source = sources.get(key);
+		if (source == null) {
+			String code = new String(loadResourceBytes(resourcePath), StandardCharsets.UTF_8);
+			source = buildSource(code, resourcePath.substring(resourcePath.lastIndexOf('/') + 1), module);
+			sources.put(key, source);
 		}
+		return source;
+	}
+	
+	private static Source buildSource(String code, String name, boolean module) {
+		Source.Builder builder = Source.newBuilder("js", code, name).cached(true);
+		if (module) {
+			builder.mimeType("application/javascript+module");
+		}
+		return builder.buildLiteral();
 	}
 	
 	public Value executeScript(String script) {
@@ -330,9 +499,7 @@ public class JSContext implements AutoCloseable {
 	
 	public Value executeModule(String moduleCode) {
 		try {
-			return jsContext.eval(org.graalvm.polyglot.Source.newBuilder("js", moduleCode, "module.mjs")
-				.mimeType("application/javascript+module")
-				.build());
+			return jsContext.eval(buildSource(moduleCode, "module.mjs", true));
 		} catch (Exception e) {
 			throw new RuntimeException("Failed to execute ES6 module", e);
 		}
@@ -341,7 +508,7 @@ public class JSContext implements AutoCloseable {
 	public Value executeModuleFromFile(String filePath) throws IOException {
 		try {
 			Path path = Paths.get(filePath);
-			return jsContext.eval(org.graalvm.polyglot.Source.newBuilder("js", path.toFile())
+			return jsContext.eval(Source.newBuilder("js", path.toFile())
 				.mimeType("application/javascript+module")
 				.build());
 		} catch (Exception e) {
@@ -350,23 +517,17 @@ public class JSContext implements AutoCloseable {
 	}
 	
 	public Value executeScriptFile(String filename) throws IOException {
-		String script;
 		if (filename.startsWith("/")) {
-			script = loadResourceAsString(filename);
-		} else {
-			script = new String(Files.readAllBytes(Paths.get(filename)));
+			return jsContext.eval(getResourceSource(filename, false));
 		}
-		return executeScript(script);
+		return executeScript(new String(Files.readAllBytes(Paths.get(filename))));
 	}
 	
 	public Value executeModuleFile(String filename) throws IOException {
-		String moduleCode;
 		if (filename.startsWith("/")) {
-			moduleCode = loadResourceAsString(filename);
-		} else {
-			moduleCode = new String(Files.readAllBytes(Paths.get(filename)));
+			return jsContext.eval(getResourceSource(filename, true));
 		}
-		return executeModule(moduleCode);
+		return executeModule(new String(Files.readAllBytes(Paths.get(filename))));
 	}
 	
 	public Context getJavaScriptContext() {
@@ -374,6 +535,12 @@ public class JSContext implements AutoCloseable {
 	}
 	
 	public void close() {
+		if (asyncTextureLoaderInstance != null) {
+			asyncTextureLoaderInstance.shutdown();
+		}
+		if (textureStreamerInstance != null) {
+			textureStreamerInstance.shutdown();
+		}
 		jsContext.close();
 	}
 }
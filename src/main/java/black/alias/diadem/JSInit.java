@@ -1,5 +1,7 @@
 package black.alias.diadem;
 
+import org.lwjgl.glfw.GLFWErrorCallback;
+import org.lwjgl.glfw.GLFWVidMode;
 import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.awt.AWTGLCanvas;
@@ -12,16 +14,25 @@ import java.awt.GraphicsDevice;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
+import black.alias.diadem.Loaders.AssetCache;
+import black.alias.diadem.Loaders.AssetPack;
+import black.alias.diadem.Loaders.TextureStreamer;
+
+import static org.lwjgl.glfw.Callbacks.glfwFreeCallbacks;
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
 
 public class JSInit {
 	
 	private AWTGLCanvas canvas;
+	private long window = NULL; // GLFW backend
 	private JSContext jsContext;
 	
 	private Settings settings;
 	private volatile boolean running = false;
 	private Thread renderThread;
 	private long targetFrameNanos = 0L; // when vsync=true, based on display refresh rate
+	private boolean firstFrame = true;
 	
 	public static void main(String[] args) {
 		new JSInit().run();
@@ -35,7 +46,27 @@ public class JSInit {
 	private void init() {
 		// Load settings first
 		settings = Settings.load();
+		CommandExecutor.setEnabled(settings.isCommandBuffer());
+		FrameScheduler.setBudget(settings.getUploadBudgetMs());
+		TextureStreamer.setBudget(settings.getTextureBudgetMB());
+		AssetCache.setLimit(settings.getAssetCacheMB());
+		AssetPack.mount();
+		GpuMemoryRegistry.registerEvent();
+
+		if ("glfw".equalsIgnoreCase(settings.getWindowBackend())) {
+			if (isMac() && !isFirstThread()) {
+				System.err.println("Warning: The GLFW backend needs -XstartOnFirstThread on macOS, using AWT instead");
+				initAWT();
+			} else {
+				runGLFW();
+			}
+		} else {
+			initAWT();
+		}
+	}
 
+	// Swing frame with an AWTGLCanvas, for embedding; vsync is emulated by pacing the render thread
+	private void initAWT() {
 		JFrame frame = new JFrame(settings.getWindowTitle());
 		frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
 		frame.setLayout(new BorderLayout());
@@ -47,8 +78,7 @@ public class JSInit {
 		data.profile = GLData.Profile.CORE;
 		data.samples = 4;
 		
-		String osName = System.getProperty("os.name").toLowerCase();
-		if (osName.contains("mac")) {
+		if (isMac()) {
 			data.majorVersion = 3;
 			data.minorVersion = 3;
 			data.forwardCompatible = true;
@@ -61,27 +91,15 @@ public class JSInit {
 		canvas = new AWTGLCanvas(data) {
 			@Override
 			public void initGL() {
-				// Make the context current and create capabilities
-				GL.createCapabilities();
-				// Initialize JS runtime and engine once GL is ready
-				initJSContext();
+				JSInit.this.initGL();
 			}
 
 			@Override
 			public void paintGL() {
-				// Drive JS-side callbacks and rendering
-				if (jsContext != null) {
-					try {
-						// Keep viewport in sync with canvas dimensions
-						GL11.glViewport(0, 0, getWidth(), getHeight());
-						jsContext.executeScript("runCallbacks()");
-					} catch (Exception e) {
-						System.err.println("Error in runCallbacks: " + e.getMessage());
-						e.printStackTrace();
-					}
-				}
+				renderFrame(getWidth(), getHeight());
 				// Present the frame
 				swapBuffers();
+				presented();
 			}
 		};
 
@@ -151,6 +169,144 @@ public class JSInit {
 		});
 	}
 	
+	// GLFW window driven from the calling thread (the main thread, which macOS requires), with
+	// the driver's swap interval for vsync and blocking event waits while minimized
+	private void runGLFW() {
+		GLFWErrorCallback.createPrint(System.err).set();
+		if (!glfwInit()) {
+			throw new IllegalStateException("Unable to initialize GLFW");
+		}
+
+		glfwDefaultWindowHints();
+		glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+		glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+		glfwWindowHint(GLFW_SAMPLES, 4);
+		if (isMac()) {
+			glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
+			glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 3);
+			glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
+		} else {
+			glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 4);
+			glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 3);
+		}
+
+		// Fullscreen takes over the primary monitor at its current video mode
+		long monitor = settings.isFullscreen() ? glfwGetPrimaryMonitor() : NULL;
+		GLFWVidMode mode = glfwGetVideoMode(monitor != NULL ? monitor : glfwGetPrimaryMonitor());
+		int width = settings.getResolutionWidth();
+		int height = settings.getResolutionHeight();
+		if (monitor != NULL && mode != null) {
+			width = mode.width();
+			height = mode.height();
+			glfwWindowHint(GLFW_RED_BITS, mode.redBits());
+			glfwWindowHint(GLFW_GREEN_BITS, mode.greenBits());
+			glfwWindowHint(GLFW_BLUE_BITS, mode.blueBits());
+			glfwWindowHint(GLFW_REFRESH_RATE, mode.refreshRate());
+		}
+
+		window = glfwCreateWindow(width, height, settings.getWindowTitle(), monitor, NULL);
+		if (window == NULL) {
+			glfwTerminate();
+			throw new IllegalStateException("Failed to create GLFW window");
+		}
+		if (monitor == NULL && mode != null) {
+			glfwSetWindowPos(window, (mode.width() - width) / 2, (mode.height() - height) / 2);
+		}
+
+		glfwMakeContextCurrent(window);
+		glfwSwapInterval(swapInterval());
+		glfwShowWindow(window);
+		initGL();
+
+		int[] framebufferWidth = new int[1];
+		int[] framebufferHeight = new int[1];
+		while (!glfwWindowShouldClose(window)) {
+			glfwPollEvents();
+			glfwGetFramebufferSize(window, framebufferWidth, framebufferHeight);
+			if (framebufferWidth[0] == 0 || framebufferHeight[0] == 0) {
+				// Minimized: nothing to draw, sleep until the window changes
+				glfwWaitEvents();
+				continue;
+			}
+			renderFrame(framebufferWidth[0], framebufferHeight[0]);
+			// Blocks on the swap interval when vsync is on
+			glfwSwapBuffers(window);
+			presented();
+		}
+		shutdown();
+	}
+
+	// 0 for unlocked, 1 for vsync, -1 for adaptive vsync (tears instead of halving the frame rate
+	// when a frame is late) where the driver supports it
+	private int swapInterval() {
+		if (!settings.isVsync()) {
+			return 0;
+		}
+		if (settings.isAdaptiveVsync() && (glfwExtensionSupported("WGL_EXT_swap_control_tear")
+			|| glfwExtensionSupported("GLX_EXT_swap_control_tear"))) {
+			return -1;
+		}
+		return 1;
+	}
+
+	private static boolean isMac() {
+		return System.getProperty("os.name").toLowerCase().contains("mac");
+	}
+
+	// The macOS launcher marks processes started with -XstartOnFirstThread in the environment
+	private static boolean isFirstThread() {
+		return "1".equals(System.getenv("JAVA_STARTED_ON_FIRST_THREAD_" + ProcessHandle.current().pid()));
+	}
+
+	// Runs once the GL context is current on the render thread
+	private void initGL() {
+		// Make the context current and create capabilities
+		GL.createCapabilities();
+		// Capture context limits and start the GL state shadow from a clean slate
+		GLStateCache.reset();
+		ProgramCache.init();
+		// Initialize JS runtime and engine once GL is ready
+		initJSContext();
+	}
+
+	// One frame of JS-side callbacks and rendering, before the backend presents it
+	private void renderFrame(int width, int height) {
+		if (jsContext == null) {
+			return;
+		}
+		try {
+			// Keep viewport in sync with the drawable's dimensions
+			GL11.glViewport(0, 0, width, height);
+			// Finish background loads (texture uploads) within the frame budget
+			FrameScheduler.runFrame();
+			jsContext.runCallbacks();
+		} catch (Exception e) {
+			System.err.println("Error in runCallbacks: " + e.getMessage());
+			e.printStackTrace();
+		}
+		// Execute whatever the frame recorded in command buffer mode
+		CommandExecutor.flush();
+		GLAdapter.endFrame();
+	}
+
+	private void presented() {
+		if (firstFrame) {
+			firstFrame = false;
+			recordStartupTime();
+		}
+	}
+	
+	// Process start to first presented frame, to compare the JAR and the native image
+	private static void recordStartupTime() {
+		StartupEvent event = new StartupEvent();
+		if (!event.shouldCommit()) return;
+		ProcessHandle.current().info().startInstant().ifPresent(start -> {
+			event.firstFrameMillis = java.time.Duration.between(start, java.time.Instant.now()).toMillis();
+			event.nativeImage = "runtime".equals(System.getProperty("org.graalvm.nativeimage.imagecode"));
+			event.commit();
+		});
+	}
+	
 	private void initJSContext() {
 		jsContext = new JSContext();
 
@@ -196,9 +352,18 @@ public class JSInit {
 			}
 			try {
 				jsContext.close();
+				JSContext.closeEngine();
 			} catch (Exception ignore) {}
 			jsContext = null;
 		}
+		if (window != NULL) {
+			glfwFreeCallbacks(window);
+			glfwDestroyWindow(window);
+			window = NULL;
+			glfwTerminate();
+			GLFWErrorCallback callback = glfwSetErrorCallback(null);
+			if (callback != null) callback.free();
+		}
 		// Exit process after cleanup to match previous behavior
 		System.exit(0);
 	}
@@ -0,0 +1,139 @@
+package black.alias.diadem.Loaders;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.graalvm.polyglot.Value;
+
+/**
+ * Reference counted cache of loaded assets, shared across GLTF loads. Keys are content
+ * addressed (a hash of the image bytes for textures) or a file path and modification time for
+ * whole models. An entry holds references on the entries it was built from, so a cached model
+ * keeps its textures alive. Entries nobody references stay cached and are evicted least
+ * recently used first once the cache grows past its size limit; eviction disposes them.
+ */
+public class AssetCache {
+	private static long limitBytes = 256L << 20;
+
+	// Access ordered, so iteration starts at the least recently used entry
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalBytes;
+
+	// Statistics
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	private static class Entry {
+		final Value value;
+		final long bytes;
+		final List<String> dependencies;
+		final Runnable dispose;
+		int refs = 1;
+
+		Entry(Value value, long bytes, List<String> dependencies, Runnable dispose) {
+			this.value = value;
+			this.bytes = bytes;
+			this.dependencies = dependencies;
+			this.dispose = dispose;
+		}
+	}
+
+	/**
+	 * Size of the assets kept after their last user released them, in megabytes.
+	 */
+	public static void setLimit(int megabytes) {
+		limitBytes = Math.max(0, megabytes) * (1L << 20);
+	}
+
+	/**
+	 * Returns the cached value and takes a reference on it, or null when not cached.
+	 */
+	public synchronized Value acquire(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		entry.refs++;
+		return entry.value;
+	}
+
+	/**
+	 * Whether the key is cached, without taking a reference or counting a hit.
+	 */
+	public synchronized boolean contains(String key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Adds a value with one reference held by the caller. The caller hands over one reference
+	 * on each dependency, released again when this entry is evicted. dispose frees the value's
+	 * own resources on eviction.
+	 */
+	public synchronized void put(String key, Value value, long bytes, List<String> dependencies, Runnable dispose) {
+		Entry previous = entries.put(key, new Entry(value, bytes, dependencies, dispose));
+		if (previous != null) throw new IllegalStateException("Asset already cached: " + key);
+		totalBytes += bytes;
+		evict();
+	}
+
+	/**
+	 * Drops a reference taken by acquire or put. Unreferenced entries stay cached until evicted.
+	 */
+	public synchronized void release(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null || entry.refs == 0) return;
+		entry.refs--;
+		if (entry.refs == 0) evict();
+	}
+
+	private void evict() {
+		while (totalBytes > limitBytes) {
+			// Iterating entries does not touch the access order, get() would
+			Entry entry = null;
+			for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+				Entry candidate = it.next().getValue();
+				if (candidate.refs == 0) {
+					entry = candidate;
+					it.remove();
+					break;
+				}
+			}
+			if (entry == null) return;
+
+			// Evicted entries give back the references they held on their dependencies
+			totalBytes -= entry.bytes;
+			evictions++;
+			entry.dispose.run();
+			for (String dependency : entry.dependencies) {
+				Entry held = entries.get(dependency);
+				if (held != null && held.refs > 0) held.refs--;
+			}
+		}
+	}
+
+	/**
+	 * Content key for raw asset bytes; the buffer's position is left unchanged.
+	 */
+	public static String hash(ByteBuffer data) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(data.duplicate());
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public synchronized long getTotalBytes() { return totalBytes; }
+	public synchronized long getHits() { return hits; }
+	public synchronized long getMisses() { return misses; }
+	public synchronized long getEvictions() { return evictions; }
+}
@@ -0,0 +1,315 @@
+package black.alias.diadem.Loaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Memory-mapped .dpak asset pack, written at package time by AssetPacker. Loaders read assets
+ * through here: from the pack as zero-copy slices of the mapping when one is mounted, from the
+ * classpath otherwise (running from target/classes during development).
+ * <p>
+ * Layout, little endian: the magic "DPAK", version, entry count and the offset of the first
+ * file, then one 32 byte index entry per file sorted by path hash (hash, data offset, data
+ * length, name offset, name length), the UTF-8 names, and the file data, each file aligned to
+ * 64 bytes.
+ * <p>
+ * Buffers from get() are read-only views of the shared mapping. map() returns a copy-on-write
+ * mapping of its own for data modified in place, or a copy when the pack can't be opened for
+ * writing (private mappings need a writable channel, though nothing is written to the file).
+ */
+public class AssetPack {
+	public static final int MAGIC = 0x4B415044; // "DPAK"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 16;
+	public static final int ENTRY_SIZE = 32;
+	public static final int ALIGNMENT = 64;
+
+	private static volatile AssetPack mounted;
+
+	private final Path file;
+	private final FileChannel channel;
+	private final FileChannel privateChannel;
+	private final long lastModified;
+	private final int count;
+	private final ByteBuffer index;
+	// Whole pack, or null when it is too large for one mapping and entries are mapped one by one
+	private final ByteBuffer data;
+
+	private AssetPack(Path file) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.privateChannel = openPrivate(file);
+		this.lastModified = Files.getLastModifiedTime(file).toMillis();
+		long size = channel.size();
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, HEADER_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+		if (header.remaining() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+			throw new IOException("Not an asset pack: " + file);
+		}
+		if (header.getInt(4) != VERSION) {
+			throw new IOException("Unsupported asset pack version " + header.getInt(4) + ": " + file);
+		}
+		this.count = header.getInt(8);
+		int dataStart = header.getInt(12);
+		if (count < 0 || dataStart < HEADER_SIZE + (long) count * ENTRY_SIZE || dataStart > size) {
+			throw new IOException("Corrupt asset pack index: " + file);
+		}
+		if (size <= Integer.MAX_VALUE) {
+			this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+			this.index = data;
+		} else {
+			this.data = null;
+			this.index = channel.map(FileChannel.MapMode.READ_ONLY, 0, dataStart).order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+
+	private static FileChannel openPrivate(Path file) {
+		try {
+			return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (IOException | UnsupportedOperationException | SecurityException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Mounts the pack named by -Ddiadem.pack, or the assets.dpak next to the application JAR
+	 * (next to the executable for a native image). Does nothing when running from a classes
+	 * directory or there is no pack.
+	 */
+	public static void mount() {
+		String property = System.getProperty("diadem.pack");
+		Path pack = null;
+		if (property != null) {
+			pack = Paths.get(property);
+		} else if ("runtime".equals(System.getProperty("org.graalvm.nativeimage.imagecode"))) {
+			pack = ProcessHandle.current().info().command().map(command -> Paths.get(command).resolveSibling("assets.dpak")).orElse(null);
+		} else {
+			try {
+				Path location = Paths.get(AssetPack.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+				if (Files.isRegularFile(location)) {
+					pack = location.resolveSibling("assets.dpak");
+				}
+			} catch (URISyntaxException | SecurityException | NullPointerException e) {
+				// No code source to look next to
+			}
+		}
+		if (pack == null || !Files.isRegularFile(pack)) {
+			return;
+		}
+		try {
+			mounted = new AssetPack(pack);
+		} catch (IOException e) {
+			System.err.println("Warning: Could not mount asset pack " + pack + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the contents of an asset (path relative to assets/) as a direct buffer, or null
+	 * when it does not exist. From the pack this is a read-only slice of the shared mapping.
+	 */
+	public static ByteBuffer get(String path) throws IOException {
+		AssetPack pack = mounted;
+		if (pack != null) {
+			int entry = pack.find(path);
+			if (entry >= 0) {
+				return pack.slice(entry, false);
+			}
+		}
+		return readResource(path);
+	}
+
+	/**
+	 * Like get(), but the buffer is writable and the caller's own, so modifying it does not
+	 * affect later reads of the same asset.
+	 */
+	public static ByteBuffer map(String path) throws IOException {
+		AssetPack pack = mounted;
+		if (pack != null) {
+			int entry = pack.find(path);
+			if (entry >= 0) {
+				return pack.slice(entry, true);
+			}
+		}
+		return readResource(path);
+	}
+
+	/**
+	 * Opens an asset as a stream, or returns null when it does not exist.
+	 */
+	public static InputStream open(String path) throws IOException {
+		AssetPack pack = mounted;
+		if (pack != null) {
+			int entry = pack.find(path);
+			if (entry >= 0) {
+				return new BufferInputStream(pack.slice(entry, false));
+			}
+		}
+		return AssetPack.class.getResourceAsStream("/assets/" + path);
+	}
+
+	public static boolean exists(String path) {
+		AssetPack pack = mounted;
+		if (pack != null && pack.find(path) >= 0) {
+			return true;
+		}
+		return AssetPack.class.getResource("/assets/" + path) != null;
+	}
+
+	/**
+	 * Modification time of an asset in milliseconds, or 0 when unknown.
+	 */
+	public static long lastModified(String path) {
+		AssetPack pack = mounted;
+		if (pack != null && pack.find(path) >= 0) {
+			return pack.lastModified;
+		}
+		java.net.URL url = AssetPack.class.getResource("/assets/" + path);
+		if (url == null) {
+			return 0;
+		}
+		try {
+			return url.openConnection().getLastModified();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	public static boolean isMounted() {
+		return mounted != null;
+	}
+
+	private static ByteBuffer readResource(String path) throws IOException {
+		byte[] bytes;
+		try (InputStream is = AssetPack.class.getResourceAsStream("/assets/" + path)) {
+			if (is == null) {
+				return null;
+			}
+			bytes = is.readAllBytes();
+		}
+		ByteBuffer buf = BufferUtils.createByteBuffer(bytes.length);
+		buf.put(bytes);
+		buf.flip();
+		return buf;
+	}
+
+	// Binary search on the hash, then a name compare across entries sharing it
+	private int find(String path) {
+		byte[] name = normalize(path).getBytes(StandardCharsets.UTF_8);
+		long hash = hash(name);
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long midHash = index.getLong(HEADER_SIZE + mid * ENTRY_SIZE);
+			if (midHash < hash) {
+				low = mid + 1;
+			} else if (midHash > hash) {
+				high = mid - 1;
+			} else {
+				int first = mid;
+				while (first > 0 && index.getLong(HEADER_SIZE + (first - 1) * ENTRY_SIZE) == hash) {
+					first--;
+				}
+				for (int i = first; i < count && index.getLong(HEADER_SIZE + i * ENTRY_SIZE) == hash; i++) {
+					if (nameEquals(i, name)) {
+						return i;
+					}
+				}
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	private boolean nameEquals(int entry, byte[] name) {
+		int base = HEADER_SIZE + entry * ENTRY_SIZE;
+		int offset = index.getInt(base + 24);
+		int length = index.getInt(base + 28);
+		return length == name.length && index.slice(offset, length).equals(ByteBuffer.wrap(name));
+	}
+
+	private ByteBuffer slice(int entry, boolean own) throws IOException {
+		int base = HEADER_SIZE + entry * ENTRY_SIZE;
+		long offset = index.getLong(base + 8);
+		long length = index.getLong(base + 16);
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Asset too large to map: " + entry);
+		}
+		if (own && privateChannel != null) {
+			return privateChannel.map(FileChannel.MapMode.PRIVATE, offset, length).order(ByteOrder.nativeOrder());
+		}
+		ByteBuffer shared = data != null ? data.slice((int) offset, (int) length)
+			: channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+		if (!own) {
+			return shared.order(ByteOrder.nativeOrder());
+		}
+		ByteBuffer copy = BufferUtils.createByteBuffer((int) length);
+		copy.put(shared);
+		copy.flip();
+		return copy;
+	}
+
+	/**
+	 * Pack key of a path: forward slashes, no leading slash or assets/ prefix.
+	 */
+	public static String normalize(String path) {
+		String rel = path.replace('\\', '/');
+		while (rel.startsWith("/")) {
+			rel = rel.substring(1);
+		}
+		if (rel.startsWith("assets/")) {
+			rel = rel.substring("assets/".length());
+		}
+		return rel;
+	}
+
+	/**
+	 * 64-bit FNV-1a of the UTF-8 path, the index sort key.
+	 */
+	public static long hash(byte[] name) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : name) {
+			hash ^= b & 0xFF;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	// InputStream over a buffer, for APIs like ImageIO that want a stream
+	private static class BufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, n);
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
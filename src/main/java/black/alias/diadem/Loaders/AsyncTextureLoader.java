@@ -0,0 +1,200 @@
+package black.alias.diadem.Loaders;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.system.MemoryUtil;
+import black.alias.diadem.FrameScheduler;
+import black.alias.diadem.GLStateCache;
+import black.alias.diadem.GpuMemoryRegistry;
+
+/**
+ * Non-blocking texture loading. Files are decoded on a bounded worker pool, then uploaded on
+ * the GL thread through a pixel unpack buffer within the FrameScheduler budget. Cooked
+ * versions (see AssetCooker) are uploaded as they are when the GPU supports their format.
+ * Each load immediately returns a Promise carrying a placeholder THREE.ExternalTexture that
+ * wraps the GL texture the data will land in, so it can be assigned to materials right away.
+ */
+public class AsyncTextureLoader {
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final Context jsContext;
+	private final Value threeJS;
+	private final TextureLoader decoder;
+	private final ExecutorService executor;
+	private int unpackBuffer = 0;
+
+	public AsyncTextureLoader(Context jsContext, Value threeJS, TextureLoader decoder) {
+		this.jsContext = jsContext;
+		this.threeJS = threeJS;
+		this.decoder = decoder;
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		this.executor = Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new Thread(task, "diadem-texture-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts loading a texture and returns a Promise resolving to the texture once its data is
+	 * resident on the GPU. The placeholder is available immediately as promise.texture.
+	 */
+	public Value loadTextureAsync(String texturePath) {
+		int texture = createPlaceholder("loadTextureAsync " + texturePath);
+		Value placeholder = threeJS.getMember("ExternalTexture").newInstance(texture);
+		placeholder.putMember("name", texturePath);
+
+		Value[] settle = new Value[2];
+		Value promise = jsContext.eval("js", "Promise").newInstance((ProxyExecutable) args -> {
+			settle[0] = args[0];
+			settle[1] = args[1];
+			return null;
+		});
+		promise.putMember("texture", placeholder);
+
+		load(texturePath, texture, placeholder, settle, true);
+		return promise;
+	}
+
+	// Decodes on the pool, preferring the cooked version, then uploads on the GL thread
+	private void load(String texturePath, int texture, Value placeholder, Value[] settle, boolean cooked) {
+		executor.execute(() -> {
+			try {
+				DecodedImage image = cooked ? decoder.decode(texturePath) : decoder.decodeSource(texturePath);
+				if (image == null) {
+					FrameScheduler.post(() -> settle[1].execute("Texture not found: " + texturePath));
+					return;
+				}
+				FrameScheduler.post(() -> {
+					if (image.compressed != null && !CompressedTextureReader.supports(image.compressed)) {
+						// The GPU can't sample the cooked format, decode the original instead
+						load(texturePath, texture, placeholder, settle, false);
+						return;
+					}
+					try {
+						upload(texture, image);
+					} catch (Exception e) {
+						settle[1].execute("Error uploading texture: " + texturePath + " - " + e.getMessage());
+						return;
+					} finally {
+						image.free();
+					}
+					settle[0].execute(placeholder);
+				});
+			} catch (Exception e) {
+				FrameScheduler.post(() -> settle[1].execute("Error loading texture: " + texturePath + " - " + e.getMessage()));
+			}
+		});
+	}
+
+	/**
+	 * Stops the worker pool. Decodes already running are allowed to finish.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	// 1x1 opaque white, so sampling before the real data arrives is well defined
+	static int createPlaceholder(String callsite) {
+		int previous = GLStateCache.getBoundTexture(GL11.GL_TEXTURE_2D);
+		int texture = GL11.glGenTextures();
+		GpuMemoryRegistry.created(GpuMemoryRegistry.TEXTURE, texture, callsite);
+		GLStateCache.bindTexture(GL11.GL_TEXTURE_2D, texture);
+		ByteBuffer white = MemoryUtil.memAlloc(4);
+		try {
+			white.putInt(0, 0xFFFFFFFF);
+			GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, 1, 1, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, white);
+			GpuMemoryRegistry.texImage(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, GL11.GL_UNSIGNED_BYTE, 1, 1, 1);
+		} finally {
+			MemoryUtil.memFree(white);
+		}
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+		restoreBinding(previous);
+		return texture;
+	}
+
+	// Three.js tracks its own texture bindings, so work done behind its back must put them back
+	static void restoreBinding(int previous) {
+		if (previous >= 0) {
+			GLStateCache.bindTexture(GL11.GL_TEXTURE_2D, previous);
+		}
+	}
+
+	// Streams the pixels through an orphaned unpack buffer so the copy into driver memory
+	// does not wait on the GPU
+	private void upload(int texture, DecodedImage image) {
+		if (image.compressed != null) {
+			uploadCompressed(texture, image.compressed);
+			return;
+		}
+		ByteBuffer pixels = image.pixels();
+		int size = pixels.remaining();
+		if (unpackBuffer == 0) {
+			unpackBuffer = GL15.glGenBuffers();
+			GpuMemoryRegistry.created(GpuMemoryRegistry.BUFFER, unpackBuffer, "AsyncTextureLoader unpack buffer");
+		}
+		GLStateCache.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, unpackBuffer);
+		GL15.glBufferData(GL21.GL_PIXEL_UNPACK_BUFFER, size, GL15.GL_STREAM_DRAW);
+		GpuMemoryRegistry.bufferStorage(unpackBuffer, size, GL15.GL_STREAM_DRAW);
+		ByteBuffer mapped = GL30.glMapBufferRange(GL21.GL_PIXEL_UNPACK_BUFFER, 0, size,
+			GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_INVALIDATE_BUFFER_BIT);
+		if (mapped != null) {
+			MemoryUtil.memCopy(pixels, mapped);
+			GL15.glUnmapBuffer(GL21.GL_PIXEL_UNPACK_BUFFER);
+		} else {
+			GL15.glBufferSubData(GL21.GL_PIXEL_UNPACK_BUFFER, 0, pixels);
+		}
+
+		int alignment = GL11.glGetInteger(GL11.GL_UNPACK_ALIGNMENT);
+		GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+		int previous = GLStateCache.getBoundTexture(GL11.GL_TEXTURE_2D);
+		GLStateCache.bindTexture(GL11.GL_TEXTURE_2D, texture);
+		GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, image.internalFormat, image.width, image.height, 0, image.format, image.type, 0L);
+		GpuMemoryRegistry.texImage(GL11.GL_TEXTURE_2D, 0, image.internalFormat, image.type, image.width, image.height, 1);
+		GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, alignment);
+		GLStateCache.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL11.GL_REPEAT);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL11.GL_REPEAT);
+		if (image.mipmaps) {
+			GL30.glGenerateMipmap(GL11.GL_TEXTURE_2D);
+			GpuMemoryRegistry.generateMipmap(GL11.GL_TEXTURE_2D);
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR_MIPMAP_LINEAR);
+		} else {
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+			GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL12.GL_TEXTURE_MAX_LEVEL, 0);
+		}
+		restoreBinding(previous);
+	}
+
+	// Cooked mip chain straight from the file. The linear format matches the RGBA8 upload, so
+	// sampling does not change with cooking
+	private void uploadCompressed(int texture, CompressedImage image) {
+		int previous = GLStateCache.getBoundTexture(GL11.GL_TEXTURE_2D);
+		GLStateCache.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+		GLStateCache.bindTexture(GL11.GL_TEXTURE_2D, texture);
+		int levels = image.levels.size();
+		for (int i = 0; i < levels; i++) {
+			CompressedImage.Level level = image.levels.get(i);
+			GL13.glCompressedTexImage2D(GL11.GL_TEXTURE_2D, i, image.format, level.width, level.height, 0, level.data);
+			GpuMemoryRegistry.compressedTexImage(GL11.GL_TEXTURE_2D, i, image.format, level.width, level.height, 1);
+		}
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL11.GL_REPEAT);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL11.GL_REPEAT);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL12.GL_TEXTURE_MAX_LEVEL, levels - 1);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, levels > 1 ? GL11.GL_LINEAR_MIPMAP_LINEAR : GL11.GL_LINEAR);
+		restoreBinding(previous);
+	}
+}
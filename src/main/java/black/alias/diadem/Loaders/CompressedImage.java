@@ -0,0 +1,37 @@
+package black.alias.diadem.Loaders;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A block-compressed mip chain read from a KTX2 or DDS container, ready to hand to
+ * compressedTexImage2D. format is the linear GL internal format, which is also the value of
+ * the matching Three.js compressed format constant; srgb selects the sRGB variant.
+ */
+public class CompressedImage {
+	public final int width;
+	public final int height;
+	public final int format;
+	public final boolean srgb;
+	public final List<Level> levels;
+
+	public CompressedImage(int width, int height, int format, boolean srgb, List<Level> levels) {
+		this.width = width;
+		this.height = height;
+		this.format = format;
+		this.srgb = srgb;
+		this.levels = levels;
+	}
+
+	public static class Level {
+		public final int width;
+		public final int height;
+		public final ByteBuffer data;
+
+		public Level(int width, int height, ByteBuffer data) {
+			this.width = width;
+			this.height = height;
+			this.data = data;
+		}
+	}
+}
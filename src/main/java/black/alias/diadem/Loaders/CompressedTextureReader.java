@@ -0,0 +1,349 @@
+package black.alias.diadem.Loaders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+import black.alias.diadem.GLStateCache;
+
+/**
+ * Reads pre-compressed 2D mip chains from KTX2 and DDS containers. Levels are slices of the
+ * file buffer, so nothing is copied before the upload. Supports BC1-7, ETC2/EAC and ASTC LDR;
+ * supercompressed KTX2 (Basis, Zstandard), cube maps and arrays are rejected.
+ */
+public class CompressedTextureReader {
+	private static final byte[] KTX2_IDENTIFIER = {
+		(byte) 0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte) 0xBB, '\r', '\n', 0x1A, '\n'
+	};
+	private static final int DDS_MAGIC = 0x20534444; // "DDS "
+	private static final int VK_FORMAT_R16G16B16_SFLOAT = 90;
+
+	// GL internal formats (linear variants, same values as the Three.js format constants)
+	private static final int RGB_S3TC_DXT1 = 0x83F0;
+	private static final int RGBA_S3TC_DXT1 = 0x83F1;
+	private static final int RGBA_S3TC_DXT3 = 0x83F2;
+	private static final int RGBA_S3TC_DXT5 = 0x83F3;
+	private static final int RED_RGTC1 = 0x8DBB;
+	private static final int SIGNED_RED_RGTC1 = 0x8DBC;
+	private static final int RG_RGTC2 = 0x8DBD;
+	private static final int SIGNED_RG_RGTC2 = 0x8DBE;
+	private static final int RGBA_BPTC_UNORM = 0x8E8C;
+	private static final int RGB_BPTC_SIGNED_FLOAT = 0x8E8E;
+	private static final int RGB_BPTC_UNSIGNED_FLOAT = 0x8E8F;
+	private static final int R11_EAC = 0x9270;
+	private static final int SIGNED_R11_EAC = 0x9271;
+	private static final int RG11_EAC = 0x9272;
+	private static final int SIGNED_RG11_EAC = 0x9273;
+	private static final int RGB8_ETC2 = 0x9274;
+	private static final int RGBA8_ETC2_EAC = 0x9278;
+	private static final int RGBA_ASTC_4x4 = 0x93B0;
+	private static final int RGBA_ASTC_12x12 = 0x93BD;
+
+	// ASTC block footprints in GL enum order
+	private static final int[][] ASTC_BLOCKS = {
+		{4, 4}, {5, 4}, {5, 5}, {6, 5}, {6, 6}, {8, 5}, {8, 6}, {8, 8},
+		{10, 5}, {10, 6}, {10, 8}, {10, 10}, {12, 10}, {12, 12}
+	};
+
+	public static boolean isCompressedPath(String path) {
+		String lower = path.toLowerCase();
+		return lower.endsWith(".ktx2") || lower.endsWith(".dds");
+	}
+
+	/**
+	 * Whether the context can sample the formats behind a WebGL compressed texture extension.
+	 * Requires GLStateCache.reset() to have run.
+	 */
+	public static boolean supports(String webglExtension) {
+		GLCapabilities caps = GL.getCapabilities();
+		switch (webglExtension) {
+			case "WEBGL_compressed_texture_s3tc":
+				return GLStateCache.hasExtension("GL_EXT_texture_compression_s3tc");
+			case "WEBGL_compressed_texture_s3tc_srgb":
+				return GLStateCache.hasExtension("GL_EXT_texture_compression_s3tc")
+					&& (GLStateCache.hasExtension("GL_EXT_texture_sRGB") || GLStateCache.hasExtension("GL_EXT_texture_compression_s3tc_srgb"));
+			case "EXT_texture_compression_rgtc":
+				return caps.OpenGL30 || GLStateCache.hasExtension("GL_ARB_texture_compression_rgtc");
+			case "EXT_texture_compression_bptc":
+				return caps.OpenGL42 || GLStateCache.hasExtension("GL_ARB_texture_compression_bptc");
+			case "WEBGL_compressed_texture_etc":
+				return caps.OpenGL43 || GLStateCache.hasExtension("GL_ARB_ES3_compatibility");
+			case "WEBGL_compressed_texture_astc":
+				return GLStateCache.hasExtension("GL_KHR_texture_compression_astc_ldr");
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Whether the context can sample this image, i.e. the WebGL extension Three.js will ask for
+	 * when uploading it is available.
+	 */
+	public static boolean supports(CompressedImage image) {
+		String extension = extension(image.format);
+		if (extension == null || !supports(extension)) {
+			return false;
+		}
+		return !(image.srgb && extension.equals("WEBGL_compressed_texture_s3tc"))
+			|| supports("WEBGL_compressed_texture_s3tc_srgb");
+	}
+
+	/**
+	 * The GL internal format to allocate for an image, i.e. the sRGB variant of its format when
+	 * the image is sRGB encoded.
+	 */
+	public static int internalFormat(CompressedImage image) {
+		if (!image.srgb) {
+			return image.format;
+		}
+		if (image.format >= RGB_S3TC_DXT1 && image.format <= RGBA_S3TC_DXT5) {
+			return image.format - RGB_S3TC_DXT1 + 0x8C4C; // COMPRESSED_SRGB_S3TC_DXT1_EXT
+		}
+		if (image.format >= RGBA_ASTC_4x4 && image.format <= RGBA_ASTC_12x12) {
+			return image.format + 0x20; // COMPRESSED_SRGB8_ALPHA8_ASTC_*
+		}
+		switch (image.format) {
+			case RGBA_BPTC_UNORM: return 0x8E8D;
+			case RGB8_ETC2: return 0x9275;
+			case RGBA8_ETC2_EAC: return 0x9279;
+			default: return image.format;
+		}
+	}
+
+	/**
+	 * Parses a KTX2 or DDS file. The returned levels share memory with the given buffer.
+	 */
+	public static CompressedImage read(ByteBuffer file) throws IOException {
+		ByteBuffer data = file.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (isKTX2(data)) {
+			return readKTX2(data);
+		}
+		if (data.remaining() >= 4 && data.getInt(0) == DDS_MAGIC) {
+			return readDDS(data);
+		}
+		throw new IOException("Not a KTX2 or DDS file");
+	}
+
+	/**
+	 * Reads the base level of an RGB half-float KTX2 file (as written by the asset cooker for
+	 * .hdr sources) into memory owned by the returned image.
+	 */
+	public static DecodedImage readHalfFloat(ByteBuffer file) throws IOException {
+		ByteBuffer data = file.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (!isKTX2(data) || data.remaining() < 104 || data.getInt(12) != VK_FORMAT_R16G16B16_SFLOAT || data.getInt(44) != 0) {
+			throw new IOException("Not an uncompressed RGB16F KTX2 file");
+		}
+		int width = data.getInt(20);
+		int height = data.getInt(24);
+		long offset = data.getLong(80);
+		long length = (long) width * height * 6;
+		if (offset < 0 || offset + length > data.remaining()) {
+			throw new IOException("Truncated KTX2 level");
+		}
+		ByteBuffer pixels = MemoryUtil.memAlloc((int) length);
+		MemoryUtil.memCopy(data.slice((int) offset, (int) length), pixels);
+		return new DecodedImage(width, height, GL30.GL_RGB16F, GL11.GL_RGB, GL30.GL_HALF_FLOAT, false, pixels);
+	}
+
+	private static boolean isKTX2(ByteBuffer data) {
+		if (data.remaining() < KTX2_IDENTIFIER.length) {
+			return false;
+		}
+		for (int i = 0; i < KTX2_IDENTIFIER.length; i++) {
+			if (data.get(i) != KTX2_IDENTIFIER[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static CompressedImage readKTX2(ByteBuffer data) throws IOException {
+		if (data.remaining() < 80) {
+			throw new IOException("Truncated KTX2 header");
+		}
+		int vkFormat = data.getInt(12);
+		int width = data.getInt(20);
+		int height = data.getInt(24);
+		int depth = data.getInt(28);
+		int layers = data.getInt(32);
+		int faces = data.getInt(36);
+		int levelCount = Math.max(1, data.getInt(40));
+		int supercompression = data.getInt(44);
+
+		if (supercompression != 0) {
+			throw new IOException("Supercompressed KTX2 (scheme " + supercompression + ") is not supported, export without Basis/Zstandard");
+		}
+		if (depth > 0 || layers > 0 || faces != 1) {
+			throw new IOException("Only 2D KTX2 textures are supported");
+		}
+		int format = ktx2Format(vkFormat);
+		if (format == 0) {
+			throw new IOException("Unsupported KTX2 vkFormat " + vkFormat);
+		}
+		boolean srgb = ktx2Srgb(vkFormat);
+
+		List<CompressedImage.Level> levels = new ArrayList<>(levelCount);
+		for (int i = 0; i < levelCount; i++) {
+			int index = 80 + i * 24;
+			if (index + 24 > data.remaining()) {
+				throw new IOException("Truncated KTX2 level index");
+			}
+			long offset = data.getLong(index);
+			long length = data.getLong(index + 8);
+			int levelWidth = Math.max(1, width >> i);
+			int levelHeight = Math.max(1, height >> i);
+			levels.add(level(data, offset, length, levelWidth, levelHeight, format));
+		}
+		return new CompressedImage(width, height, format, srgb, levels);
+	}
+
+	private static CompressedImage readDDS(ByteBuffer data) throws IOException {
+		if (data.remaining() < 128) {
+			throw new IOException("Truncated DDS header");
+		}
+		int flags = data.getInt(8);
+		int height = data.getInt(12);
+		int width = data.getInt(16);
+		int levelCount = (flags & 0x20000) != 0 ? Math.max(1, data.getInt(28)) : 1; // DDSD_MIPMAPCOUNT
+		int fourCC = data.getInt(84);
+		int caps2 = data.getInt(112);
+		if ((caps2 & 0x200) != 0 || (caps2 & 0x200000) != 0) {
+			throw new IOException("Only 2D DDS textures are supported");
+		}
+
+		int format;
+		boolean srgb = false;
+		int offset = 128;
+		switch (fourCC) {
+			case 0x31545844: format = RGB_S3TC_DXT1; break;     // DXT1
+			case 0x33545844: format = RGBA_S3TC_DXT3; break;    // DXT3
+			case 0x35545844: format = RGBA_S3TC_DXT5; break;    // DXT5
+			case 0x31495441: format = RED_RGTC1; break;         // ATI1
+			case 0x55344342: format = RED_RGTC1; break;         // BC4U
+			case 0x53344342: format = SIGNED_RED_RGTC1; break;  // BC4S
+			case 0x32495441: format = RG_RGTC2; break;          // ATI2
+			case 0x55354342: format = RG_RGTC2; break;          // BC5U
+			case 0x53354342: format = SIGNED_RG_RGTC2; break;   // BC5S
+			case 0x30315844: {                                  // DX10
+				if (data.remaining() < 148) {
+					throw new IOException("Truncated DDS DX10 header");
+				}
+				int dxgiFormat = data.getInt(128);
+				if (data.getInt(132) != 3 || (data.getInt(136) & 0x4) != 0 || data.getInt(140) > 1) {
+					throw new IOException("Only 2D DDS textures are supported");
+				}
+				format = dxgiFormat(dxgiFormat);
+				srgb = dxgiFormat == 72 || dxgiFormat == 75 || dxgiFormat == 78 || dxgiFormat == 99;
+				if (format == 0) {
+					throw new IOException("Unsupported DXGI format " + dxgiFormat);
+				}
+				offset = 148;
+				break;
+			}
+			default:
+				throw new IOException("Unsupported DDS pixel format " + Integer.toHexString(fourCC));
+		}
+
+		List<CompressedImage.Level> levels = new ArrayList<>(levelCount);
+		for (int i = 0; i < levelCount; i++) {
+			int levelWidth = Math.max(1, width >> i);
+			int levelHeight = Math.max(1, height >> i);
+			int length = levelSize(format, levelWidth, levelHeight);
+			levels.add(level(data, offset, length, levelWidth, levelHeight, format));
+			offset += length;
+		}
+		return new CompressedImage(width, height, format, srgb, levels);
+	}
+
+	private static CompressedImage.Level level(ByteBuffer data, long offset, long length, int width, int height, int format) throws IOException {
+		if (length < levelSize(format, width, height) || offset < 0 || offset + length > data.remaining()) {
+			throw new IOException("Truncated or malformed mip level " + width + "x" + height);
+		}
+		ByteBuffer slice = data.slice((int) offset, (int) length);
+		return new CompressedImage.Level(width, height, slice);
+	}
+
+	// Bytes in one level: whole blocks, partial blocks at the edges are padded
+	static int levelSize(int format, int width, int height) {
+		int blockWidth = 4;
+		int blockHeight = 4;
+		int blockBytes = 16;
+		if (format >= RGBA_ASTC_4x4 && format <= RGBA_ASTC_12x12) {
+			blockWidth = ASTC_BLOCKS[format - RGBA_ASTC_4x4][0];
+			blockHeight = ASTC_BLOCKS[format - RGBA_ASTC_4x4][1];
+		} else if (format == RGB_S3TC_DXT1 || format == RGBA_S3TC_DXT1 || format == RED_RGTC1 || format == SIGNED_RED_RGTC1
+			|| format == RGB8_ETC2 || format == R11_EAC || format == SIGNED_R11_EAC) {
+			blockBytes = 8;
+		}
+		return ((width + blockWidth - 1) / blockWidth) * ((height + blockHeight - 1) / blockHeight) * blockBytes;
+	}
+
+	// WebGL extension Three.js needs for a format
+	private static String extension(int format) {
+		if (format >= RGB_S3TC_DXT1 && format <= RGBA_S3TC_DXT5) return "WEBGL_compressed_texture_s3tc";
+		if (format >= RED_RGTC1 && format <= SIGNED_RG_RGTC2) return "EXT_texture_compression_rgtc";
+		if (format >= RGBA_BPTC_UNORM && format <= RGB_BPTC_UNSIGNED_FLOAT) return "EXT_texture_compression_bptc";
+		if (format >= R11_EAC && format <= RGBA8_ETC2_EAC) return "WEBGL_compressed_texture_etc";
+		if (format >= RGBA_ASTC_4x4 && format <= RGBA_ASTC_12x12) return "WEBGL_compressed_texture_astc";
+		return null;
+	}
+
+	private static int ktx2Format(int vkFormat) {
+		switch (vkFormat) {
+			case 131: case 132: return RGB_S3TC_DXT1;
+			case 133: case 134: return RGBA_S3TC_DXT1;
+			case 135: case 136: return RGBA_S3TC_DXT3;
+			case 137: case 138: return RGBA_S3TC_DXT5;
+			case 139: return RED_RGTC1;
+			case 140: return SIGNED_RED_RGTC1;
+			case 141: return RG_RGTC2;
+			case 142: return SIGNED_RG_RGTC2;
+			case 143: return RGB_BPTC_UNSIGNED_FLOAT;
+			case 144: return RGB_BPTC_SIGNED_FLOAT;
+			case 145: case 146: return RGBA_BPTC_UNORM;
+			case 147: case 148: return RGB8_ETC2;
+			case 151: case 152: return RGBA8_ETC2_EAC;
+			case 153: return R11_EAC;
+			case 154: return SIGNED_R11_EAC;
+			case 155: return RG11_EAC;
+			case 156: return SIGNED_RG11_EAC;
+			default:
+				// VK_FORMAT_ASTC_4x4_UNORM_BLOCK .. VK_FORMAT_ASTC_12x12_SRGB_BLOCK, unorm/srgb pairs
+				if (vkFormat >= 157 && vkFormat <= 184) {
+					return RGBA_ASTC_4x4 + (vkFormat - 157) / 2;
+				}
+				return 0;
+		}
+	}
+
+	private static boolean ktx2Srgb(int vkFormat) {
+		switch (vkFormat) {
+			case 132: case 134: case 136: case 138: case 146: case 148: case 152:
+				return true;
+			default:
+				return vkFormat >= 157 && vkFormat <= 184 && (vkFormat - 157) % 2 == 1;
+		}
+	}
+
+	private static int dxgiFormat(int dxgiFormat) {
+		switch (dxgiFormat) {
+			case 71: case 72: return RGBA_S3TC_DXT1;
+			case 74: case 75: return RGBA_S3TC_DXT3;
+			case 77: case 78: return RGBA_S3TC_DXT5;
+			case 80: return RED_RGTC1;
+			case 81: return SIGNED_RED_RGTC1;
+			case 83: return RG_RGTC2;
+			case 84: return SIGNED_RG_RGTC2;
+			case 95: return RGB_BPTC_UNSIGNED_FLOAT;
+			case 96: return RGB_BPTC_SIGNED_FLOAT;
+			case 98: case 99: return RGBA_BPTC_UNORM;
+			default: return 0;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package black.alias.diadem.Loaders;
+
+import java.nio.ByteBuffer;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Decoded pixels in off-heap memory with the GL formats needed to upload them, or a cooked
+ * block-compressed mip chain (compressed is set and there are no pixels).
+ * Produced on loader threads, consumed and freed on the GL thread.
+ */
+public class DecodedImage {
+	public final int width;
+	public final int height;
+	public final int internalFormat;
+	public final int format;
+	public final int type;
+	public final boolean mipmaps;
+	public final CompressedImage compressed;
+	private ByteBuffer pixels;
+	private final Runnable release;
+
+	public DecodedImage(int width, int height, int internalFormat, int format, int type, boolean mipmaps, ByteBuffer pixels) {
+		this(width, height, internalFormat, format, type, mipmaps, pixels, null);
+	}
+
+	/**
+	 * @param release frees the pixel memory, for buffers not allocated with MemoryUtil.memAlloc.
+	 *                Must not capture the buffer itself, see detach()
+	 */
+	public DecodedImage(int width, int height, int internalFormat, int format, int type, boolean mipmaps, ByteBuffer pixels, Runnable release) {
+		this.width = width;
+		this.height = height;
+		this.internalFormat = internalFormat;
+		this.format = format;
+		this.type = type;
+		this.mipmaps = mipmaps;
+		this.compressed = null;
+		this.pixels = pixels;
+		this.release = release;
+	}
+
+	/**
+	 * A cooked image. Its level data is owned by the asset pack or the GC, nothing to free.
+	 */
+	public DecodedImage(CompressedImage compressed) {
+		this.width = compressed.width;
+		this.height = compressed.height;
+		this.internalFormat = compressed.format;
+		this.format = compressed.format;
+		this.type = GL11.GL_UNSIGNED_BYTE;
+		this.mipmaps = compressed.levels.size() > 1;
+		this.compressed = compressed;
+		this.pixels = null;
+		this.release = null;
+	}
+
+	public ByteBuffer pixels() {
+		return pixels;
+	}
+
+	/**
+	 * Hands ownership of the pixel memory to the caller. The returned action frees it without
+	 * referencing the buffer, so it can be registered with a Cleaner on the buffer itself.
+	 */
+	public Runnable detach() {
+		if (pixels == null) {
+			return () -> { };
+		}
+		long address = MemoryUtil.memAddress0(pixels);
+		Runnable action = release != null ? release : () -> MemoryUtil.nmemFree(address);
+		pixels = null;
+		return action;
+	}
+
+	/**
+	 * Releases the pixel memory.
+	 */
+	public void free() {
+		if (pixels != null) {
+			if (release != null) {
+				release.run();
+			} else {
+				MemoryUtil.memFree(pixels);
+			}
+			pixels = null;
+		}
+	}
+}
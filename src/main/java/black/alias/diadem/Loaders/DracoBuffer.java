@@ -0,0 +1,324 @@
+package black.alias.diadem.Loaders;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Cursor over a Draco bitstream: little-endian scalars, LEB128 varints, LSB-first bit runs and
+ * the two rANS entropy coders (multi-symbol tables and binary). Copies share the bytes and
+ * only duplicate the cursor, which the edgebreaker traversal uses to read interleaved streams.
+ */
+final class DracoBuffer {
+	private static final int ANS_IO_BASE = 256;
+	private static final int ANS_L_BASE = 4096;
+
+	final int version;
+	private final ByteBuffer data;
+	private int pos;
+	private final int end;
+
+	// Bit mode state, bits are read from bitStart onwards without moving pos
+	private int bitStart;
+	private long bitOffset;
+
+	DracoBuffer(ByteBuffer source, int version) {
+		this(source.slice().order(ByteOrder.LITTLE_ENDIAN), 0, source.remaining(), version);
+	}
+
+	private DracoBuffer(ByteBuffer data, int pos, int end, int version) {
+		this.data = data;
+		this.pos = pos;
+		this.end = end;
+		this.version = version;
+	}
+
+	static int version(int major, int minor) {
+		return (major << 8) | minor;
+	}
+
+	DracoBuffer copy() {
+		DracoBuffer copy = new DracoBuffer(data, pos, end, version);
+		copy.bitStart = bitStart;
+		copy.bitOffset = bitOffset;
+		return copy;
+	}
+
+	DracoBuffer withVersion(int version) {
+		return new DracoBuffer(data, pos, end, version);
+	}
+
+	int remaining() {
+		return end - pos;
+	}
+
+	void advance(long bytes) {
+		if (bytes < 0 || bytes > remaining()) throw new IllegalArgumentException("Unexpected end of Draco data");
+		pos += (int) bytes;
+	}
+
+	private void require(int bytes) {
+		if (remaining() < bytes) throw new IllegalArgumentException("Unexpected end of Draco data");
+	}
+
+	int u8() {
+		require(1);
+		return data.get(pos++) & 0xFF;
+	}
+
+	int s8() {
+		require(1);
+		return data.get(pos++);
+	}
+
+	int u16() {
+		require(2);
+		int value = data.getShort(pos) & 0xFFFF;
+		pos += 2;
+		return value;
+	}
+
+	int i32() {
+		require(4);
+		int value = data.getInt(pos);
+		pos += 4;
+		return value;
+	}
+
+	float f32() {
+		return Float.intBitsToFloat(i32());
+	}
+
+	/**
+	 * Reads an unsigned integer of 1 to 4 bytes, used by raw index and attribute payloads.
+	 */
+	int uint(int bytes) {
+		require(bytes);
+		int value = 0;
+		for (int i = 0; i < bytes; i++) value |= (data.get(pos + i) & 0xFF) << (8 * i);
+		pos += bytes;
+		return value;
+	}
+
+	long varint64() {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = u8();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+	int varint() {
+		long value = varint64();
+		if (value < 0 || value > Integer.MAX_VALUE) throw new IllegalArgumentException("Varint out of range: " + value);
+		return (int) value;
+	}
+
+	/**
+	 * Switches to bit mode at the current position, optionally preceded by the encoded size of
+	 * the bit data. Returns the size, or -1 when it was not encoded.
+	 */
+	long startBitDecoding(boolean decodeSize) {
+		long size = -1;
+		if (decodeSize) size = version < version(2, 2) ? varint64Fixed() : varint64();
+		bitStart = pos;
+		bitOffset = 0;
+		return size;
+	}
+
+	private long varint64Fixed() {
+		require(8);
+		long value = data.getLong(pos);
+		pos += 8;
+		return value;
+	}
+
+	/**
+	 * Leaves bit mode and skips every byte touched by the bits read so far.
+	 */
+	void endBitDecoding() {
+		advance((bitOffset + 7) / 8);
+	}
+
+	int bits(int count) {
+		int value = 0;
+		for (int bit = 0; bit < count; bit++) {
+			long byteOffset = bitStart + (bitOffset >> 3);
+			if (byteOffset < end) value |= ((data.get((int) byteOffset) >> (int) (bitOffset & 7)) & 1) << bit;
+			bitOffset++;
+		}
+		return value;
+	}
+
+	/**
+	 * Decodes a run of entropy coded symbols, either tagged (a bit length per element followed
+	 * by raw bits) or raw (one rANS symbol per value).
+	 */
+	void decodeSymbols(int numValues, int numComponents, int[] out) {
+		if (numValues == 0) return;
+		int scheme = u8();
+		if (scheme == 0) decodeTaggedSymbols(numValues, numComponents, out);
+		else if (scheme == 1) decodeRawSymbols(numValues, out);
+		else throw new IllegalArgumentException("Unknown symbol coding: " + scheme);
+	}
+
+	private void decodeTaggedSymbols(int numValues, int numComponents, int[] out) {
+		SymbolDecoder tags = new SymbolDecoder(this, 5);
+		if (tags.numSymbols == 0) throw new IllegalArgumentException("Empty tag table");
+		tags.start(this);
+		startBitDecoding(false);
+		int valueId = 0;
+		for (int i = 0; i < numValues; i += numComponents) {
+			int bitLength = tags.decode();
+			for (int j = 0; j < numComponents; j++) out[valueId++] = bits(bitLength);
+		}
+		endBitDecoding();
+	}
+
+	private void decodeRawSymbols(int numValues, int[] out) {
+		int maxBitLength = u8();
+		if (maxBitLength < 1 || maxBitLength > 18) throw new IllegalArgumentException("Invalid symbol bit length: " + maxBitLength);
+		SymbolDecoder decoder = new SymbolDecoder(this, maxBitLength);
+		if (decoder.numSymbols == 0) throw new IllegalArgumentException("Empty symbol table");
+		decoder.start(this);
+		for (int i = 0; i < numValues; i++) out[i] = decoder.decode();
+	}
+
+	/**
+	 * Reads the initial rANS state from the tail of an encoded block. The top two bits of the
+	 * last byte give how many bytes hold the state.
+	 */
+	private int ansInit(int offset, int size, int lBase, boolean allowFourBytes) {
+		if (size < 1) throw new IllegalArgumentException("Empty rANS block");
+		int last = data.get(offset + size - 1) & 0xFF;
+		int state;
+		switch (last >> 6) {
+			case 0:
+				ansOffset = size - 1;
+				state = last & 0x3F;
+				break;
+			case 1:
+				if (size < 2) throw new IllegalArgumentException("Truncated rANS block");
+				ansOffset = size - 2;
+				state = (data.getShort(offset + size - 2) & 0xFFFF) & 0x3FFF;
+				break;
+			case 2:
+				if (size < 3) throw new IllegalArgumentException("Truncated rANS block");
+				ansOffset = size - 3;
+				state = ((data.getShort(offset + size - 3) & 0xFFFF) | ((data.get(offset + size - 1) & 0xFF) << 16)) & 0x3FFFFF;
+				break;
+			default:
+				if (!allowFourBytes) throw new IllegalArgumentException("Invalid rANS header");
+				ansOffset = size - 4;
+				state = data.getInt(offset + size - 4) & 0x3FFFFFFF;
+				break;
+		}
+		state += lBase;
+		if (state >= lBase * ANS_IO_BASE) throw new IllegalArgumentException("Invalid rANS state");
+		return state;
+	}
+
+	// Scratch output of ansInit, consumed immediately by the decoders below
+	private int ansOffset;
+
+	/**
+	 * rANS decoder over an alphabet with a decoded probability table.
+	 */
+	private static final class SymbolDecoder {
+		final int numSymbols;
+		private final int precision;
+		private final int[] probs;
+		private final int[] cumProbs;
+		private final int[] lookup;
+		private DracoBuffer source;
+		private int base;
+		private int offset;
+		private int state;
+
+		SymbolDecoder(DracoBuffer buffer, int symbolBits) {
+			int precisionBits = Math.max(12, Math.min(20, (3 * symbolBits) / 2));
+			precision = 1 << precisionBits;
+			numSymbols = buffer.version < version(2, 0) ? buffer.i32() : buffer.varint();
+			probs = new int[numSymbols];
+			cumProbs = new int[numSymbols];
+			lookup = new int[precision];
+			if (numSymbols == 0) return;
+			for (int i = 0; i < numSymbols; i++) {
+				int probData = buffer.u8();
+				int token = probData & 3;
+				if (token == 3) {
+					int zeros = probData >> 2;
+					if (i + zeros >= numSymbols) throw new IllegalArgumentException("Invalid rANS probability table");
+					i += zeros;
+				} else {
+					int prob = probData >> 2;
+					for (int b = 0; b < token; b++) prob |= buffer.u8() << (8 * (b + 1) - 2);
+					probs[i] = prob;
+				}
+			}
+			int cum = 0;
+			for (int i = 0; i < numSymbols; i++) {
+				cumProbs[i] = cum;
+				int next = cum + probs[i];
+				if (next > precision) throw new IllegalArgumentException("Invalid rANS probability table");
+				for (int j = cum; j < next; j++) lookup[j] = i;
+				cum = next;
+			}
+			if (cum != precision) throw new IllegalArgumentException("Invalid rANS probability table");
+		}
+
+		void start(DracoBuffer buffer) {
+			long bytes = buffer.version < version(2, 0) ? buffer.varint64Fixed() : buffer.varint64();
+			if (bytes > buffer.remaining()) throw new IllegalArgumentException("Truncated rANS block");
+			source = buffer;
+			base = buffer.pos;
+			state = buffer.ansInit(base, (int) bytes, 4 * precision, true);
+			offset = buffer.ansOffset;
+			buffer.advance(bytes);
+		}
+
+		int decode() {
+			int lBase = 4 * precision;
+			while (state < lBase && offset > 0) state = state * ANS_IO_BASE + (source.data.get(base + --offset) & 0xFF);
+			int quo = state / precision;
+			int rem = state % precision;
+			int symbol = lookup[rem];
+			state = quo * probs[symbol] + rem - cumProbs[symbol];
+			return symbol;
+		}
+	}
+
+	/**
+	 * Binary rANS decoder with a fixed 8-bit probability of zero.
+	 */
+	static final class BitDecoder {
+		private DracoBuffer source;
+		private int probZero;
+		private int base;
+		private int offset;
+		private int state;
+
+		void start(DracoBuffer buffer) {
+			probZero = buffer.u8();
+			long bytes = buffer.version < version(2, 2) ? buffer.i32() & 0xFFFFFFFFL : buffer.varint64();
+			if (bytes > buffer.remaining()) throw new IllegalArgumentException("Truncated rANS block");
+			source = buffer;
+			base = buffer.pos;
+			state = buffer.ansInit(base, (int) bytes, ANS_L_BASE, false);
+			offset = buffer.ansOffset;
+			buffer.advance(bytes);
+		}
+
+		boolean next() {
+			int p = 256 - probZero;
+			if (state < ANS_L_BASE && offset > 0) state = state * ANS_IO_BASE + (source.data.get(base + --offset) & 0xFF);
+			int quot = state >>> 8;
+			int rem = state & 0xFF;
+			int xn = quot * p;
+			boolean bit = rem < p;
+			state = bit ? xn + rem : state - xn - p;
+			return bit;
+		}
+	}
+}
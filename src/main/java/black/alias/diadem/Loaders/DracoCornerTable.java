@@ -0,0 +1,195 @@
+package black.alias.diadem.Loaders;
+
+import java.util.Arrays;
+
+/**
+ * Corner table for decoded Draco connectivity. Corner c belongs to face c / 3 and the other
+ * two corners of that face are next(c) and previous(c). The base table covers positions;
+ * {@link Seams} splits vertices along the seams of an attribute such as texture coordinates.
+ */
+class DracoCornerTable {
+	static final int INVALID = -1;
+
+	final int[] cornerToVertex;
+	final int[] opposite;
+	int[] leftMost;
+	int numVertices;
+
+	DracoCornerTable(int numFaces, int maxVertices) {
+		cornerToVertex = new int[numFaces * 3];
+		opposite = new int[numFaces * 3];
+		Arrays.fill(cornerToVertex, INVALID);
+		Arrays.fill(opposite, INVALID);
+		leftMost = new int[maxVertices];
+		Arrays.fill(leftMost, INVALID);
+	}
+
+	// Constructor for subclasses that keep their own vertex mapping
+	DracoCornerTable(DracoCornerTable base) {
+		cornerToVertex = base.cornerToVertex;
+		opposite = base.opposite;
+	}
+
+	int numFaces() {
+		return cornerToVertex.length / 3;
+	}
+
+	int numCorners() {
+		return cornerToVertex.length;
+	}
+
+	int numVertices() {
+		return numVertices;
+	}
+
+	int addNewVertex() {
+		if (numVertices == leftMost.length) leftMost = Arrays.copyOf(leftMost, Math.max(16, numVertices * 2));
+		leftMost[numVertices] = INVALID;
+		return numVertices++;
+	}
+
+	static int next(int c) {
+		if (c < 0) return INVALID;
+		return c % 3 == 2 ? c - 2 : c + 1;
+	}
+
+	static int previous(int c) {
+		if (c < 0) return INVALID;
+		return c % 3 == 0 ? c + 2 : c - 1;
+	}
+
+	int vertex(int c) {
+		return c < 0 ? INVALID : cornerToVertex[c];
+	}
+
+	int opposite(int c) {
+		return c < 0 ? INVALID : opposite[c];
+	}
+
+	int leftMostCorner(int v) {
+		return leftMost[v];
+	}
+
+	int swingLeft(int c) {
+		return next(opposite(next(c)));
+	}
+
+	int swingRight(int c) {
+		return previous(opposite(previous(c)));
+	}
+
+	int leftCorner(int c) {
+		return c < 0 ? INVALID : opposite(previous(c));
+	}
+
+	int rightCorner(int c) {
+		return c < 0 ? INVALID : opposite(next(c));
+	}
+
+	boolean isOnBoundary(int v) {
+		int corner = leftMostCorner(v);
+		return corner == INVALID || swingLeft(corner) == INVALID;
+	}
+
+	void setOpposite(int a, int b) {
+		opposite[a] = b;
+		opposite[b] = a;
+	}
+
+	/**
+	 * Per-attribute view of the corner table where seam edges behave as boundaries, so one
+	 * position vertex maps to several attribute vertices.
+	 */
+	static final class Seams extends DracoCornerTable {
+		private final DracoCornerTable base;
+		private final boolean[] edgeOnSeam;
+		private final boolean[] vertexOnSeam;
+		private final int[] attributeVertex;
+		private int[] attributeLeftMost = new int[0];
+		private int attributeVertices;
+
+		Seams(DracoCornerTable base) {
+			super(base);
+			this.base = base;
+			edgeOnSeam = new boolean[base.numCorners()];
+			vertexOnSeam = new boolean[base.leftMost.length];
+			attributeVertex = new int[base.numCorners()];
+			Arrays.fill(attributeVertex, INVALID);
+		}
+
+		void addSeamEdge(int c) {
+			edgeOnSeam[c] = true;
+			vertexOnSeam[base.vertex(next(c))] = true;
+			vertexOnSeam[base.vertex(previous(c))] = true;
+			int opp = base.opposite(c);
+			if (opp != INVALID) {
+				edgeOnSeam[opp] = true;
+				vertexOnSeam[base.vertex(next(opp))] = true;
+				vertexOnSeam[base.vertex(previous(opp))] = true;
+			}
+		}
+
+		/**
+		 * Assigns attribute vertices by walking the corners of every position vertex clockwise
+		 * from its seam-aware left-most corner and starting a new vertex at each seam.
+		 */
+		void recomputeVertices() {
+			int[] leftMosts = new int[Math.max(16, base.numVertices())];
+			int count = 0;
+			for (int v = 0; v < base.numVertices(); v++) {
+				int c = base.leftMostCorner(v);
+				if (c == INVALID) continue;
+				int vertex = count;
+				int first = c;
+				if (vertexOnSeam[v]) {
+					int act = swingLeft(first);
+					while (act != INVALID) {
+						first = act;
+						act = swingLeft(act);
+						if (act == c) throw new IllegalArgumentException("Malformed Draco attribute seams");
+					}
+				}
+				if (count == leftMosts.length) leftMosts = Arrays.copyOf(leftMosts, count * 2);
+				leftMosts[count++] = first;
+				attributeVertex[first] = vertex;
+				int act = base.swingRight(first);
+				while (act != INVALID && act != first) {
+					if (edgeOnSeam[next(act)]) {
+						vertex = count;
+						if (count == leftMosts.length) leftMosts = Arrays.copyOf(leftMosts, count * 2);
+						leftMosts[count++] = act;
+					}
+					attributeVertex[act] = vertex;
+					act = base.swingRight(act);
+				}
+			}
+			attributeLeftMost = leftMosts;
+			attributeVertices = count;
+		}
+
+		boolean isCornerOnSeam(int c) {
+			return vertexOnSeam[base.vertex(c)];
+		}
+
+		@Override
+		int numVertices() {
+			return attributeVertices;
+		}
+
+		@Override
+		int vertex(int c) {
+			return c < 0 ? INVALID : attributeVertex[c];
+		}
+
+		@Override
+		int opposite(int c) {
+			if (c < 0 || edgeOnSeam[c]) return INVALID;
+			return base.opposite(c);
+		}
+
+		@Override
+		int leftMostCorner(int v) {
+			return attributeLeftMost[v];
+		}
+	}
+}
@@ -0,0 +1,974 @@
+package black.alias.diadem.Loaders;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pure Java decoder for Draco compressed triangle meshes (bitstream 2.2), as embedded by
+ * KHR_draco_mesh_compression. Supports sequential and standard edgebreaker connectivity, all
+ * attribute decoders (generic, integer, quantized, octahedral normals) and every current
+ * prediction scheme. Point clouds and the valence edgebreaker variant are rejected.
+ * Instances hold per-stream state; use one per primitive.
+ */
+public class DracoDecoder {
+	// Attribute types
+	static final int POSITION = 0;
+
+	// Data types
+	private static final int DT_INT8 = 1;
+	private static final int DT_UINT8 = 2;
+	private static final int DT_INT16 = 3;
+	private static final int DT_UINT16 = 4;
+	private static final int DT_INT32 = 5;
+	private static final int DT_UINT32 = 6;
+	private static final int DT_FLOAT32 = 9;
+	private static final int DT_BOOL = 11;
+	private static final int[] DT_LENGTH = {0, 1, 1, 2, 2, 4, 4, 8, 8, 4, 8, 1};
+
+	// Sequential attribute decoders
+	private static final int GENERIC = 0;
+	private static final int INTEGER = 1;
+	private static final int QUANTIZATION = 2;
+	private static final int NORMALS = 3;
+
+	// Edgebreaker symbols
+	private static final int TOPOLOGY_C = 0;
+	private static final int TOPOLOGY_S = 1;
+	private static final int TOPOLOGY_L = 3;
+	private static final int TOPOLOGY_R = 5;
+	private static final int TOPOLOGY_E = 7;
+
+	private static final int INVALID = DracoCornerTable.INVALID;
+
+	private DracoBuffer buffer;
+	private int numPoints;
+	private int[] faces;
+
+	// Edgebreaker state, null for sequential connectivity
+	private DracoCornerTable table;
+	private boolean[] vertexHole;
+	private AttributeData[] attributeData = new AttributeData[0];
+	private EncodingData positionEncoding;
+
+	private final List<Decoder> decoders = new ArrayList<>();
+	private final List<Attribute> attributes = new ArrayList<>();
+
+	public static boolean isDraco(ByteBuffer data) {
+		if (data.remaining() < 5) return false;
+		byte[] magic = new byte[5];
+		data.duplicate().get(magic);
+		return "DRACO".equals(new String(magic, StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Decodes a Draco triangle mesh. The buffer's position is left untouched.
+	 */
+	public DracoMesh decode(ByteBuffer data) {
+		if (!isDraco(data)) throw new IllegalArgumentException("Not a Draco stream");
+		DracoBuffer header = new DracoBuffer(data, 0);
+		header.advance(5);
+		int major = header.u8();
+		int minor = header.u8();
+		if (major != 2 || minor != 2) throw new IllegalArgumentException("Unsupported Draco bitstream " + major + "." + minor);
+		buffer = header.withVersion(DracoBuffer.version(major, minor));
+		int encoderType = buffer.u8();
+		int method = buffer.u8();
+		int flags = buffer.u16();
+		if (encoderType != 1) throw new IllegalArgumentException("Only Draco triangle meshes are supported");
+		if ((flags & 0x8000) != 0) skipMetadata();
+
+		if (method == 0) decodeSequentialConnectivity();
+		else if (method == 1) decodeEdgebreakerConnectivity();
+		else throw new IllegalArgumentException("Unknown Draco connectivity method: " + method);
+
+		decodeAttributes();
+		return toMesh();
+	}
+
+	private void skipMetadata() {
+		int attributeMetadata = buffer.varint();
+		for (int i = 0; i < attributeMetadata; i++) {
+			buffer.varint(); // attribute unique id
+			skipMetadataTree(false);
+		}
+		skipMetadataTree(false);
+	}
+
+	private void skipMetadataTree(boolean named) {
+		int pending = 1;
+		boolean root = !named;
+		while (pending-- > 0) {
+			if (!root) buffer.advance(buffer.u8());
+			root = false;
+			int entries = buffer.varint();
+			for (int i = 0; i < entries; i++) {
+				buffer.advance(buffer.u8());
+				buffer.advance(buffer.varint());
+			}
+			pending += buffer.varint();
+		}
+	}
+
+	// ---- Connectivity ----
+
+	private void decodeSequentialConnectivity() {
+		int numFaces = buffer.varint();
+		numPoints = buffer.varint();
+		if ((long) numFaces * 3 > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many Draco faces");
+		faces = new int[numFaces * 3];
+		int connectivity = buffer.u8();
+		if (connectivity == 0) {
+			buffer.decodeSymbols(faces.length, 1, faces);
+			int last = 0;
+			for (int i = 0; i < faces.length; i++) {
+				int encoded = faces[i];
+				int diff = encoded >>> 1;
+				if ((encoded & 1) != 0) diff = -diff;
+				last += diff;
+				faces[i] = last;
+			}
+		} else {
+			for (int i = 0; i < faces.length; i++) {
+				if (numPoints < 256) faces[i] = buffer.u8();
+				else if (numPoints < (1 << 16)) faces[i] = buffer.u16();
+				else if (numPoints < (1 << 21)) faces[i] = buffer.varint();
+				else faces[i] = buffer.i32();
+			}
+		}
+		for (int index : faces) {
+			if (index < 0 || index >= numPoints) throw new IllegalArgumentException("Draco index out of range");
+		}
+	}
+
+	private void decodeEdgebreakerConnectivity() {
+		int traversal = buffer.u8();
+		if (traversal != 0) throw new IllegalArgumentException("Only standard edgebreaker Draco streams are supported");
+		int numEncodedVertices = buffer.varint();
+		int numFaces = buffer.varint();
+		int numAttributeData = buffer.u8();
+		int numSymbols = buffer.varint();
+		int numSplitSymbols = buffer.varint();
+		if (numSymbols > numFaces || numSplitSymbols > numSymbols) throw new IllegalArgumentException("Malformed Draco connectivity");
+		int maxVertices = numEncodedVertices + numSplitSymbols;
+		table = new DracoCornerTable(numFaces, maxVertices);
+		vertexHole = new boolean[maxVertices];
+		Arrays.fill(vertexHole, true);
+
+		// Topology split events, newest last
+		int numSplits = buffer.varint();
+		if (numSplits > numFaces) throw new IllegalArgumentException("Malformed Draco topology splits");
+		int[] splitSource = new int[numSplits];
+		int[] splitSymbol = new int[numSplits];
+		boolean[] splitRightEdge = new boolean[numSplits];
+		int lastSource = 0;
+		for (int i = 0; i < numSplits; i++) {
+			splitSource[i] = lastSource + buffer.varint();
+			int delta = buffer.varint();
+			if (delta > splitSource[i]) throw new IllegalArgumentException("Malformed Draco topology splits");
+			splitSymbol[i] = splitSource[i] - delta;
+			lastSource = splitSource[i];
+		}
+		if (numSplits > 0) {
+			buffer.startBitDecoding(false);
+			for (int i = 0; i < numSplits; i++) splitRightEdge[i] = buffer.bits(1) == 1;
+			buffer.endBitDecoding();
+		}
+
+		// Traversal symbols are a bit stream, followed by the start face and seam bit coders
+		DracoBuffer symbols = buffer.copy();
+		long traversalSize = symbols.startBitDecoding(true);
+		DracoBuffer tail = symbols.copy();
+		tail.advance(traversalSize);
+		DracoBuffer.BitDecoder startFaces = new DracoBuffer.BitDecoder();
+		startFaces.start(tail);
+		DracoBuffer.BitDecoder[] seams = new DracoBuffer.BitDecoder[numAttributeData];
+		for (int i = 0; i < numAttributeData; i++) {
+			seams[i] = new DracoBuffer.BitDecoder();
+			seams[i].start(tail);
+		}
+
+		attributeData = new AttributeData[numAttributeData];
+		int numVertices = decodeTraversal(numSymbols, symbols, startFaces, numSplits, splitSource, splitSymbol, splitRightEdge, maxVertices, numAttributeData == 0);
+		buffer = tail;
+		fixBoundaryLeftMostCorners();
+
+		// Attribute seams on every edge, boundaries are always seams
+		List<DracoCornerTable.Seams> seamTables = new ArrayList<>();
+		for (int i = 0; i < numAttributeData; i++) seamTables.add(new DracoCornerTable.Seams(table));
+		for (int c = 0; c < table.numCorners(); c += 3) {
+			int[] corners = {c, DracoCornerTable.next(c), DracoCornerTable.previous(c)};
+			int face = c / 3;
+			for (int corner : corners) {
+				int opp = table.opposite(corner);
+				if (opp == INVALID) {
+					for (DracoCornerTable.Seams s : seamTables) s.addSeamEdge(corner);
+					continue;
+				}
+				if (opp / 3 < face) continue;
+				for (int i = 0; i < numAttributeData; i++) {
+					if (seams[i].next()) seamTables.get(i).addSeamEdge(corner);
+				}
+			}
+		}
+		positionEncoding = new EncodingData(table.numVertices());
+		for (int i = 0; i < numAttributeData; i++) {
+			DracoCornerTable.Seams s = seamTables.get(i);
+			s.recomputeVertices();
+			attributeData[i] = new AttributeData(s, new EncodingData(Math.max(s.numVertices(), table.numVertices())));
+		}
+		assignPointsToCorners(numVertices);
+	}
+
+	/**
+	 * Rebuilds the corner table from the edgebreaker symbols, which are stored in reverse
+	 * traversal order. Returns the number of vertices in use.
+	 */
+	private int decodeTraversal(int numSymbols, DracoBuffer symbols, DracoBuffer.BitDecoder startFaces, int numSplits,
+			int[] splitSource, int[] splitSymbol, boolean[] splitRightEdge, int maxVertices, boolean removeInvalid) {
+		int[] stack = new int[16];
+		int stackSize = 0;
+		Map<Integer, Integer> splitCorners = new HashMap<>();
+		List<Integer> invalidVertices = new ArrayList<>();
+		int splits = numSplits;
+		int numFaces = 0;
+		DracoCornerTable t = table;
+
+		for (int symbolId = 0; symbolId < numSymbols; symbolId++) {
+			int face = numFaces++;
+			int corner = 3 * face;
+			boolean checkSplit = false;
+			int symbol = symbols.bits(1);
+			if (symbol != TOPOLOGY_C) symbol |= symbols.bits(2) << 1;
+
+			if (symbol == TOPOLOGY_C) {
+				if (stackSize == 0) throw malformed();
+				int cornerA = stack[stackSize - 1];
+				int vertexX = t.vertex(DracoCornerTable.next(cornerA));
+				int cornerB = DracoCornerTable.next(t.leftMostCorner(vertexX));
+				if (cornerA == cornerB || t.opposite(cornerA) != INVALID || t.opposite(cornerB) != INVALID) throw malformed();
+				t.setOpposite(cornerA, corner + 1);
+				t.setOpposite(cornerB, corner + 2);
+				int vertAPrev = t.vertex(DracoCornerTable.previous(cornerA));
+				int vertBNext = t.vertex(DracoCornerTable.next(cornerB));
+				if (vertexX == vertAPrev || vertexX == vertBNext) throw malformed();
+				t.cornerToVertex[corner] = vertexX;
+				t.cornerToVertex[corner + 1] = vertBNext;
+				t.cornerToVertex[corner + 2] = vertAPrev;
+				t.leftMost[vertAPrev] = corner + 2;
+				vertexHole[vertexX] = false;
+				stack[stackSize - 1] = corner;
+			} else if (symbol == TOPOLOGY_R || symbol == TOPOLOGY_L) {
+				if (stackSize == 0) throw malformed();
+				int cornerA = stack[stackSize - 1];
+				if (t.opposite(cornerA) != INVALID) throw malformed();
+				int oppCorner, cornerL, cornerR;
+				if (symbol == TOPOLOGY_R) {
+					oppCorner = corner + 2;
+					cornerL = corner + 1;
+					cornerR = corner;
+				} else {
+					oppCorner = corner + 1;
+					cornerL = corner;
+					cornerR = corner + 2;
+				}
+				t.setOpposite(oppCorner, cornerA);
+				int newVertex = t.addNewVertex();
+				if (t.numVertices() > maxVertices) throw malformed();
+				t.cornerToVertex[oppCorner] = newVertex;
+				t.leftMost[newVertex] = oppCorner;
+				int vertexR = t.vertex(DracoCornerTable.previous(cornerA));
+				t.cornerToVertex[cornerR] = vertexR;
+				t.leftMost[vertexR] = cornerR;
+				t.cornerToVertex[cornerL] = t.vertex(DracoCornerTable.next(cornerA));
+				stack[stackSize - 1] = corner;
+				checkSplit = true;
+			} else if (symbol == TOPOLOGY_S) {
+				if (stackSize == 0) throw malformed();
+				int cornerB = stack[--stackSize];
+				Integer split = splitCorners.get(symbolId);
+				if (split != null) {
+					if (stackSize == stack.length) stack = Arrays.copyOf(stack, stackSize * 2);
+					stack[stackSize++] = split;
+				}
+				if (stackSize == 0) throw malformed();
+				int cornerA = stack[stackSize - 1];
+				if (cornerA == cornerB || t.opposite(cornerA) != INVALID || t.opposite(cornerB) != INVALID) throw malformed();
+				t.setOpposite(cornerA, corner + 2);
+				t.setOpposite(cornerB, corner + 1);
+				int vertexP = t.vertex(DracoCornerTable.previous(cornerA));
+				t.cornerToVertex[corner] = vertexP;
+				t.cornerToVertex[corner + 1] = t.vertex(DracoCornerTable.next(cornerA));
+				int vertBPrev = t.vertex(DracoCornerTable.previous(cornerB));
+				t.cornerToVertex[corner + 2] = vertBPrev;
+				t.leftMost[vertBPrev] = corner + 2;
+				int cornerN = DracoCornerTable.next(cornerB);
+				int vertexN = t.vertex(cornerN);
+				t.leftMost[vertexP] = t.leftMost[vertexN];
+				int first = cornerN;
+				while (cornerN != INVALID) {
+					t.cornerToVertex[cornerN] = vertexP;
+					cornerN = t.swingLeft(cornerN);
+					if (cornerN == first) throw malformed();
+				}
+				t.leftMost[vertexN] = INVALID;
+				if (removeInvalid) invalidVertices.add(vertexN);
+				stack[stackSize - 1] = corner;
+			} else if (symbol == TOPOLOGY_E) {
+				int firstVertex = t.addNewVertex();
+				t.addNewVertex();
+				t.addNewVertex();
+				if (t.numVertices() > maxVertices) throw malformed();
+				for (int i = 0; i < 3; i++) {
+					t.cornerToVertex[corner + i] = firstVertex + i;
+					t.leftMost[firstVertex + i] = corner + i;
+				}
+				if (stackSize == stack.length) stack = Arrays.copyOf(stack, stackSize * 2);
+				stack[stackSize++] = corner;
+				checkSplit = true;
+			} else {
+				throw malformed();
+			}
+
+			if (checkSplit) {
+				// Faces split off by an S symbol reattach here, on the edge the encoder recorded
+				int encoderSymbolId = numSymbols - symbolId - 1;
+				while (splits > 0 && splitSource[splits - 1] >= encoderSymbolId) {
+					if (splitSource[splits - 1] > encoderSymbolId) throw malformed();
+					splits--;
+					int top = stack[stackSize - 1];
+					int newCorner = splitRightEdge[splits] ? DracoCornerTable.next(top) : DracoCornerTable.previous(top);
+					splitCorners.put(numSymbols - splitSymbol[splits] - 1, newCorner);
+				}
+			}
+		}
+		if (t.numVertices() > maxVertices) throw malformed();
+
+		// Close the remaining open boundaries with the start faces
+		while (stackSize > 0) {
+			int corner = stack[--stackSize];
+			if (!startFaces.next()) continue;
+			if (numFaces >= t.numFaces()) throw malformed();
+			int vertN = t.vertex(DracoCornerTable.next(corner));
+			int cornerB = DracoCornerTable.next(t.leftMostCorner(vertN));
+			int vertX = t.vertex(DracoCornerTable.next(cornerB));
+			int cornerC = DracoCornerTable.next(t.leftMostCorner(vertX));
+			if (corner == cornerB || corner == cornerC || cornerB == cornerC) throw malformed();
+			if (t.opposite(corner) != INVALID || t.opposite(cornerB) != INVALID || t.opposite(cornerC) != INVALID) throw malformed();
+			int vertP = t.vertex(DracoCornerTable.next(cornerC));
+			int newCorner = 3 * numFaces++;
+			t.setOpposite(newCorner, corner);
+			t.setOpposite(newCorner + 1, cornerB);
+			t.setOpposite(newCorner + 2, cornerC);
+			t.cornerToVertex[newCorner] = vertX;
+			t.cornerToVertex[newCorner + 1] = vertP;
+			t.cornerToVertex[newCorner + 2] = vertN;
+			for (int i = 0; i < 3; i++) vertexHole[t.cornerToVertex[newCorner + i]] = false;
+		}
+		if (numFaces != t.numFaces()) throw malformed();
+
+		// Move the last valid vertices into the slots of vertices merged away by S symbols
+		int numVertices = t.numVertices();
+		for (int invalid : invalidVertices) {
+			int src = numVertices - 1;
+			while (t.leftMostCorner(src) == INVALID) src = --numVertices - 1;
+			if (src < invalid) continue;
+			int start = t.leftMostCorner(src);
+			int c = start;
+			boolean left = true;
+			while (c != INVALID) {
+				if (t.vertex(c) != src) throw malformed();
+				t.cornerToVertex[c] = invalid;
+				if (left) {
+					c = t.swingLeft(c);
+					if (c == INVALID) {
+						c = t.swingRight(start);
+						left = false;
+					} else if (c == start) {
+						c = INVALID;
+					}
+				} else {
+					c = t.swingRight(c);
+				}
+			}
+			t.leftMost[invalid] = t.leftMost[src];
+			t.leftMost[src] = INVALID;
+			vertexHole[invalid] = vertexHole[src];
+			vertexHole[src] = false;
+			numVertices--;
+		}
+		return numVertices;
+	}
+
+	/**
+	 * Boundary vertices need their left-most corner on the boundary itself, which is where
+	 * boundary checks and point deduplication start walking.
+	 */
+	private void fixBoundaryLeftMostCorners() {
+		for (int v = 0; v < table.numVertices(); v++) {
+			int start = table.leftMostCorner(v);
+			if (start == INVALID || !vertexHole[v]) continue;
+			int c = start;
+			int left = table.swingLeft(c);
+			while (left != INVALID && left != start) {
+				c = left;
+				left = table.swingLeft(c);
+			}
+			if (left == INVALID) table.leftMost[v] = c;
+		}
+	}
+
+	/**
+	 * Splits vertices into points wherever any attribute has a seam, then writes the faces.
+	 */
+	private void assignPointsToCorners(int numVertices) {
+		faces = new int[table.numCorners()];
+		if (attributeData.length == 0) {
+			System.arraycopy(table.cornerToVertex, 0, faces, 0, faces.length);
+			numPoints = numVertices;
+			return;
+		}
+		int points = 0;
+		for (int v = 0; v < table.numVertices(); v++) {
+			int c = table.leftMostCorner(v);
+			if (c == INVALID) continue;
+			int first = c;
+			if (!vertexHole[v]) {
+				for (AttributeData data : attributeData) {
+					if (!data.table.isCornerOnSeam(c)) continue;
+					int vertex = data.table.vertex(c);
+					int act = table.swingRight(c);
+					boolean found = false;
+					while (act != c) {
+						if (act == INVALID) throw malformed();
+						if (data.table.vertex(act) != vertex) {
+							first = act;
+							found = true;
+							break;
+						}
+						act = table.swingRight(act);
+					}
+					if (found) break;
+				}
+			}
+			c = first;
+			faces[c] = points++;
+			int prev = c;
+			c = table.swingRight(c);
+			while (c != INVALID && c != first) {
+				boolean seam = false;
+				for (AttributeData data : attributeData) {
+					if (data.table.vertex(c) != data.table.vertex(prev)) {
+						seam = true;
+						break;
+					}
+				}
+				faces[c] = seam ? points++ : faces[prev];
+				prev = c;
+				c = table.swingRight(c);
+			}
+		}
+		numPoints = points;
+	}
+
+	// ---- Attributes ----
+
+	private void decodeAttributes() {
+		int numDecoders = buffer.u8();
+		for (int i = 0; i < numDecoders; i++) {
+			Decoder decoder = new Decoder();
+			if (table != null) {
+				int dataId = buffer.s8();
+				int decoderType = buffer.u8();
+				int traversal = buffer.u8();
+				if (traversal > 1) throw new IllegalArgumentException("Unknown Draco traversal: " + traversal);
+				decoder.predictionDegree = traversal == 1;
+				if (dataId >= 0) {
+					if (dataId >= attributeData.length) throw malformed();
+					attributeData[dataId].decoderId = i;
+					decoder.encoding = attributeData[dataId].encoding;
+				} else {
+					decoder.encoding = positionEncoding;
+				}
+				if (decoderType == 0) {
+					decoder.table = table;
+					if (dataId >= 0) attributeData[dataId].connectivityUsed = false;
+				} else {
+					if (dataId < 0 || decoder.predictionDegree) throw malformed();
+					decoder.table = attributeData[dataId].table;
+				}
+			}
+			decoders.add(decoder);
+		}
+		for (Decoder decoder : decoders) {
+			int count = buffer.varint();
+			if (count == 0) throw malformed();
+			for (int i = 0; i < count; i++) {
+				Attribute attribute = new Attribute();
+				attribute.type = buffer.u8();
+				attribute.dataType = buffer.u8();
+				attribute.components = buffer.u8();
+				attribute.normalized = buffer.u8() > 0;
+				attribute.uniqueId = buffer.varint();
+				if (attribute.type > 4 || attribute.dataType == 0 || attribute.dataType > DT_BOOL || attribute.components == 0) throw malformed();
+				decoder.attributes.add(attribute);
+				attributes.add(attribute);
+			}
+			for (Attribute attribute : decoder.attributes) {
+				attribute.decoderType = buffer.u8();
+				if (attribute.decoderType > NORMALS) throw malformed();
+				if ((attribute.decoderType == QUANTIZATION || attribute.decoderType == NORMALS) && attribute.dataType != DT_FLOAT32) throw malformed();
+				if (attribute.decoderType == NORMALS && attribute.components != 3) throw malformed();
+			}
+		}
+		for (Decoder decoder : decoders) decodeAttributes(decoder);
+	}
+
+	private void decodeAttributes(Decoder decoder) {
+		// Order in which values were encoded, and the value index of every point
+		int[] pointIds;
+		if (decoder.table == null) {
+			pointIds = new int[numPoints];
+			for (int i = 0; i < numPoints; i++) pointIds[i] = i;
+		} else {
+			pointIds = new Traversal(decoder).run();
+		}
+		for (Attribute attribute : decoder.attributes) {
+			attribute.pointToEntry = new int[numPoints];
+			if (decoder.table == null) {
+				attribute.pointToEntry = pointIds;
+				continue;
+			}
+			for (int c = 0; c < faces.length; c++) {
+				int vertex = decoder.table.vertex(c);
+				if (vertex == INVALID) throw malformed();
+				attribute.pointToEntry[faces[c]] = decoder.encoding.vertexToData[vertex];
+			}
+		}
+		for (Attribute attribute : decoder.attributes) decodePortable(decoder, attribute, pointIds);
+		for (Attribute attribute : decoder.attributes) {
+			if (attribute.decoderType == QUANTIZATION) {
+				attribute.minValues = new float[attribute.components];
+				for (int i = 0; i < attribute.components; i++) attribute.minValues[i] = buffer.f32();
+				attribute.range = buffer.f32();
+				attribute.quantizationBits = buffer.u8();
+				if (attribute.quantizationBits < 1 || attribute.quantizationBits > 30) throw malformed();
+			} else if (attribute.decoderType == NORMALS) {
+				attribute.quantizationBits = buffer.u8();
+			}
+		}
+		for (Attribute attribute : decoder.attributes) transformToOriginal(attribute, pointIds.length);
+	}
+
+	private void decodePortable(Decoder decoder, Attribute attribute, int[] pointIds) {
+		int entries = pointIds.length;
+		if (attribute.decoderType == GENERIC) {
+			int size = DT_LENGTH[attribute.dataType];
+			int count = entries * attribute.components;
+			attribute.raw = new long[count];
+			for (int i = 0; i < count; i++) attribute.raw[i] = size == 8 ? ((long) buffer.i32() & 0xFFFFFFFFL) | ((long) buffer.i32() << 32) : buffer.uint(size) & 0xFFFFFFFFL;
+			return;
+		}
+		int components = attribute.decoderType == NORMALS ? 2 : attribute.components;
+		int count = entries * components;
+		attribute.portableComponents = components;
+
+		DracoPrediction prediction = null;
+		int method = buffer.s8();
+		if (method != DracoPrediction.NONE) {
+			if (method < -2 || method > DracoPrediction.GEOMETRIC_NORMAL) throw malformed();
+			int transformType = buffer.s8();
+			DracoPrediction.Transform transform;
+			if (attribute.decoderType == NORMALS) {
+				if (transformType == DracoPrediction.TRANSFORM_NORMAL_OCTAHEDRON) transform = new DracoPrediction.Octahedron(false);
+				else if (transformType == DracoPrediction.TRANSFORM_NORMAL_OCTAHEDRON_CANONICALIZED) transform = new DracoPrediction.Octahedron(true);
+				else throw new IllegalArgumentException("Unsupported Draco normal transform: " + transformType);
+			} else if (transformType == DracoPrediction.TRANSFORM_WRAP) {
+				transform = new DracoPrediction.Wrap();
+			} else {
+				throw new IllegalArgumentException("Unsupported Draco prediction transform: " + transformType);
+			}
+			prediction = DracoPrediction.create(method, transform, meshData(decoder, attribute));
+			if (prediction.parentType() >= 0) {
+				Attribute parent = null;
+				for (Attribute a : attributes) {
+					if (a.type == prediction.parentType()) {
+						parent = a;
+						break;
+					}
+				}
+				if (parent == null || parent.portable == null) throw malformed();
+				prediction.setParent(parent);
+			}
+		}
+
+		int[] values = new int[count];
+		if (buffer.u8() > 0) {
+			buffer.decodeSymbols(count, components, values);
+		} else {
+			int bytes = buffer.u8();
+			if (bytes < 1 || bytes > 4) throw malformed();
+			for (int i = 0; i < count; i++) values[i] = buffer.uint(bytes);
+		}
+		if (count > 0 && (prediction == null || !prediction.correctionsPositive())) {
+			for (int i = 0; i < count; i++) {
+				int v = values[i];
+				values[i] = (v & 1) == 0 ? v >>> 1 : -(v >>> 1) - 1;
+			}
+		}
+		if (prediction != null) {
+			prediction.decodeData(buffer);
+			if (count > 0) prediction.computeOriginalValues(values, values, count, components, pointIds);
+		}
+		attribute.portable = values;
+	}
+
+	private DracoPrediction.MeshData meshData(Decoder decoder, Attribute attribute) {
+		if (table == null) return null;
+		EncodingData encoding = positionEncoding;
+		DracoCornerTable attributeTable = table;
+		for (AttributeData data : attributeData) {
+			if (data.decoderId < 0 || !decoders.get(data.decoderId).attributes.contains(attribute)) continue;
+			encoding = data.encoding;
+			if (data.connectivityUsed) attributeTable = data.table;
+			break;
+		}
+		return new DracoPrediction.MeshData(attributeTable, encoding.dataToCorner, encoding.numValues, encoding.vertexToData);
+	}
+
+	private void transformToOriginal(Attribute attribute, int entries) {
+		int components = attribute.components;
+		switch (attribute.decoderType) {
+			case QUANTIZATION: {
+				float delta = attribute.range / ((1 << attribute.quantizationBits) - 1);
+				attribute.floats = new float[entries * components];
+				for (int i = 0; i < attribute.floats.length; i++) {
+					attribute.floats[i] = attribute.portable[i] * delta + attribute.minValues[i % components];
+				}
+				break;
+			}
+			case NORMALS: {
+				DracoOctahedron octahedron = new DracoOctahedron();
+				octahedron.setQuantizationBits(attribute.quantizationBits);
+				attribute.floats = new float[entries * 3];
+				for (int i = 0; i < entries; i++) {
+					octahedron.quantizedOctahedralCoordsToUnitVector(attribute.portable[i * 2], attribute.portable[i * 2 + 1], attribute.floats, i * 3);
+				}
+				break;
+			}
+			case INTEGER:
+				if (attribute.dataType == DT_FLOAT32) {
+					attribute.floats = new float[attribute.portable.length];
+					for (int i = 0; i < attribute.floats.length; i++) attribute.floats[i] = attribute.portable[i];
+				}
+				break;
+			default:
+				if (attribute.dataType == DT_FLOAT32) {
+					attribute.floats = new float[attribute.raw.length];
+					for (int i = 0; i < attribute.floats.length; i++) attribute.floats[i] = Float.intBitsToFloat((int) attribute.raw[i]);
+				} else {
+					attribute.portable = new int[attribute.raw.length];
+					for (int i = 0; i < attribute.portable.length; i++) attribute.portable[i] = (int) attribute.raw[i];
+				}
+				break;
+		}
+	}
+
+	// ---- Output ----
+
+	private DracoMesh toMesh() {
+		boolean indices32 = numPoints > 65535;
+		ByteBuffer indices = ByteBuffer.allocateDirect(faces.length * (indices32 ? 4 : 2)).order(ByteOrder.nativeOrder());
+		for (int index : faces) {
+			if (indices32) indices.putInt(index);
+			else indices.putShort((short) index);
+		}
+		indices.flip();
+
+		Map<Integer, DracoMesh.Attribute> output = new HashMap<>();
+		for (Attribute attribute : attributes) {
+			int components = attribute.components;
+			boolean floating = attribute.floats != null || attribute.normalized;
+			ByteBuffer data = ByteBuffer.allocateDirect(numPoints * components * (floating ? 4 : 2)).order(ByteOrder.nativeOrder());
+			float scale = attribute.normalized ? normalizedScale(attribute.dataType) : 1.0f;
+			for (int p = 0; p < numPoints; p++) {
+				int offset = attribute.pointToEntry[p] * components;
+				for (int c = 0; c < components; c++) {
+					if (attribute.floats != null) data.putFloat(attribute.floats[offset + c]);
+					else if (floating) data.putFloat(Math.max(-1.0f, integerValue(attribute, offset + c) * scale));
+					else data.putShort((short) integerValue(attribute, offset + c));
+				}
+			}
+			data.flip();
+			output.put(attribute.uniqueId, new DracoMesh.Attribute(components, floating, data));
+		}
+		return new DracoMesh(numPoints, indices, indices32, output);
+	}
+
+	// Portable integers are stored in 32 bits; narrow them back to the declared type
+	private static long integerValue(Attribute attribute, int index) {
+		int value = attribute.portable[index];
+		switch (attribute.dataType) {
+			case DT_INT8: return (byte) value;
+			case DT_UINT8: case DT_BOOL: return value & 0xFF;
+			case DT_INT16: return (short) value;
+			case DT_UINT16: return value & 0xFFFF;
+			case DT_UINT32: return value & 0xFFFFFFFFL;
+			default: return value;
+		}
+	}
+
+	private static float normalizedScale(int dataType) {
+		switch (dataType) {
+			case DT_INT8: return 1.0f / 127;
+			case DT_UINT8: return 1.0f / 255;
+			case DT_INT16: return 1.0f / 32767;
+			case DT_UINT16: return 1.0f / 65535;
+			case DT_INT32: return 1.0f / Integer.MAX_VALUE;
+			case DT_UINT32: return 1.0f / 4294967295.0f;
+			default: return 1.0f;
+		}
+	}
+
+	private static IllegalArgumentException malformed() {
+		return new IllegalArgumentException("Malformed Draco data");
+	}
+
+	// ---- Decoder state ----
+
+	static final class Attribute {
+		int type;
+		int dataType;
+		int components;
+		boolean normalized;
+		int uniqueId;
+		int decoderType;
+		int[] pointToEntry;
+
+		// Integer values before the final transform, the parent data for mesh predictions
+		int[] portable;
+		int portableComponents;
+		long[] raw;
+		float[] floats;
+
+		float[] minValues;
+		float range;
+		int quantizationBits;
+
+		long[] portableVector(int point) {
+			int offset = pointToEntry[point] * portableComponents;
+			long[] out = new long[portableComponents];
+			for (int i = 0; i < portableComponents; i++) out[i] = portable[offset + i];
+			return out;
+		}
+	}
+
+	private static final class Decoder {
+		final List<Attribute> attributes = new ArrayList<>();
+		DracoCornerTable table;
+		EncodingData encoding;
+		boolean predictionDegree;
+	}
+
+	/**
+	 * Connectivity of one attribute with its own seams.
+	 */
+	private static final class AttributeData {
+		final DracoCornerTable.Seams table;
+		final EncodingData encoding;
+		int decoderId = -1;
+		boolean connectivityUsed = true;
+
+		AttributeData(DracoCornerTable.Seams table, EncodingData encoding) {
+			this.table = table;
+			this.encoding = encoding;
+		}
+	}
+
+	/**
+	 * Traversal order of attribute values: the corner each value was reached from and the value
+	 * index assigned to each vertex.
+	 */
+	private static final class EncodingData {
+		int[] dataToCorner;
+		final int[] vertexToData;
+		int numValues;
+
+		EncodingData(int numVertices) {
+			vertexToData = new int[numVertices];
+			dataToCorner = new int[Math.max(16, numVertices)];
+		}
+
+		void add(int vertex, int corner) {
+			if (numValues == dataToCorner.length) dataToCorner = Arrays.copyOf(dataToCorner, numValues * 2);
+			dataToCorner[numValues] = corner;
+			vertexToData[vertex] = numValues++;
+		}
+	}
+
+	/**
+	 * Walks the faces in the order the encoder did, depth first or by prediction degree, and
+	 * records the order in which vertices (and so attribute values) are first reached.
+	 */
+	private final class Traversal {
+		private final DracoCornerTable t;
+		private final EncodingData encoding;
+		private final boolean byDegree;
+		private final boolean[] visitedFaces;
+		private final boolean[] visitedVertices;
+		private final int[] pointIds;
+		private int numPointIds;
+
+		// Prediction degree traversal
+		private final int[][] stacks = new int[3][16];
+		private final int[] stackSizes = new int[3];
+		private int bestPriority;
+		private int[] degree;
+
+		Traversal(Decoder decoder) {
+			t = decoder.table;
+			encoding = decoder.encoding;
+			byDegree = decoder.predictionDegree;
+			visitedFaces = new boolean[t.numFaces()];
+			visitedVertices = new boolean[t.numVertices()];
+			pointIds = new int[Math.max(16, t.numVertices())];
+			if (byDegree) degree = new int[t.numVertices()];
+		}
+
+		int[] run() {
+			for (int f = 0; f < t.numFaces(); f++) {
+				if (byDegree) traverseByDegree(3 * f);
+				else traverseDepthFirst(3 * f);
+			}
+			return Arrays.copyOf(pointIds, numPointIds);
+		}
+
+		private boolean faceVisited(int corner) {
+			return corner == INVALID || visitedFaces[corner / 3];
+		}
+
+		private void visitVertex(int vertex, int corner) {
+			visitedVertices[vertex] = true;
+			encoding.add(vertex, corner);
+			pointIds[numPointIds++] = faces[corner];
+		}
+
+		private void visitTriangleBase(int corner) {
+			int next = t.vertex(DracoCornerTable.next(corner));
+			int prev = t.vertex(DracoCornerTable.previous(corner));
+			if (next == INVALID || prev == INVALID) throw malformed();
+			if (!visitedVertices[next]) visitVertex(next, DracoCornerTable.next(corner));
+			if (!visitedVertices[prev]) visitVertex(prev, DracoCornerTable.previous(corner));
+		}
+
+		private void traverseDepthFirst(int start) {
+			if (faceVisited(start)) return;
+			int[] stack = new int[16];
+			int size = 0;
+			stack[size++] = start;
+			visitTriangleBase(start);
+			while (size > 0) {
+				int corner = stack[size - 1];
+				if (faceVisited(corner)) {
+					size--;
+					continue;
+				}
+				while (true) {
+					visitedFaces[corner / 3] = true;
+					int vertex = t.vertex(corner);
+					if (vertex == INVALID) throw malformed();
+					if (!visitedVertices[vertex]) {
+						boolean boundary = t.isOnBoundary(vertex);
+						visitVertex(vertex, corner);
+						if (!boundary) {
+							corner = t.rightCorner(corner);
+							continue;
+						}
+					}
+					int right = t.rightCorner(corner);
+					int left = t.leftCorner(corner);
+					if (faceVisited(right)) {
+						if (faceVisited(left)) {
+							size--;
+							break;
+						}
+						corner = left;
+					} else if (faceVisited(left)) {
+						corner = right;
+					} else {
+						stack[size - 1] = left;
+						if (size == stack.length) stack = Arrays.copyOf(stack, size * 2);
+						stack[size++] = right;
+						break;
+					}
+				}
+			}
+		}
+
+		private void traverseByDegree(int start) {
+			if (faceVisited(start)) return;
+			push(start, 0);
+			bestPriority = 0;
+			visitTriangleBase(start);
+			int tip = t.vertex(start);
+			if (!visitedVertices[tip]) visitVertex(tip, start);
+			int corner;
+			while ((corner = pop()) != INVALID) {
+				if (faceVisited(corner)) continue;
+				while (true) {
+					visitedFaces[corner / 3] = true;
+					int vertex = t.vertex(corner);
+					if (!visitedVertices[vertex]) visitVertex(vertex, corner);
+					int right = t.rightCorner(corner);
+					int left = t.leftCorner(corner);
+					boolean rightVisited = faceVisited(right);
+					boolean leftVisited = faceVisited(left);
+					if (!leftVisited) {
+						int priority = priority(left);
+						if (rightVisited && priority <= bestPriority) {
+							corner = left;
+							continue;
+						}
+						push(left, priority);
+					}
+					if (!rightVisited) {
+						int priority = priority(right);
+						if (priority <= bestPriority) {
+							corner = right;
+							continue;
+						}
+						push(right, priority);
+					}
+					break;
+				}
+			}
+		}
+
+		private int priority(int corner) {
+			int tip = t.vertex(corner);
+			if (visitedVertices[tip]) return 0;
+			return ++degree[tip] > 1 ? 1 : 2;
+		}
+
+		private void push(int corner, int priority) {
+			if (stackSizes[priority] == stacks[priority].length) stacks[priority] = Arrays.copyOf(stacks[priority], stackSizes[priority] * 2);
+			stacks[priority][stackSizes[priority]++] = corner;
+			if (priority < bestPriority) bestPriority = priority;
+		}
+
+		private int pop() {
+			for (int i = bestPriority; i < 3; i++) {
+				if (stackSizes[i] > 0) {
+					bestPriority = i;
+					return stacks[i][--stackSizes[i]];
+				}
+			}
+			return INVALID;
+		}
+	}
+}
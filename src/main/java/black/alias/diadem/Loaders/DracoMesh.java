@@ -0,0 +1,45 @@
+package black.alias.diadem.Loaders;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Decoded KHR_draco_mesh_compression primitive. Every buffer is direct and in native order so
+ * it can back a JavaScript ArrayBuffer without another copy.
+ */
+public class DracoMesh {
+	public final int numPoints;
+	public final ByteBuffer indices;
+	public final boolean indices32;
+	private final Map<Integer, Attribute> attributes;
+
+	public DracoMesh(int numPoints, ByteBuffer indices, boolean indices32, Map<Integer, Attribute> attributes) {
+		this.numPoints = numPoints;
+		this.indices = indices;
+		this.indices32 = indices32;
+		this.attributes = attributes;
+	}
+
+	/**
+	 * Returns the attribute with the given Draco unique id, as referenced by the glTF
+	 * extension's attribute map, or null.
+	 */
+	public Attribute attribute(int uniqueId) {
+		return attributes.get(uniqueId);
+	}
+
+	/**
+	 * Per-point attribute values, float32 or (for non-normalized integer attributes) uint16.
+	 */
+	public static class Attribute {
+		public final int components;
+		public final boolean floating;
+		public final ByteBuffer data;
+
+		public Attribute(int components, boolean floating, ByteBuffer data) {
+			this.components = components;
+			this.floating = floating;
+			this.data = data;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package black.alias.diadem.Loaders;
+
+/**
+ * Integer octahedral normal coordinates as used by Draco: a unit vector is projected onto an
+ * octahedron, unfolded into a square and quantized to (s, t) in [0, maxValue].
+ */
+final class DracoOctahedron {
+	int maxQuantizedValue;
+	int maxValue;
+	int centerValue;
+	private float dequantizationScale;
+
+	void setQuantizationBits(int bits) {
+		if (bits < 2 || bits > 30) throw new IllegalArgumentException("Invalid Draco octahedron bits: " + bits);
+		maxQuantizedValue = (1 << bits) - 1;
+		maxValue = maxQuantizedValue - 1;
+		dequantizationScale = 2.0f / maxValue;
+		centerValue = maxValue / 2;
+	}
+
+	boolean isInDiamond(int s, int t) {
+		return (long) Math.abs(s) + Math.abs(t) <= centerValue;
+	}
+
+	/**
+	 * Mirrors a point across the diamond edge of its quadrant; the operation is its own inverse.
+	 */
+	void invertDiamond(int[] st) {
+		int s = st[0];
+		int t = st[1];
+		int signS;
+		int signT;
+		if (s >= 0 && t >= 0) {
+			signS = 1;
+			signT = 1;
+		} else if (s <= 0 && t <= 0) {
+			signS = -1;
+			signT = -1;
+		} else {
+			signS = s > 0 ? 1 : -1;
+			signT = t > 0 ? 1 : -1;
+		}
+		int cornerS = signS * centerValue;
+		int cornerT = signT * centerValue;
+		int us = s + s - cornerS;
+		int ut = t + t - cornerT;
+		if (signS * signT >= 0) {
+			int temp = us;
+			us = -ut;
+			ut = -temp;
+		} else {
+			int temp = us;
+			us = ut;
+			ut = temp;
+		}
+		st[0] = (us + cornerS) / 2;
+		st[1] = (ut + cornerT) / 2;
+	}
+
+	int modMax(int x) {
+		if (x > centerValue) return x - maxQuantizedValue;
+		if (x < -centerValue) return x + maxQuantizedValue;
+		return x;
+	}
+
+	/**
+	 * Scales an integer vector so that |x| + |y| + |z| equals the center value.
+	 */
+	void canonicalizeIntegerVector(int[] vec) {
+		long absSum = (long) Math.abs(vec[0]) + Math.abs(vec[1]) + Math.abs(vec[2]);
+		if (absSum == 0) {
+			vec[0] = centerValue;
+			return;
+		}
+		vec[0] = (int) ((long) vec[0] * centerValue / absSum);
+		vec[1] = (int) ((long) vec[1] * centerValue / absSum);
+		int z = centerValue - Math.abs(vec[0]) - Math.abs(vec[1]);
+		vec[2] = vec[2] >= 0 ? z : -z;
+	}
+
+	void integerVectorToQuantizedOctahedralCoords(int[] vec, int[] st) {
+		int s;
+		int t;
+		if (vec[0] >= 0) {
+			s = vec[1] + centerValue;
+			t = vec[2] + centerValue;
+		} else {
+			s = vec[1] < 0 ? Math.abs(vec[2]) : maxValue - Math.abs(vec[2]);
+			t = vec[2] < 0 ? Math.abs(vec[1]) : maxValue - Math.abs(vec[1]);
+		}
+		if ((s == 0 && t == 0) || (s == 0 && t == maxValue) || (s == maxValue && t == 0)) {
+			s = maxValue;
+			t = maxValue;
+		} else if (s == 0 && t > centerValue) {
+			t = centerValue - (t - centerValue);
+		} else if (s == maxValue && t < centerValue) {
+			t = centerValue + (centerValue - t);
+		} else if (t == maxValue && s < centerValue) {
+			s = centerValue + (centerValue - s);
+		} else if (t == 0 && s > centerValue) {
+			s = centerValue - (s - centerValue);
+		}
+		st[0] = s;
+		st[1] = t;
+	}
+
+	void quantizedOctahedralCoordsToUnitVector(int s, int t, float[] out, int offset) {
+		float y = s * dequantizationScale - 1.0f;
+		float z = t * dequantizationScale - 1.0f;
+		float x = 1.0f - Math.abs(y) - Math.abs(z);
+		float xOffset = Math.max(0.0f, -x);
+		y += y < 0 ? xOffset : -xOffset;
+		z += z < 0 ? xOffset : -xOffset;
+		float normSquared = x * x + y * y + z * z;
+		if (normSquared < 1e-6) {
+			out[offset] = 0;
+			out[offset + 1] = 0;
+			out[offset + 2] = 0;
+		} else {
+			float d = 1.0f / (float) Math.sqrt(normSquared);
+			out[offset] = x * d;
+			out[offset + 1] = y * d;
+			out[offset + 2] = z * d;
+		}
+	}
+}
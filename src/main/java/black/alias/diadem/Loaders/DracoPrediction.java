@@ -0,0 +1,622 @@
+package black.alias.diadem.Loaders;
+
+/**
+ * Draco prediction schemes and their correction transforms. Attribute values are stored as
+ * corrections against a value predicted from already decoded neighbours; these classes rebuild
+ * the original integers in encoding order.
+ */
+abstract class DracoPrediction {
+	// Prediction methods
+	static final int NONE = -2;
+	static final int DIFFERENCE = 0;
+	static final int PARALLELOGRAM = 1;
+	static final int MULTI_PARALLELOGRAM = 2;
+	static final int TEX_COORDS_DEPRECATED = 3;
+	static final int CONSTRAINED_MULTI_PARALLELOGRAM = 4;
+	static final int TEX_COORDS_PORTABLE = 5;
+	static final int GEOMETRIC_NORMAL = 6;
+
+	// Correction transforms
+	static final int TRANSFORM_WRAP = 1;
+	static final int TRANSFORM_NORMAL_OCTAHEDRON = 2;
+	static final int TRANSFORM_NORMAL_OCTAHEDRON_CANONICALIZED = 3;
+
+	private static final int MAX_PARALLELOGRAMS = 4;
+
+	final Transform transform;
+
+	DracoPrediction(Transform transform) {
+		this.transform = transform;
+	}
+
+	/**
+	 * Whether the stored corrections are unsigned, in which case the zig-zag step is skipped.
+	 */
+	boolean correctionsPositive() {
+		return transform.correctionsPositive();
+	}
+
+	/**
+	 * Attribute type whose portable values this scheme predicts from, or -1 for none.
+	 */
+	int parentType() {
+		return -1;
+	}
+
+	void setParent(DracoDecoder.Attribute parent) {
+	}
+
+	void decodeData(DracoBuffer buffer) {
+		transform.decode(buffer);
+	}
+
+	abstract void computeOriginalValues(int[] corr, int[] out, int size, int components, int[] entryToPoint);
+
+	/**
+	 * Connectivity the mesh schemes predict over: the corner table the attribute was
+	 * traversed with, the corner each value was first reached from, and the value index of
+	 * every table vertex.
+	 */
+	static final class MeshData {
+		final DracoCornerTable table;
+		final int[] dataToCorner;
+		final int numValues;
+		final int[] vertexToData;
+
+		MeshData(DracoCornerTable table, int[] dataToCorner, int numValues, int[] vertexToData) {
+			this.table = table;
+			this.dataToCorner = dataToCorner;
+			this.numValues = numValues;
+			this.vertexToData = vertexToData;
+		}
+	}
+
+	/**
+	 * Creates the scheme for an attribute, falling back to delta coding when the method needs
+	 * mesh connectivity that the stream does not have.
+	 */
+	static DracoPrediction create(int method, Transform transform, MeshData mesh) {
+		boolean octahedron = transform instanceof Octahedron;
+		if (mesh != null) {
+			if (octahedron) {
+				if (method == GEOMETRIC_NORMAL) return new GeometricNormal(transform, mesh);
+			} else {
+				switch (method) {
+					case PARALLELOGRAM:
+						return new Parallelogram(transform, mesh);
+					case MULTI_PARALLELOGRAM:
+						return new MultiParallelogram(transform, mesh);
+					case CONSTRAINED_MULTI_PARALLELOGRAM:
+						return new ConstrainedMultiParallelogram(transform, mesh);
+					case TEX_COORDS_PORTABLE:
+						return new TexCoordsPortable(transform, mesh);
+					case TEX_COORDS_DEPRECATED:
+						throw new IllegalArgumentException("Deprecated Draco texture coordinate prediction is not supported");
+					default:
+						break;
+				}
+			}
+		}
+		return new Delta(transform);
+	}
+
+	// ---- Transforms ----
+
+	abstract static class Transform {
+		int components;
+
+		void init(int components) {
+			this.components = components;
+		}
+
+		abstract void decode(DracoBuffer buffer);
+
+		boolean correctionsPositive() {
+			return false;
+		}
+
+		abstract void computeOriginal(int[] pred, int predOffset, int[] corr, int corrOffset, int[] out, int outOffset);
+	}
+
+	/**
+	 * Corrections wrap around the [min, max] range of the original values.
+	 */
+	static final class Wrap extends Transform {
+		private int min;
+		private int max;
+		private int maxDif;
+		private int[] clamped = new int[0];
+
+		@Override
+		void init(int components) {
+			super.init(components);
+			if (clamped.length < components) clamped = new int[components];
+		}
+
+		@Override
+		void decode(DracoBuffer buffer) {
+			min = buffer.i32();
+			max = buffer.i32();
+			long dif = (long) max - min;
+			if (dif < 0 || dif >= Integer.MAX_VALUE) throw new IllegalArgumentException("Invalid Draco wrap range");
+			maxDif = 1 + (int) dif;
+		}
+
+		@Override
+		void computeOriginal(int[] pred, int predOffset, int[] corr, int corrOffset, int[] out, int outOffset) {
+			for (int i = 0; i < components; i++) {
+				int p = pred[predOffset + i];
+				clamped[i] = p > max ? max : (p < min ? min : p);
+			}
+			for (int i = 0; i < components; i++) {
+				int value = clamped[i] + corr[corrOffset + i];
+				if (value > max) value -= maxDif;
+				else if (value < min) value += maxDif;
+				out[outOffset + i] = value;
+			}
+		}
+	}
+
+	/**
+	 * Normal corrections in octahedral coordinates, optionally rotated into the bottom-left
+	 * quadrant first (canonicalized).
+	 */
+	static final class Octahedron extends Transform {
+		private final boolean canonicalized;
+		final DracoOctahedron toolBox = new DracoOctahedron();
+
+		Octahedron(boolean canonicalized) {
+			this.canonicalized = canonicalized;
+		}
+
+		@Override
+		void decode(DracoBuffer buffer) {
+			int maxQuantizedValue = buffer.i32();
+			if (canonicalized || buffer.version < DracoBuffer.version(2, 2)) buffer.i32(); // center value, derived below
+			if ((maxQuantizedValue & 1) == 0) throw new IllegalArgumentException("Invalid Draco octahedron range");
+			toolBox.setQuantizationBits(32 - Integer.numberOfLeadingZeros(maxQuantizedValue));
+		}
+
+		@Override
+		boolean correctionsPositive() {
+			return true;
+		}
+
+		@Override
+		void computeOriginal(int[] pred, int predOffset, int[] corr, int corrOffset, int[] out, int outOffset) {
+			int center = toolBox.centerValue;
+			int[] p = {pred[predOffset] - center, pred[predOffset + 1] - center};
+			boolean inDiamond = toolBox.isInDiamond(p[0], p[1]);
+			if (!inDiamond) toolBox.invertDiamond(p);
+			int rotation = 0;
+			boolean bottomLeft = true;
+			if (canonicalized) {
+				bottomLeft = (p[0] == 0 && p[1] == 0) || (p[0] < 0 && p[1] <= 0);
+				rotation = rotationCount(p[0], p[1]);
+				if (!bottomLeft) rotate(p, rotation);
+			}
+			int[] orig = {toolBox.modMax(p[0] + corr[corrOffset]), toolBox.modMax(p[1] + corr[corrOffset + 1])};
+			if (!bottomLeft) rotate(orig, (4 - rotation) % 4);
+			if (!inDiamond) toolBox.invertDiamond(orig);
+			out[outOffset] = orig[0] + center;
+			out[outOffset + 1] = orig[1] + center;
+		}
+
+		private static int rotationCount(int x, int y) {
+			if (x == 0) return y == 0 ? 0 : (y > 0 ? 3 : 1);
+			if (x > 0) return y >= 0 ? 2 : 1;
+			return y <= 0 ? 0 : 3;
+		}
+
+		private static void rotate(int[] p, int rotation) {
+			int x = p[0];
+			int y = p[1];
+			switch (rotation) {
+				case 1: p[0] = y; p[1] = -x; break;
+				case 2: p[0] = -x; p[1] = -y; break;
+				case 3: p[0] = -y; p[1] = x; break;
+				default: break;
+			}
+		}
+	}
+
+	// ---- Schemes ----
+
+	/**
+	 * Each value is predicted by the one decoded before it.
+	 */
+	static final class Delta extends DracoPrediction {
+		Delta(Transform transform) {
+			super(transform);
+		}
+
+		@Override
+		void computeOriginalValues(int[] corr, int[] out, int size, int components, int[] entryToPoint) {
+			transform.init(components);
+			transform.computeOriginal(new int[components], 0, corr, 0, out, 0);
+			for (int i = components; i < size; i += components) {
+				transform.computeOriginal(out, i - components, corr, i, out, i);
+			}
+		}
+	}
+
+	abstract static class MeshScheme extends DracoPrediction {
+		final MeshData mesh;
+
+		MeshScheme(Transform transform, MeshData mesh) {
+			super(transform);
+			this.mesh = mesh;
+		}
+
+		/**
+		 * Predicts the value at the tip of the triangle opposite to corner c as next + prev - opp,
+		 * when all three values are already decoded.
+		 */
+		boolean parallelogram(int entry, int c, int[] data, int components, int[] out, int outOffset) {
+			DracoCornerTable table = mesh.table;
+			int oc = table.opposite(c);
+			if (oc == DracoCornerTable.INVALID) return false;
+			int opp = mesh.vertexToData[table.vertex(oc)];
+			int next = mesh.vertexToData[table.vertex(DracoCornerTable.next(oc))];
+			int prev = mesh.vertexToData[table.vertex(DracoCornerTable.previous(oc))];
+			if (opp >= entry || next >= entry || prev >= entry) return false;
+			for (int i = 0; i < components; i++) {
+				long value = (long) data[next * components + i] + data[prev * components + i] - data[opp * components + i];
+				out[outOffset + i] = (int) value;
+			}
+			return true;
+		}
+	}
+
+	static final class Parallelogram extends MeshScheme {
+		Parallelogram(Transform transform, MeshData mesh) {
+			super(transform, mesh);
+		}
+
+		@Override
+		void computeOriginalValues(int[] corr, int[] out, int size, int components, int[] entryToPoint) {
+			transform.init(components);
+			int[] pred = new int[components];
+			transform.computeOriginal(pred, 0, corr, 0, out, 0);
+			for (int p = 1; p < mesh.numValues; p++) {
+				int dst = p * components;
+				if (parallelogram(p, mesh.dataToCorner[p], out, components, pred, 0)) {
+					transform.computeOriginal(pred, 0, corr, dst, out, dst);
+				} else {
+					transform.computeOriginal(out, dst - components, corr, dst, out, dst);
+				}
+			}
+		}
+	}
+
+	static final class MultiParallelogram extends MeshScheme {
+		MultiParallelogram(Transform transform, MeshData mesh) {
+			super(transform, mesh);
+		}
+
+		@Override
+		void computeOriginalValues(int[] corr, int[] out, int size, int components, int[] entryToPoint) {
+			transform.init(components);
+			int[] pred = new int[components];
+			int[] single = new int[components];
+			transform.computeOriginal(pred, 0, corr, 0, out, 0);
+			for (int p = 1; p < mesh.numValues; p++) {
+				int start = mesh.dataToCorner[p];
+				int c = start;
+				int count = 0;
+				java.util.Arrays.fill(pred, 0);
+				while (c != DracoCornerTable.INVALID) {
+					if (parallelogram(p, c, out, components, single, 0)) {
+						for (int i = 0; i < components; i++) pred[i] += single[i];
+						count++;
+					}
+					c = mesh.table.swingRight(c);
+					if (c == start) c = DracoCornerTable.INVALID;
+				}
+				int dst = p * components;
+				if (count == 0) {
+					transform.computeOriginal(out, dst - components, corr, dst, out, dst);
+				} else {
+					for (int i = 0; i < components; i++) pred[i] /= count;
+					transform.computeOriginal(pred, 0, corr, dst, out, dst);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Averages up to four parallelograms around the vertex, skipping those whose shared edge
+	 * the encoder flagged as a crease.
+	 */
+	static final class ConstrainedMultiParallelogram extends MeshScheme {
+		private final boolean[][] creases = new boolean[MAX_PARALLELOGRAMS][];
+
+		ConstrainedMultiParallelogram(Transform transform, MeshData mesh) {
+			super(transform, mesh);
+		}
+
+		@Override
+		void decodeData(DracoBuffer buffer) {
+			if (buffer.version < DracoBuffer.version(2, 2) && buffer.u8() != 0) {
+				throw new IllegalArgumentException("Unsupported Draco multi-parallelogram mode");
+			}
+			for (int i = 0; i < MAX_PARALLELOGRAMS; i++) {
+				int flags = buffer.varint();
+				if (flags > mesh.table.numCorners()) throw new IllegalArgumentException("Invalid Draco crease flags");
+				creases[i] = new boolean[flags];
+				if (flags > 0) {
+					DracoBuffer.BitDecoder decoder = new DracoBuffer.BitDecoder();
+					decoder.start(buffer);
+					for (int j = 0; j < flags; j++) creases[i][j] = decoder.next();
+				}
+			}
+			super.decodeData(buffer);
+		}
+
+		@Override
+		void computeOriginalValues(int[] corr, int[] out, int size, int components, int[] entryToPoint) {
+			transform.init(components);
+			int[] preds = new int[MAX_PARALLELOGRAMS * components];
+			int[] multi = new int[components];
+			int[] creasePos = new int[MAX_PARALLELOGRAMS];
+			transform.computeOriginal(preds, 0, corr, 0, out, 0);
+			DracoCornerTable table = mesh.table;
+			for (int p = 1; p < mesh.numValues; p++) {
+				int start = mesh.dataToCorner[p];
+				int c = start;
+				int count = 0;
+				boolean firstPass = true;
+				while (c != DracoCornerTable.INVALID) {
+					if (parallelogram(p, c, out, components, preds, count * components)) {
+						if (++count == MAX_PARALLELOGRAMS) break;
+					}
+					c = firstPass ? table.swingLeft(c) : table.swingRight(c);
+					if (c == start) break;
+					if (c == DracoCornerTable.INVALID && firstPass) {
+						firstPass = false;
+						c = table.swingRight(start);
+					}
+				}
+				int used = 0;
+				if (count > 0) {
+					java.util.Arrays.fill(multi, 0);
+					int context = count - 1;
+					for (int i = 0; i < count; i++) {
+						int pos = creasePos[context]++;
+						if (pos >= creases[context].length) throw new IllegalArgumentException("Missing Draco crease flags");
+						if (!creases[context][pos]) {
+							used++;
+							for (int j = 0; j < components; j++) multi[j] += preds[i * components + j];
+						}
+					}
+				}
+				int dst = p * components;
+				if (used == 0) {
+					transform.computeOriginal(out, dst - components, corr, dst, out, dst);
+				} else {
+					for (int j = 0; j < components; j++) multi[j] /= used;
+					transform.computeOriginal(multi, 0, corr, dst, out, dst);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Predicts UVs by projecting the tip position onto the opposite edge and transferring the
+	 * triangle shape into texture space; the side of the edge is stored as an orientation bit.
+	 */
+	static final class TexCoordsPortable extends MeshScheme {
+		private boolean[] orientations = new boolean[0];
+		private int orientationCount;
+		private DracoDecoder.Attribute position;
+		private final int[] predicted = new int[2];
+
+		TexCoordsPortable(Transform transform, MeshData mesh) {
+			super(transform, mesh);
+		}
+
+		@Override
+		int parentType() {
+			return DracoDecoder.POSITION;
+		}
+
+		@Override
+		void setParent(DracoDecoder.Attribute parent) {
+			if (parent.components != 3) throw new IllegalArgumentException("Draco UV prediction needs 3D positions");
+			position = parent;
+		}
+
+		@Override
+		void decodeData(DracoBuffer buffer) {
+			int count = buffer.i32();
+			if (count < 0) throw new IllegalArgumentException("Invalid Draco orientation count");
+			orientations = new boolean[count];
+			orientationCount = count;
+			boolean last = true;
+			DracoBuffer.BitDecoder decoder = new DracoBuffer.BitDecoder();
+			decoder.start(buffer);
+			for (int i = 0; i < count; i++) {
+				if (!decoder.next()) last = !last;
+				orientations[i] = last;
+			}
+			super.decodeData(buffer);
+		}
+
+		@Override
+		void computeOriginalValues(int[] corr, int[] out, int size, int components, int[] entryToPoint) {
+			if (components != 2) throw new IllegalArgumentException("Draco UV prediction needs 2 components");
+			transform.init(components);
+			for (int p = 0; p < mesh.numValues; p++) {
+				predict(mesh.dataToCorner[p], out, p, entryToPoint);
+				transform.computeOriginal(predicted, 0, corr, p * 2, out, p * 2);
+			}
+		}
+
+		private void predict(int c, int[] data, int dataId, int[] entryToPoint) {
+			DracoCornerTable table = mesh.table;
+			int nextId = mesh.vertexToData[table.vertex(DracoCornerTable.next(c))];
+			int prevId = mesh.vertexToData[table.vertex(DracoCornerTable.previous(c))];
+			if (prevId < dataId && nextId < dataId) {
+				long nu = data[nextId * 2], nv = data[nextId * 2 + 1];
+				long pu = data[prevId * 2], pv = data[prevId * 2 + 1];
+				if (pu == nu && pv == nv) {
+					predicted[0] = (int) pu;
+					predicted[1] = (int) pv;
+					return;
+				}
+				long[] tip = position.portableVector(entryToPoint[dataId]);
+				long[] next = position.portableVector(entryToPoint[nextId]);
+				long[] prev = position.portableVector(entryToPoint[prevId]);
+				long pnx = prev[0] - next[0], pny = prev[1] - next[1], pnz = prev[2] - next[2];
+				long pnNorm = pnx * pnx + pny * pny + pnz * pnz;
+				if (pnNorm != 0) {
+					long cnDotPn = pnx * (tip[0] - next[0]) + pny * (tip[1] - next[1]) + pnz * (tip[2] - next[2]);
+					long pnu = pu - nu, pnv = pv - nv;
+					if (Math.max(Math.abs(nu), Math.abs(nv)) > Long.MAX_VALUE / pnNorm
+						|| cnDotPn > Long.MAX_VALUE / Math.max(Math.abs(pnu), Math.abs(pnv))
+						|| cnDotPn > Long.MAX_VALUE / Math.max(Math.max(Math.abs(pnx), Math.abs(pny)), Math.abs(pnz))) {
+						throw new IllegalArgumentException("Draco UV prediction overflow");
+					}
+					long xu = nu * pnNorm + cnDotPn * pnu;
+					long xv = nv * pnNorm + cnDotPn * pnv;
+					long cxx = tip[0] - (next[0] + cnDotPn * pnx / pnNorm);
+					long cxy = tip[1] - (next[1] + cnDotPn * pny / pnNorm);
+					long cxz = tip[2] - (next[2] + cnDotPn * pnz / pnNorm);
+					long cxNorm = cxx * cxx + cxy * cxy + cxz * cxz;
+					long norm = intSqrt(cxNorm * pnNorm);
+					long cxu = pnv * norm;
+					long cxv = -pnu * norm;
+					if (orientationCount == 0) throw new IllegalArgumentException("Missing Draco UV orientations");
+					boolean orientation = orientations[--orientationCount];
+					long u = orientation ? xu + cxu : xu - cxu;
+					long v = orientation ? xv + cxv : xv - cxv;
+					double scale = (double) pnNorm;
+					predicted[0] = (int) Math.floor(u / scale + 0.5);
+					predicted[1] = (int) Math.floor(v / scale + 0.5);
+					return;
+				}
+			}
+			int offset;
+			if (nextId < dataId) {
+				offset = nextId * 2;
+			} else if (dataId > 0) {
+				offset = (dataId - 1) * 2;
+			} else {
+				predicted[0] = 0;
+				predicted[1] = 0;
+				return;
+			}
+			predicted[0] = data[offset];
+			predicted[1] = data[offset + 1];
+		}
+
+		// Integer floor(sqrt(number)) over an unsigned 64-bit input
+		private static long intSqrt(long number) {
+			if (number == 0) return 0;
+			long act = number;
+			long root = 1;
+			while (Long.compareUnsigned(act, 2) >= 0) {
+				root *= 2;
+				act = Long.divideUnsigned(act, 4);
+			}
+			do {
+				root = (root + Long.divideUnsigned(number, root)) / 2;
+			} while (Long.compareUnsigned(root * root, number) > 0);
+			return root;
+		}
+	}
+
+	/**
+	 * Predicts normals from the area-weighted face normals around the vertex, with a flip bit
+	 * per value for the side the encoder chose.
+	 */
+	static final class GeometricNormal extends MeshScheme {
+		private final DracoBuffer.BitDecoder flips = new DracoBuffer.BitDecoder();
+		private DracoDecoder.Attribute position;
+
+		GeometricNormal(Transform transform, MeshData mesh) {
+			super(transform, mesh);
+		}
+
+		@Override
+		int parentType() {
+			return DracoDecoder.POSITION;
+		}
+
+		@Override
+		void setParent(DracoDecoder.Attribute parent) {
+			if (parent.components != 3) throw new IllegalArgumentException("Draco normal prediction needs 3D positions");
+			position = parent;
+		}
+
+		@Override
+		void decodeData(DracoBuffer buffer) {
+			transform.decode(buffer);
+			if (buffer.version < DracoBuffer.version(2, 2)) buffer.u8(); // prediction mode
+			flips.start(buffer);
+		}
+
+		@Override
+		void computeOriginalValues(int[] corr, int[] out, int size, int components, int[] entryToPoint) {
+			transform.init(components);
+			DracoOctahedron toolBox = ((Octahedron) transform).toolBox;
+			int[] normal = new int[3];
+			int[] octa = new int[2];
+			for (int p = 0; p < mesh.numValues; p++) {
+				predict(mesh.dataToCorner[p], normal, entryToPoint);
+				toolBox.canonicalizeIntegerVector(normal);
+				if (flips.next()) {
+					normal[0] = -normal[0];
+					normal[1] = -normal[1];
+					normal[2] = -normal[2];
+				}
+				toolBox.integerVectorToQuantizedOctahedralCoords(normal, octa);
+				transform.computeOriginal(octa, 0, corr, p * 2, out, p * 2);
+			}
+		}
+
+		private void predict(int corner, int[] out, int[] entryToPoint) {
+			DracoCornerTable table = mesh.table;
+			long[] center = positionAt(corner, entryToPoint);
+			long nx = 0, ny = 0, nz = 0;
+			int c = corner;
+			boolean left = true;
+			while (c != DracoCornerTable.INVALID) {
+				long[] next = positionAt(DracoCornerTable.next(c), entryToPoint);
+				long[] prev = positionAt(DracoCornerTable.previous(c), entryToPoint);
+				long ax = next[0] - center[0], ay = next[1] - center[1], az = next[2] - center[2];
+				long bx = prev[0] - center[0], by = prev[1] - center[1], bz = prev[2] - center[2];
+				nx += ay * bz - az * by;
+				ny += az * bx - ax * bz;
+				nz += ax * by - ay * bx;
+				if (left) {
+					c = table.swingLeft(c);
+					if (c == DracoCornerTable.INVALID) {
+						c = table.swingRight(corner);
+						left = false;
+					} else if (c == corner) {
+						c = DracoCornerTable.INVALID;
+					}
+				} else {
+					c = table.swingRight(c);
+				}
+			}
+			long upperBound = 1 << 29;
+			long absSum = Math.abs(nx) + Math.abs(ny) + Math.abs(nz);
+			if (absSum > upperBound) {
+				long quotient = absSum / upperBound;
+				nx /= quotient;
+				ny /= quotient;
+				nz /= quotient;
+			}
+			out[0] = (int) nx;
+			out[1] = (int) ny;
+			out[2] = (int) nz;
+		}
+
+		private long[] positionAt(int corner, int[] entryToPoint) {
+			int entry = mesh.vertexToData[mesh.table.vertex(corner)];
+			return position.portableVector(entryToPoint[entry]);
+		}
+	}
+}
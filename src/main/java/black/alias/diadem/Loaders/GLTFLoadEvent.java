@@ -0,0 +1,43 @@
+package black.alias.diadem.Loaders;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR record of one GLTF model built by GLTFLoader (cache hits are not recorded), with the
+ * time spent in each phase. The event's duration covers the whole load.
+ */
+@Name("diadem.GLTFLoad")
+@Label("GLTF Load")
+@Category({ "Diadem", "Loading" })
+@Description("A GLTF model parsed, decoded and built into Three.js objects")
+@StackTrace(false)
+public class GLTFLoadEvent extends Event {
+	@Label("Path")
+	String path;
+
+	@Label("Parse Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long parseNanos;
+
+	@Label("Decode Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long decodeNanos;
+
+	@Label("Decode Tasks")
+	int decodeTasks;
+
+	@Label("Build Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long buildNanos;
+
+	@Label("Geometry Memory")
+	@DataAmount
+	long geometryBytes;
+}
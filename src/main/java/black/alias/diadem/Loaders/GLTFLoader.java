@@ -2,148 +2,652 @@ package black.alias.diadem.Loaders;
 
 import org.graalvm.polyglot.Value;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
 import de.javagl.jgltf.model.*;
 import de.javagl.jgltf.model.io.*;
 import de.javagl.jgltf.model.io.v2.GltfAssetV2;
 import de.javagl.jgltf.model.v2.MaterialModelV2;
+import de.javagl.jgltf.impl.v2.BufferView;
 import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.nio.ByteBuffer;
 import java.nio.ShortBuffer;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import org.lwjgl.system.MemoryUtil;
+import black.alias.diadem.FrameScheduler;
 
 /**
  * GLB loader for embedded binary GLTF files.
  * Supports PBR materials with embedded textures.
- * Note: Does not support Draco compression.
+ * Loading runs in two stages: a decode stage that does all the pure Java work (embedded
+ * images, cooked textures, Draco primitives, meshopt buffer views, float accessors) in
+ * parallel on a ForkJoinPool, then a build stage that creates the Three.js objects on the
+ * JS/GL thread. Per-stage timings are logged for every load.
+ * Draco compressed primitives (KHR_draco_mesh_compression) are decoded in Java.
+ * Meshopt compressed buffer views (EXT_meshopt_compression) are decoded before the model is
+ * built, and quantized attributes (KHR_mesh_quantization) stay quantized on the GPU.
+ * Nodes with EXT_mesh_gpu_instancing become InstancedMeshes, and optionally so do nodes that
+ * share a mesh.
+ * Models and their textures are kept in an AssetCache; loading a cached file again returns a
+ * clone of the cached scene graph that shares its geometries, materials and textures.
+ * Vertex and index data are typed array views over the GLB binary chunk, interleaved buffer
+ * views become InterleavedBufferAttributes, so attribute data is not copied on the Java heap.
+
+ * loadAsync runs the decode stage off the GL thread and spreads the build stage over frames.
  */
 public class GLTFLoader {
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final String DRACO_EXTENSION = "KHR_draco_mesh_compression";
+    private static final String MESHOPT_EXTENSION = "EXT_meshopt_compression";
+    private static final String GPU_INSTANCING_EXTENSION = "EXT_mesh_gpu_instancing";
     
     private final Value threeJS;
     private final TextureLoader textureLoader;
     private final Value Object;
     private final Value Array;
+    private final Value ArrayBuffer;
     private final Value Float32Array;
+    private final Value Int8Array;
+    private final Value Uint8Array;
+    private final Value Int16Array;
     private final Value Uint16Array;
     private final Value Uint32Array;
+    private final Value Promise;
+    
+    // Model being loaded, to find cooked versions of its embedded images
+    private String modelPath;
+    private List<ImageModel> imageModels = List.of();
+    
+    private Map<MeshPrimitiveModel, DracoPrimitive> dracoPrimitives = Map.of();
+    private final ForkJoinPool decodePool;
+    
+    // Async loads waiting for, or in, their build stage on the GL thread; only the head is built
+    private final ArrayDeque<PendingBuild> builds = new ArrayDeque<>();
+    private boolean buildScheduled;
+    
+    // Decode stage results consumed by the build stage
+    private Map<ImageModel, PendingImage> pendingImages = Map.of();
+    private Map<AccessorModel, float[]> floatArrays = Map.of();
+    
+    // Per-load caches, nodes sharing a mesh share its geometries and materials
+    private final Map<MeshPrimitiveModel, Value> geometries = new HashMap<>();
+    private final Map<MaterialModel, Value> materials = new HashMap<>();
+    private final Map<MaterialModel, Value> vertexColorMaterials = new HashMap<>();
+    
+    // Per-instance matrices of EXT_mesh_gpu_instancing nodes
+    private Map<NodeModel, float[]> gpuInstances = Map.of();
+    
+    // Nodes of the current scene whose mesh is drawn by one of the scene's InstancedMeshes
+    private Set<NodeModel> instancedNodes = Set.of();
+    
+    // GLB binary chunk as a JS ArrayBuffer, and the interleaved buffers made from its views
+    private BufferModel binaryBufferModel;
+    private Value binaryBuffer;
+    private final Map<BufferViewModel, Map<Integer, Value>> interleavedBuffers = new HashMap<>();
+    private List<AccessorModel> accessorModels = List.of();
+    
+    // Loaded models and textures, and the texture references taken by the current load
+    private final AssetCache assetCache = new AssetCache();
+    private final List<String> textureKeys = new ArrayList<>();
     
     public GLTFLoader(Context jsContext, Value threeJS, TextureLoader textureLoader) {
         this.threeJS = threeJS;
         this.textureLoader = textureLoader;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.decodePool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("diadem-gltf-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
 
         // Javascript objects
         this.Object = jsContext.eval("js", "Object");
         this.Array = jsContext.eval("js", "Array");
+        this.ArrayBuffer = jsContext.eval("js", "ArrayBuffer");
         this.Float32Array = jsContext.eval("js", "Float32Array");
+        this.Int8Array = jsContext.eval("js", "Int8Array");
+        this.Uint8Array = jsContext.eval("js", "Uint8Array");
+        this.Int16Array = jsContext.eval("js", "Int16Array");
         this.Uint16Array = jsContext.eval("js", "Uint16Array");
         this.Uint32Array = jsContext.eval("js", "Uint32Array");
+        this.Promise = jsContext.eval("js", "Promise");
     }
     
     public Value load(String filePath) {
+        return load(filePath, false);
+    }
+    
+    /**
+     * Loads a GLB file. With instanceSharedMeshes, static nodes of a scene that reuse the same
+     * mesh are collapsed into one InstancedMesh per primitive instead of a Mesh per node.
+     * The result is a clone of the cached model; its dispose() function releases the model so
+     * the cache may evict it.
+     */
+    public Value load(String filePath, boolean instanceSharedMeshes) {
+        String rel = toAssetPath(filePath);
+        String modelKey = getModelKey(rel, instanceSharedMeshes);
+        Value template = assetCache.acquire(modelKey);
+        if (template != null) return createInstance(template, modelKey);
+        
+        // An async build can't be left half way while this one uses the loader's state
+        finishCurrentBuild();
+        // which may just have cached this model
+        template = assetCache.acquire(modelKey);
+        if (template != null) return createInstance(template, modelKey);
+        DecodedModel model;
         try {
-            String rel = filePath.replace('\\', '/');
-            if (rel.startsWith("/")) rel = rel.substring(1);
-            if (rel.startsWith("assets/")) rel = rel.substring("assets/".length());
-            
-            GltfModel gltfModel = loadGLB(rel);
-
-            // Parse skeleton.
-            HashMap<NodeModel, List<String>> boneNames = new HashMap<>();
-            HashMap<NodeModel, HashMap<String, Value>> boneInverses = new HashMap<>();
-            for (SkinModel skin : gltfModel.getSkinModels()) {
-
-                // Get bone names.
-                NodeModel root = getSkeletonReference(skin);
-                boneNames.put(root, new ArrayList<>());
-                boneInverses.put(root, new HashMap<>());
-                float[][] inverseBindMatrices = getFloatArray2D(skin.getInverseBindMatrices());
-                int index = 0;
-                for (NodeModel node : skin.getJoints()) {
-                    if (node.getName() != null) {
-                        boneNames.get(root).add(node.getName());
-                        boneInverses.get(root).put(node.getName(), toThreeMatrix(inverseBindMatrices[index]));
-                        index++;
-                    }
+            model = decode(filePath, rel, instanceSharedMeshes, modelKey, null);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load GLB: " + filePath, e);
+        }
+        try {
+            beginBuild(model);
+            for (MeshPrimitiveModel primitive : model.primitives) buildPrimitive(primitive);
+            return createInstance(finishBuild(model), modelKey);
+        } catch (Exception e) {
+            for (String key : textureKeys) assetCache.release(key);
+            throw new RuntimeException("Failed to load GLB: " + filePath, e);
+        } finally {
+            endBuild(model);
+        }
+    }
+    
+    /**
+     * Loads a GLB file without blocking the frame. File I/O, parsing and decoding run on the
+     * decode pool; the Three.js objects are then built on the GL thread through the
+     * FrameScheduler, one primitive per task, so a large model is spread over several frames.
+     * Returns a Promise for the same object load returns. onProgress, if given, is called on
+     * the GL thread with { phase: "decode" | "build", loaded, total }.
+     */
+    public Value loadAsync(String filePath, boolean instanceSharedMeshes, Value onProgress) {
+        Value[] settle = new Value[2];
+        Value promise = Promise.newInstance((ProxyExecutable) args -> {
+            settle[0] = args[0];
+            settle[1] = args[1];
+            return null;
+        });
+        Value progress = onProgress != null && onProgress.canExecute() ? onProgress : null;
+        
+        String rel = toAssetPath(filePath);
+        decodePool.execute(() -> {
+            try {
+                String modelKey = getModelKey(rel, instanceSharedMeshes);
+                DecodedModel model = decode(filePath, rel, instanceSharedMeshes, modelKey, progress == null ? null
+                    : (loaded, total) -> FrameScheduler.post(() -> reportProgress(progress, "decode", loaded, total)));
+                FrameScheduler.post(() -> queueBuild(new PendingBuild(model, settle, progress)));
+            } catch (Exception e) {
+                FrameScheduler.post(() -> settle[1].execute("Failed to load GLB: " + filePath + " - " + e.getMessage()));
+            }
+        });
+        return promise;
+    }
+    
+    private static String toAssetPath(String filePath) {
+        String rel = filePath.replace('\\', '/');
+        if (rel.startsWith("/")) rel = rel.substring(1);
+        if (rel.startsWith("assets/")) rel = rel.substring("assets/".length());
+        return rel;
+    }
+    
+    private String getModelKey(String rel, boolean instanceSharedMeshes) {
+        return "model:" + rel + "@" + AssetPack.lastModified(rel) + (instanceSharedMeshes ? "#instanced" : "");
+    }
+    
+    /**
+     * Clones a cached model for the caller, whose dispose() releases the cache reference.
+     */
+    private Value createInstance(Value template, String modelKey) {
+        Value gltfObject = cloneGLTF(template);
+        boolean[] released = { false };
+        gltfObject.putMember("dispose", (ProxyExecutable) args -> {
+            if (!released[0]) {
+                released[0] = true;
+                assetCache.release(modelKey);
+            }
+            return null;
+        });
+        return gltfObject;
+    }
+    
+    private void reportProgress(Value onProgress, String phase, int loaded, int total) {
+        Value event = Object.newInstance();
+        event.putMember("phase", phase);
+        event.putMember("loaded", loaded);
+        event.putMember("total", total);
+        onProgress.execute(event);
+    }
+    
+    private void queueBuild(PendingBuild build) {
+        builds.add(build);
+        scheduleBuild();
+    }
+    
+    private void scheduleBuild() {
+        if (buildScheduled || builds.isEmpty()) return;
+        buildScheduled = true;
+        FrameScheduler.post(() -> {
+            buildScheduled = false;
+            PendingBuild build = builds.peek();
+            if (build != null && stepBuild(build)) builds.poll();
+            scheduleBuild();
+        });
+    }
+    
+    /**
+     * Runs the rest of a started async build right away.
+     */
+    private void finishCurrentBuild() {
+        PendingBuild build = builds.peek();
+        if (build == null || build.next < 0) return;
+        while (!stepBuild(build)) { }
+        builds.poll();
+    }
+    
+    /**
+     * Runs one step of an async build on the GL thread: setting up, one primitive, or putting
+     * the scene together. Returns true when the build is done, settling its Promise.
+     */
+    private boolean stepBuild(PendingBuild build) {
+        DecodedModel model = build.model;
+        try {
+            if (build.next < 0) {
+                // Another load may have cached the model meanwhile
+                Value template = assetCache.acquire(model.modelKey);
+                if (template != null) {
+                    model.free();
+                    build.settle[0].execute(createInstance(template, model.modelKey));
+                    return true;
                 }
+                build.next = 0;
+                beginBuild(model);
+                return false;
+            }
+            if (build.next < model.primitives.size()) {
+                buildPrimitive(model.primitives.get(build.next++));
+                if (build.onProgress != null) reportProgress(build.onProgress, "build", build.next, model.primitives.size() + 1);
+                return false;
             }
+            Value template = finishBuild(model);
+            endBuild(model);
+            if (build.onProgress != null) reportProgress(build.onProgress, "build", build.next + 1, model.primitives.size() + 1);
+            build.settle[0].execute(createInstance(template, model.modelKey));
+            return true;
+        } catch (Exception e) {
+            for (String key : textureKeys) assetCache.release(key);
+            if (build.next >= 0) endBuild(model); else model.free();
+            build.settle[1].execute("Failed to load GLB: " + model.filePath + " - " + e.getMessage());
+            return true;
+        }
+    }
+    
+    /**
+     * Reads, parses and decodes a model; pure Java, safe on any thread. progress, if given, is
+     * called from the pool as decode tasks complete.
+     */
+    private DecodedModel decode(String filePath, String rel, boolean instanceSharedMeshes, String modelKey,
+            BiConsumer<Integer, Integer> progress) throws Exception {
+        DecodedModel model = new DecodedModel(filePath, rel, instanceSharedMeshes, modelKey);
+        model.event.begin();
+        model.start = System.nanoTime();
+        loadGLB(model);
+        model.parsed = System.nanoTime();
+        try {
+            decodeStage(model, progress);
+        } catch (Exception e) {
+            model.free();
+            throw e;
+        }
+        model.decoded = System.nanoTime();
+        return model;
+    }
+    
+    /**
+     * Starts the build stage: makes the model's decoded data the loader's current state.
+     */
+    private void beginBuild(DecodedModel model) {
+        modelPath = model.rel;
+        imageModels = model.gltfModel.getImageModels();
+        accessorModels = model.gltfModel.getAccessorModels();
+        pendingImages = model.pendingImages;
+        floatArrays = model.floatArrays;
+        dracoPrimitives = model.dracoPrimitives;
+        gpuInstances = model.gpuInstances;
+        if (!model.gltfModel.getBufferModels().isEmpty()) {
+            binaryBufferModel = model.gltfModel.getBufferModels().get(0);
+            binaryBuffer = ArrayBuffer.newInstance(toDirect(binaryBufferModel.getBufferData()));
+        }
+    }
+    
+    /**
+     * Creates a primitive's geometry and material ahead of the scene graph, which then only
+     * picks them up from the per-load caches.
+     */
+    private void buildPrimitive(MeshPrimitiveModel primitive) {
+        if (!geometries.containsKey(primitive)) geometries.put(primitive, createGeometry(primitive));
+        getMaterial(primitive.getMaterialModel(), primitive.getAttributes().containsKey("COLOR_0"));
+    }
+    
+    /**
+     * Puts the scene graph, skeletons and animations together and caches the result.
+     */
+    private Value finishBuild(DecodedModel model) {
+        GltfModel gltfModel = model.gltfModel;
+        boolean instanceSharedMeshes = model.instanceSharedMeshes;
+
+        // Parse skeleton.
+        HashMap<NodeModel, List<String>> boneNames = new HashMap<>();
+        HashMap<NodeModel, HashMap<String, Value>> boneInverses = new HashMap<>();
+        for (SkinModel skin : gltfModel.getSkinModels()) {
 
-            // Create bone HashMap.
-            HashMap<NodeModel, Value> bones = new HashMap<>();
-            for (NodeModel key : boneNames.keySet()) bones.put(key, Array.newInstance());
-
-            // Create skinned groups HashMap.
-            HashMap<NodeModel, List<Value>> skinnedGroups = new HashMap<>();
-            for (NodeModel key : boneNames.keySet()) skinnedGroups.put(key, new ArrayList<>());
-
-            // Create ordered bone inverses.
-            HashMap<NodeModel, Value> orderedBoneInverses = new HashMap<>();
-            for (NodeModel key : boneNames.keySet()) orderedBoneInverses.put(key, Array.newInstance());
-
-            // Create bone name to uuid map.
-            HashMap<String, String> boneNameToUuid = new HashMap<>();
-
-            // Traverse scenes and build node hierarchy with correct transforms
-            Value scenes = Array.newInstance();
-            for (SceneModel scene : gltfModel.getSceneModels()) {
-                Value rootGroup = threeJS.getMember("Group").newInstance();
-                for (NodeModel rootNode : scene.getNodeModels()) {
-                    Value node = addNodeRecursive(
-                        rootNode,
-                        boneNames,
-                        boneInverses,
-                        bones,
-                        skinnedGroups,
-                        orderedBoneInverses,
-                        boneNameToUuid
-                    );
-                    rootGroup.invokeMember("add", node);
+            // Get bone names.
+            NodeModel root = getSkeletonReference(skin);
+            boneNames.put(root, new ArrayList<>());
+            boneInverses.put(root, new HashMap<>());
+            float[][] inverseBindMatrices = getFloatArray2D(skin.getInverseBindMatrices());
+            int index = 0;
+            for (NodeModel node : skin.getJoints()) {
+                if (node.getName() != null) {
+                    boneNames.get(root).add(node.getName());
+                    boneInverses.get(root).put(node.getName(), toThreeMatrix(inverseBindMatrices[index]));
+                    index++;
                 }
-                rootGroup.invokeMember("updateMatrixWorld", true);
-                scenes.invokeMember("push", rootGroup);
             }
+        }
 
-            // Create skeletons.
-            HashMap<NodeModel, Value> skeletons = new HashMap<>();
-            for (NodeModel key : boneNames.keySet()) {
-                Value skeleton = threeJS.getMember("Skeleton").newInstance(bones.get(key), orderedBoneInverses.get(key));
-                skeletons.put(key, skeleton);
-            }
+        // Create bone HashMap.
+        HashMap<NodeModel, Value> bones = new HashMap<>();
+        for (NodeModel key : boneNames.keySet()) bones.put(key, Array.newInstance());
+
+        // Create skinned groups HashMap.
+        HashMap<NodeModel, List<Value>> skinnedGroups = new HashMap<>();
+        for (NodeModel key : boneNames.keySet()) skinnedGroups.put(key, new ArrayList<>());
 
-            // Bind skeleton to skinned groups.
-            for (NodeModel rootNode : skinnedGroups.keySet()) {
-                List<Value> skinnedGroup = skinnedGroups.get(rootNode);
-                Value skeleton = skeletons.get(rootNode);
-                for (Value skinnedMesh : skinnedGroup) {
-                    if (skinnedMesh == null) continue;
-                    Value material = skinnedMesh.getMember("material");
-                    if (material != null) material.putMember("skinning", true);
-                    skinnedMesh.invokeMember("bind", skeleton);
-                    if (skinnedMesh.hasMember("normalizeSkinWeights"))
-                        skinnedMesh.invokeMember("normalizeSkinWeights");
+        // Create ordered bone inverses.
+        HashMap<NodeModel, Value> orderedBoneInverses = new HashMap<>();
+        for (NodeModel key : boneNames.keySet()) orderedBoneInverses.put(key, Array.newInstance());
+
+        // Create bone name to uuid map.
+        HashMap<String, String> boneNameToUuid = new HashMap<>();
+
+        // Joints and animated nodes move at runtime, so they are never collapsed into instances
+        Set<NodeModel> dynamicNodes = new HashSet<>();
+        if (instanceSharedMeshes) {
+            for (SkinModel skin : gltfModel.getSkinModels()) dynamicNodes.addAll(skin.getJoints());
+            for (AnimationModel animation : gltfModel.getAnimationModels()) {
+                for (AnimationModel.Channel channel : animation.getChannels()) {
+                    if (channel.getNodeModel() != null) dynamicNodes.add(channel.getNodeModel());
                 }
             }
-            
-            // Force matrix update after binding
-            for (int s = 0; s < scenes.getArraySize(); s++) {
-                scenes.getArrayElement(s).invokeMember("updateMatrixWorld", true);
+        }
+
+        // Traverse scenes and build node hierarchy with correct transforms
+        Value scenes = Array.newInstance();
+        for (SceneModel scene : gltfModel.getSceneModels()) {
+            Value rootGroup = threeJS.getMember("Group").newInstance();
+            Map<MeshModel, List<NodeModel>> sharedMeshes = instanceSharedMeshes
+                ? findSharedMeshNodes(scene, dynamicNodes) : Map.of();
+            instancedNodes = new HashSet<>();
+            for (List<NodeModel> nodes : sharedMeshes.values()) instancedNodes.addAll(nodes);
+            for (NodeModel rootNode : scene.getNodeModels()) {
+                Value node = addNodeRecursive(
+                    rootNode,
+                    boneNames,
+                    boneInverses,
+                    bones,
+                    skinnedGroups,
+                    orderedBoneInverses,
+                    boneNameToUuid
+                );
+                rootGroup.invokeMember("add", node);
             }
             
-            // Build animations (clips)
-            Value animations = buildAnimations(gltfModel, boneNameToUuid);
-
-            Value gltfObject = Object.newInstance();
-            gltfObject.putMember("scene", scenes.getArrayElement(0));
-            gltfObject.putMember("animations", animations);
-            gltfObject.putMember("scenes", scenes);
-            gltfObject.putMember("cameras", Array.newInstance());
-            
-            return gltfObject;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load GLB: " + filePath, e);
+            // One instanced draw per primitive of every shared mesh, placed by world transform
+            for (Map.Entry<MeshModel, List<NodeModel>> shared : sharedMeshes.entrySet()) {
+                List<NodeModel> nodes = shared.getValue();
+                float[] matrices = new float[nodes.size() * 16];
+                for (int i = 0; i < nodes.size(); i++) {
+                    System.arraycopy(nodes.get(i).computeGlobalTransform(null), 0, matrices, i * 16, 16);
+                }
+                for (Value mesh : createMeshes(shared.getKey(), matrices)) rootGroup.invokeMember("add", mesh);
+            }
+            rootGroup.invokeMember("updateMatrixWorld", true);
+            scenes.invokeMember("push", rootGroup);
+        }
+
+        // Create skeletons.
+        HashMap<NodeModel, Value> skeletons = new HashMap<>();
+        for (NodeModel key : boneNames.keySet()) {
+            Value skeleton = threeJS.getMember("Skeleton").newInstance(bones.get(key), orderedBoneInverses.get(key));
+            skeletons.put(key, skeleton);
+        }
+
+        // Bind skeleton to skinned groups.
+        for (NodeModel rootNode : skinnedGroups.keySet()) {
+            List<Value> skinnedGroup = skinnedGroups.get(rootNode);
+            Value skeleton = skeletons.get(rootNode);
+            for (Value skinnedMesh : skinnedGroup) {
+                if (skinnedMesh == null) continue;
+                Value material = skinnedMesh.getMember("material");
+                if (material != null) material.putMember("skinning", true);
+                skinnedMesh.invokeMember("bind", skeleton);
+                if (skinnedMesh.hasMember("normalizeSkinWeights"))
+                    skinnedMesh.invokeMember("normalizeSkinWeights");
+            }
+        }
+        
+        // Force matrix update after binding
+        for (int s = 0; s < scenes.getArraySize(); s++) {
+            scenes.getArrayElement(s).invokeMember("updateMatrixWorld", true);
+        }
+        
+        // Build animations (clips)
+        Value animations = buildAnimations(gltfModel, boneNameToUuid);
+
+        Value gltfObject = Object.newInstance();
+        gltfObject.putMember("scene", scenes.getArrayElement(0));
+        gltfObject.putMember("animations", animations);
+        gltfObject.putMember("scenes", scenes);
+        gltfObject.putMember("cameras", Array.newInstance());
+        
+        // Cache the model, holding the texture references taken while loading it
+        long bytes = 0;
+        for (Value geometry : geometries.values()) bytes += getGeometryBytes(geometry);
+        List<Value> ownedGeometries = new ArrayList<>(geometries.values());
+        List<Value> ownedMaterials = new ArrayList<>(materials.values());
+        ownedMaterials.addAll(vertexColorMaterials.values());
+        assetCache.put(model.modelKey, gltfObject, bytes, new ArrayList<>(textureKeys), () -> {
+            for (Value geometry : ownedGeometries) geometry.invokeMember("dispose");
+            for (Value material : ownedMaterials) material.invokeMember("dispose");
+        });
+        textureKeys.clear();
+        
+        model.event.end();
+        if (model.event.shouldCommit()) {
+            model.event.path = model.rel;
+            model.event.parseNanos = model.parsed - model.start;
+            model.event.decodeNanos = model.decoded - model.parsed;
+            model.event.decodeTasks = model.decodeTasks;
+            model.event.buildNanos = System.nanoTime() - model.decoded;
+            model.event.geometryBytes = bytes;
+            model.event.commit();
+        }
+        return gltfObject;
+    }
+    
+    /**
+     * Ends the build stage, successful or not, and resets the loader's per-load state.
+     */
+    private void endBuild(DecodedModel model) {
+        binaryBufferModel = null;
+        binaryBuffer = null;
+        interleavedBuffers.clear();
+        accessorModels = List.of();
+        textureKeys.clear();
+        model.free();
+        pendingImages = Map.of();
+        floatArrays = Map.of();
+        dracoPrimitives = Map.of();
+        gpuInstances = Map.of();
+        instancedNodes = Set.of();
+        geometries.clear();
+        materials.clear();
+        vertexColorMaterials.clear();
+    }
+
+    /**
+     * Decode stage. Queues every piece of work that needs neither JS nor GL, runs it all on
+     * the pool and waits: embedded images are hashed and decoded (or their cooked version
+     * read), Draco primitives decoded, and the float accessors the build stage reads
+     * (animation samplers, instancing transforms) converted. Returns the number of tasks.
+     */
+    private void decodeStage(DecodedModel model, BiConsumer<Integer, Integer> progress) throws Exception {
+        GltfModel gltfModel = model.gltfModel;
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        Map<ImageModel, PendingImage> images = new ConcurrentHashMap<>();
+        List<ImageModel> imageModels = gltfModel.getImageModels();
+        for (int i = 0; i < imageModels.size(); i++) {
+            ImageModel imageModel = imageModels.get(i);
+            ByteBuffer imageData = imageModel.getImageData();
+            if (imageData == null || imageData.remaining() == 0) continue;
+            String cookedPath = model.rel + ".images/" + i;
+            tasks.add(() -> {
+                images.put(imageModel, decodeImage(imageData.duplicate(), cookedPath));
+                return null;
+            });
+        }
+
+        Map<MeshPrimitiveModel, DracoPrimitive> draco = new ConcurrentHashMap<>();
+        addDracoTasks(model, draco, tasks);
+
+        Set<AccessorModel> floatAccessors = new HashSet<>();
+        for (AnimationModel animation : gltfModel.getAnimationModels()) {
+            for (AnimationModel.Channel channel : animation.getChannels()) {
+                if (channel.getSampler() == null) continue;
+                if (channel.getSampler().getInput() != null) floatAccessors.add(channel.getSampler().getInput());
+                if (channel.getSampler().getOutput() != null) floatAccessors.add(channel.getSampler().getOutput());
+            }
+        }
+        Map<AccessorModel, float[]> floats = new ConcurrentHashMap<>();
+        for (AccessorModel accessor : floatAccessors) {
+            tasks.add(() -> {
+                floats.put(accessor, toFloatArray(accessor));
+                return null;
+            });
+        }
+        tasks.add(() -> {
+            model.gpuInstances = readGpuInstances(model);
+            return null;
+        });
+
+        model.pendingImages = images;
+        runTasks(tasks, progress);
+        model.dracoPrimitives = draco;
+        model.floatArrays = floats;
+        model.decodeTasks = tasks.size();
+    }
+
+    /**
+     * Runs tasks on the decode pool, waits for all of them and rethrows the first failure.
+     * progress, if given, gets the number of finished tasks and the total as they complete.
+     */
+    private void runTasks(List<Callable<Void>> tasks, BiConsumer<Integer, Integer> progress) throws Exception {
+        if (tasks.isEmpty()) return;
+        List<Callable<Void>> counted = tasks;
+        if (progress != null) {
+            AtomicInteger finished = new AtomicInteger();
+            counted = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                counted.add(() -> {
+                    task.call();
+                    progress.accept(finished.incrementAndGet(), tasks.size());
+                    return null;
+                });
+            }
+        }
+        Exception failure = null;
+        for (Future<Void> result : decodePool.invokeAll(counted)) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                if (failure == null) failure = e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Hashes an embedded image and reads its cooked version, or decodes it when there is
+     * none. Skips decoding when the cache already holds the image.
+     */
+    private PendingImage decodeImage(ByteBuffer imageData, String cookedPath) {
+        PendingImage pending = new PendingImage(AssetCache.hash(imageData));
+        if (assetCache.contains("image:" + pending.hash + ":srgb") || assetCache.contains("image:" + pending.hash + ":linear")) {
+            return pending;
+        }
+        pending.cooked = textureLoader.readCookedImage(cookedPath);
+        if (pending.cooked != null) return pending;
+        if (imageData.isDirect()) {
+            pending.decoded = TextureLoader.decodeLDR(imageData);
+        } else {
+            ByteBuffer encoded = MemoryUtil.memAlloc(imageData.remaining());
+            try {
+                pending.decoded = TextureLoader.decodeLDR(encoded.put(imageData).flip());
+            } finally {
+                MemoryUtil.memFree(encoded);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Queues the decoding of every Draco compressed primitive of the model.
+     */
+    private void addDracoTasks(DecodedModel model, Map<MeshPrimitiveModel, DracoPrimitive> decoded, List<Callable<Void>> tasks) {
+        GlTF gltf = model.gltf;
+        GltfModel gltfModel = model.gltfModel;
+        if (gltf.getMeshes() == null) return;
+        List<MeshModel> meshModels = gltfModel.getMeshModels();
+        for (int m = 0; m < meshModels.size(); m++) {
+            List<MeshPrimitive> primitives = gltf.getMeshes().get(m).getPrimitives();
+            List<MeshPrimitiveModel> primitiveModels = meshModels.get(m).getMeshPrimitiveModels();
+            for (int p = 0; p < primitiveModels.size(); p++) {
+                Map<?, ?> draco = getExtension(primitives.get(p).getExtensions(), DRACO_EXTENSION);
+                if (draco == null) continue;
+                int bufferView = ((Number) draco.get("bufferView")).intValue();
+                Map<String, Integer> attributeIds = new HashMap<>();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) draco.get("attributes")).entrySet()) {
+                    attributeIds.put(entry.getKey().toString(), ((Number) entry.getValue()).intValue());
+                }
+                ByteBuffer data = gltfModel.getBufferViewModels().get(bufferView).getBufferViewData();
+                MeshPrimitiveModel primitive = primitiveModels.get(p);
+                tasks.add(() -> {
+                    try {
+                        decoded.put(primitive, new DracoPrimitive(new DracoDecoder().decode(data), attributeIds));
+                    } catch (RuntimeException e) {
+                        throw new RuntimeException("Failed to decode Draco primitive", e);
+                    }
+                    return null;
+                });
+            }
         }
     }
 
@@ -177,29 +681,27 @@ public class GLTFLoader {
 
             List<MeshModel> meshes = node.getMeshModels();
 
-            // If no meshes, create group.
-            if (meshes.isEmpty()) {
+            // If no meshes, or the mesh is drawn by an instanced mesh of the scene, create group.
+            if (meshes.isEmpty() || instancedNodes.contains(node)) {
                 obj = threeJS.getMember("Group").newInstance();
                 applyNodeTransform(obj, node);
             }
 
-            // If single mesh, create mesh.
-            else if (meshes.size() == 1) {
-                obj = createMesh(meshes.get(0));
-                applyNodeTransform(obj, node);
-                if (obj.hasMember("isSkinnedMesh") && obj.getMember("isSkinnedMesh").asBoolean())
-                    skinnedGroups.get(getSkeletonReference(node.getSkinModel())).add(obj);
-            }
-
-            // If multiple meshes, create group and add meshes.
             else {
-                obj = threeJS.getMember("Group").newInstance();
+                List<Value> meshObjs = new ArrayList<>();
+                for (MeshModel mesh : meshes) meshObjs.addAll(createMeshes(mesh, gpuInstances.get(node)));
+
+                // If single primitive, use the mesh itself, otherwise group the primitives.
+                if (meshObjs.size() == 1) {
+                    obj = meshObjs.get(0);
+                } else {
+                    obj = threeJS.getMember("Group").newInstance();
+                    for (Value meshObj : meshObjs) obj.invokeMember("add", meshObj);
+                }
                 applyNodeTransform(obj, node);
-                for (MeshModel mesh : meshes) {
-                    Value meshObj = createMesh(mesh);
-                    if (obj.hasMember("isSkinnedMesh") && obj.getMember("isSkinnedMesh").asBoolean())
+                for (Value meshObj : meshObjs) {
+                    if (node.getSkinModel() != null && meshObj.hasMember("isSkinnedMesh") && meshObj.getMember("isSkinnedMesh").asBoolean())
                         skinnedGroups.get(getSkeletonReference(node.getSkinModel())).add(meshObj);
-                    obj.invokeMember("add", meshObj);
                 }
             }
         }
@@ -234,92 +736,291 @@ public class GLTFLoader {
         mat.invokeMember("decompose", position, quaternion, scale);
     }
 
-    private Value createMesh(MeshModel meshModel) {
-        List<MeshPrimitiveModel> primitives = meshModel.getMeshPrimitiveModels();
-        if (primitives.isEmpty()) return null;
-        MeshPrimitiveModel primitive = primitives.get(0);
+    /**
+     * Creates one Three.js mesh per primitive of a glTF mesh. With instance matrices, every
+     * primitive becomes an InstancedMesh that draws all instances in one call.
+     */
+    private List<Value> createMeshes(MeshModel meshModel, float[] instanceMatrices) {
+        List<Value> meshes = new ArrayList<>();
+        for (MeshPrimitiveModel primitive : meshModel.getMeshPrimitiveModels()) {
+            Map<String, AccessorModel> attributes = primitive.getAttributes();
+            boolean hasVertexColors = attributes.containsKey("COLOR_0");
+            Value geometry = geometries.get(primitive);
+            if (geometry == null) {
+                geometry = createGeometry(primitive);
+                geometries.put(primitive, geometry);
+            }
+            Value material = getMaterial(primitive.getMaterialModel(), hasVertexColors);
+
+            Value mesh;
+            if (instanceMatrices != null) {
+                mesh = threeJS.getMember("InstancedMesh").newInstance(geometry, material, instanceMatrices.length / 16);
+                Value instanceMatrix = mesh.getMember("instanceMatrix");
+                instanceMatrix.getMember("array").invokeMember("set", Float32Array.newInstance(instanceMatrices));
+                instanceMatrix.putMember("needsUpdate", true);
+                mesh.invokeMember("computeBoundingSphere");
+            } else {
+                // Decide Mesh or SkinnedMesh
+                boolean isSkinned = attributes.containsKey("JOINTS_0") && attributes.containsKey("WEIGHTS_0");
+                mesh = threeJS.getMember(isSkinned ? "SkinnedMesh" : "Mesh").newInstance(geometry, material);
+            }
+            if (meshModel.getName() != null) mesh.putMember("name", meshModel.getName());
+            meshes.add(mesh);
+        }
+        return meshes;
+    }
+
+    private Value createGeometry(MeshPrimitiveModel primitive) {
         Value geometry = threeJS.getMember("BufferGeometry").newInstance();
         Map<String, AccessorModel> attributes = primitive.getAttributes();
+        DracoPrimitive draco = dracoPrimitives.get(primitive);
 
         AccessorModel positionAccessor = attributes.get("POSITION");
         if (positionAccessor != null) {
-            Value jsPositions = Float32Array.newInstance(getFloatArray(positionAccessor));
-            Value posAttr = threeJS.getMember("Float32BufferAttribute").newInstance(jsPositions, 3);
+            Value posAttr = createAttribute(positionAccessor, draco, "POSITION", 3);
             geometry.invokeMember("setAttribute", "position", posAttr);
         }
         AccessorModel normalAccessor = attributes.get("NORMAL");
         if (normalAccessor != null) {
-            Value jsNormals = Float32Array.newInstance(getFloatArray(normalAccessor));
-            Value normAttr = threeJS.getMember("Float32BufferAttribute").newInstance(jsNormals, 3);
+            Value normAttr = createAttribute(normalAccessor, draco, "NORMAL", 3);
             geometry.invokeMember("setAttribute", "normal", normAttr);
         }
         AccessorModel uvAccessor = attributes.get("TEXCOORD_0");
         if (uvAccessor != null) {
-            Value jsUvs = Float32Array.newInstance(getFloatArray(uvAccessor));
-            Value uvAttr = threeJS.getMember("Float32BufferAttribute").newInstance(jsUvs, 2);
+            Value uvAttr = createAttribute(uvAccessor, draco, "TEXCOORD_0", 2);
             geometry.invokeMember("setAttribute", "uv", uvAttr);
             geometry.invokeMember("setAttribute", "uv2", uvAttr);
         }
-        boolean hasVertexColors = false;
         AccessorModel colorAccessor = attributes.get("COLOR_0");
         if (colorAccessor != null) {
-            Value jsColors = Float32Array.newInstance(getFloatArray(colorAccessor));
             int itemSize = colorAccessor.getElementType().getNumComponents();
-            Value colorAttr = threeJS.getMember("Float32BufferAttribute").newInstance(jsColors, itemSize);
+            Value colorAttr = createAttribute(colorAccessor, draco, "COLOR_0", itemSize);
             geometry.invokeMember("setAttribute", "color", colorAttr);
-            hasVertexColors = true;
         }
         AccessorModel jointsAccessor = attributes.get("JOINTS_0");
         if (jointsAccessor != null) {
-            int[] joints = getIntComponentsArray(jointsAccessor);
-            Value jsJoints = Uint16Array.newInstance(joints);
             int itemSize = jointsAccessor.getElementType().getNumComponents();
-            Value jointsAttr = threeJS.getMember("Uint16BufferAttribute").newInstance(jsJoints, itemSize);
+            Value jointsAttr = createAttribute(jointsAccessor, draco, "JOINTS_0", itemSize);
             geometry.invokeMember("setAttribute", "skinIndex", jointsAttr);
         }
         AccessorModel weightsAccessor = attributes.get("WEIGHTS_0");
         if (weightsAccessor != null) {
-            float[] weights = getFloatArray(weightsAccessor);
-            Value jsWeights = Float32Array.newInstance(weights);
             int itemSize = weightsAccessor.getElementType().getNumComponents();
-            Value weightsAttr = threeJS.getMember("Float32BufferAttribute").newInstance(jsWeights, itemSize);
+            Value weightsAttr = createAttribute(weightsAccessor, draco, "WEIGHTS_0", itemSize);
             geometry.invokeMember("setAttribute", "skinWeight", weightsAttr);
         }
         AccessorModel indicesAccessor = primitive.getIndices();
-        if (indicesAccessor != null) {
-            int[] indices = getIntArray(indicesAccessor);
-            int highestValue = Arrays.stream(indices).max().orElse(0);
-            Value typedArray = (highestValue > 65535 ? Uint32Array : Uint16Array).newInstance(indices);
-            Value indexAttr = threeJS.getMember("BufferAttribute").newInstance(typedArray, 1);
+        if (draco != null) {
+            DracoMesh mesh = draco.mesh;
+            Value buffer = ArrayBuffer.newInstance(mesh.indices);
+            Value typedArray = (mesh.indices32 ? Uint32Array : Uint16Array).newInstance(buffer);
+            geometry.invokeMember("setIndex", threeJS.getMember("BufferAttribute").newInstance(typedArray, 1));
+        } else if (indicesAccessor != null) {
+            Value indexAttr = createAccessorView(indicesAccessor, 1);
+            if (indexAttr == null) {
+                int[] indices = getIntArray(indicesAccessor);
+                int highestValue = Arrays.stream(indices).max().orElse(0);
+                Value typedArray = (highestValue > 65535 ? Uint32Array : Uint16Array).newInstance(indices);
+                indexAttr = threeJS.getMember("BufferAttribute").newInstance(typedArray, 1);
+            }
             geometry.invokeMember("setIndex", indexAttr);
         }
         geometry.invokeMember("computeBoundingSphere");
         geometry.invokeMember("computeBoundingBox");
+        return geometry;
+    }
 
-        // Decide Mesh or SkinnedMesh
-        boolean isSkinned = (jointsAccessor != null && weightsAccessor != null);
-        Value MeshClass = threeJS.getMember(isSkinned ? "SkinnedMesh" : "Mesh");
-        Value mesh = MeshClass.newInstance(geometry, createMaterial(primitive.getMaterialModel(), hasVertexColors));
-        if (meshModel.getName() != null) mesh.putMember("name", meshModel.getName());
+    /**
+     * Reads EXT_mesh_gpu_instancing node extensions into column-major per-instance matrices.
+     */
+    private Map<NodeModel, float[]> readGpuInstances(DecodedModel model) {
+        GlTF gltf = model.gltf;
+        GltfModel gltfModel = model.gltfModel;
+        if (gltf.getNodes() == null) return Map.of();
+        Map<NodeModel, float[]> instances = new HashMap<>();
+        List<NodeModel> nodeModels = gltfModel.getNodeModels();
+        for (int n = 0; n < nodeModels.size(); n++) {
+            Map<?, ?> instancing = getExtension(gltf.getNodes().get(n).getExtensions(), GPU_INSTANCING_EXTENSION);
+            if (instancing == null || !(instancing.get("attributes") instanceof Map)) continue;
+            Map<?, ?> attributes = (Map<?, ?>) instancing.get("attributes");
+            float[] translations = getInstanceAttribute(gltfModel, attributes, "TRANSLATION");
+            float[] rotations = getInstanceAttribute(gltfModel, attributes, "ROTATION");
+            float[] scales = getInstanceAttribute(gltfModel, attributes, "SCALE");
+            int count = translations != null ? translations.length / 3
+                : rotations != null ? rotations.length / 4
+                : scales != null ? scales.length / 3 : 0;
+            if (count == 0) continue;
 
-        return mesh;
+            float[] matrices = new float[count * 16];
+            for (int i = 0; i < count; i++) {
+                float px = 0, py = 0, pz = 0, x = 0, y = 0, z = 0, w = 1, sx = 1, sy = 1, sz = 1;
+                if (translations != null) { px = translations[i * 3]; py = translations[i * 3 + 1]; pz = translations[i * 3 + 2]; }
+                if (rotations != null) { x = rotations[i * 4]; y = rotations[i * 4 + 1]; z = rotations[i * 4 + 2]; w = rotations[i * 4 + 3]; }
+                if (scales != null) { sx = scales[i * 3]; sy = scales[i * 3 + 1]; sz = scales[i * 3 + 2]; }
+
+                // Same composition as Matrix4.compose
+                float x2 = x + x, y2 = y + y, z2 = z + z;
+                float xx = x * x2, xy = x * y2, xz = x * z2;
+                float yy = y * y2, yz = y * z2, zz = z * z2;
+                float wx = w * x2, wy = w * y2, wz = w * z2;
+                int o = i * 16;
+                matrices[o] = (1 - (yy + zz)) * sx;
+                matrices[o + 1] = (xy + wz) * sx;
+                matrices[o + 2] = (xz - wy) * sx;
+                matrices[o + 4] = (xy - wz) * sy;
+                matrices[o + 5] = (1 - (xx + zz)) * sy;
+                matrices[o + 6] = (yz + wx) * sy;
+                matrices[o + 8] = (xz + wy) * sz;
+                matrices[o + 9] = (yz - wx) * sz;
+                matrices[o + 10] = (1 - (xx + yy)) * sz;
+                matrices[o + 12] = px;
+                matrices[o + 13] = py;
+                matrices[o + 14] = pz;
+                matrices[o + 15] = 1;
+            }
+            instances.put(nodeModels.get(n), matrices);
+        }
+        return instances;
+    }
+
+    private float[] getInstanceAttribute(GltfModel gltfModel, Map<?, ?> attributes, String semantic) {
+        Object index = attributes.get(semantic);
+        if (!(index instanceof Number)) return null;
+        return toFloatArray(gltfModel.getAccessorModels().get(((Number) index).intValue()));
+    }
+
+    /**
+     * Groups the nodes of a scene by mesh, keeping only meshes used by more than one node.
+     * Skinned and GPU instanced nodes, and dynamic nodes with their subtrees, are left out
+     * since they can't share a static instance matrix.
+     */
+    private Map<MeshModel, List<NodeModel>> findSharedMeshNodes(SceneModel scene, Set<NodeModel> dynamicNodes) {
+        Map<MeshModel, List<NodeModel>> shared = new LinkedHashMap<>();
+        ArrayDeque<NodeModel> stack = new ArrayDeque<>(scene.getNodeModels());
+        while (!stack.isEmpty()) {
+            NodeModel node = stack.pop();
+            if (dynamicNodes.contains(node)) continue;
+            stack.addAll(node.getChildren());
+            if (node.getMeshModels().size() != 1 || node.getSkinModel() != null || gpuInstances.containsKey(node)) continue;
+            shared.computeIfAbsent(node.getMeshModels().get(0), mesh -> new ArrayList<>()).add(node);
+        }
+        shared.values().removeIf(nodes -> nodes.size() < 2);
+        return shared;
     }
     
-    private GltfModel loadGLB(String rel) throws Exception {
-        try (java.io.InputStream is = getClass().getResourceAsStream("/assets/" + rel)) {
-            if (is == null) throw new RuntimeException("GLB not found: /assets/" + rel);
-            
-            RawGltfData rawData = RawGltfDataReader.read(is);
-            ByteBuffer jsonBuffer = rawData.getJsonData();
-            byte[] jsonBytes = new byte[jsonBuffer.remaining()];
-            jsonBuffer.get(jsonBytes);
-            
-            GlTF gltf = new ObjectMapper().readValue(jsonBytes, GlTF.class);
-            ByteBuffer binaryData = rawData.getBinaryData();
-            if (binaryData != null) binaryData.rewind();
-            
-            return GltfModels.create(new GltfAssetV2(gltf, binaryData));
+    private void loadGLB(DecodedModel model) throws Exception {
+        String rel = model.rel;
+        // A private mapping per load, attribute views over it may be written to
+        ByteBuffer glb = AssetPack.map(rel);
+        if (glb == null) throw new RuntimeException("GLB not found: /assets/" + rel);
+        RawGltfData rawData = RawGltfDataReader.read(glb);
+        ByteBuffer jsonBuffer = rawData.getJsonData();
+        byte[] jsonBytes = new byte[jsonBuffer.remaining()];
+        jsonBuffer.get(jsonBytes);
+        
+        GlTF gltf = new ObjectMapper().readValue(jsonBytes, GlTF.class);
+        ByteBuffer binaryData = rawData.getBinaryData();
+        if (binaryData != null) {
+            binaryData.rewind();
+            binaryData = toDirect(binaryData);
+        }
+        binaryData = decodeMeshoptBufferViews(gltf, binaryData);
+        
+        model.gltf = gltf;
+        model.gltfModel = GltfModels.create(new GltfAssetV2(gltf, binaryData));
+        model.primitives = new ArrayList<>();
+        for (MeshModel meshModel : model.gltfModel.getMeshModels()) model.primitives.addAll(meshModel.getMeshPrimitiveModels());
+    }
+    
+    /**
+     * Decodes EXT_meshopt_compression buffer views into a copy of the binary chunk and points
+     * the views at the decoded bytes, so the rest of the loader only sees plain buffer views.
+     * The uncompressed fallback buffers are no longer referenced afterwards. Views decode in
+     * parallel on the decode pool, each into its own slice.
+     */
+    private ByteBuffer decodeMeshoptBufferViews(GlTF gltf, ByteBuffer binaryData) throws Exception {
+        List<BufferView> bufferViews = gltf.getBufferViews();
+        if (bufferViews == null) return binaryData;
+        List<BufferView> compressed = new ArrayList<>();
+        long decodedSize = 0;
+        for (BufferView bufferView : bufferViews) {
+            Map<?, ?> meshopt = getExtension(bufferView.getExtensions(), MESHOPT_EXTENSION);
+            if (meshopt == null) continue;
+            compressed.add(bufferView);
+            decodedSize += align4((long) getInt(meshopt, "count", 0) * getInt(meshopt, "byteStride", 0));
+        }
+        if (compressed.isEmpty()) return binaryData;
+        if (binaryData == null) throw new IllegalArgumentException("Meshopt data must be in the GLB binary chunk");
+
+        long totalSize = align4(binaryData.limit()) + decodedSize;
+        if (totalSize > Integer.MAX_VALUE) throw new IllegalArgumentException("Decoded meshopt data too large");
+        ByteBuffer decoded = ByteBuffer.allocateDirect((int) totalSize);
+        decoded.put(0, binaryData, 0, binaryData.limit());
+
+        int offset = (int) align4(binaryData.limit());
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (BufferView bufferView : compressed) {
+            Map<?, ?> meshopt = getExtension(bufferView.getExtensions(), MESHOPT_EXTENSION);
+            if (getInt(meshopt, "buffer", 0) != 0) throw new IllegalArgumentException("Meshopt data must be in the GLB binary chunk");
+            int count = getInt(meshopt, "count", 0);
+            int stride = getInt(meshopt, "byteStride", 0);
+            int length = count * stride;
+            ByteBuffer source = binaryData.slice(getInt(meshopt, "byteOffset", 0), getInt(meshopt, "byteLength", 0));
+            ByteBuffer target = decoded.slice(offset, length);
+            String mode = meshopt.get("mode").toString();
+            Object filter = meshopt.get("filter");
+            tasks.add(() -> {
+                MeshoptDecoder.decode(mode, filter == null ? null : filter.toString(), count, stride, source, target);
+                return null;
+            });
+
+            bufferView.setBuffer(0);
+            bufferView.setByteOffset(offset);
+            bufferView.setByteLength(length);
+            bufferView.removeExtensions(MESHOPT_EXTENSION);
+            offset += (int) align4(length);
+        }
+        runTasks(tasks, null);
+        gltf.getBuffers().get(0).setByteLength(decoded.capacity());
+        return decoded;
+    }
+
+    /**
+     * Returns the buffer's remaining bytes as a writable direct buffer, copying only when it
+     * isn't one already, so it can back a JS ArrayBuffer.
+     */
+    private static ByteBuffer toDirect(ByteBuffer data) {
+        if (data.isDirect() && !data.isReadOnly()) return data.slice();
+        ByteBuffer copy = ByteBuffer.allocateDirect(data.remaining());
+        copy.put(data.duplicate());
+        return copy.flip();
+    }
+
+    private static long align4(long value) {
+        return (value + 3) & ~3L;
+    }
+
+    private static int getInt(Map<?, ?> object, String key, int defaultValue) {
+        Object value = object.get(key);
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    /**
+     * Returns the named extension object of a glTF property, or null.
+     */
+    private static Map<?, ?> getExtension(Map<String, Object> extensions, String name) {
+        Object extension = extensions == null ? null : extensions.get(name);
+        return extension instanceof Map ? (Map<?, ?>) extension : null;
+    }
+    
+    private Value getMaterial(MaterialModel materialModel, boolean hasVertexColors) {
+        Map<MaterialModel, Value> cache = hasVertexColors ? vertexColorMaterials : materials;
+        Value material = cache.get(materialModel);
+        if (material == null) {
+            material = createMaterial(materialModel, hasVertexColors);
+            cache.put(materialModel, material);
         }
+        return material;
     }
     
     private Value createMaterial(MaterialModel materialModel, boolean hasVertexColors) {
@@ -388,9 +1089,53 @@ public class GLTFLoader {
         ByteBuffer imageData = imageModel.getImageData();
         if (imageData == null || imageData.remaining() == 0) return null;
         
+        // Images are shared by content, across materials and across models
+        PendingImage pending = pendingImages.get(imageModel);
+        String hash = pending != null ? pending.hash : AssetCache.hash(imageData);
+        String key = "image:" + hash + (sRGB ? ":srgb" : ":linear");
+        Value cached = assetCache.acquire(key);
+        if (cached != null) {
+            textureKeys.add(key);
+            return cached;
+        }
+        
+        Value texture = createTexture(imageModel, imageData, pending, sRGB);
+        if (texture == null) return null;
+        assetCache.put(key, texture, getTextureBytes(texture), List.of(), () -> texture.invokeMember("dispose"));
+        textureKeys.add(key);
+        return texture;
+    }
+    
+    /**
+     * Creates a texture from the decode stage's result when there is one, otherwise reads or
+     * decodes the image here.
+     */
+    private Value createTexture(ImageModel imageModel, ByteBuffer imageData, PendingImage pending, boolean sRGB) {
+        // Prefer the mipmapped, block-compressed version from the asset cooker
+        int imageIndex = imageModels.indexOf(imageModel);
+        if (imageIndex >= 0 && (pending == null || pending.decoded == null)) {
+            Value cooked = pending != null && pending.cooked != null
+                ? textureLoader.createCookedTexture(pending.cooked)
+                : textureLoader.loadCookedTexture(modelPath + ".images/" + imageIndex);
+            if (cooked != null) {
+                configureTexture(cooked, sRGB);
+                if (cooked.getMember("mipmaps").getArraySize() > 1) {
+                    cooked.putMember("minFilter", threeJS.getMember("LinearMipmapLinearFilter"));
+                }
+                return cooked;
+            }
+        }
+        
+        if (pending != null && pending.decoded != null) {
+            DecodedImage decoded = pending.decoded;
+            pending.decoded = null;
+            Value texture = textureLoader.createDataTexture(decoded);
+            configureTexture(texture, sRGB);
+            return texture;
+        }
+        
         byte[] imageBytes = new byte[imageData.remaining()];
-        imageData.get(imageBytes);
-        imageData.rewind();
+        imageData.duplicate().get(imageBytes);
         
         Value texture = textureLoader.createDataTextureFromImageBytes(imageBytes);
         if (texture != null) configureTexture(texture, sRGB);
@@ -409,6 +1154,85 @@ public class GLTFLoader {
         texture.putMember("needsUpdate", true);
     }
 
+    /**
+     * Clones a cached model. Geometries, materials, textures and animation clips are shared.
+     * Cloned bones keep the uuids of their sources, which the clips' track names refer to, and
+     * skinned meshes are rebound to skeletons made of the cloned bones.
+     */
+    private Value cloneGLTF(Value source) {
+        Value sourceScenes = source.getMember("scenes");
+        Value scenes = Array.newInstance();
+        for (long s = 0; s < sourceScenes.getArraySize(); s++) {
+            Value sourceScene = sourceScenes.getArrayElement(s);
+            Value scene = sourceScene.invokeMember("clone");
+            Map<String, Value> bones = new HashMap<>();
+            List<Value[]> skinnedMeshes = new ArrayList<>();
+            pairClonedNodes(sourceScene, scene, bones, skinnedMeshes);
+            for (Value[] pair : skinnedMeshes) {
+                Value skeleton = pair[0].getMember("skeleton");
+                Value sourceBones = skeleton.getMember("bones");
+                Value clonedBones = Array.newInstance();
+                for (long b = 0; b < sourceBones.getArraySize(); b++) {
+                    Value bone = sourceBones.getArrayElement(b);
+                    Value cloned = bones.get(bone.getMember("uuid").asString());
+                    clonedBones.invokeMember("push", cloned != null ? cloned : bone);
+                }
+                Value clonedSkeleton = threeJS.getMember("Skeleton").newInstance(clonedBones, skeleton.getMember("boneInverses"));
+                pair[1].invokeMember("bind", clonedSkeleton, pair[0].getMember("bindMatrix"));
+            }
+            scenes.invokeMember("push", scene);
+        }
+
+        Value gltfObject = Object.newInstance();
+        gltfObject.putMember("scene", scenes.getArrayElement(0));
+        gltfObject.putMember("animations", source.getMember("animations"));
+        gltfObject.putMember("scenes", scenes);
+        gltfObject.putMember("cameras", Array.newInstance());
+        return gltfObject;
+    }
+
+    private void pairClonedNodes(Value source, Value clone, Map<String, Value> bones, List<Value[]> skinnedMeshes) {
+        if (source.hasMember("isBone") && source.getMember("isBone").asBoolean()) {
+            clone.putMember("uuid", source.getMember("uuid"));
+            bones.put(source.getMember("uuid").asString(), clone);
+        }
+        if (source.hasMember("isSkinnedMesh") && source.getMember("isSkinnedMesh").asBoolean()) {
+            skinnedMeshes.add(new Value[] { source, clone });
+        }
+        Value sourceChildren = source.getMember("children");
+        Value cloneChildren = clone.getMember("children");
+        for (long i = 0; i < sourceChildren.getArraySize(); i++) {
+            pairClonedNodes(sourceChildren.getArrayElement(i), cloneChildren.getArrayElement(i), bones, skinnedMeshes);
+        }
+    }
+
+    private long getGeometryBytes(Value geometry) {
+        long bytes = 0;
+        Value attributes = geometry.getMember("attributes");
+        for (String name : attributes.getMemberKeys()) bytes += getByteLength(attributes.getMember(name).getMember("array"));
+        Value index = geometry.getMember("index");
+        if (index != null && !index.isNull()) bytes += getByteLength(index.getMember("array"));
+        return bytes;
+    }
+
+    private long getTextureBytes(Value texture) {
+        long bytes = 0;
+        Value mipmaps = texture.getMember("mipmaps");
+        if (mipmaps != null && mipmaps.hasArrayElements()) {
+            for (long i = 0; i < mipmaps.getArraySize(); i++) bytes += getByteLength(mipmaps.getArrayElement(i).getMember("data"));
+        }
+        Value image = texture.getMember("image");
+        if (bytes == 0 && image != null && image.hasMember("width") && image.hasMember("height")) {
+            bytes = image.getMember("width").asLong() * image.getMember("height").asLong() * 4;
+        }
+        return bytes;
+    }
+
+    private static long getByteLength(Value view) {
+        if (view == null || view.isNull() || !view.hasMember("byteLength")) return 0;
+        return view.getMember("byteLength").asLong();
+    }
+
     /*
      * Returns the skeleton reference node.
      */
@@ -440,20 +1264,134 @@ public class GLTFLoader {
     }
     
     /**
-     * Returns accessor data as a 1D float array grouped per element.
+     * Returns a BufferAttribute for a primitive attribute. Accessors are viewed in place in the
+     * binary buffer when possible. Decoded Draco data and float accessors otherwise become
+     * Float32 attributes, integer accessors (KHR_mesh_quantization) keep their component type
+     * and normalized flag instead of being widened to floats.
+     */
+    private Value createAttribute(AccessorModel accessor, DracoPrimitive draco, String semantic, int itemSize) {
+        DracoMesh.Attribute dracoAttribute = draco != null ? draco.attribute(semantic) : null;
+        if (dracoAttribute != null) {
+            Value buffer = ArrayBuffer.newInstance(dracoAttribute.data);
+            Value typedArray = (dracoAttribute.floating ? Float32Array : Uint16Array).newInstance(buffer);
+            return threeJS.getMember("BufferAttribute").newInstance(typedArray, itemSize, false);
+        }
+        Value view = createAccessorView(accessor, itemSize);
+        if (view != null) return view;
+        if (accessor.getComponentType() == 5126) { // FLOAT
+            Value array = Float32Array.newInstance(getFloatArray(accessor));
+            return threeJS.getMember("BufferAttribute").newInstance(array, itemSize, false);
+        }
+        Value typedArray = getTypedArrayClass(accessor.getComponentType()).newInstance(getIntComponentsArray(accessor));
+        return threeJS.getMember("BufferAttribute").newInstance(typedArray, itemSize, accessor.isNormalized());
+    }
+
+    /**
+     * Returns an attribute viewing the accessor in the binary buffer without copying, or null
+     * when it isn't a plain aligned view of it (sparse, or in another buffer). Accessors in
+     * strided buffer views become InterleavedBufferAttributes over one shared InterleavedBuffer
+     * per buffer view and component type.
+     */
+    private Value createAccessorView(AccessorModel accessor, int itemSize) {
+        BufferViewModel bufferView = accessor.getBufferViewModel();
+        if (binaryBuffer == null || bufferView == null || bufferView.getBufferModel() != binaryBufferModel) return null;
+        int type = accessor.getComponentType();
+        int componentSize = accessor.getComponentSizeInBytes();
+        int stride = accessor.getByteStride();
+        int viewOffset = bufferView.getByteOffset();
+        if (viewOffset % componentSize != 0 || accessor.getByteOffset() % componentSize != 0) return null;
+
+        if (stride == accessor.getElementSizeInBytes()) {
+            int length = accessor.getCount() * accessor.getElementType().getNumComponents();
+            Value array = getTypedArrayClass(type).newInstance(binaryBuffer, viewOffset + accessor.getByteOffset(), length);
+            return threeJS.getMember("BufferAttribute").newInstance(array, itemSize, accessor.isNormalized());
+        }
+        if (stride % componentSize != 0) return null;
+
+        Map<Integer, Value> byType = interleavedBuffers.computeIfAbsent(bufferView, view -> new HashMap<>());
+        if (!byType.containsKey(type)) {
+            // A view too short for its accessors is copied instead (null marks it)
+            int length = getInterleavedLength(bufferView, type, stride);
+            Value created = null;
+            if (length <= bufferView.getByteLength()) {
+                Value array = getTypedArrayClass(type).newInstance(binaryBuffer, viewOffset, length / componentSize);
+                created = threeJS.getMember("InterleavedBuffer").newInstance(array, stride / componentSize);
+            }
+            byType.put(type, created);
+        }
+        Value interleaved = byType.get(type);
+        if (interleaved == null) return null;
+        return threeJS.getMember("InterleavedBufferAttribute").newInstance(
+            interleaved, itemSize, accessor.getByteOffset() / componentSize, accessor.isNormalized());
+    }
+
+    /**
+     * Bytes of a strided view read by its accessors of one component type, in whole strides.
+     * The last element need not be padded to the stride, so the view can be shorter than
+     * count * stride and its length alone would drop the last vertex.
+     */
+    private int getInterleavedLength(BufferViewModel bufferView, int type, int stride) {
+        long end = 0;
+        for (AccessorModel other : accessorModels) {
+            if (other.getBufferViewModel() != bufferView || other.getComponentType() != type || other.getCount() == 0) continue;
+            end = Math.max(end, other.getByteOffset() + (long) stride * (other.getCount() - 1) + other.getElementSizeInBytes());
+        }
+        long length = (end + stride - 1) / stride * stride;
+        return (int) Math.min(length, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the JavaScript typed array class matching a component type.
+     */
+    private Value getTypedArrayClass(int componentType) {
+        switch (componentType) {
+            case 5120: return Int8Array; // BYTE
+            case 5121: return Uint8Array; // UNSIGNED_BYTE
+            case 5122: return Int16Array; // SHORT
+            case 5123: return Uint16Array; // UNSIGNED_SHORT
+            case 5125: return Uint32Array; // UNSIGNED_INT
+            case 5126: return Float32Array; // FLOAT
+            default: throw new IllegalArgumentException("Unsupported accessor component type: " + componentType);
+        }
+    }
+
+    /**
+     * Returns accessor data as a 1D float array grouped per element. Float data is copied in
+     * bulk, normalized integer data is dequantized.
      * Shape: [numElements*numComponentsPerElement]
      */
     private float[] getFloatArray(AccessorModel accessor) {
-        AccessorFloatData afd = AccessorDatas.createFloat(accessor);
-        int elements = afd.getNumElements();
-        int comps = afd.getNumComponentsPerElement();
-        float[] out = new float[elements * comps];
-        int idx = 0;
-        for (int e = 0; e < elements; e++) {
-            for (int c = 0; c < comps; c++) {
-                out[idx++] = afd.get(e, c);
-            }
+        float[] converted = floatArrays.get(accessor);
+        return converted != null ? converted : toFloatArray(accessor);
+    }
+    
+    /**
+     * Converts accessor data to floats without touching per-load state, for the decode stage.
+     */
+    private float[] toFloatArray(AccessorModel accessor) {
+        int type = accessor.getComponentType();
+        int total = accessor.getCount() * accessor.getElementType().getNumComponents();
+        float[] out = new float[total];
+        if (type == 5126) { // FLOAT
+            ByteBuffer buf = accessor.getAccessorData().createByteBuffer();
+            buf.order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            buf.asFloatBuffer().get(out);
+            return out;
+        }
+        int[] values = getIntComponentsArray(accessor);
+        if (!accessor.isNormalized()) {
+            for (int i = 0; i < total; i++) out[i] = values[i];
+            return out;
+        }
+        float scale;
+        switch (type) {
+            case 5120: scale = 1.0f / 127.0f; break; // BYTE
+            case 5121: scale = 1.0f / 255.0f; break; // UNSIGNED_BYTE
+            case 5122: scale = 1.0f / 32767.0f; break; // SHORT
+            case 5123: scale = 1.0f / 65535.0f; break; // UNSIGNED_SHORT
+            default: scale = 1.0f; break;
         }
+        for (int i = 0; i < total; i++) out[i] = Math.max(values[i] * scale, -1.0f);
         return out;
     }
     
@@ -603,4 +1541,88 @@ public class GLTFLoader {
 
         return clips;
     }
+
+    /**
+     * A model after the decode stage, everything the build stage needs.
+     */
+    private static class DecodedModel {
+        final String filePath;
+        final String rel;
+        final boolean instanceSharedMeshes;
+        final String modelKey;
+        GlTF gltf;
+        GltfModel gltfModel;
+        List<MeshPrimitiveModel> primitives = List.of();
+        Map<ImageModel, PendingImage> pendingImages = Map.of();
+        Map<AccessorModel, float[]> floatArrays = Map.of();
+        Map<MeshPrimitiveModel, DracoPrimitive> dracoPrimitives = Map.of();
+        Map<NodeModel, float[]> gpuInstances = Map.of();
+        int decodeTasks;
+        long start, parsed, decoded;
+        final GLTFLoadEvent event = new GLTFLoadEvent();
+
+        DecodedModel(String filePath, String rel, boolean instanceSharedMeshes, String modelKey) {
+            this.filePath = filePath;
+            this.rel = rel;
+            this.instanceSharedMeshes = instanceSharedMeshes;
+            this.modelKey = modelKey;
+        }
+
+        // Frees decoded pixels no texture took over
+        void free() {
+            for (PendingImage pending : pendingImages.values()) {
+                if (pending.decoded != null) pending.decoded.free();
+                pending.decoded = null;
+            }
+        }
+    }
+
+    /**
+     * An async load in its build stage. next is the next primitive to build, -1 before the
+     * build has started.
+     */
+    private static class PendingBuild {
+        final DecodedModel model;
+        final Value[] settle;
+        final Value onProgress;
+        int next = -1;
+
+        PendingBuild(DecodedModel model, Value[] settle, Value onProgress) {
+            this.model = model;
+            this.settle = settle;
+            this.onProgress = onProgress;
+        }
+    }
+
+    /**
+     * Decode stage result for an embedded image: its content hash, and either the cooked
+     * image or the decoded pixels (both null when it is cached or STB can't decode it).
+     */
+    private static class PendingImage {
+        final String hash;
+        CompressedImage cooked;
+        DecodedImage decoded;
+
+        PendingImage(String hash) {
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Decoded Draco primitive with the glTF attribute semantics mapped to Draco attribute ids.
+     */
+    private static class DracoPrimitive {
+        final DracoMesh mesh;
+        final Map<String, Integer> attributeIds;
+
+        DracoPrimitive(DracoMesh mesh, Map<String, Integer> attributeIds) {
+            this.mesh = mesh;
+            this.attributeIds = attributeIds;
+        }
+
+        DracoMesh.Attribute attribute(String semantic) {
+            Integer id = attributeIds.get(semantic);
+            return id != null ? mesh.attribute(id) : null;
+        }
+    }
 }
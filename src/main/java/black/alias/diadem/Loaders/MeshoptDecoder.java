@@ -0,0 +1,370 @@
+package black.alias.diadem.Loaders;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Decoder for EXT_meshopt_compression buffer views: the meshoptimizer vertex codec, the
+ * triangle and sequence index codecs, and the octahedral, quaternion and exponential filters
+ * applied on top of decoded attributes.
+ */
+final class MeshoptDecoder {
+	private static final int VERTEX_HEADER = 0xA0;
+	private static final int INDEX_HEADER = 0xE0;
+	private static final int SEQUENCE_HEADER = 0xD0;
+
+	private static final int BYTE_GROUP_SIZE = 16;
+	private static final int BYTE_GROUP_DECODE_LIMIT = 24;
+	private static final int VERTEX_BLOCK_SIZE_BYTES = 8192;
+	private static final int VERTEX_BLOCK_MAX_SIZE = 256;
+	private static final int TAIL_MAX_SIZE = 32;
+
+	private MeshoptDecoder() {}
+
+	/**
+	 * Decodes a compressed buffer view into target, which must hold count * stride bytes.
+	 * Mode and filter are the strings of the glTF extension object.
+	 */
+	static void decode(String mode, String filter, int count, int stride, ByteBuffer source, ByteBuffer target) {
+		ByteBuffer src = source.slice().order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer dst = target.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (dst.remaining() < (long) count * stride) throw new IllegalArgumentException("Meshopt target buffer too small");
+		switch (mode) {
+			case "ATTRIBUTES":
+				decodeVertexBuffer(dst, count, stride, src);
+				break;
+			case "TRIANGLES":
+				decodeIndexBuffer(dst, count, stride, src);
+				break;
+			case "INDICES":
+				decodeIndexSequence(dst, count, stride, src);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown meshopt mode: " + mode);
+		}
+		if (filter == null || filter.equals("NONE")) return;
+		switch (filter) {
+			case "OCTAHEDRAL":
+				decodeFilterOct(dst, count, stride);
+				break;
+			case "QUATERNION":
+				decodeFilterQuat(dst, count, stride);
+				break;
+			case "EXPONENTIAL":
+				decodeFilterExp(dst, count, stride);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown meshopt filter: " + filter);
+		}
+	}
+
+	/**
+	 * Vertex codec, bitstream version 0. Vertices are split into blocks, each byte of the
+	 * vertex is delta encoded against the previous vertex and stored as a transposed run of
+	 * groups of 16 bytes with 0, 2, 4 or 8 bits per value.
+	 */
+	static void decodeVertexBuffer(ByteBuffer target, int count, int vertexSize, ByteBuffer data) {
+		if (vertexSize <= 0 || vertexSize > 256 || vertexSize % 4 != 0) {
+			throw new IllegalArgumentException("Invalid meshopt vertex size: " + vertexSize);
+		}
+		int end = data.limit();
+		if (end < 1 + vertexSize) throw malformed("vertex");
+		int header = data.get(0) & 0xFF;
+		if ((header & 0xF0) != VERTEX_HEADER) throw malformed("vertex");
+		if ((header & 0x0F) > 0) throw new IllegalArgumentException("Unsupported meshopt vertex version: " + (header & 0x0F));
+
+		byte[] lastVertex = new byte[vertexSize];
+		data.get(end - vertexSize, lastVertex);
+
+		int blockSize = Math.min((VERTEX_BLOCK_SIZE_BYTES / vertexSize) & ~(BYTE_GROUP_SIZE - 1), VERTEX_BLOCK_MAX_SIZE);
+		byte[] buffer = new byte[VERTEX_BLOCK_MAX_SIZE];
+		byte[] transposed = new byte[VERTEX_BLOCK_SIZE_BYTES];
+		int pos = 1;
+		for (int vertexOffset = 0; vertexOffset < count; vertexOffset += blockSize) {
+			int blockCount = Math.min(count - vertexOffset, blockSize);
+			int alignedCount = (blockCount + BYTE_GROUP_SIZE - 1) & ~(BYTE_GROUP_SIZE - 1);
+			for (int k = 0; k < vertexSize; k++) {
+				pos = decodeBytes(data, pos, end, buffer, alignedCount);
+				int p = lastVertex[k];
+				for (int i = 0, offset = k; i < blockCount; i++, offset += vertexSize) {
+					int encoded = buffer[i] & 0xFF;
+					p = (byte) ((-(encoded & 1) ^ (encoded >>> 1)) + p);
+					transposed[offset] = (byte) p;
+				}
+			}
+			target.put(vertexOffset * vertexSize, transposed, 0, blockCount * vertexSize);
+			System.arraycopy(transposed, (blockCount - 1) * vertexSize, lastVertex, 0, vertexSize);
+		}
+		int tailSize = Math.max(vertexSize, TAIL_MAX_SIZE);
+		if (end - pos != tailSize) throw malformed("vertex");
+	}
+
+	private static int decodeBytes(ByteBuffer data, int pos, int end, byte[] buffer, int size) {
+		int headerSize = (size / BYTE_GROUP_SIZE + 3) / 4;
+		if (end - pos < headerSize) throw malformed("vertex");
+		int header = pos;
+		pos += headerSize;
+		for (int i = 0; i < size; i += BYTE_GROUP_SIZE) {
+			if (end - pos < BYTE_GROUP_DECODE_LIMIT) throw malformed("vertex");
+			int group = i / BYTE_GROUP_SIZE;
+			int bitsLog2 = ((data.get(header + group / 4) & 0xFF) >> ((group % 4) * 2)) & 3;
+			pos = decodeBytesGroup(data, pos, buffer, i, bitsLog2);
+		}
+		return pos;
+	}
+
+	/**
+	 * Unpacks 16 values of 0, 2, 4 or 8 bits, most significant bits first. A value with all
+	 * bits set is a sentinel for a full byte stored after the packed bits.
+	 */
+	private static int decodeBytesGroup(ByteBuffer data, int pos, byte[] buffer, int offset, int bitsLog2) {
+		switch (bitsLog2) {
+			case 0:
+				for (int i = 0; i < BYTE_GROUP_SIZE; i++) buffer[offset + i] = 0;
+				return pos;
+			case 3:
+				data.get(pos, buffer, offset, BYTE_GROUP_SIZE);
+				return pos + BYTE_GROUP_SIZE;
+			default:
+				int bits = 1 << bitsLog2;
+				int sentinel = (1 << bits) - 1;
+				int packed = BYTE_GROUP_SIZE * bits / 8;
+				int var = pos + packed;
+				for (int i = 0; i < BYTE_GROUP_SIZE; i++) {
+					int b = data.get(pos + i * bits / 8) & 0xFF;
+					int value = (b >> (8 - bits - (i * bits) % 8)) & sentinel;
+					if (value == sentinel) buffer[offset + i] = data.get(var++);
+					else buffer[offset + i] = (byte) value;
+				}
+				return var;
+		}
+	}
+
+	/**
+	 * Triangle index codec, versions 0 and 1. Each triangle is one code byte that references
+	 * recent edges and vertices through small FIFOs, with free indices varint delta encoded.
+	 */
+	static void decodeIndexBuffer(ByteBuffer target, int count, int indexSize, ByteBuffer data) {
+		if (count % 3 != 0 || (indexSize != 2 && indexSize != 4)) throw malformed("index");
+		int size = data.limit();
+		if (size < 1 + count / 3 + 16) throw malformed("index");
+		int header = data.get(0) & 0xFF;
+		if ((header & 0xF0) != INDEX_HEADER) throw malformed("index");
+		int version = header & 0x0F;
+		if (version > 1) throw new IllegalArgumentException("Unsupported meshopt index version: " + version);
+
+		int[] edgeFifo = new int[32];
+		int[] vertexFifo = new int[16];
+		Arrays.fill(edgeFifo, -1);
+		Arrays.fill(vertexFifo, -1);
+		int edgeOffset = 0;
+		int vertexOffset = 0;
+		int next = 0;
+		int last = 0;
+		int fecMax = version >= 1 ? 13 : 15;
+
+		int code = 1;
+		int[] cursor = { code + count / 3 };
+		int safeEnd = size - 16;
+		for (int i = 0; i < count; i += 3) {
+			if (cursor[0] > safeEnd) throw malformed("index");
+			int codeTri = data.get(code++) & 0xFF;
+			int a, b, c;
+			if (codeTri < 0xF0) {
+				int fe = codeTri >> 4;
+				int edge = ((edgeOffset - 1 - fe) & 15) * 2;
+				a = edgeFifo[edge];
+				b = edgeFifo[edge + 1];
+				int fec = codeTri & 15;
+				if (fec < fecMax) {
+					c = fec == 0 ? next++ : vertexFifo[(vertexOffset - 1 - fec) & 15];
+					vertexFifo[vertexOffset] = c;
+					if (fec == 0) vertexOffset = (vertexOffset + 1) & 15;
+				} else {
+					// 13 and 14 are deltas of -1 and +1 from the last free index
+					c = last = fec != 15 ? last + (fec - (fec ^ 3)) : decodeIndex(data, cursor, last);
+					vertexFifo[vertexOffset] = c;
+					vertexOffset = (vertexOffset + 1) & 15;
+				}
+				writeTriangle(target, i, indexSize, a, b, c);
+				edgeOffset = pushEdge(edgeFifo, edgeOffset, c, b);
+				edgeOffset = pushEdge(edgeFifo, edgeOffset, a, c);
+				continue;
+			}
+			int feb;
+			int fec;
+			if (codeTri < 0xFE) {
+				// Common auxiliary codes come from the 16 byte table at the end of the stream
+				int codeAux = data.get(safeEnd + (codeTri & 15)) & 0xFF;
+				feb = codeAux >> 4;
+				fec = codeAux & 15;
+				a = next++;
+				b = feb == 0 ? next++ : vertexFifo[(vertexOffset - feb) & 15];
+				c = fec == 0 ? next++ : vertexFifo[(vertexOffset - fec) & 15];
+			} else {
+				int codeAux = data.get(cursor[0]++) & 0xFF;
+				int fea = codeTri == 0xFE ? 0 : 15;
+				feb = codeAux >> 4;
+				fec = codeAux & 15;
+				if (codeAux == 0) next = 0;
+				a = fea == 0 ? next++ : 0;
+				b = feb == 0 ? next++ : vertexFifo[(vertexOffset - feb) & 15];
+				c = fec == 0 ? next++ : vertexFifo[(vertexOffset - fec) & 15];
+				if (fea == 15) a = last = decodeIndex(data, cursor, last);
+				if (feb == 15) b = last = decodeIndex(data, cursor, last);
+				if (fec == 15) c = last = decodeIndex(data, cursor, last);
+			}
+			writeTriangle(target, i, indexSize, a, b, c);
+			vertexFifo[vertexOffset] = a;
+			vertexOffset = (vertexOffset + 1) & 15;
+			vertexFifo[vertexOffset] = b;
+			if (feb == 0 || feb == 15) vertexOffset = (vertexOffset + 1) & 15;
+			vertexFifo[vertexOffset] = c;
+			if (fec == 0 || fec == 15) vertexOffset = (vertexOffset + 1) & 15;
+			edgeOffset = pushEdge(edgeFifo, edgeOffset, b, a);
+			edgeOffset = pushEdge(edgeFifo, edgeOffset, c, b);
+			edgeOffset = pushEdge(edgeFifo, edgeOffset, a, c);
+		}
+		if (cursor[0] != safeEnd) throw malformed("index");
+	}
+
+	/**
+	 * Index sequence codec, versions 0 and 1 (the same format). Each index is a varint delta against one of two
+	 * baselines, selected by the low bit.
+	 */
+	static void decodeIndexSequence(ByteBuffer target, int count, int indexSize, ByteBuffer data) {
+		if (indexSize != 2 && indexSize != 4) throw malformed("index sequence");
+		int size = data.limit();
+		if (size < 1 + count + 4) throw malformed("index sequence");
+		int header = data.get(0) & 0xFF;
+		if ((header & 0xF0) != SEQUENCE_HEADER) throw malformed("index sequence");
+		if ((header & 0x0F) > 1) throw new IllegalArgumentException("Unsupported meshopt sequence version: " + (header & 0x0F));
+
+		int[] cursor = { 1 };
+		int safeEnd = size - 4;
+		int[] last = new int[2];
+		for (int i = 0; i < count; i++) {
+			if (cursor[0] >= safeEnd) throw malformed("index sequence");
+			int v = decodeVByte(data, cursor);
+			int baseline = v & 1;
+			v >>>= 1;
+			int index = last[baseline] + ((v >>> 1) ^ -(v & 1));
+			last[baseline] = index;
+			writeIndex(target, i, indexSize, index);
+		}
+		if (cursor[0] != safeEnd) throw malformed("index sequence");
+	}
+
+	private static int pushEdge(int[] fifo, int offset, int a, int b) {
+		fifo[offset * 2] = a;
+		fifo[offset * 2 + 1] = b;
+		return (offset + 1) & 15;
+	}
+
+	private static void writeTriangle(ByteBuffer target, int i, int indexSize, int a, int b, int c) {
+		writeIndex(target, i, indexSize, a);
+		writeIndex(target, i + 1, indexSize, b);
+		writeIndex(target, i + 2, indexSize, c);
+	}
+
+	private static void writeIndex(ByteBuffer target, int i, int indexSize, int index) {
+		if (indexSize == 2) target.putShort(i * 2, (short) index);
+		else target.putInt(i * 4, index);
+	}
+
+	private static int decodeIndex(ByteBuffer data, int[] cursor, int last) {
+		int v = decodeVByte(data, cursor);
+		return last + ((v >>> 1) ^ -(v & 1));
+	}
+
+	private static int decodeVByte(ByteBuffer data, int[] cursor) {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = data.get(cursor[0]++) & 0xFF;
+			result |= (b & 0x7F) << shift;
+			if (b < 128) return result;
+		}
+		return result;
+	}
+
+	/**
+	 * Octahedral filter: 4 components of 8 or 16 bits, x and y are octahedral coordinates and
+	 * z holds the value encoding 1.0. Rewrites x, y and z as a normalized vector.
+	 */
+	private static void decodeFilterOct(ByteBuffer data, int count, int stride) {
+		if (stride != 4 && stride != 8) throw new IllegalArgumentException("Invalid meshopt octahedral stride: " + stride);
+		boolean shorts = stride == 8;
+		float max = shorts ? 32767.0f : 127.0f;
+		int component = stride / 4;
+		for (int i = 0; i < count; i++) {
+			int base = i * stride;
+			float x = shorts ? data.getShort(base) : data.get(base);
+			float y = shorts ? data.getShort(base + component) : data.get(base + component);
+			float z = (shorts ? data.getShort(base + 2 * component) : data.get(base + 2 * component)) - Math.abs(x) - Math.abs(y);
+
+			// Fold the lower hemisphere back
+			float t = Math.min(z, 0.0f);
+			x += x >= 0.0f ? t : -t;
+			y += y >= 0.0f ? t : -t;
+
+			float s = max / (float) Math.sqrt(x * x + y * y + z * z);
+			int xf = (int) (x * s + (x >= 0.0f ? 0.5f : -0.5f));
+			int yf = (int) (y * s + (y >= 0.0f ? 0.5f : -0.5f));
+			int zf = (int) (z * s + (z >= 0.0f ? 0.5f : -0.5f));
+			if (shorts) {
+				data.putShort(base, (short) xf);
+				data.putShort(base + 2, (short) yf);
+				data.putShort(base + 4, (short) zf);
+			} else {
+				data.put(base, (byte) xf);
+				data.put(base + 1, (byte) yf);
+				data.put(base + 2, (byte) zf);
+			}
+		}
+	}
+
+	/**
+	 * Quaternion filter: three smallest components as 16 bit values, with the index of the
+	 * dropped component and the encoding scale in the fourth.
+	 */
+	private static void decodeFilterQuat(ByteBuffer data, int count, int stride) {
+		if (stride != 8) throw new IllegalArgumentException("Invalid meshopt quaternion stride: " + stride);
+		float scale = 1.0f / (float) Math.sqrt(2.0);
+		for (int i = 0; i < count; i++) {
+			int base = i * 8;
+			int packed = data.getShort(base + 6);
+			float ss = scale / (packed | 3);
+			float x = data.getShort(base) * ss;
+			float y = data.getShort(base + 2) * ss;
+			float z = data.getShort(base + 4) * ss;
+			float ww = 1.0f - x * x - y * y - z * z;
+			float w = (float) Math.sqrt(Math.max(ww, 0.0f));
+
+			int qc = packed & 3;
+			data.putShort(base + ((qc + 1) & 3) * 2, (short) (int) (x * 32767.0f + (x >= 0.0f ? 0.5f : -0.5f)));
+			data.putShort(base + ((qc + 2) & 3) * 2, (short) (int) (y * 32767.0f + (y >= 0.0f ? 0.5f : -0.5f)));
+			data.putShort(base + ((qc + 3) & 3) * 2, (short) (int) (z * 32767.0f + (z >= 0.0f ? 0.5f : -0.5f)));
+			data.putShort(base + (qc & 3) * 2, (short) (int) (w * 32767.0f + 0.5f));
+		}
+	}
+
+	/**
+	 * Exponential filter: every 32 bit value is a 24 bit signed mantissa and an 8 bit signed
+	 * exponent, rewritten as a float.
+	 */
+	private static void decodeFilterExp(ByteBuffer data, int count, int stride) {
+		if (stride % 4 != 0) throw new IllegalArgumentException("Invalid meshopt exponential stride: " + stride);
+		int values = count * (stride / 4);
+		for (int i = 0; i < values; i++) {
+			int v = data.getInt(i * 4);
+			int e = v >> 24;
+			int m = (v << 8) >> 8;
+			data.putFloat(i * 4, m * Float.intBitsToFloat((e + 127) << 23));
+		}
+	}
+
+	private static IllegalArgumentException malformed(String codec) {
+		return new IllegalArgumentException("Malformed meshopt " + codec + " data");
+	}
+}
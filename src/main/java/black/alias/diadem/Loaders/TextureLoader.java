@@ -2,23 +2,41 @@ package black.alias.diadem.Loaders;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.awt.image.BufferedImage;
+import java.lang.ref.Cleaner;
 import javax.imageio.ImageIO;
 import org.graalvm.polyglot.Value;
 import org.graalvm.polyglot.Context;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.stb.STBImage;
-import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.system.MemoryUtil;
 
 /**
  * Dedicated texture loading utility for creating Three.js DataTextures from image files
  * Loads exclusively from classpath resources under /assets/
  */
 public class TextureLoader {
+	// Frees decoder-owned pixel memory once JS no longer references it
+	private static final Cleaner cleaner = Cleaner.create();
+	// Below this many components a half-float conversion isn't worth splitting across threads
+	private static final int PARALLEL_THRESHOLD = 1 << 16;
+	// Output of the build-time asset cooker, inside /assets
+	private static final String COOKED = ".cooked/";
+	
 	private final Context jsContext;
 	private final Value threeJS;
+	private Value wrapPixels;
 	
 	public TextureLoader(Context jsContext, Value threeJS) {
 		this.jsContext = jsContext;
@@ -29,111 +47,163 @@ public class TextureLoader {
 	 * Load HDR texture (.hdr) using STB and create a Three.js DataTexture with HalfFloatType (RGB)
 	 */
 	public Value loadHDRTexture(String texturePath) {
-		try (MemoryStack stack = MemoryStack.stackPush()) {
-			ByteBuffer fileBytes = readFileToByteBuffer(texturePath);
-			if (fileBytes == null) {
+		try {
+			DecodedImage image = decodeHDR(texturePath);
+			if (image == null) {
 				System.err.println("HDR file not found: " + texturePath);
 				return null;
 			}
+			return createDataTexture(image);
+		} catch (Exception e) {
+			System.err.println("Error loading HDR texture: " + texturePath + " - " + e.getMessage());
+			e.printStackTrace();
+			return null;
+		}
+	}
 
-			// Query image info
-			var w = stack.mallocInt(1);
-			var h = stack.mallocInt(1);
-			var comp = stack.mallocInt(1);
-			if (!STBImage.stbi_info_from_memory(fileBytes, w, h, comp)) {
-				System.err.println("stbi_info_from_memory failed: " + STBImage.stbi_failure_reason());
+	/**
+	 * Load a KTX2 or DDS file as a Three.js CompressedTexture. The mip chain is uploaded as-is
+	 * through compressedTexImage2D, so the format must be supported by the GPU; there is no
+	 * transcoding fallback.
+	 */
+	public Value loadCompressedTexture(String texturePath) {
+		try {
+			ByteBuffer fileBytes = readFileToByteBuffer(texturePath);
+			if (fileBytes == null) {
+				System.err.println("Compressed texture not found: " + texturePath);
 				return null;
 			}
-
-			// Load as float RGB data
-			FloatBuffer hdrData = STBImage.stbi_loadf_from_memory(fileBytes, w, h, comp, 3);
-			if (hdrData == null) {
-				System.err.println("stbi_loadf_from_memory failed: " + STBImage.stbi_failure_reason());
+			CompressedImage image = CompressedTextureReader.read(fileBytes);
+			if (!CompressedTextureReader.supports(image)) {
+				System.err.println("Warning: GPU does not support the compression format of " + texturePath
+					+ " (0x" + Integer.toHexString(image.format) + ")");
 				return null;
 			}
-			int width = w.get(0);
-			int height = h.get(0);
+			return createCompressedTexture(image);
+		} catch (Exception e) {
+			System.err.println("Error loading compressed texture: " + texturePath + " - " + e.getMessage());
+			return null;
+		}
+	}
 
-			try {
-				// Convert float32 to 16-bit half floats as per Three.js RGBELoader pattern
-				int numPixels = width * height;
-				int[] halfFloatData = new int[numPixels * 3]; // RGB
-				for (int i = 0; i < numPixels; i++) {
-					float r = hdrData.get(i * 3);
-					float g = hdrData.get(i * 3 + 1);
-					float b = hdrData.get(i * 3 + 2);
-					halfFloatData[i * 3] = floatToHalf(r);
-					halfFloatData[i * 3 + 1] = floatToHalf(g);
-					halfFloatData[i * 3 + 2] = floatToHalf(b);
-				}
+	/**
+	 * Load the build-time cooked version of an asset (see AssetCooker), e.g. "textures/a.png" or
+	 * "models/b.glb.images/0". Returns null when there is none or the GPU cannot sample its
+	 * format, so the caller can fall back to the original.
+	 */
+	public Value loadCookedTexture(String assetPath) {
+		CompressedImage image = readCookedImage(assetPath);
+		return image != null ? createCookedTexture(image) : null;
+	}
+
+	/**
+	 * Reads the cooked version of an asset without touching GL or JS, so loaders can call it
+	 * from worker threads. Returns null when there is none.
+	 */
+	CompressedImage readCookedImage(String assetPath) {
+		try {
+			ByteBuffer fileBytes = readFileToByteBuffer(COOKED + assetPath + ".ktx2");
+			return fileBytes != null ? CompressedTextureReader.read(fileBytes) : null;
+		} catch (Exception e) {
+			System.err.println("Warning: Ignoring cooked texture for " + assetPath + ": " + e.getMessage());
+			return null;
+		}
+	}
 
-				// Create Uint16Array in JS and then DataTexture(HalfFloatType, RGB)
-				Value Uint16Array = jsContext.eval("js", "Uint16Array");
-				Value imageData = Uint16Array.newInstance(halfFloatData);
+	/**
+	 * Creates the texture for a cooked image read by readCookedImage, or null when the GPU
+	 * cannot sample its format. GL thread only.
+	 */
+	Value createCookedTexture(CompressedImage image) {
+		return CompressedTextureReader.supports(image) ? createCompressedTexture(image) : null;
+	}
 
-				Value DataTexture = threeJS.getMember("DataTexture");
-				Value HalfFloatType = threeJS.getMember("HalfFloatType");
-				Value RGBFormat = threeJS.getMember("RGBFormat");
-				Value LinearSRGBColorSpace = threeJS.getMember("LinearSRGBColorSpace");
-				Value LinearFilter = threeJS.getMember("LinearFilter");
+	private Value createCompressedTexture(CompressedImage image) {
+		Value mipmaps = jsContext.eval("js", "[]");
+		for (int i = 0; i < image.levels.size(); i++) {
+			CompressedImage.Level level = image.levels.get(i);
+			Value mipmap = jsContext.eval("js", "({})");
+			mipmap.putMember("data", wrap("Uint8Array", level.data));
+			mipmap.putMember("width", level.width);
+			mipmap.putMember("height", level.height);
+			mipmaps.setArrayElement(i, mipmap);
+		}
+		
+		Value texture = threeJS.getMember("CompressedTexture").newInstance(mipmaps, image.width, image.height,
+			image.format, threeJS.getMember("UnsignedByteType"));
+		if (image.srgb) {
+			texture.putMember("colorSpace", threeJS.getMember("SRGBColorSpace"));
+		}
+		texture.putMember("minFilter", threeJS.getMember(image.levels.size() > 1 ? "LinearMipmapLinearFilter" : "LinearFilter"));
+		texture.putMember("magFilter", threeJS.getMember("LinearFilter"));
+		texture.putMember("generateMipmaps", false);
+		texture.putMember("needsUpdate", true);
+		return texture;
+	}
 
-				Value texture = DataTexture.newInstance(imageData, width, height, RGBFormat, HalfFloatType);
-				texture.putMember("needsUpdate", true);
-				texture.putMember("flipY", false);
-				texture.putMember("colorSpace", LinearSRGBColorSpace);
-				texture.putMember("generateMipmaps", false);
-				texture.putMember("minFilter", LinearFilter);
-				texture.putMember("magFilter", LinearFilter);
-				return texture;
+	/**
+	 * Load several textures at once, decoding them concurrently (e.g. the six faces of a cube map).
+	 * Returns a JS array in the same order, with null for any texture that failed to load.
+	 */
+	public Value loadTextures(String[] texturePaths) {
+		return loadTextures(texturePaths, true);
+	}
 
-			} finally {
-				STBImage.stbi_image_free(hdrData);
+	/**
+	 * As loadTextures, optionally ignoring cooked versions so every texture is uncompressed
+	 * (cube map faces must all share one format).
+	 */
+	public Value loadTextures(String[] texturePaths, boolean cooked) {
+		List<CompletableFuture<DecodedImage>> decodes = new ArrayList<>();
+		for (String texturePath : texturePaths) {
+			decodes.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return cooked ? decode(texturePath) : decodeSource(texturePath);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}));
+		}
+
+		Value textures = jsContext.eval("js", "[]");
+		for (int i = 0; i < texturePaths.length; i++) {
+			Value texture = null;
+			try {
+				DecodedImage image = decodes.get(i).join();
+				if (image != null) {
+					texture = createTexture(texturePaths[i], image);
+				} else {
+					System.err.println("Texture not found: " + texturePaths[i]);
+				}
+			} catch (Exception e) {
+				System.err.println("Error loading texture: " + texturePaths[i] + " - " + e.getMessage());
 			}
-		} catch (Exception e) {
-			System.err.println("Error loading HDR texture: " + texturePath + " - " + e.getMessage());
-			e.printStackTrace();
-			return null;
+			textures.setArrayElement(i, texture);
 		}
+		return textures;
 	}
 
-	private ByteBuffer readFileToByteBuffer(String texturePath) throws IOException {
-		byte[] bytes;
-		try (InputStream is = getClass().getResourceAsStream("/assets/" + texturePath)) {
-			if (is == null) return null;
-			bytes = is.readAllBytes();
-		}
-		ByteBuffer buf = BufferUtils.createByteBuffer(bytes.length);
-		buf.put(bytes);
-		buf.flip();
-		return buf;
+	/**
+	 * Creates the texture for an image from decode(). A cooked image the GPU cannot sample is
+	 * replaced by its decoded original. GL thread only.
+	 */
+	Value createTexture(String texturePath, DecodedImage image) throws IOException {
+		if (image.compressed == null) {
+			return createDataTexture(image);
+		}
+		Value texture = createCookedTexture(image.compressed);
+		if (texture != null) {
+			return texture;
+		}
+		DecodedImage source = decodeSource(texturePath);
+		return source != null ? createDataTexture(source) : null;
 	}
 
-	// Float32 to Half-float (IEEE 754 binary16) conversion
-	private int floatToHalf(float val) {
-		int floatBits = Float.floatToIntBits(val);
-		int sign = (floatBits >>> 16) & 0x8000;
-		int mant = (floatBits & 0x007FFFFF);
-		int exp  = (floatBits >>> 23) & 0xFF;
-
-		if (exp < 103) {
-			return sign;
-		}
-		if (exp > 142) {
-			int bits = sign | 0x7C00;
-			bits |= (exp == 255 && mant != 0) ? 1 : 0;
-			return bits;
-		}
-		if (exp < 113) {
-			mant |= 0x00800000;
-			int t = 113 - exp;
-			int bits = sign | (mant >> (t + 13));
-			if (((mant >> (t + 12)) & 1) != 0) bits++;
-			return bits;
-		}
-		int bits = sign | ((exp - 112) << 10) | (mant >> 13);
-		if ((mant & 0x00001000) != 0) bits++;
-		return bits & 0xFFFF;
+	// Zero-copy slice of the asset pack when mounted; callers only read it
+	ByteBuffer readFileToByteBuffer(String texturePath) throws IOException {
+		return AssetPack.get(texturePath);
 	}
+
 	/**
 	 * Load texture from image file and create Three.js DataTexture
 	 */
@@ -145,14 +215,28 @@ public class TextureLoader {
 				if (lower.endsWith(".hdr")) {
 					return loadHDRTexture(texturePath);
 				}
+				if (CompressedTextureReader.isCompressedPath(texturePath)) {
+					return loadCompressedTexture(texturePath);
+				}
+			}
+			Value cooked = loadCookedTexture(texturePath);
+			if (cooked != null) {
+				return cooked;
+			}
+			ByteBuffer fileBytes = readFileToByteBuffer(texturePath);
+			if (fileBytes == null) {
+				return null;
 			}
-			// Load image using Java ImageIO
-			BufferedImage bufferedImage = loadImageFromPath(texturePath);
 			
+			// STB decodes straight into one RGBA8 buffer; ImageIO covers whatever it can't read
+			DecodedImage image = decodeLDR(fileBytes);
+			if (image != null) {
+				return createDataTexture(image);
+			}
+			BufferedImage bufferedImage = loadImageFromPath(texturePath);
 			if (bufferedImage == null) {
 				return null;
 			}
-			
 			return createDataTextureFromImage(bufferedImage);
 			
 		} catch (Exception e) {
@@ -162,6 +246,120 @@ public class TextureLoader {
 		}
 	}
 	
+	/**
+	 * Decode an image file into off-heap pixels without touching the JS context, so it can run
+	 * on loader threads. LDR images become their cooked compressed version when there is one,
+	 * RGBA8 with mipmaps otherwise; .hdr files RGB16F without. Returns null if the file does not
+	 * exist or cannot be decoded.
+	 */
+	public DecodedImage decode(String texturePath) throws IOException {
+		if (texturePath.toLowerCase().endsWith(".hdr")) {
+			return decodeHDR(texturePath);
+		}
+		if (CompressedTextureReader.isCompressedPath(texturePath)) {
+			throw new IOException("Compressed textures are loaded with loadTexture");
+		}
+		CompressedImage cooked = readCookedImage(texturePath);
+		if (cooked != null) {
+			return new DecodedImage(cooked);
+		}
+		return decodeSource(texturePath);
+	}
+
+	/**
+	 * Decode the original LDR image, ignoring any cooked version, e.g. when the GPU cannot
+	 * sample the cooked format. HDR images decode as in decode().
+	 */
+	DecodedImage decodeSource(String texturePath) throws IOException {
+		if (texturePath.toLowerCase().endsWith(".hdr")) {
+			return decodeHDR(texturePath);
+		}
+		ByteBuffer fileBytes = readFileToByteBuffer(texturePath);
+		if (fileBytes == null) {
+			return null;
+		}
+		DecodedImage image = decodeLDR(fileBytes);
+		if (image != null) {
+			return image;
+		}
+		BufferedImage bufferedImage = loadImageFromPath(texturePath);
+		if (bufferedImage == null) {
+			return null;
+		}
+		int width = bufferedImage.getWidth();
+		int height = bufferedImage.getHeight();
+		int[] argb = bufferedImage.getRGB(0, 0, width, height, null, 0, width);
+		ByteBuffer pixels = MemoryUtil.memAlloc(width * height * 4);
+		for (int pixel : argb) {
+			pixels.put((byte) (pixel >> 16)).put((byte) (pixel >> 8)).put((byte) pixel).put((byte) (pixel >> 24));
+		}
+		pixels.flip();
+		return new DecodedImage(width, height, GL11.GL_RGBA8, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, true, pixels);
+	}
+
+	/**
+	 * Decode PNG/JPEG/TGA/BMP (anything STB reads) into a single RGBA8 buffer owned by STB.
+	 * Returns null when STB does not understand the data, so callers can fall back to ImageIO.
+	 */
+	public static DecodedImage decodeLDR(ByteBuffer encoded) {
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			IntBuffer w = stack.mallocInt(1);
+			IntBuffer h = stack.mallocInt(1);
+			IntBuffer comp = stack.mallocInt(1);
+			ByteBuffer pixels = STBImage.stbi_load_from_memory(encoded, w, h, comp, 4);
+			if (pixels == null) {
+				return null;
+			}
+			long address = MemoryUtil.memAddress(pixels);
+			return new DecodedImage(w.get(0), h.get(0), GL11.GL_RGBA8, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, true,
+				pixels, () -> STBImage.nstbi_image_free(address));
+		}
+	}
+
+	private DecodedImage decodeHDR(String texturePath) throws IOException {
+		ByteBuffer cooked = readFileToByteBuffer(COOKED + texturePath + ".ktx2");
+		if (cooked != null) {
+			return CompressedTextureReader.readHalfFloat(cooked);
+		}
+		ByteBuffer fileBytes = readFileToByteBuffer(texturePath);
+		if (fileBytes == null) {
+			return null;
+		}
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			var w = stack.mallocInt(1);
+			var h = stack.mallocInt(1);
+			var comp = stack.mallocInt(1);
+			FloatBuffer hdrData = STBImage.stbi_loadf_from_memory(fileBytes, w, h, comp, 3);
+			if (hdrData == null) {
+				throw new IOException("stbi_loadf_from_memory failed: " + STBImage.stbi_failure_reason());
+			}
+			try {
+				int width = w.get(0);
+				int height = h.get(0);
+				ByteBuffer pixels = MemoryUtil.memAlloc(width * height * 3 * 2);
+				toHalfFloat(hdrData, pixels.asShortBuffer(), width * 3, height);
+				return new DecodedImage(width, height, GL30.GL_RGB16F, GL11.GL_RGB, GL30.GL_HALF_FLOAT, false, pixels);
+			} finally {
+				STBImage.stbi_image_free(hdrData);
+			}
+		}
+	}
+	
+	// Float32 to IEEE 754 binary16, a row per task. Float.floatToFloat16 is an intrinsic
+	// (F16C / FCVT) on the JITs we ship with, so the inner loop stays a plain scalar loop
+	private static void toHalfFloat(FloatBuffer source, ShortBuffer target, int rowLength, int rows) {
+		IntStream range = IntStream.range(0, rows);
+		if ((long) rowLength * rows >= PARALLEL_THRESHOLD) {
+			range = range.parallel();
+		}
+		range.forEach(row -> {
+			int offset = row * rowLength;
+			for (int i = offset, end = offset + rowLength; i < end; i++) {
+				target.put(i, Float.floatToFloat16(source.get(i)));
+			}
+		});
+	}
+	
 	/**
 	 * Load texture with specific dimensions (useful for procedural textures)
 	 */
@@ -223,11 +421,11 @@ public class TextureLoader {
 	}
 	
 	/**
-	 * Load image from either resources or filesystem based on mode
+	 * Load image from the asset pack, or resources when none is mounted
 	 */
 	private BufferedImage loadImageFromPath(String texturePath) throws IOException {
 		BufferedImage bufferedImage;
-		try (InputStream is = getClass().getResourceAsStream("/assets/" + texturePath)) {
+		try (InputStream is = AssetPack.open(texturePath)) {
 			if (is == null) {
 				return null;
 			}
@@ -260,6 +458,52 @@ public class TextureLoader {
 		return createDataTextureFromPixelData(pixelData, width, height);
 	}
 	
+	/**
+	 * Create Three.js DataTexture over decoded pixels without copying them; the JS typed array
+	 * views the off-heap buffer directly, which is freed once it is collected.
+	 * RGBA8 images become RGBA/UnsignedByteType, half-float images linear RGB/HalfFloatType.
+	 */
+	Value createDataTexture(DecodedImage image) {
+		ByteBuffer pixels = image.pixels();
+		boolean halfFloat = image.type == GL30.GL_HALF_FLOAT;
+		cleaner.register(pixels, image.detach());
+		Value imageData = wrap(halfFloat ? "Uint16Array" : "Uint8Array", pixels);
+		
+		Value DataTexture = threeJS.getMember("DataTexture");
+		Value texture;
+		if (halfFloat) {
+			texture = DataTexture.newInstance(imageData, image.width, image.height,
+				threeJS.getMember("RGBFormat"), threeJS.getMember("HalfFloatType"));
+			texture.putMember("colorSpace", threeJS.getMember("LinearSRGBColorSpace"));
+			texture.putMember("generateMipmaps", false);
+			texture.putMember("minFilter", threeJS.getMember("LinearFilter"));
+			texture.putMember("magFilter", threeJS.getMember("LinearFilter"));
+		} else {
+			texture = DataTexture.newInstance(imageData, image.width, image.height,
+				threeJS.getMember("RGBAFormat"), threeJS.getMember("UnsignedByteType"));
+		}
+		texture.putMember("needsUpdate", true);
+		texture.putMember("flipY", false);
+		return texture;
+	}
+	
+	// Typed array of the given kind viewing a direct buffer, no copy. Read-only buffers (mip
+	// levels mapped from the asset pack) are copied: JS could write to an alias of the mapping,
+	// and the alias would not keep the mapping alive.
+	private Value wrap(String arrayType, ByteBuffer buffer) {
+		if (wrapPixels == null) {
+			wrapPixels = jsContext.eval("js", "(type, buffer) => new globalThis[type](new ArrayBuffer(buffer))");
+		}
+		if (buffer.isReadOnly()) {
+			ByteBuffer copy = MemoryUtil.memAlloc(buffer.remaining());
+			MemoryUtil.memCopy(buffer, copy);
+			long address = MemoryUtil.memAddress(copy);
+			cleaner.register(copy, () -> MemoryUtil.nmemFree(address));
+			buffer = copy;
+		}
+		return wrapPixels.execute(arrayType, buffer);
+	}
+	
 	/**
 	 * Create Three.js DataTexture from raw pixel data
 	 */
@@ -291,6 +535,17 @@ public class TextureLoader {
 		}
 		
 		try {
+			ByteBuffer encoded = MemoryUtil.memAlloc(imageBytes.length);
+			DecodedImage image;
+			try {
+				image = decodeLDR(encoded.put(imageBytes).flip());
+			} finally {
+				MemoryUtil.memFree(encoded);
+			}
+			if (image != null) {
+				return createDataTexture(image);
+			}
+			
 			java.io.ByteArrayInputStream bais = new java.io.ByteArrayInputStream(imageBytes);
 			BufferedImage img = ImageIO.read(bais);
 			if (img == null) {
@@ -330,7 +585,7 @@ public class TextureLoader {
 	 * Check if texture exists at the given path
 	 */
 	public boolean textureExists(String texturePath) {
-		return getClass().getResourceAsStream("/assets/" + texturePath) != null;
+		return AssetPack.exists(texturePath);
 	}
 	
 	/**
@@ -0,0 +1,399 @@
+package black.alias.diadem.Loaders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL42;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+import black.alias.diadem.Cooking.MipGenerator;
+import black.alias.diadem.FrameScheduler;
+import black.alias.diadem.GLStateCache;
+import black.alias.diadem.GpuMemoryRegistry;
+
+/**
+ * Mip residency for large texture sets. A streamed texture starts with only its small mips on
+ * the GPU (up to RESIDENT_SIZE); the render loop reports how many pixels each texture covers
+ * on screen (see updateTextureStreaming in extensions.js) and update() raises or lowers the
+ * finest resident level to match, within a GPU memory budget. The most visible textures get
+ * detail first; textures that drop out of view give theirs back.
+ *
+ * Each residency change allocates immutable storage (texStorage2D) sized to the resident
+ * levels, fills it with texSubImage2D, and swaps it into the THREE.ExternalTexture the scene
+ * uses, so memory above the budget is actually released. Mip data stays in system memory:
+ * cooked or authored KTX2/DDS chains as read from disk, other images as an RGBA8 chain built
+ * on a worker thread.
+ */
+public class TextureStreamer {
+	private static final AtomicInteger threadCount = new AtomicInteger();
+	// Levels at or below this size are always resident
+	private static final int RESIDENT_SIZE = 128;
+	// Frames a texture keeps its detail after it was last seen
+	private static final int LINGER_FRAMES = 60;
+
+	private static long budgetBytes = 512L << 20;
+
+	private final Value threeJS;
+	private final TextureLoader loader;
+	private final ExecutorService executor;
+	private final Map<Integer, Streamed> textures = new HashMap<>();
+	private int nextId = 1;
+	private int placeholder = 0;
+	private long frame = 0;
+	private long residentBytes = 0;
+
+	// Statistics
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long frameHits;
+	private long frameMisses;
+	private long frameEvictions;
+	private long evictionsAtUpdate;
+
+	private static class Mip {
+		final int width;
+		final int height;
+		final ByteBuffer data;
+
+		Mip(int width, int height, ByteBuffer data) {
+			this.width = width;
+			this.height = height;
+			this.data = data;
+		}
+	}
+
+	private static class Streamed {
+		final int id;
+		final String path;
+		final Value texture;
+		Mip[] mips;
+		boolean compressed;
+		boolean ownsMips;
+		int internalFormat;
+		int floor;       // coarsest base level, always resident
+		long[] bytes;    // bytes[i] = size of levels i..end
+		int resident;    // finest level on the GPU, mips.length while loading
+		int target;
+		int glTexture;
+		double coverage;
+		long lastSeen = -LINGER_FRAMES;
+		boolean scheduled;
+
+		Streamed(int id, String path, Value texture) {
+			this.id = id;
+			this.path = path;
+			this.texture = texture;
+		}
+	}
+
+	public TextureStreamer(Value threeJS, TextureLoader loader) {
+		this.threeJS = threeJS;
+		this.loader = loader;
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		this.executor = Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new Thread(task, "diadem-stream-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * GPU memory available to streamed textures, in megabytes.
+	 */
+	public static void setBudget(int megabytes) {
+		budgetBytes = Math.max(0, megabytes) * (1L << 20);
+	}
+
+	/**
+	 * Starts streaming a texture. Returns a THREE.ExternalTexture that shows a placeholder until
+	 * the low mips are loaded; userData.streamId identifies it to request().
+	 * srgb selects sRGB storage for images that do not carry their own color space (PNG/JPEG).
+	 */
+	public Value stream(String texturePath, boolean srgb) {
+		if (placeholder == 0) {
+			placeholder = AsyncTextureLoader.createPlaceholder("TextureStreamer placeholder");
+		}
+		int id = nextId++;
+		Value texture = threeJS.getMember("ExternalTexture").newInstance(placeholder);
+		texture.putMember("name", texturePath);
+		texture.getMember("userData").putMember("streamId", id);
+		texture.invokeMember("addEventListener", "dispose", (ProxyExecutable) args -> {
+			release(id);
+			return null;
+		});
+		Streamed streamed = new Streamed(id, texturePath, texture);
+		textures.put(id, streamed);
+
+		executor.execute(() -> {
+			try {
+				Mip[] mips = load(streamed, texturePath, srgb);
+				FrameScheduler.post(() -> {
+					// Published on the GL thread, update() only looks at textures with mips
+					streamed.mips = mips;
+					if (textures.get(id) == streamed) {
+						streamed.target = streamed.floor;
+						rebuild(streamed);
+					} else {
+						freeMips(streamed);
+					}
+				});
+			} catch (Exception e) {
+				System.err.println("Error streaming texture: " + texturePath + " - " + e.getMessage());
+			}
+		});
+		return texture;
+	}
+
+	/**
+	 * Reports that a texture covers about this many pixels (longest side) on screen this frame.
+	 * Several reports per frame keep the largest.
+	 */
+	public void request(int id, double pixels) {
+		Streamed streamed = textures.get(id);
+		if (streamed != null) {
+			streamed.coverage = streamed.lastSeen == frame ? Math.max(streamed.coverage, pixels) : pixels;
+			streamed.lastSeen = frame;
+		}
+	}
+
+	/**
+	 * Rebalances residency from this frame's requests. Called once per frame on the GL thread
+	 * after all request() calls; the uploads run through the FrameScheduler.
+	 */
+	public void update() {
+		frameHits = 0;
+		frameMisses = 0;
+		// Evictions happen in rebuild(), between updates, so count those since the last one
+		frameEvictions = evictions - evictionsAtUpdate;
+		evictionsAtUpdate = evictions;
+
+		List<Streamed> loaded = new ArrayList<>();
+		long available = budgetBytes;
+		for (Streamed streamed : textures.values()) {
+			if (streamed.mips == null) {
+				continue;
+			}
+			loaded.add(streamed);
+			available -= streamed.bytes[streamed.floor];
+			if (streamed.lastSeen == frame) {
+				if (streamed.resident <= desiredLevel(streamed)) {
+					frameHits++;
+				} else {
+					frameMisses++;
+				}
+			}
+		}
+
+		// Most recently seen first, then largest on screen
+		loaded.sort((a, b) -> a.lastSeen != b.lastSeen ? Long.compare(b.lastSeen, a.lastSeen) : Double.compare(b.coverage, a.coverage));
+		for (Streamed streamed : loaded) {
+			int target = frame - streamed.lastSeen < LINGER_FRAMES ? desiredLevel(streamed) : streamed.floor;
+			while (target < streamed.floor && extraBytes(streamed, target) > available) {
+				target++;
+			}
+			available -= extraBytes(streamed, target);
+			streamed.target = target;
+			if (target != streamed.resident && !streamed.scheduled) {
+				streamed.scheduled = true;
+				FrameScheduler.post(() -> rebuild(streamed));
+			}
+		}
+
+		hits += frameHits;
+		misses += frameMisses;
+		frame++;
+	}
+
+	/**
+	 * Drops a texture; called when the THREE texture is disposed.
+	 */
+	public void release(int id) {
+		Streamed streamed = textures.remove(id);
+		if (streamed == null) {
+			return;
+		}
+		if (streamed.glTexture != 0) {
+			GLStateCache.deleteTexture(streamed.glTexture);
+			residentBytes -= streamed.bytes[streamed.resident];
+		}
+		freeMips(streamed);
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	public long getHits() { return hits; }
+	public long getMisses() { return misses; }
+	public long getEvictions() { return evictions; }
+	public long getFrameHits() { return frameHits; }
+	public long getFrameMisses() { return frameMisses; }
+	public long getFrameEvictions() { return frameEvictions; }
+	public long getResidentBytes() { return residentBytes; }
+	public long getBudgetBytes() { return budgetBytes; }
+	public int getTextureCount() { return textures.size(); }
+
+	// Finest level worth having for the reported coverage: one texel per covered pixel
+	private static int desiredLevel(Streamed streamed) {
+		int size = Math.max(streamed.mips[0].width, streamed.mips[0].height);
+		double pixels = Math.max(1, streamed.coverage);
+		int level = (int) Math.floor(Math.log(size / pixels) / Math.log(2));
+		return Math.clamp(level, 0, streamed.floor);
+	}
+
+	private static long extraBytes(Streamed streamed, int level) {
+		return streamed.bytes[level] - streamed.bytes[streamed.floor];
+	}
+
+	// Worker thread: reads or builds the mip chain and fills in the texture's layout
+	private Mip[] load(Streamed streamed, String texturePath, boolean srgb) throws IOException {
+		ByteBuffer file = loader.readFileToByteBuffer(".cooked/" + texturePath + ".ktx2");
+		if (file == null && CompressedTextureReader.isCompressedPath(texturePath)) {
+			file = loader.readFileToByteBuffer(texturePath);
+		}
+		CompressedImage compressed = file != null ? CompressedTextureReader.read(file) : null;
+
+		Mip[] mips;
+		if (compressed != null && CompressedTextureReader.supports(compressed)) {
+			mips = new Mip[compressed.levels.size()];
+			for (int i = 0; i < mips.length; i++) {
+				CompressedImage.Level level = compressed.levels.get(i);
+				mips[i] = new Mip(level.width, level.height, level.data);
+			}
+			streamed.compressed = true;
+			streamed.internalFormat = CompressedTextureReader.internalFormat(compressed);
+		} else {
+			DecodedImage image = loader.decodeSource(texturePath);
+			if (image == null) {
+				throw new IOException("Texture not found");
+			}
+			if (image.type != GL11.GL_UNSIGNED_BYTE) {
+				image.free();
+				throw new IOException("Only 8-bit images can be streamed, use loadTexture for HDR");
+			}
+			mips = buildChain(image, srgb);
+			streamed.ownsMips = true;
+			streamed.internalFormat = srgb ? GL21.GL_SRGB8_ALPHA8 : GL11.GL_RGBA8;
+		}
+
+		streamed.bytes = new long[mips.length + 1];
+		for (int i = mips.length - 1; i >= 0; i--) {
+			streamed.bytes[i] = streamed.bytes[i + 1] + mips[i].data.remaining();
+		}
+		int floor = 0;
+		while (floor < mips.length - 1 && Math.max(mips[floor].width, mips[floor].height) > RESIDENT_SIZE) {
+			floor++;
+		}
+		streamed.floor = floor;
+		streamed.resident = mips.length;
+		return mips;
+	}
+
+	private static Mip[] buildChain(DecodedImage image, boolean srgb) {
+		byte[] level = new byte[image.width * image.height * 4];
+		image.pixels().get(0, level);
+		image.free();
+		List<Mip> mips = new ArrayList<>();
+		int width = image.width;
+		int height = image.height;
+		while (true) {
+			ByteBuffer data = MemoryUtil.memAlloc(level.length);
+			data.put(0, level);
+			mips.add(new Mip(width, height, data));
+			if (width == 1 && height == 1) {
+				break;
+			}
+			level = MipGenerator.downsample(level, width, height, srgb);
+			width = Math.max(1, width / 2);
+			height = Math.max(1, height / 2);
+		}
+		return mips.toArray(new Mip[0]);
+	}
+
+	private static void freeMips(Streamed streamed) {
+		if (streamed.ownsMips && streamed.mips != null) {
+			for (Mip mip : streamed.mips) {
+				MemoryUtil.memFree(mip.data);
+			}
+		}
+		streamed.mips = null;
+	}
+
+	// GL thread: allocates storage for levels target..end, uploads them and swaps it in
+	private void rebuild(Streamed streamed) {
+		streamed.scheduled = false;
+		int base = streamed.target;
+		if (streamed.mips == null || base == streamed.resident) {
+			return;
+		}
+		Mip[] mips = streamed.mips;
+		int levels = mips.length - base;
+		if (base > streamed.resident) {
+			evictions++;
+		}
+
+		int previous = GLStateCache.getBoundTexture(GL11.GL_TEXTURE_2D);
+		int alignment = GL11.glGetInteger(GL11.GL_UNPACK_ALIGNMENT);
+		GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+		GLStateCache.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+		int texture = GL11.glGenTextures();
+		GpuMemoryRegistry.created(GpuMemoryRegistry.TEXTURE, texture, "streamTexture " + streamed.path);
+		GLStateCache.bindTexture(GL11.GL_TEXTURE_2D, texture);
+		GLCapabilities caps = GL.getCapabilities();
+		if (caps.OpenGL42 || caps.GL_ARB_texture_storage) {
+			GL42.glTexStorage2D(GL11.GL_TEXTURE_2D, levels, streamed.internalFormat, mips[base].width, mips[base].height);
+			GpuMemoryRegistry.texStorage(GL11.GL_TEXTURE_2D, levels, streamed.internalFormat, mips[base].width, mips[base].height, 1);
+			for (int i = base; i < mips.length; i++) {
+				Mip mip = mips[i];
+				if (streamed.compressed) {
+					GL13.glCompressedTexSubImage2D(GL11.GL_TEXTURE_2D, i - base, 0, 0, mip.width, mip.height, streamed.internalFormat, mip.data);
+				} else {
+					GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, i - base, 0, 0, mip.width, mip.height, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, mip.data);
+				}
+			}
+		} else {
+			// No immutable storage (macOS 3.3 core): specify each level, MAX_LEVEL below completes the chain
+			for (int i = base; i < mips.length; i++) {
+				Mip mip = mips[i];
+				if (streamed.compressed) {
+					GL13.glCompressedTexImage2D(GL11.GL_TEXTURE_2D, i - base, streamed.internalFormat, mip.width, mip.height, 0, mip.data);
+					GpuMemoryRegistry.compressedTexImage(GL11.GL_TEXTURE_2D, i - base, streamed.internalFormat, mip.width, mip.height, 1);
+				} else {
+					GL11.glTexImage2D(GL11.GL_TEXTURE_2D, i - base, streamed.internalFormat, mip.width, mip.height, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, mip.data);
+					GpuMemoryRegistry.texImage(GL11.GL_TEXTURE_2D, i - base, streamed.internalFormat, GL11.GL_UNSIGNED_BYTE, mip.width, mip.height, 1);
+				}
+			}
+		}
+		GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, alignment);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL12.GL_TEXTURE_BASE_LEVEL, 0);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL12.GL_TEXTURE_MAX_LEVEL, levels - 1);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL11.GL_REPEAT);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL11.GL_REPEAT);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR_MIPMAP_LINEAR);
+		GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+		AsyncTextureLoader.restoreBinding(previous);
+
+		streamed.texture.putMember("sourceTexture", texture);
+		if (streamed.glTexture != 0) {
+			GLStateCache.deleteTexture(streamed.glTexture);
+			residentBytes -= streamed.bytes[streamed.resident];
+		}
+		streamed.glTexture = texture;
+		streamed.resident = base;
+		residentBytes += streamed.bytes[base];
+	}
+}
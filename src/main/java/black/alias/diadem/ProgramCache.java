@@ -0,0 +1,318 @@
+package black.alias.diadem;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ARBParallelShaderCompile;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL41;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.opengl.KHRParallelShaderCompile;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * On-disk cache of linked program binaries, keyed by the translated shader sources and the
+ * driver identity. Shader compilation is deferred until link time: on a cache hit the program
+ * is restored with glProgramBinary and its shaders are never compiled; on a miss they are
+ * compiled and linked as usual and the resulting binary is written out. Entries that fail to
+ * load (corrupt file, driver update) are deleted and rebuilt.
+ */
+public class ProgramCache {
+	private static final int MAGIC = 0x44505247; // "DPRG"
+	private static final int FORMAT_VERSION = 1;
+	private static final int COMPLETION_STATUS = 0x91B1;
+
+	private static boolean supported = false;
+	private static boolean parallel = false;
+	private static Path directory;
+	private static String driver = "";
+
+	private static final Map<Integer, String> sources = new HashMap<>();
+	private static final Set<Integer> pending = new HashSet<>();
+	private static final Set<Integer> restored = new HashSet<>();
+	private static final Map<Integer, List<Integer>> attached = new HashMap<>();
+	private static final Map<Integer, Map<String, Integer>> attribLocations = new HashMap<>();
+	private static final Set<Integer> excluded = new HashSet<>();
+	private static final Map<Integer, Path> unsaved = new HashMap<>();
+
+	// Statistics
+	private static int hits;
+	private static int misses;
+
+	/**
+	 * Detects program binary support and prepares the cache directory. Requires a current context
+	 * and GLStateCache.reset() to have run.
+	 */
+	public static void init() {
+		GLCapabilities caps = GL.getCapabilities();
+		supported = (caps.OpenGL41 || caps.GL_ARB_get_program_binary)
+			&& GL11.glGetInteger(GL41.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+		driver = GLStateCache.getVendor() + "|" + GLStateCache.getRenderer() + "|" + GLStateCache.getVersion();
+		directory = Paths.get(System.getProperty("user.home"), ".diadem", "shader-cache");
+		if (supported) {
+			try {
+				Files.createDirectories(directory);
+			} catch (IOException e) {
+				System.err.println("Warning: Shader cache disabled, cannot create " + directory + ": " + e.getMessage());
+				supported = false;
+			}
+		}
+	}
+
+	/**
+	 * Hands compilation and linking to driver threads where the driver supports it
+	 * (KHR/ARB_parallel_shader_compile). Returns false when the extension is unavailable.
+	 */
+	public static boolean enableParallelCompile() {
+		if (parallel) {
+			return true;
+		}
+		GLCapabilities caps = GL.getCapabilities();
+		if (caps.GL_KHR_parallel_shader_compile) {
+			KHRParallelShaderCompile.glMaxShaderCompilerThreadsKHR(0xFFFFFFFF);
+			parallel = true;
+		} else if (caps.GL_ARB_parallel_shader_compile) {
+			ARBParallelShaderCompile.glMaxShaderCompilerThreadsARB(0xFFFFFFFF);
+			parallel = true;
+		}
+		return parallel;
+	}
+
+	public static void shaderSource(int shader, String source) {
+		sources.put(shader, source);
+		GL20.glShaderSource(shader, source);
+	}
+
+	// Compilation waits for linkProgram, which may not need it at all
+	public static void compileShader(int shader) {
+		if (supported) {
+			pending.add(shader);
+		} else {
+			GL20.glCompileShader(shader);
+		}
+	}
+
+	public static void attachShader(int program, int shader) {
+		attached.computeIfAbsent(program, p -> new ArrayList<>()).add(shader);
+		GL20.glAttachShader(program, shader);
+	}
+
+	public static void detachShader(int program, int shader) {
+		List<Integer> shaders = attached.get(program);
+		if (shaders != null) {
+			shaders.remove(Integer.valueOf(shader));
+		}
+		GL20.glDetachShader(program, shader);
+	}
+
+	// Bindings take effect at the next link, so they are part of its key
+	public static void bindAttribLocation(int program, int index, String name) {
+		attribLocations.computeIfAbsent(program, p -> new TreeMap<>()).put(name, index);
+		GL20.glBindAttribLocation(program, index, name);
+	}
+
+	/**
+	 * Keeps a program out of the cache, for link-affecting state the key does not cover
+	 * (transform feedback varyings).
+	 */
+	public static void exclude(int program) {
+		excluded.add(program);
+	}
+
+	public static void linkProgram(int program) {
+		List<Integer> shaders = attached.getOrDefault(program, List.of());
+		if (!supported || excluded.contains(program)) {
+			compile(shaders);
+			GL20.glLinkProgram(program);
+			return;
+		}
+
+		Path file = directory.resolve(key(shaders, attribLocations.getOrDefault(program, Map.of())) + ".bin");
+		if (Files.exists(file)) {
+			if (restore(program, file)) {
+				hits++;
+				for (int shader : shaders) {
+					if (pending.remove(shader)) {
+						restored.add(shader);
+					}
+				}
+				return;
+			}
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException ignored) {
+			}
+		}
+
+		misses++;
+		compile(shaders);
+		GL41.glProgramParameteri(program, GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE);
+		GL20.glLinkProgram(program);
+		if (parallel) {
+			// Asking for the link status now would wait on the driver threads
+			unsaved.put(program, file);
+		} else if (GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) == GL11.GL_TRUE) {
+			store(program, file);
+		}
+	}
+
+	/**
+	 * glGetProgramiv that also writes out binaries of programs linked in the background once
+	 * they are done. Completion status queries never block.
+	 */
+	public static int getProgramParameter(int program, int pname) {
+		int value = GL20.glGetProgrami(program, pname);
+		if (pname != COMPLETION_STATUS || value == GL11.GL_TRUE) {
+			Path file = unsaved.remove(program);
+			if (file != null && GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) == GL11.GL_TRUE) {
+				store(program, file);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * glGetShaderiv that answers for shaders whose program came from the cache without compiling them.
+	 */
+	public static int getShaderParameter(int shader, int pname) {
+		if (restored.contains(shader)) {
+			if (pname == GL20.GL_COMPILE_STATUS || pname == COMPLETION_STATUS) return GL11.GL_TRUE;
+			if (pname == GL20.GL_INFO_LOG_LENGTH) return 0;
+		} else {
+			compile(List.of(shader));
+		}
+		return GL20.glGetShaderi(shader, pname);
+	}
+
+	public static String getShaderInfoLog(int shader) {
+		if (restored.contains(shader)) {
+			return "";
+		}
+		compile(List.of(shader));
+		return GL20.glGetShaderInfoLog(shader);
+	}
+
+	public static void deleteShader(int shader) {
+		sources.remove(shader);
+		pending.remove(shader);
+		restored.remove(shader);
+		GL20.glDeleteShader(shader);
+	}
+
+	public static void deleteProgram(int program) {
+		attached.remove(program);
+		attribLocations.remove(program);
+		excluded.remove(program);
+		unsaved.remove(program);
+		GL20.glDeleteProgram(program);
+	}
+
+	/** Programs restored from disk since startup. */
+	public static int getHits() { return hits; }
+
+	/** Programs compiled and linked from source since startup. */
+	public static int getMisses() { return misses; }
+
+	// Compiles whichever of the shaders is still waiting, including ones skipped because an
+	// earlier program using them came from the cache
+	private static void compile(List<Integer> shaders) {
+		for (int shader : shaders) {
+			if (pending.remove(shader) | restored.remove(shader)) {
+				GL20.glCompileShader(shader);
+			}
+		}
+	}
+
+	// SHA-256 over the driver identity, every attached stage in attach order and the bound
+	// attribute locations
+	private static String key(List<Integer> shaders, Map<String, Integer> locations) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(driver.getBytes(StandardCharsets.UTF_8));
+			for (int shader : shaders) {
+				digest.update((byte) 0);
+				digest.update(Integer.toString(GL20.glGetShaderi(shader, GL20.GL_SHADER_TYPE)).getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+				digest.update(sources.getOrDefault(shader, "").getBytes(StandardCharsets.UTF_8));
+			}
+			for (Map.Entry<String, Integer> location : locations.entrySet()) {
+				digest.update((byte) 1);
+				digest.update((location.getKey() + "=" + location.getValue()).getBytes(StandardCharsets.UTF_8));
+			}
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static boolean restore(int program, Path file) {
+		try (InputStream is = Files.newInputStream(file); DataInputStream in = new DataInputStream(is)) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(driver)) {
+				return false;
+			}
+			int format = in.readInt();
+			int length = in.readInt();
+			byte[] bytes = in.readNBytes(length);
+			if (bytes.length != length) {
+				return false;
+			}
+			ByteBuffer binary = BufferUtils.createByteBuffer(length);
+			binary.put(bytes).flip();
+			GL41.glProgramBinary(program, format, binary);
+			return GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) == GL11.GL_TRUE;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static void store(int program, Path file) {
+		int length = GL20.glGetProgrami(program, GL41.GL_PROGRAM_BINARY_LENGTH);
+		if (length <= 0) {
+			return;
+		}
+		ByteBuffer binary = BufferUtils.createByteBuffer(length);
+		int[] format = new int[1];
+		GL41.glGetProgramBinary(program, null, format, binary);
+		byte[] bytes = new byte[binary.remaining()];
+		binary.get(bytes);
+
+		try {
+			ByteArrayOutputStream bytesOut = new ByteArrayOutputStream(length + 256);
+			DataOutputStream out = new DataOutputStream(bytesOut);
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(driver);
+			out.writeInt(format[0]);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			out.flush();
+
+			// Write-then-rename so a crash never leaves a truncated entry behind
+			Path temp = Files.createTempFile(directory, "program", ".tmp");
+			Files.write(temp, bytesOut.toByteArray());
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("Warning: Could not write shader cache entry: " + e.getMessage());
+		}
+	}
+}
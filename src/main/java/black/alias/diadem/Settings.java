@@ -12,9 +12,15 @@ public class Settings {
 	private int resolutionHeight = 576;
 	private boolean fullscreen = false;
 	private boolean vsync = true;
+	private boolean adaptiveVsync = true;
+	private String windowBackend = "awt";
 	private String savePrefix = "save";
 	private String saveEncryptionKey = "625";
 	private String mainScript = "main.js";
+	private boolean commandBuffer = false;
+	private int uploadBudgetMs = 4;
+	private int textureBudgetMB = 512;
+	private int assetCacheMB = 256;
 	
 	public static Settings load() {
 		Settings settings = new Settings();
@@ -60,9 +66,15 @@ public class Settings {
 		resolutionHeight = extractIntValue(cleanJson, "resolutionHeight", resolutionHeight);
 		fullscreen = extractBooleanValue(cleanJson, "fullscreen", fullscreen);
 		vsync = extractBooleanValue(cleanJson, "vsync", vsync);
+		adaptiveVsync = extractBooleanValue(cleanJson, "adaptiveVsync", adaptiveVsync);
+		windowBackend = extractStringValue(cleanJson, "windowBackend", windowBackend);
 		savePrefix = extractStringValue(cleanJson, "savePrefix", savePrefix);
 		saveEncryptionKey = extractStringValue(cleanJson, "saveEncryptionKey", saveEncryptionKey);
 		mainScript = extractStringValue(cleanJson, "mainScript", mainScript);
+		commandBuffer = extractBooleanValue(cleanJson, "commandBuffer", commandBuffer);
+		uploadBudgetMs = extractIntValue(cleanJson, "uploadBudgetMs", uploadBudgetMs);
+		textureBudgetMB = extractIntValue(cleanJson, "textureBudgetMB", textureBudgetMB);
+		assetCacheMB = extractIntValue(cleanJson, "assetCacheMB", assetCacheMB);
 	}
 	
 	private String extractStringValue(String json, String key, String defaultValue) {
@@ -113,7 +125,13 @@ public class Settings {
 	public int getResolutionHeight() { return resolutionHeight; }
 	public boolean isFullscreen() { return fullscreen; }
 	public boolean isVsync() { return vsync; }
+	public boolean isAdaptiveVsync() { return adaptiveVsync; }
+	public String getWindowBackend() { return windowBackend; }
 	public String getSavePrefix() { return savePrefix; }
 	public String getSaveEncryptionKey() { return saveEncryptionKey; }
 	public String getMainScript() { return mainScript; }
+	public boolean isCommandBuffer() { return commandBuffer; }
+	public int getUploadBudgetMs() { return uploadBudgetMs; }
+	public int getTextureBudgetMB() { return textureBudgetMB; }
+	public int getAssetCacheMB() { return assetCacheMB; }
 }
@@ -0,0 +1,26 @@
+package black.alias.diadem;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR record of the first presented frame, to compare startup of the JAR and the native image.
+ */
+@Name("diadem.Startup")
+@Label("Startup")
+@Category({ "Diadem", "Loading" })
+@Description("Time from process start to the first presented frame")
+@StackTrace(false)
+public class StartupEvent extends Event {
+	@Label("Time to First Frame")
+	@Timespan(Timespan.MILLISECONDS)
+	long firstFrameMillis;
+
+	@Label("Native Image")
+	boolean nativeImage;
+}
@@ -0,0 +1,163 @@
+package black.alias.diadem;
+
+import org.graalvm.polyglot.Value;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL44;
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming ring buffer for per-frame dynamic buffer updates.
+ * Data is written into mapped memory and copied GPU-side into the destination buffer,
+ * so bufferSubData never waits on the driver. On GL 4.4 (or ARB_buffer_storage) the ring
+ * is persistently mapped and split into one region per frame in flight, each guarded by a
+ * fence. Older contexts (the GL 3.3 macOS path), or drivers that refuse the persistent map,
+ * orphan a staging buffer every frame instead.
+ */
+public class StreamingBuffer {
+	private static final int FRAMES_IN_FLIGHT = 3;
+	private static final int REGION_SIZE = 8 * 1024 * 1024;
+	private static final int ALIGNMENT = 16;
+	private static final long FENCE_TIMEOUT_NANOS = 1_000_000L;
+
+	private static StreamingBuffer instance;
+
+	private final boolean persistent;
+	private final int buffer;
+	private final long[] fences = new long[FRAMES_IN_FLIGHT];
+	private ByteBuffer mapped;
+	private int region = 0;
+	private int head = 0;
+	private boolean acquired = false;
+
+	private StreamingBuffer() {
+		GLCapabilities caps = GL.getCapabilities();
+		int ring = caps.OpenGL44 || caps.GL_ARB_buffer_storage ? createPersistent() : 0;
+		persistent = ring != 0;
+		buffer = persistent ? ring : createOrphaned();
+	}
+
+	// Persistently mapped ring, or 0 when the driver refuses the map
+	private int createPersistent() {
+		int ring = GL15.glGenBuffers();
+		GpuMemoryRegistry.created(GpuMemoryRegistry.BUFFER, ring, "StreamingBuffer");
+		GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, ring);
+		int flags = GL30.GL_MAP_WRITE_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT;
+		long size = (long) REGION_SIZE * FRAMES_IN_FLIGHT;
+		GL44.glBufferStorage(GL31.GL_COPY_READ_BUFFER, size, flags);
+		GpuMemoryRegistry.bufferStorage(ring, size, GL15.GL_STREAM_DRAW);
+		mapped = GL30.glMapBufferRange(GL31.GL_COPY_READ_BUFFER, 0, size, flags);
+		GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+		if (mapped == null) {
+			// Immutable storage can't be orphaned, so the fallback needs a buffer of its own
+			GL15.glDeleteBuffers(ring);
+			GpuMemoryRegistry.deleted(GpuMemoryRegistry.BUFFER, ring);
+			return 0;
+		}
+		return ring;
+	}
+
+	// Staging buffer orphaned at the start of every frame
+	private int createOrphaned() {
+		int staging = GL15.glGenBuffers();
+		GpuMemoryRegistry.created(GpuMemoryRegistry.BUFFER, staging, "StreamingBuffer");
+		GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, staging);
+		GL15.glBufferData(GL31.GL_COPY_READ_BUFFER, REGION_SIZE, GL15.GL_STREAM_DRAW);
+		GpuMemoryRegistry.bufferStorage(staging, REGION_SIZE, GL15.GL_STREAM_DRAW);
+		GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+		return staging;
+	}
+
+	/**
+	 * Returns the shared streaming buffer, creating it on first use. Requires a current GL context.
+	 */
+	public static StreamingBuffer get() {
+		if (instance == null) {
+			instance = new StreamingBuffer();
+		}
+		return instance;
+	}
+
+	/**
+	 * Streams a JS buffer or view into the buffer bound to target at dstOffset.
+	 * Returns false when the upload does not fit in the current frame's region,
+	 * in which case the caller should fall back to a plain glBufferSubData.
+	 */
+	public boolean upload(int target, long dstOffset, Value data, long srcOffset, long length) {
+		int size = GLAdapter.byteSize(data, srcOffset, length);
+		if (size <= 0) {
+			return true;
+		}
+		if (head + size > REGION_SIZE) {
+			return false;
+		}
+		acquire();
+
+		long offset;
+		GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, buffer);
+		if (persistent) {
+			offset = (long) region * REGION_SIZE + head;
+			ByteBuffer dst = mapped.duplicate();
+			dst.position((int) offset);
+			GLAdapter.copyInto(data, srcOffset, length, dst);
+		} else {
+			// Unsynchronized map is safe here: the range was orphaned at the start of the frame
+			int access = GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_UNSYNCHRONIZED_BIT | GL30.GL_MAP_INVALIDATE_RANGE_BIT;
+			offset = head;
+			ByteBuffer dst = GL30.glMapBufferRange(GL31.GL_COPY_READ_BUFFER, offset, size, access);
+			if (dst == null) {
+				GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+				return false;
+			}
+			GLAdapter.copyInto(data, srcOffset, length, dst);
+			GL15.glUnmapBuffer(GL31.GL_COPY_READ_BUFFER);
+		}
+		GL31.glCopyBufferSubData(GL31.GL_COPY_READ_BUFFER, target, offset, dstOffset, size);
+		GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+
+		head += (size + ALIGNMENT - 1) & -ALIGNMENT;
+		return true;
+	}
+
+	/**
+	 * Closes the current frame's region. Called once per frame after the JS callbacks ran.
+	 */
+	public void endFrame() {
+		if (!acquired) {
+			return;
+		}
+		if (persistent) {
+			fences[region] = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+			region = (region + 1) % FRAMES_IN_FLIGHT;
+		}
+		head = 0;
+		acquired = false;
+	}
+
+	// Makes the current region writable: waits for its fence, or orphans the staging store
+	private void acquire() {
+		if (acquired) {
+			return;
+		}
+		acquired = true;
+		if (persistent) {
+			long fence = fences[region];
+			if (fence != 0L) {
+				int result = GL32.glClientWaitSync(fence, GL32.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT_NANOS);
+				while (result == GL32.GL_TIMEOUT_EXPIRED) {
+					result = GL32.glClientWaitSync(fence, 0, FENCE_TIMEOUT_NANOS);
+				}
+				GL32.glDeleteSync(fence);
+				fences[region] = 0L;
+			}
+		} else {
+			GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, buffer);
+			GL15.glBufferData(GL31.GL_COPY_READ_BUFFER, REGION_SIZE, GL15.GL_STREAM_DRAW);
+			GL15.glBindBuffer(GL31.GL_COPY_READ_BUFFER, 0);
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package black.alias.diadem;
+
+import org.graalvm.polyglot.Value;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.system.MemoryUtil;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Uniform upload path with a per-program, per-location copy of the last uploaded value.
+ * Values are staged in reusable off-heap scratch memory, compared bit-for-bit against the
+ * cache and only sent to GL when they changed. Keyed by the program GLStateCache reports as
+ * current, so it must be told when a program is relinked or deleted.
+ */
+public class UniformCache {
+	// Upload kinds, in uniform type order
+	static final int FLOAT1 = 0, FLOAT2 = 1, FLOAT3 = 2, FLOAT4 = 3;
+	static final int INT1 = 4, INT2 = 5, INT3 = 6, INT4 = 7;
+	static final int MAT2 = 8, MAT3 = 9, MAT4 = 10;
+	private static final int[] WORDS = { 1, 2, 3, 4, 1, 2, 3, 4, 4, 9, 16 };
+
+	private static final Map<Integer, int[][]> programs = new HashMap<>();
+	private static ByteBuffer scratch = BufferUtils.createByteBuffer(16 * 1024);
+	private static int lastProgram = 0;
+	private static int[][] lastSlots;
+
+	// Statistics
+	private static long skipped;
+	private static long issued;
+	private static long frameSkipped;
+	private static long frameIssued;
+
+	// Scalar forms
+
+	public static void uniform1f(int location, double x) {
+		ByteBuffer buffer = scratch(4);
+		buffer.putFloat(0, (float) x);
+		upload(FLOAT1, location, false, buffer);
+	}
+
+	public static void uniform2f(int location, double x, double y) {
+		ByteBuffer buffer = scratch(8);
+		buffer.putFloat(0, (float) x).putFloat(4, (float) y);
+		upload(FLOAT2, location, false, buffer);
+	}
+
+	public static void uniform3f(int location, double x, double y, double z) {
+		ByteBuffer buffer = scratch(12);
+		buffer.putFloat(0, (float) x).putFloat(4, (float) y).putFloat(8, (float) z);
+		upload(FLOAT3, location, false, buffer);
+	}
+
+	public static void uniform4f(int location, double x, double y, double z, double w) {
+		ByteBuffer buffer = scratch(16);
+		buffer.putFloat(0, (float) x).putFloat(4, (float) y).putFloat(8, (float) z).putFloat(12, (float) w);
+		upload(FLOAT4, location, false, buffer);
+	}
+
+	public static void uniform1i(int location, int x) {
+		ByteBuffer buffer = scratch(4);
+		buffer.putInt(0, x);
+		upload(INT1, location, false, buffer);
+	}
+
+	// Vector and matrix forms, from any JS array or typed array
+
+	public static void uniform1fv(int location, Value data) { upload(FLOAT1, location, false, read(data, true)); }
+	public static void uniform2fv(int location, Value data) { upload(FLOAT2, location, false, read(data, true)); }
+	public static void uniform3fv(int location, Value data) { upload(FLOAT3, location, false, read(data, true)); }
+	public static void uniform4fv(int location, Value data) { upload(FLOAT4, location, false, read(data, true)); }
+	public static void uniform1iv(int location, Value data) { upload(INT1, location, false, read(data, false)); }
+	public static void uniform2iv(int location, Value data) { upload(INT2, location, false, read(data, false)); }
+	public static void uniform3iv(int location, Value data) { upload(INT3, location, false, read(data, false)); }
+	public static void uniform4iv(int location, Value data) { upload(INT4, location, false, read(data, false)); }
+
+	public static void uniformMatrix2fv(int location, boolean transpose, Value data) { upload(MAT2, location, transpose, read(data, true)); }
+	public static void uniformMatrix3fv(int location, boolean transpose, Value data) { upload(MAT3, location, transpose, read(data, true)); }
+	public static void uniformMatrix4fv(int location, boolean transpose, Value data) { upload(MAT4, location, transpose, read(data, true)); }
+
+	/**
+	 * Uploads the native-order words between data's position and limit unless the current
+	 * program already holds exactly these values at location.
+	 */
+	static void upload(int kind, int location, boolean transpose, ByteBuffer data) {
+		int words = data.remaining() / 4;
+		if (location < 0 || words < WORDS[kind]) {
+			return;
+		}
+		int[] cached = slot(GLStateCache.getCurrentProgram(), location, words);
+		if (cached != null) {
+			int base = data.position();
+			boolean same = cached.length == words + 1 && cached[0] == (transpose ? 1 : 0);
+			for (int i = 0; same && i < words; i++) {
+				same = cached[i + 1] == data.getInt(base + i * 4);
+			}
+			if (same) {
+				skipped++;
+				return;
+			}
+			cached[0] = transpose ? 1 : 0;
+			for (int i = 0; i < words; i++) {
+				cached[i + 1] = data.getInt(base + i * 4);
+			}
+		}
+		issued++;
+
+		long address = MemoryUtil.memAddress(data);
+		int count = words / WORDS[kind];
+		switch (kind) {
+			case FLOAT1: GL20.nglUniform1fv(location, count, address); break;
+			case FLOAT2: GL20.nglUniform2fv(location, count, address); break;
+			case FLOAT3: GL20.nglUniform3fv(location, count, address); break;
+			case FLOAT4: GL20.nglUniform4fv(location, count, address); break;
+			case INT1: GL20.nglUniform1iv(location, count, address); break;
+			case INT2: GL20.nglUniform2iv(location, count, address); break;
+			case INT3: GL20.nglUniform3iv(location, count, address); break;
+			case INT4: GL20.nglUniform4iv(location, count, address); break;
+			case MAT2: GL20.nglUniformMatrix2fv(location, count, transpose, address); break;
+			case MAT3: GL20.nglUniformMatrix3fv(location, count, transpose, address); break;
+			case MAT4: GL20.nglUniformMatrix4fv(location, count, transpose, address); break;
+		}
+	}
+
+	/**
+	 * Drops the cached values of a program. Linking resets its uniforms and may move locations.
+	 */
+	public static void invalidate(int program) {
+		programs.remove(program);
+		if (lastProgram == program) {
+			lastProgram = 0;
+			lastSlots = null;
+		}
+	}
+
+	public static void endFrame() {
+		frameSkipped = skipped;
+		frameIssued = issued;
+		skipped = 0;
+		issued = 0;
+	}
+
+	/** Uploads skipped as identical during the last completed frame. */
+	public static long getFrameSkipped() { return frameSkipped; }
+
+	/** Uploads sent to GL during the last completed frame. */
+	public static long getFrameIssued() { return frameIssued; }
+
+	// Cache entry for location, sized to hold a transpose flag plus the value words.
+	// Returns null when the current program is not known to the state shadow.
+	private static int[] slot(int program, int location, int words) {
+		if (program <= 0) {
+			return null;
+		}
+		if (program != lastProgram || lastSlots == null) {
+			lastSlots = programs.computeIfAbsent(program, p -> new int[16][]);
+			lastProgram = program;
+		}
+		if (location >= lastSlots.length) {
+			int[][] grown = new int[Integer.highestOneBit(location) << 1][];
+			System.arraycopy(lastSlots, 0, grown, 0, lastSlots.length);
+			lastSlots = grown;
+			programs.put(program, grown);
+		}
+		int[] entry = lastSlots[location];
+		if (entry == null || entry.length != words + 1) {
+			// A fresh entry never matches, the sentinel flag forces the first upload through
+			entry = new int[words + 1];
+			entry[0] = -1;
+			lastSlots[location] = entry;
+		}
+		return entry;
+	}
+
+	// Stages a JS array or typed array as 32-bit words; typed arrays of the right kind are bulk-copied
+	private static ByteBuffer read(Value data, boolean floats) {
+		String type = data.hasMember("BYTES_PER_ELEMENT") ? data.getMetaObject().getMetaSimpleName() : "";
+		boolean bulk = floats ? type.equals("Float32Array") : type.equals("Int32Array") || type.equals("Uint32Array");
+		if (bulk) {
+			ByteBuffer buffer = scratch(GLAdapter.byteSize(data, 0, 0));
+			GLAdapter.copyInto(data, 0, 0, buffer);
+			buffer.flip();
+			return buffer;
+		}
+		int size = (int) data.getArraySize();
+		ByteBuffer buffer = scratch(size * 4);
+		for (int i = 0; i < size; i++) {
+			Value element = data.getArrayElement(i);
+			if (floats) {
+				buffer.putFloat(i * 4, (float) element.asDouble());
+			} else {
+				buffer.putInt(i * 4, element.isBoolean() ? (element.asBoolean() ? 1 : 0) : (int) element.asDouble());
+			}
+		}
+		return buffer;
+	}
+
+	// Native-order scratch with position 0 and limit at size
+	private static ByteBuffer scratch(int size) {
+		if (scratch.capacity() < size) {
+			scratch = BufferUtils.createByteBuffer(Integer.highestOneBit(Math.max(size - 1, 1)) << 1);
+		}
+		scratch.clear().limit(size);
+		return scratch;
+	}
+}
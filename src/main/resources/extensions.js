@@ -3,7 +3,12 @@ globalThis.loadCubeTexture = function(filenames)
 	if (!(filenames && Array.isArray(filenames) && filenames.length == 6))
 		throw new Error("loadCubeTexture requires 6 face paths in order: +X, -X, +Y, -Y, +Z, -Z");
 
-	const faces = filenames.map(path => loadTexture(path));
+	// Faces are decoded concurrently on the Java side
+	let faces = Array.from(loadTextures(filenames));
+	// Cooked faces are compressed; a cube map needs one format, so mixed faces are reloaded uncooked
+	const compressed = faces.filter(t => t && t.isCompressedTexture);
+	if (compressed.length > 0 && (compressed.length < faces.length || compressed.some(t => t.format !== compressed[0].format)))
+		faces = Array.from(loadTextures(filenames, false));
 	for (let i = 0; i < faces.length; i++) {
 		if (!faces[i]) {
 			const p = filenames[i];
@@ -11,6 +16,17 @@ globalThis.loadCubeTexture = function(filenames)
 		}
 	}
 
+	if (faces[0].isCompressedTexture) {
+		const images = faces.map(t => ({ width: t.image.width, height: t.image.height, mipmaps: t.mipmaps }));
+		const cubeTexture = new THREE.CompressedCubeTexture(images, faces[0].format, faces[0].type);
+		cubeTexture.colorSpace = faces[0].colorSpace;
+		cubeTexture.minFilter = faces[0].minFilter;
+		cubeTexture.magFilter = THREE.LinearFilter;
+		cubeTexture.generateMipmaps = false;
+		cubeTexture.needsUpdate = true;
+		return cubeTexture;
+	}
+
 	const cubeTexture = new THREE.CubeTexture(faces);
 
 	const hasHDR = faces.some(t => t && t.type === THREE.HalfFloatType);
@@ -27,6 +43,78 @@ globalThis.loadCubeTexture = function(filenames)
 	return cubeTexture;
 }
 
+// Compiles every material in the scene ahead of time, e.g. right after loadGLTF during a
+// loading screen. Compilation runs on driver threads when KHR_parallel_shader_compile is
+// available; the returned promise resolves with the scene once all programs are ready.
+globalThis.warmMaterials = function(renderer, scene, camera)
+{
+	return renderer.compileAsync(scene, camera || new THREE.PerspectiveCamera());
+}
+
+// Feeds screen coverage of streamed textures (streamTexture) back to the streamer; call once
+// per frame after camera movement. Each visible mesh reports the on-screen size of its bounding
+// sphere for every streamed texture on its material.
+const streamSlots = ['map', 'normalMap', 'roughnessMap', 'metalnessMap', 'aoMap', 'emissiveMap', 'alphaMap', 'bumpMap'];
+const streamFrustum = new THREE.Frustum();
+const streamMatrix = new THREE.Matrix4();
+const streamSphere = new THREE.Sphere();
+const streamSize = new THREE.Vector2();
+globalThis.updateTextureStreaming = function(scene, camera, renderer)
+{
+	const streamer = getTextureStreamer();
+	camera.updateMatrixWorld();
+	streamMatrix.multiplyMatrices(camera.projectionMatrix, camera.matrixWorldInverse);
+	streamFrustum.setFromProjectionMatrix(streamMatrix);
+	const height = renderer.getDrawingBufferSize(streamSize).y;
+	const focal = camera.isPerspectiveCamera ? height / (2 * Math.tan(THREE.MathUtils.degToRad(camera.fov) / 2)) : 0;
+
+	scene.traverseVisible(object => {
+		if (!object.isMesh || !object.material) return;
+		const geometry = object.geometry;
+		if (!geometry.boundingSphere) geometry.computeBoundingSphere();
+		streamSphere.copy(geometry.boundingSphere).applyMatrix4(object.matrixWorld);
+		if (!streamFrustum.intersectsSphere(streamSphere)) return;
+
+		let pixels;
+		if (camera.isPerspectiveCamera) {
+			const distance = Math.max(camera.near, streamSphere.center.distanceTo(camera.position) - streamSphere.radius);
+			pixels = 2 * streamSphere.radius * focal / distance;
+		} else {
+			pixels = 2 * streamSphere.radius * camera.zoom * height / (camera.top - camera.bottom);
+		}
+
+		const materials = Array.isArray(object.material) ? object.material : [object.material];
+		for (const material of materials) {
+			for (const slot of streamSlots) {
+				const texture = material[slot];
+				if (texture && texture.userData.streamId !== undefined) {
+					streamer.request(texture.userData.streamId, pixels);
+				}
+			}
+		}
+	});
+	streamer.update();
+}
+
+globalThis.diadem = globalThis.diadem || {};
+diadem.textureStreamingStats = () => {
+	const streamer = getTextureStreamer();
+	const hits = Number(streamer.getHits());
+	const misses = Number(streamer.getMisses());
+	return {
+		hits,
+		misses,
+		evictions: Number(streamer.getEvictions()),
+		hitRate: hits + misses > 0 ? hits / (hits + misses) : 1,
+		frameHits: Number(streamer.getFrameHits()),
+		frameMisses: Number(streamer.getFrameMisses()),
+		frameEvictions: Number(streamer.getFrameEvictions()),
+		residentBytes: Number(streamer.getResidentBytes()),
+		budgetBytes: Number(streamer.getBudgetBytes()),
+		textures: streamer.getTextureCount()
+	};
+};
+
 globalThis.activeEntities = {}
 globalThis.inactiveEntities = {}
 globalThis.Entity = class {
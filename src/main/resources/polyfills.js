@@ -142,6 +142,34 @@ globalThis.cancelUpdate = (id) => {
 	delete updateCallbacks[id];
 }
 
+// Timers, polled once per frame from runCallbacks
+var currentTimerId = 1;
+const timers = new Map();
+globalThis.setTimeout = (callback, delay = 0, ...args) => {
+	timers.set(currentTimerId, { callback, args, due: Date.now() + delay, interval: -1 });
+	return currentTimerId++;
+}
+globalThis.setInterval = (callback, delay = 0, ...args) => {
+	timers.set(currentTimerId, { callback, args, due: Date.now() + delay, interval: Math.max(delay, 0) });
+	return currentTimerId++;
+}
+globalThis.clearTimeout = globalThis.clearInterval = (id) => {
+	timers.delete(id);
+}
+const runTimers = (now) => {
+	for (const [id, timer] of Array.from(timers)) {
+		if (timer.due > now || !timers.has(id)) continue;
+		if (timer.interval < 0) timers.delete(id);
+		else timer.due = now + timer.interval;
+		// A throwing timer must not stop the others or the rest of the frame, as in browsers
+		try {
+			timer.callback(...timer.args);
+		} catch (e) {
+			console.error(e);
+		}
+	}
+}
+
 // Run update callbacks at maximum FPS, run animation callbacks at 60 FPS.
 var timeLastFrame = Date.now();
 var frameProgress = 0;
@@ -150,6 +178,7 @@ globalThis.runCallbacks = () => {
 	let delta = currentTime - timeLastFrame;
 	timeLastFrame = currentTime;
 	frameProgress += delta;
+	runTimers(currentTime);
 	Object.values(updateCallbacks).forEach(callback => callback(delta / 1000));
 	if (frameProgress >= 16) {
 		frameProgress = 0;
@@ -12,12 +12,66 @@ const GL40 = Java.type('org.lwjgl.opengl.GL40');
 const GL42 = Java.type('org.lwjgl.opengl.GL42');
 const GL43 = Java.type('org.lwjgl.opengl.GL43');
 const glAdapter = Java.type('black.alias.diadem.GLAdapter');
+const glState = Java.type('black.alias.diadem.GLStateCache');
+const uniformCache = Java.type('black.alias.diadem.UniformCache');
+const programCache = Java.type('black.alias.diadem.ProgramCache');
+const compressedTextures = Java.type('black.alias.diadem.Loaders.CompressedTextureReader');
+const gpuMemory = Java.type('black.alias.diadem.GpuMemoryRegistry');
 const bufferUtils = Java.type('org.lwjgl.BufferUtils');
 
 const ImageIO = Java.type('javax.imageio.ImageIO');
 const ByteArrayInputStream = Java.type('java.io.ByteArrayInputStream');
 const BufferedImage = Java.type('java.awt.image.BufferedImage');
 
+// GLSL ES 3.00 to desktop GLSL; Three.js resubmits the same variants, so results are memoized
+const shaderTranslations = new Map();
+const isMac = Java.type('java.lang.System').getProperty('os.name').toLowerCase().includes('mac');
+const translateShader = (original) => {
+	let source = shaderTranslations.get(original);
+	if (source !== undefined) {
+		return source;
+	}
+	source = original;
+	if (isMac) {
+		source = source.replace(/#version 300 es/g, '#version 330 core');
+		source = source.replace(/precision\s+(lowp|mediump|highp)\s+float\s*;/g, '');
+		source = source.replace(/precision\s+(lowp|mediump|highp)\s+int\s*;/g, '');
+		
+		if (source.includes('attribute ')) {
+			source = source.replace(/attribute /g, 'in ');
+		}
+		if (source.includes('varying ')) {
+			if (source.includes('gl_FragColor')) {
+				source = source.replace(/varying /g, 'in ');
+			} else {
+				source = source.replace(/varying /g, 'out ');
+			}
+		}
+		
+		if (source.includes('gl_FragColor')) {
+			source = 'out vec4 fragColor;\n' + source;
+			source = source.replace(/gl_FragColor/g, 'fragColor');
+		}
+	} else {
+		source = source.replace(/#version 300 es/g, '#version 430 core');
+		source = source.replace(/precision\s+(lowp|mediump|highp)\s+float\s*;/g, '');
+		source = source.replace(/precision\s+(lowp|mediump|highp)\s+int\s*;/g, '');
+	}
+	shaderTranslations.set(original, source);
+	return source;
+};
+
+// Parameters WebGL reports as booleans: DELETE/COMPILE/LINK/VALIDATE_STATUS, COMPLETION_STATUS_KHR
+const statusParameters = new Set([0x8B80, 0x8B81, 0x8B82, 0x8B83, 0x91B1]);
+
+// Where a GL object was created, for diadem.gpuMemory(). Bridge and three.js frames are
+// dropped so the script code that loaded or built the object shows first.
+const callsite = () => {
+	const frames = (new Error().stack || '').split('\n').slice(2).map(frame => frame.trim());
+	const own = frames.filter(frame => !frame.includes('renderer.js') && !frame.includes('/virtual/three'));
+	return (own.length ? own : frames).slice(0, 4).join(' <- ');
+};
+
 /**
  * WebGL2 Renderer
  * Maps WebGL2 API calls to LWJGL OpenGL 4.3 implementation.
@@ -25,45 +79,33 @@ const BufferedImage = Java.type('java.awt.image.BufferedImage');
 globalThis.gl = {
 
 	activeTexture: (texture) => {
-		GL13.glActiveTexture(texture ? texture : 0);
+		glState.activeTexture(texture ? texture : 0);
 	},
 
 	attachShader: (program, shader) => {
-		GL20.glAttachShader(program ? program : 0, shader ? shader : 0);
+		programCache.attachShader(program ? program : 0, shader ? shader : 0);
+	},
+
+	bindAttribLocation: (program, index, name) => {
+		programCache.bindAttribLocation(program ? program : 0, index ? index : 0, name ? name : "");
 	},
 
 	bindBuffer: (target, buffer) => {
-		GL15.glBindBuffer(target ? target : 0, buffer ? buffer : 0);
+		glState.bindBuffer(target ? target : 0, buffer ? buffer : 0);
 	},
 
 	bindTexture: (target, texture) => {
-		GL11.glBindTexture(target ? target : 0, texture ? texture : 0);
+		glState.bindTexture(target ? target : 0, texture ? texture : 0);
 	},
 
 	bufferData: (target, data, usage) => {
-		if (data instanceof ArrayBuffer || data instanceof Float32Array || data instanceof Uint16Array) {
-			if (data instanceof Float32Array) {
-				const buffer = bufferUtils.createFloatBuffer(data.length);
-				for (let i = 0; i < data.length; i++) {
-					buffer.put(i, data[i]);
-				}
-				GL15.glBufferData(target ? target : 0, buffer, usage ? usage : 0);
-			} else if (data instanceof Uint16Array) {
-				const buffer = bufferUtils.createShortBuffer(data.length);
-				for (let i = 0; i < data.length; i++) {
-					buffer.put(i, data[i]);
-				}
-				GL15.glBufferData(target ? target : 0, buffer, usage ? usage : 0);
-			} else {
-				const buffer = bufferUtils.createByteBuffer(data.byteLength);
-				const view = new Uint8Array(data);
-				for (let i = 0; i < view.length; i++) {
-					buffer.put(i, view[i]);
-				}
-				GL15.glBufferData(target ? target : 0, buffer, usage ? usage : 0);
-			}
-		} else if (typeof data === 'number') {
+		if (typeof data === 'number') {
 			GL15.glBufferData(target ? target : 0, data, usage ? usage : 0);
+			gpuMemory.bufferData(target ? target : 0, data, usage ? usage : 0);
+		} else if (data) {
+			// Bulk copy through the Java marshaling layer, any ArrayBuffer or view
+			glAdapter.glBufferData(target ? target : 0, data, usage ? usage : 0);
+			gpuMemory.bufferData(target ? target : 0, data.byteLength || 0, usage ? usage : 0);
 		}
 	},
 
@@ -84,15 +126,17 @@ globalThis.gl = {
 	},
 
 	depthFunc: (func) => {
-		GL11.glDepthFunc(func ? func : 0);
+		glState.depthFunc(func ? func : 0);
 	},
 
 	compileShader: (shader) => {
-		GL20.glCompileShader(shader ? shader : 0);
+		programCache.compileShader(shader ? shader : 0);
 	},
 
 	createBuffer: () => {
-		return GL15.glGenBuffers();
+		const buffer = GL15.glGenBuffers();
+		gpuMemory.created(gpuMemory.BUFFER, buffer, callsite());
+		return buffer;
 	},
 
 	createProgram: () => {
@@ -104,23 +148,30 @@ globalThis.gl = {
 	},
 
 	createTexture: () => {
-		return GL11.glGenTextures();
+		const texture = GL11.glGenTextures();
+		gpuMemory.created(gpuMemory.TEXTURE, texture, callsite());
+		return texture;
 	},
 
 	deleteBuffer: (buffer) => {
-		GL15.glDeleteBuffers(buffer ? buffer : 0);
+		glState.deleteBuffer(buffer ? buffer : 0);
 	},
 
 	deleteProgram: (program) => {
-		GL20.glDeleteProgram(program ? program : 0);
+		uniformCache.invalidate(program ? program : 0);
+		programCache.deleteProgram(program ? program : 0);
 	},
 
 	deleteShader: (shader) => {
-		GL20.glDeleteShader(shader ? shader : 0);
+		programCache.deleteShader(shader ? shader : 0);
 	},
 
 	deleteTexture: (texture) => {
-		GL11.glDeleteTextures(texture ? texture : 0);
+		glState.deleteTexture(texture ? texture : 0);
+	},
+
+	detachShader: (program, shader) => {
+		programCache.detachShader(program ? program : 0, shader ? shader : 0);
 	},
 
 	drawArrays: (mode, first, count) => {
@@ -132,11 +183,11 @@ globalThis.gl = {
 	},
 
 	enable: (cap) => {
-		GL11.glEnable(cap ? cap : 0);
+		glState.enable(cap ? cap : 0);
 	},
 
 	disable: (cap) => {
-		GL11.glDisable(cap ? cap : 0);
+		glState.disable(cap ? cap : 0);
 	},
 
 	enableVertexAttribArray: (index) => {
@@ -156,19 +207,17 @@ globalThis.gl = {
 	},
 
 	getShaderParameter: (shader, pname) => {
-		const buffer = bufferUtils.createIntBuffer(1);
-		GL20.glGetShaderiv(shader ? shader : 0, pname ? pname : 0, buffer);
-		return buffer.get(0);
+		const value = programCache.getShaderParameter(shader ? shader : 0, pname ? pname : 0);
+		return statusParameters.has(pname) ? value !== 0 : value;
 	},
 
 	getProgramParameter: (program, pname) => {
-		const buffer = bufferUtils.createIntBuffer(1);
-		GL20.glGetProgramiv(program ? program : 0, pname ? pname : 0, buffer);
-		return buffer.get(0);
+		const value = programCache.getProgramParameter(program ? program : 0, pname ? pname : 0);
+		return statusParameters.has(pname) ? value !== 0 : value;
 	},
 
 	getShaderInfoLog: (shader) => {
-		return GL20.glGetShaderInfoLog(shader ? shader : 0);
+		return programCache.getShaderInfoLog(shader ? shader : 0);
 	},
 
 	getProgramInfoLog: (program) => {
@@ -176,41 +225,12 @@ globalThis.gl = {
 	},
 
 	linkProgram: (program) => {
-		GL20.glLinkProgram(program ? program : 0);
+		uniformCache.invalidate(program ? program : 0);
+		programCache.linkProgram(program ? program : 0);
 	},
 
 	shaderSource: (shader, source) => {
-		if (source) {
-			const platform = Java.type('java.lang.System').getProperty('os.name').toLowerCase();
-			
-			if (platform.includes('mac')) {
-				source = source.replace(/#version 300 es/g, '#version 330 core');
-				source = source.replace(/precision\s+(lowp|mediump|highp)\s+float\s*;/g, '');
-				source = source.replace(/precision\s+(lowp|mediump|highp)\s+int\s*;/g, '');
-				
-				if (source.includes('attribute ')) {
-					source = source.replace(/attribute /g, 'in ');
-				}
-				if (source.includes('varying ')) {
-					if (source.includes('gl_FragColor')) {
-						source = source.replace(/varying /g, 'in ');
-					} else {
-						source = source.replace(/varying /g, 'out ');
-					}
-				}
-				
-				if (source.includes('gl_FragColor')) {
-					source = 'out vec4 fragColor;\n' + source;
-					source = source.replace(/gl_FragColor/g, 'fragColor');
-				}
-			} else {
-				source = source.replace(/#version 300 es/g, '#version 430 core');
-				source = source.replace(/precision\s+(lowp|mediump|highp)\s+float\s*;/g, '');
-				source = source.replace(/precision\s+(lowp|mediump|highp)\s+int\s*;/g, '');
-			}
-		}
-		
-		GL20.glShaderSource(shader ? shader : 0, source ? source : "");
+		programCache.shaderSource(shader ? shader : 0, source ? translateShader(source) : "");
 	},
 
 	texImage2D: (target, level, internalformat, width, height, border, format, type, pixels) => {
@@ -235,8 +255,9 @@ globalThis.gl = {
 		}
 	},
 
+	// Uniforms go through the per-location value cache; identical uploads never reach GL
 	uniform1f: (location, value) => {
-		glAdapter.glUniform1f(location, value !== undefined ? value : 0.0);
+		uniformCache.uniform1f(location, value !== undefined ? value : 0.0);
 	},
 
 	uniform1i: (location, value) => {
@@ -247,93 +268,63 @@ globalThis.gl = {
 		} else if (value === undefined || value === null) {
 			intValue = 0;
 		}
-		GL20.glUniform1i(location, intValue);
+		uniformCache.uniform1i(location, intValue);
 	},
 
 	uniform2f: (location, x, y) => {
-		glAdapter.glUniform2f(location, x !== undefined ? x : 0.0, y !== undefined ? y : 0.0);
+		uniformCache.uniform2f(location, x !== undefined ? x : 0.0, y !== undefined ? y : 0.0);
 	},
 
 	uniform3f: (location, x, y, z) => {
-		glAdapter.glUniform3f(location, x !== undefined ? x : 0.0, y !== undefined ? y : 0.0, z !== undefined ? z : 0.0);
+		uniformCache.uniform3f(location, x !== undefined ? x : 0.0, y !== undefined ? y : 0.0, z !== undefined ? z : 0.0);
 	},
 
 	uniform4f: (location, x, y, z, w) => {
-		glAdapter.glUniform4f(location, x !== undefined ? x : 0.0, y !== undefined ? y : 0.0, z !== undefined ? z : 0.0, w !== undefined ? w : 0.0);
+		uniformCache.uniform4f(location, x !== undefined ? x : 0.0, y !== undefined ? y : 0.0, z !== undefined ? z : 0.0, w !== undefined ? w : 0.0);
 	},
 
 	uniform1fv: (location, value) => {
-		if (value && value.length) {
-			const buffer = glAdapter.createFloatBuffer(value);
-			glAdapter.glUniform1fv(location, buffer);
-		}
+		if (value && value.length) uniformCache.uniform1fv(location, value);
 	},
 
 	uniform2fv: (location, value) => {
-		if (value && value.length) {
-			const buffer = glAdapter.createFloatBuffer(value);
-			glAdapter.glUniform2fv(location, buffer);
-		}
+		if (value && value.length) uniformCache.uniform2fv(location, value);
 	},
 
 	uniform3fv: (location, value) => {
-		if (value && value.length) {
-			const buffer = glAdapter.createFloatBuffer(value);
-			glAdapter.glUniform3fv(location, buffer);
-		}
+		if (value && value.length) uniformCache.uniform3fv(location, value);
 	},
 
 	uniform4fv: (location, value) => {
-		if (value && value.length) {
-			const buffer = glAdapter.createFloatBuffer(value);
-			glAdapter.glUniform4fv(location, buffer);
-		}
+		if (value && value.length) uniformCache.uniform4fv(location, value);
 	},
 
 	uniform1iv: (location, value) => {
-		if (value && value.length) {
-			const buffer = glAdapter.createIntBuffer(value);
-			glAdapter.glUniform1iv(location, buffer);
-		}
+		if (value && value.length) uniformCache.uniform1iv(location, value);
 	},
 
 	uniform2iv: (location, value) => {
-		if (value && value.length) {
-			const buffer = glAdapter.createIntBuffer(value);
-			glAdapter.glUniform2iv(location, buffer);
-		}
+		if (value && value.length) uniformCache.uniform2iv(location, value);
 	},
 
 	uniform4iv: (location, value) => {
-		if (value && value.length) {
-			const buffer = glAdapter.createIntBuffer(value);
-			glAdapter.glUniform4iv(location, buffer);
-		}
+		if (value && value.length) uniformCache.uniform4iv(location, value);
 	},
 
 	uniformMatrix2fv: (location, transpose, value) => {
-		if (value && value.length) {
-			const buffer = glAdapter.createFloatBuffer(value);
-			glAdapter.glUniformMatrix2fv(location, transpose !== undefined ? transpose : false, buffer);
-		}
+		if (value && value.length) uniformCache.uniformMatrix2fv(location, transpose ? true : false, value);
 	},
 
 	uniformMatrix3fv: (location, transpose, value) => {
-		if (value && value.length) {
-			const buffer = glAdapter.createFloatBuffer(value);
-			glAdapter.glUniformMatrix3fv(location, transpose !== undefined ? transpose : false, buffer);
-		}
+		if (value && value.length) uniformCache.uniformMatrix3fv(location, transpose ? true : false, value);
 	},
 
 	uniformMatrix4fv: (location, transpose, value) => {
-		if (value && value.length) {
-			const buffer = glAdapter.createFloatBuffer(value);
-			glAdapter.glUniformMatrix4fv(location, transpose !== undefined ? transpose : false, buffer);
-		}
+		if (value && value.length) uniformCache.uniformMatrix4fv(location, transpose ? true : false, value);
 	},
 
 	useProgram: (program) => {
-		GL20.glUseProgram(program ? program : 0);
+		glState.useProgram(program ? program : 0);
 	},
 
 	vertexAttribPointer: (index, size, type, normalized, stride, offset) => {
@@ -385,13 +376,8 @@ globalThis.gl = {
 					}
 				}
 				
-				// Convert to Java buffer
-				const buffer = bufferUtils.createByteBuffer(textureData.length);
-				for (let i = 0; i < textureData.length; i++) {
-					buffer.put(i, textureData[i]);
-				}
-				
-				GL11.glTexImage2D(target, level, internalformat, source.width || 0, source.height || 0, 0, format, type, buffer);
+				glAdapter.glTexImage2DView(target, level, internalformat, source.width || 0, source.height || 0, 0, format, type, textureData, 0);
+				gpuMemory.texImage(target, level, internalformat, type, source.width || 0, source.height || 0, 1);
 				return;
 			}
 		} else if (arguments.length === 9) {
@@ -420,16 +406,8 @@ globalThis.gl = {
 					const zero = bufferUtils.createByteBuffer(width * height * comp);
 					GL11.glTexImage2D(target, level, internalformat, width, height, border, format, type, zero);
 				}
-			} else if (pixels && typeof pixels === 'object' && pixels.length !== undefined) {
-				const buffer = bufferUtils.createByteBuffer(pixels.length);
-				for (let i = 0; i < pixels.length; i++) {
-					buffer.put(i, pixels[i] & 0xFF);
-				}
-				try {
-					glAdapter.glTexImage2D(target, level, internalformat, width, height, border, format, type, buffer);
-				} catch (ex) {
-					GL11.glTexImage2D(target, level, internalformat, width, height, border, format, type, buffer);
-				}
+			} else if (pixels && typeof pixels === 'object' && pixels.byteLength !== undefined) {
+				glAdapter.glTexImage2DView(target, level, internalformat, width, height, border, format, type, pixels, 0);
 			} else {
 				try {
 					glAdapter.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
@@ -437,6 +415,7 @@ globalThis.gl = {
 					GL11.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
 				}
 			}
+			gpuMemory.texImage(target, level, internalformat, type, width, height, 1);
 
 			return;
 		}
@@ -450,6 +429,7 @@ globalThis.gl = {
 
 	generateMipmap: (target) => {
 		GL30.glGenerateMipmap(target ? target : 0);
+		gpuMemory.generateMipmap(target ? target : 0);
 	},
 
 	texSubImage2D: function() {
@@ -472,10 +452,7 @@ globalThis.gl = {
 				
 				try {
 					if (source._data instanceof ArrayBuffer) {
-						const uint8Array = new Uint8Array(source._data);
-						const signedBytes = Array.from(uint8Array).map(b => b > 127 ? b - 256 : b);
-						const javaBytes = Java.to(signedBytes, 'byte[]');
-						const inputStream = new ByteArrayInputStream(javaBytes);
+						const inputStream = new ByteArrayInputStream(glAdapter.toByteArray(source._data));
 						const bufferedImage = ImageIO.read(inputStream);
 						
 						if (bufferedImage) {
@@ -524,22 +501,6 @@ globalThis.gl = {
 				}
 				
 				if (textureData && textureData instanceof Uint8Array) {
-					
-					// Create a Java primitive byte[] and fill it with signed bytes
-					const ByteArr = Java.type('byte[]');
-					const javaBytes = new ByteArr(textureData.length);
-				
-					for (let i = 0; i < textureData.length; i++) {
-						let v = textureData[i];
-						if (v > 127) v -= 256; // signed conversion
-						javaBytes[i] = v;	  // Graal will store as Java byte
-					}
-				
-					// Create a direct ByteBuffer and bulk-copy the Java byte[]
-					const buffer = bufferUtils.createByteBuffer(textureData.length);
-					buffer.clear();
-					buffer.put(javaBytes);   // uses ByteBuffer.put(byte[])
-					buffer.position(0);
 				
 					// --- Setup texture storage ---
 					let components, internalFormat;
@@ -561,7 +522,7 @@ globalThis.gl = {
 	
 					// Important: alignment and binding
 					GL11.glTexImage2D(target, level, internalFormat, width, height, 0, format, type, nullBuffer);
-					GL11.glTexSubImage2D(target, level, xoffset, yoffset, width, height, format, type, buffer);
+					glAdapter.glTexSubImage2DView(target, level, xoffset, yoffset, width, height, format, type, textureData, 0);
 				}
 			}
 		} else if (arguments.length === 9) {
@@ -611,10 +572,6 @@ globalThis.gl = {
 				else if (format === GL11.GL_RGBA) { components = 4; internalFormat = GL_RGBA16F; }
 				else { throw new Error("Unsupported format for Uint16Array HALF_FLOAT: " + format); }
 
-				// Prepare ShortBuffer for data
-				const shortBuffer = bufferUtils.createShortBuffer(pixels.length);
-				for (let i = 0; i < pixels.length; i++) { shortBuffer.put(i, pixels[i] & 0xFFFF); }
-
 				// Allocate storage with null data first
 				const ByteArr2 = Java.type('byte[]');
 				const nullBytes = new ByteArr2(width * height * components * 2);
@@ -625,27 +582,11 @@ globalThis.gl = {
 				try { GL11.glPixelStorei(0x0CF5, 1); } catch (ex) { /* GL_UNPACK_ALIGNMENT */ }
 				try { glAdapter.glTexImage2D(target, level, internalFormat, width, height, 0, format, GL_HALF_FLOAT, null); }
 				catch (ex) { GL11.glTexImage2D(target, level, internalFormat, width, height, 0, format, GL_HALF_FLOAT, nullBuffer); }
-				GL11.glTexSubImage2D(target, level, xoffset, yoffset, width, height, format, GL_HALF_FLOAT, shortBuffer);
+				glAdapter.glTexSubImage2DView(target, level, xoffset, yoffset, width, height, format, GL_HALF_FLOAT, pixels, 0);
 				return;
 			}
 
 			if (pixels && pixels instanceof Uint8Array) {
-				// Create a Java primitive byte[] and fill it with signed bytes
-				const ByteArr = Java.type('byte[]');
-				const javaBytes = new ByteArr(pixels.length);
-			
-				for (let i = 0; i < pixels.length; i++) {
-					let v = pixels[i];
-					if (v > 127) v -= 256; // signed conversion
-					javaBytes[i] = v;	  // Graal will store as Java byte
-				}
-			
-				// Create a direct ByteBuffer and bulk-copy the Java byte[]
-				const buffer = bufferUtils.createByteBuffer(pixels.length);
-				buffer.clear();
-				buffer.put(javaBytes);   // uses ByteBuffer.put(byte[])
-				buffer.position(0);
-			
 				// --- Setup texture storage ---
 				let components, internalFormat;
 				if (format === GL11.GL_RGB) {
@@ -698,15 +639,11 @@ globalThis.gl = {
 				}
 
 				// Upload subimage
-				GL11.glTexSubImage2D(target, level, xoffset, yoffset, width, height, format, type, buffer);
+				glAdapter.glTexSubImage2DView(target, level, xoffset, yoffset, width, height, format, type, pixels, 0);
 
-			} else if (pixels && pixels instanceof Float32Array) {
-				// Handle Float32Array with proper conversion to FloatBuffer
-				const floatBuffer = bufferUtils.createFloatBuffer(pixels.length);
-				for (let i = 0; i < pixels.length; i++) {
-					floatBuffer.put(i, pixels[i]);
-				}
-				GL11.glTexSubImage2D(target, level, xoffset, yoffset, width, height, format, type, floatBuffer);
+			} else if (pixels && pixels.byteLength !== undefined) {
+				// Any other typed array is uploaded as raw bytes
+				glAdapter.glTexSubImage2DView(target, level, xoffset, yoffset, width, height, format, type, pixels, 0);
 				
 			} else if (pixels) {
 				// Fallback for other types
@@ -716,7 +653,26 @@ globalThis.gl = {
 		}
 	},
 
-	compressedTexSubImage2D: function() {
+	compressedTexImage2D: (target, level, internalformat, width, height, border, srcData, srcOffset, srcLengthOverride) => {
+		// WebGL2 passes the data view directly; the (imageSize, offset) form reads from a bound unpack buffer
+		if (srcData && srcData.byteLength !== undefined) {
+			glAdapter.glCompressedTexImage2D(target ? target : 0, level ? level : 0, internalformat ? internalformat : 0,
+				width ? width : 0, height ? height : 0, border ? border : 0, srcData, srcOffset ? srcOffset : 0, srcLengthOverride ? srcLengthOverride : 0);
+		} else {
+			GL13.glCompressedTexImage2D(target ? target : 0, level ? level : 0, internalformat ? internalformat : 0,
+				width ? width : 0, height ? height : 0, border ? border : 0, srcData ? srcData : 0, srcOffset ? srcOffset : 0);
+		}
+		gpuMemory.compressedTexImage(target ? target : 0, level ? level : 0, internalformat ? internalformat : 0, width ? width : 0, height ? height : 0, 1);
+	},
+
+	compressedTexSubImage2D: (target, level, xoffset, yoffset, width, height, format, srcData, srcOffset, srcLengthOverride) => {
+		if (srcData && srcData.byteLength !== undefined) {
+			glAdapter.glCompressedTexSubImage2D(target ? target : 0, level ? level : 0, xoffset ? xoffset : 0, yoffset ? yoffset : 0,
+				width ? width : 0, height ? height : 0, format ? format : 0, srcData, srcOffset ? srcOffset : 0, srcLengthOverride ? srcLengthOverride : 0);
+		} else {
+			GL13.glCompressedTexSubImage2D(target ? target : 0, level ? level : 0, xoffset ? xoffset : 0, yoffset ? yoffset : 0,
+				width ? width : 0, height ? height : 0, format ? format : 0, srcData ? srcData : 0, srcOffset ? srcOffset : 0);
+		}
 	},
 
 	viewport: (x, y, width, height) => {
@@ -724,7 +680,7 @@ globalThis.gl = {
 	},
 
 	bindVertexArray: (vertexArray) => {
-		GL30.glBindVertexArray(vertexArray ? vertexArray : 0);
+		glState.bindVertexArray(vertexArray ? vertexArray : 0);
 	},
 
 	createVertexArray: () => {
@@ -732,40 +688,20 @@ globalThis.gl = {
 	},
 
 	deleteVertexArray: (vertexArray) => {
-		GL30.glDeleteVertexArrays(vertexArray ? vertexArray : 0);
+		glState.deleteVertexArray(vertexArray ? vertexArray : 0);
 	},
 
-	texImage3D: (target, level, internalformat, width, height, depth, border, format, type, pixels) => {
+	texImage3D: (target, level, internalformat, width, height, depth, border, format, type, pixels, srcOffset) => {
 		// For null/undefined pixels, pass null directly
 		if (pixels === null || pixels === undefined) {
 			glAdapter.glTexImage3D(target ? target : 0, level ? level : 0, internalformat ? internalformat : 0, 
 				width ? width : 0, height ? height : 0, depth ? depth : 0, border ? border : 0, format ? format : 0, type ? type : 0, null);
 		} else {
-			// Convert JavaScript typed array to Java ByteBuffer using proper signed byte conversion
-			let buffer = null;
-			if (pixels && typeof pixels === 'object' && pixels.length !== undefined) {
-				if (pixels instanceof Uint8Array) {
-					// Handle Uint8Array with proper signed byte conversion (same as texSubImage2D)
-					buffer = bufferUtils.createByteBuffer(pixels.length);
-					for (let i = 0; i < pixels.length; i++) {
-						let byteValue = pixels[i] & 0xFF;
-						if (byteValue > 127) {
-							byteValue = byteValue - 256;
-						}
-						buffer.put(i, byteValue);
-					}
-				} else {
-					// Handle other typed arrays by converting to ByteBuffer
-					buffer = bufferUtils.createByteBuffer(pixels.length * 4); // Assume 4 bytes per element for safety
-					for (let i = 0; i < pixels.length; i++) {
-						buffer.putFloat(pixels[i]);
-					}
-					buffer.flip();
-				}
-			}
-			glAdapter.glTexImage3D(target ? target : 0, level ? level : 0, internalformat ? internalformat : 0, 
-				width ? width : 0, height ? height : 0, depth ? depth : 0, border ? border : 0, format ? format : 0, type ? type : 0, buffer);
+			// Typed arrays of any element type are uploaded as their raw bytes
+			glAdapter.glTexImage3DView(target ? target : 0, level ? level : 0, internalformat ? internalformat : 0, 
+				width ? width : 0, height ? height : 0, depth ? depth : 0, border ? border : 0, format ? format : 0, type ? type : 0, pixels, srcOffset ? srcOffset : 0);
 		}
+		gpuMemory.texImage(target ? target : 0, level ? level : 0, internalformat ? internalformat : 0, type ? type : 0, width ? width : 0, height ? height : 0, depth ? depth : 0);
 	},
 
 	texStorage2D: (target, levels, internalformat, width, height) => {
@@ -801,6 +737,7 @@ globalThis.gl = {
 					_internal === GL11.GL_RGBA8 ? GL11.GL_RGBA : GL11.GL_RGB, GL11.GL_UNSIGNED_BYTE, nullBuf);
 			}
 		}
+		gpuMemory.texStorage(target ? target : 0, _levels, _internal, width ? width : 0, height ? height : 0, 1);
 	},
 
 	texStorage3D: (target, levels, internalformat, width, height, depth) => {
@@ -815,6 +752,7 @@ globalThis.gl = {
 				GL12.glTexImage3D(target ? target : 0, 0, internalformat ? internalformat : 0, width ? width : 0, height ? height : 0, depth ? depth : 0, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, nullBuf);
 			}
 		}
+		gpuMemory.texStorage(target ? target : 0, levels ? levels : 1, internalformat ? internalformat : 0, width ? width : 0, height ? height : 0, depth ? depth : 0);
 	},
 
 	drawArraysInstanced: (mode, first, count, instanceCount) => {
@@ -834,11 +772,11 @@ globalThis.gl = {
 	},
 
 	bindBufferBase: (target, index, buffer) => {
-		GL30.glBindBufferBase(target ? target : 0, index ? index : 0, buffer ? buffer : 0);
+		glState.bindBufferBase(target ? target : 0, index ? index : 0, buffer ? buffer : 0);
 	},
 
 	bindBufferRange: (target, index, buffer, offset, size) => {
-		GL30.glBindBufferRange(target ? target : 0, index ? index : 0, buffer ? buffer : 0, offset ? offset : 0, size ? size : 0);
+		glState.bindBufferRange(target ? target : 0, index ? index : 0, buffer ? buffer : 0, offset ? offset : 0, size ? size : 0);
 	},
 
 	getUniformBlockIndex: (program, uniformBlockName) => {
@@ -849,50 +787,17 @@ globalThis.gl = {
 		GL31.glUniformBlockBinding(program ? program : 0, uniformBlockIndex ? uniformBlockIndex : 0, uniformBlockBinding ? uniformBlockBinding : 0);
 	},
 
-	bufferSubData: (target, offset, data) => {
-		if (data instanceof Float32Array) {
-			const buffer = bufferUtils.createFloatBuffer(data.length);
-			for (let i = 0; i < data.length; i++) {
-				buffer.put(i, data[i]);
-			}
-			GL15.glBufferSubData(target ? target : 0, offset ? offset : 0, buffer);
-		} else if (data instanceof Uint16Array) {
-			const buffer = bufferUtils.createShortBuffer(data.length);
-			for (let i = 0; i < data.length; i++) {
-				buffer.put(i, data[i]);
-			}
-			GL15.glBufferSubData(target ? target : 0, offset ? offset : 0, buffer);
-		} else if (data instanceof ArrayBuffer) {
-			const buffer = bufferUtils.createByteBuffer(data.byteLength);
-			const view = new Uint8Array(data);
-			for (let i = 0; i < view.length; i++) {
-				buffer.put(i, view[i]);
-			}
-			GL15.glBufferSubData(target ? target : 0, offset ? offset : 0, buffer);
+	bufferSubData: (target, offset, data, srcOffset, length) => {
+		// srcOffset/length are in elements, as passed by Three.js for partial attribute updates
+		if (data) {
+			glAdapter.glBufferSubData(target ? target : 0, offset ? offset : 0, data, srcOffset ? srcOffset : 0, length ? length : 0);
 		}
 	},
 
-	getBufferSubData: (target, offset, returnedData) => {
-		// WebGL2 buffer data readback - use GL15
-		if (returnedData instanceof Float32Array) {
-			const buffer = bufferUtils.createFloatBuffer(returnedData.length);
-			GL15.glGetBufferSubData(target ? target : 0, offset ? offset : 0, buffer);
-			for (let i = 0; i < returnedData.length; i++) {
-				returnedData[i] = buffer.get(i);
-			}
-		} else if (returnedData instanceof Uint16Array) {
-			const buffer = bufferUtils.createShortBuffer(returnedData.length);
-			GL15.glGetBufferSubData(target ? target : 0, offset ? offset : 0, buffer);
-			for (let i = 0; i < returnedData.length; i++) {
-				returnedData[i] = buffer.get(i);
-			}
-		} else if (returnedData instanceof ArrayBuffer) {
-			const buffer = bufferUtils.createByteBuffer(returnedData.byteLength);
-			GL15.glGetBufferSubData(target ? target : 0, offset ? offset : 0, buffer);
-			const view = new Uint8Array(returnedData);
-			for (let i = 0; i < view.length; i++) {
-				view[i] = buffer.get(i);
-			}
+	getBufferSubData: (target, offset, returnedData, dstOffset, length) => {
+		// WebGL2 buffer data readback, written straight into the destination view
+		if (returnedData) {
+			glAdapter.glGetBufferSubData(target ? target : 0, offset ? offset : 0, returnedData, dstOffset ? dstOffset : 0, length ? length : 0);
 		}
 	},
 
@@ -992,29 +897,27 @@ globalThis.gl = {
 	},
 
 	frontFace: (mode) => {
-		GL11.glFrontFace(mode ? mode : 0);
+		glState.frontFace(mode ? mode : 0);
 	},
 
 	cullFace: (mode) => {
-		GL11.glCullFace(mode ? mode : 0);
+		glState.cullFace(mode ? mode : 0);
 	},
 
 	blendFunc: (sfactor, dfactor) => {
-		GL11.glBlendFunc(sfactor ? sfactor : 0, dfactor ? dfactor : 0);
+		glState.blendFuncSeparate(sfactor ? sfactor : 0, dfactor ? dfactor : 0, sfactor ? sfactor : 0, dfactor ? dfactor : 0);
 	},
 
 	blendFuncSeparate: (srcRGB, dstRGB, srcAlpha, dstAlpha) => {
-		
-		GL14.glBlendFuncSeparate(srcRGB ? srcRGB : 0, dstRGB ? dstRGB : 0, srcAlpha ? srcAlpha : 0, dstAlpha ? dstAlpha : 0);
+		glState.blendFuncSeparate(srcRGB ? srcRGB : 0, dstRGB ? dstRGB : 0, srcAlpha ? srcAlpha : 0, dstAlpha ? dstAlpha : 0);
 	},
 
 	blendEquation: (mode) => {
-		
-		GL14.glBlendEquation(mode ? mode : 0);
+		glState.blendEquationSeparate(mode ? mode : 0, mode ? mode : 0);
 	},
 
 	blendEquationSeparate: (modeRGB, modeAlpha) => {
-		GL20.glBlendEquationSeparate(modeRGB ? modeRGB : 0, modeAlpha ? modeAlpha : 0);
+		glState.blendEquationSeparate(modeRGB ? modeRGB : 0, modeAlpha ? modeAlpha : 0);
 	},
 
 	blendColor: (red, green, blue, alpha) => {
@@ -1023,11 +926,11 @@ globalThis.gl = {
 	},
 
 	depthMask: (flag) => {
-		GL11.glDepthMask(flag ? flag : false);
+		glState.depthMask(flag ? true : false);
 	},
 
 	colorMask: (red, green, blue, alpha) => {
-		GL11.glColorMask(red ? red : false, green ? green : false, blue ? blue : false, alpha ? alpha : false);
+		glState.colorMask(red ? true : false, green ? true : false, blue ? true : false, alpha ? true : false);
 	},
 
 	stencilFunc: (func, ref, mask) => {
@@ -1092,26 +995,14 @@ globalThis.gl = {
 		GL11.glPixelStorei(pname ? pname : 0, intParam ? intParam : 0);
 	},
 
-	readPixels: (x, y, width, height, format, type, pixels) => {
-		if (pixels && pixels.length) {
-			if (pixels instanceof Uint8Array) {
-				const buffer = bufferUtils.createByteBuffer(pixels.length);
-				GL11.glReadPixels(x ? x : 0, y ? y : 0, width ? width : 0, height ? height : 0, 
-					format ? format : 0, type ? type : 0, buffer);
-				for (let i = 0; i < pixels.length; i++) {
-					pixels[i] = buffer.get(i);
-				}
-			} else if (pixels instanceof Float32Array) {
-				const buffer = bufferUtils.createFloatBuffer(pixels.length);
-				GL11.glReadPixels(x ? x : 0, y ? y : 0, width ? width : 0, height ? height : 0, 
-					format ? format : 0, type ? type : 0, buffer);
-				for (let i = 0; i < pixels.length; i++) {
-					pixels[i] = buffer.get(i);
-				}
-			}
+	readPixels: (x, y, width, height, format, type, pixels, dstOffset) => {
+		if (pixels && pixels.byteLength) {
+			glAdapter.glReadPixels(x ? x : 0, y ? y : 0, width ? width : 0, height ? height : 0, 
+				format ? format : 0, type ? type : 0, pixels, dstOffset ? dstOffset : 0);
 		} else {
+			// Pixel pack buffer bound: the last argument is a byte offset into it
 			GL11.glReadPixels(x ? x : 0, y ? y : 0, width ? width : 0, height ? height : 0, 
-				format ? format : 0, type ? type : 0, 0);
+				format ? format : 0, type ? type : 0, typeof pixels === 'number' ? pixels : 0);
 		}
 	},
 
@@ -1183,33 +1074,27 @@ globalThis.gl = {
 			yoffset ? yoffset : 0, zoffset ? zoffset : 0, x ? x : 0, y ? y : 0, width ? width : 0, height ? height : 0);
 	},
 
-	compressedTexImage3D: (target, level, internalformat, width, height, depth, border, imageSize, data) => {
-		if (data && data.length) {
-			const buffer = bufferUtils.createByteBuffer(data.length);
-			for (let i = 0; i < data.length; i++) {
-				buffer.put(i, data[i]);
-			}
-			GL13.glCompressedTexImage3D(target ? target : 0, level ? level : 0, internalformat ? internalformat : 0, 
-				width ? width : 0, height ? height : 0, depth ? depth : 0, border ? border : 0, buffer);
+	compressedTexImage3D: (target, level, internalformat, width, height, depth, border, srcData, srcOffset, srcLengthOverride) => {
+		// WebGL2 passes the data view directly; the (imageSize, offset) form reads from a bound unpack buffer
+		if (srcData && srcData.byteLength !== undefined) {
+			glAdapter.glCompressedTexImage3D(target ? target : 0, level ? level : 0, internalformat ? internalformat : 0, 
+				width ? width : 0, height ? height : 0, depth ? depth : 0, border ? border : 0, srcData, srcOffset ? srcOffset : 0, srcLengthOverride ? srcLengthOverride : 0);
 		} else {
 			GL13.glCompressedTexImage3D(target ? target : 0, level ? level : 0, internalformat ? internalformat : 0, 
-				width ? width : 0, height ? height : 0, depth ? depth : 0, border ? border : 0, imageSize ? imageSize : 0, 0);
+				width ? width : 0, height ? height : 0, depth ? depth : 0, border ? border : 0, srcData ? srcData : 0, srcOffset ? srcOffset : 0);
 		}
+		gpuMemory.compressedTexImage(target ? target : 0, level ? level : 0, internalformat ? internalformat : 0, width ? width : 0, height ? height : 0, depth ? depth : 0);
 	},
 
-	compressedTexSubImage3D: (target, level, xoffset, yoffset, zoffset, width, height, depth, format, imageSize, data) => {
-		if (data && data.length) {
-			const buffer = bufferUtils.createByteBuffer(data.length);
-			for (let i = 0; i < data.length; i++) {
-				buffer.put(i, data[i]);
-			}
-			GL13.glCompressedTexSubImage3D(target ? target : 0, level ? level : 0, xoffset ? xoffset : 0, 
+	compressedTexSubImage3D: (target, level, xoffset, yoffset, zoffset, width, height, depth, format, srcData, srcOffset, srcLengthOverride) => {
+		if (srcData && srcData.byteLength !== undefined) {
+			glAdapter.glCompressedTexSubImage3D(target ? target : 0, level ? level : 0, xoffset ? xoffset : 0, 
 				yoffset ? yoffset : 0, zoffset ? zoffset : 0, width ? width : 0, height ? height : 0, 
-				depth ? depth : 0, format ? format : 0, buffer);
+				depth ? depth : 0, format ? format : 0, srcData, srcOffset ? srcOffset : 0, srcLengthOverride ? srcLengthOverride : 0);
 		} else {
 			GL13.glCompressedTexSubImage3D(target ? target : 0, level ? level : 0, xoffset ? xoffset : 0, 
 				yoffset ? yoffset : 0, zoffset ? zoffset : 0, width ? width : 0, height ? height : 0, 
-				depth ? depth : 0, format ? format : 0, imageSize ? imageSize : 0, 0);
+				depth ? depth : 0, format ? format : 0, srcData ? srcData : 0, srcOffset ? srcOffset : 0);
 		}
 	},
 
@@ -1277,6 +1162,7 @@ globalThis.gl = {
 	},
 
 	transformFeedbackVaryings: (program, varyings, bufferMode) => {
+		programCache.exclude(program ? program : 0);
 		GL30.glTransformFeedbackVaryings(program ? program : 0, varyings ? varyings : [], bufferMode ? bufferMode : 0);
 	},
 
@@ -1362,6 +1248,7 @@ globalThis.gl = {
 	renderbufferStorageMultisample: (target, samples, internalformat, width, height) => {
 		GL30.glRenderbufferStorageMultisample(target ? target : 0, samples ? samples : 0, 
 			internalformat ? internalformat : 0, width ? width : 0, height ? height : 0);
+		gpuMemory.renderbufferStorage(internalformat ? internalformat : 0, samples ? samples : 0, width ? width : 0, height ? height : 0);
 	},
 
 	uniform1ui: (location, v0) => {
@@ -1457,12 +1344,12 @@ globalThis.gl = {
 
 	deleteFramebuffer: (framebuffer) => {
 		if (framebuffer) {
-			GL30.glDeleteFramebuffers(framebuffer);
+			glState.deleteFramebuffer(framebuffer);
 		}
 	},
 
 	bindFramebuffer: (target, framebuffer) => {
-		GL30.glBindFramebuffer(target, framebuffer || 0);
+		glState.bindFramebuffer(target, framebuffer || 0);
 	},
 
 	isFramebuffer: (framebuffer) => {
@@ -1488,17 +1375,19 @@ globalThis.gl = {
 	},
 
 	createRenderbuffer: () => {
-		return GL30.glGenRenderbuffers();
+		const renderbuffer = GL30.glGenRenderbuffers();
+		gpuMemory.created(gpuMemory.RENDERBUFFER, renderbuffer, callsite());
+		return renderbuffer;
 	},
 
 	deleteRenderbuffer: (renderbuffer) => {
 		if (renderbuffer) {
-			GL30.glDeleteRenderbuffers(renderbuffer);
+			glState.deleteRenderbuffer(renderbuffer);
 		}
 	},
 
 	bindRenderbuffer: (target, renderbuffer) => {
-		GL30.glBindRenderbuffer(target, renderbuffer || 0);
+		glState.bindRenderbuffer(target, renderbuffer || 0);
 	},
 
 	isRenderbuffer: (renderbuffer) => {
@@ -1507,6 +1396,7 @@ globalThis.gl = {
 
 	renderbufferStorage: (target, internalformat, width, height) => {
 		GL30.glRenderbufferStorage(target, internalformat, width, height);
+		gpuMemory.renderbufferStorage(internalformat, 0, width, height);
 	},
 
 	getRenderbufferParameter: (target, pname) => {
@@ -1558,56 +1448,6 @@ globalThis.gl = {
 		};
 	},
 
-	getUniformLocation: (program, name) => {
-		return GL20.glGetUniformLocation(program, name);
-	},
-
-	getAttribLocation: (program, name) => {
-		return GL20.glGetAttribLocation(program, name);
-	},
-
-	getProgramParameter: (program, pname) => {
-		const buffer = bufferUtils.createIntBuffer(1);
-		GL20.glGetProgramiv(program, pname, buffer);
-		return buffer.get(0);
-	},
-
-	getShaderParameter: (shader, pname) => {
-		const buffer = bufferUtils.createIntBuffer(1);
-		GL20.glGetShaderiv(shader, pname, buffer);
-		return buffer.get(0);
-	},
-
-	getProgramInfoLog: (program) => {
-		const length = gl.getProgramParameter(program, GL20.GL_INFO_LOG_LENGTH);
-		if (length <= 0) return "";
-		
-		const buffer = bufferUtils.createByteBuffer(length);
-		const lengthBuffer = bufferUtils.createIntBuffer(1);
-		GL20.glGetProgramInfoLog(program, lengthBuffer, buffer);
-		
-		const logBytes = new Array(lengthBuffer.get(0));
-		for (let i = 0; i < lengthBuffer.get(0); i++) {
-			logBytes[i] = buffer.get(i);
-		}
-		return String.fromCharCode.apply(null, logBytes);
-	},
-
-	getShaderInfoLog: (shader) => {
-		const length = gl.getShaderParameter(shader, GL20.GL_INFO_LOG_LENGTH);
-		if (length <= 0) return "";
-		
-		const buffer = bufferUtils.createByteBuffer(length);
-		const lengthBuffer = bufferUtils.createIntBuffer(1);
-		GL20.glGetShaderInfoLog(shader, lengthBuffer, buffer);
-		
-		const logBytes = new Array(lengthBuffer.get(0));
-		for (let i = 0; i < lengthBuffer.get(0); i++) {
-			logBytes[i] = buffer.get(i);
-		}
-		return String.fromCharCode.apply(null, logBytes);
-	},
-
 	
 	convertToFloatBuffer: (data) => {
 		if (!data) return null;
@@ -1620,21 +1460,6 @@ globalThis.gl = {
 	},
 
 	
-	uniformMatrix2fv: (location, transpose, data) => {
-		const buffer = gl.convertToFloatBuffer(data);
-		GL20.glUniformMatrix2fv(location, transpose, buffer);
-	},
-
-	uniformMatrix3fv: (location, transpose, data) => {
-		const buffer = gl.convertToFloatBuffer(data);
-		GL20.glUniformMatrix3fv(location, transpose, buffer);
-	},
-
-	uniformMatrix4fv: (location, transpose, data) => {
-		const buffer = gl.convertToFloatBuffer(data);
-		GL20.glUniformMatrix4fv(location, transpose, buffer);
-	},
-
 	getContextAttributes: () => ({
 		alpha: true,
 		antialias: true,
@@ -1661,12 +1486,69 @@ globalThis.gl = {
 					TEXTURE_MAX_ANISOTROPY_EXT: 0x84FE,
 					MAX_TEXTURE_MAX_ANISOTROPY_EXT: 0x84FF
 				};
+			// Compressed formats are only advertised when the driver can sample them
 			case 'WEBGL_compressed_texture_s3tc':
-				return {
+				return compressedTextures.supports(name) ? {
 					COMPRESSED_RGB_S3TC_DXT1_EXT: 0x83F0,
 					COMPRESSED_RGBA_S3TC_DXT1_EXT: 0x83F1,
 					COMPRESSED_RGBA_S3TC_DXT3_EXT: 0x83F2,
 					COMPRESSED_RGBA_S3TC_DXT5_EXT: 0x83F3
+				} : null;
+			case 'WEBGL_compressed_texture_s3tc_srgb':
+				return compressedTextures.supports(name) ? {
+					COMPRESSED_SRGB_S3TC_DXT1_EXT: 0x8C4C,
+					COMPRESSED_SRGB_ALPHA_S3TC_DXT1_EXT: 0x8C4D,
+					COMPRESSED_SRGB_ALPHA_S3TC_DXT3_EXT: 0x8C4E,
+					COMPRESSED_SRGB_ALPHA_S3TC_DXT5_EXT: 0x8C4F
+				} : null;
+			case 'EXT_texture_compression_rgtc':
+				return compressedTextures.supports(name) ? {
+					COMPRESSED_RED_RGTC1_EXT: 0x8DBB,
+					COMPRESSED_SIGNED_RED_RGTC1_EXT: 0x8DBC,
+					COMPRESSED_RED_GREEN_RGTC2_EXT: 0x8DBD,
+					COMPRESSED_SIGNED_RED_GREEN_RGTC2_EXT: 0x8DBE
+				} : null;
+			case 'EXT_texture_compression_bptc':
+				return compressedTextures.supports(name) ? {
+					COMPRESSED_RGBA_BPTC_UNORM_EXT: 0x8E8C,
+					COMPRESSED_SRGB_ALPHA_BPTC_UNORM_EXT: 0x8E8D,
+					COMPRESSED_RGB_BPTC_SIGNED_FLOAT_EXT: 0x8E8E,
+					COMPRESSED_RGB_BPTC_UNSIGNED_FLOAT_EXT: 0x8E8F
+				} : null;
+			case 'WEBGL_compressed_texture_etc':
+				return compressedTextures.supports(name) ? {
+					COMPRESSED_R11_EAC: 0x9270,
+					COMPRESSED_SIGNED_R11_EAC: 0x9271,
+					COMPRESSED_RG11_EAC: 0x9272,
+					COMPRESSED_SIGNED_RG11_EAC: 0x9273,
+					COMPRESSED_RGB8_ETC2: 0x9274,
+					COMPRESSED_SRGB8_ETC2: 0x9275,
+					COMPRESSED_RGB8_PUNCHTHROUGH_ALPHA1_ETC2: 0x9276,
+					COMPRESSED_SRGB8_PUNCHTHROUGH_ALPHA1_ETC2: 0x9277,
+					COMPRESSED_RGBA8_ETC2_EAC: 0x9278,
+					COMPRESSED_SRGB8_ALPHA8_ETC2_EAC: 0x9279
+				} : null;
+			case 'WEBGL_compressed_texture_astc': {
+				if (!compressedTextures.supports(name)) {
+					return null;
+				}
+				// 4x4 .. 12x12 in enum order; sRGB variants sit 0x20 above the linear ones
+				const blocks = ['4x4', '5x4', '5x5', '6x5', '6x6', '8x5', '8x6', '8x8', '10x5', '10x6', '10x8', '10x10', '12x10', '12x12'];
+				const astc = { getSupportedProfiles: () => ['ldr'] };
+				blocks.forEach((block, i) => {
+					astc['COMPRESSED_RGBA_ASTC_' + block + '_KHR'] = 0x93B0 + i;
+					astc['COMPRESSED_SRGB8_ALPHA8_ASTC_' + block + '_KHR'] = 0x93D0 + i;
+				});
+				return astc;
+			}
+			case 'KHR_parallel_shader_compile':
+				if (!programCache.enableParallelCompile()) {
+					return null;
+				}
+				return {
+					MAX_SHADER_COMPILER_THREADS_KHR: 0x91B0,
+					COMPLETION_STATUS_KHR: 0x91B1,
+					maxShaderCompilerThreadsKHR: (count) => {} // Driver picks the thread count
 				};
 			case 'OES_vertex_array_object':
 				return {
@@ -1710,6 +1592,19 @@ globalThis.gl = {
 		if (pname === undefined || pname === null) {
 			return 0;
 		}
+		// Limits and current bindings come from the Java state shadow, no driver round-trip
+		if (glState.hasParameter(pname)) {
+			const values = Java.from(glState.getParameter(pname));
+			switch(pname) {
+				case 0x0D3A: // MAX_VIEWPORT_DIMS
+					return new Int32Array(values);
+				case 0x846D: // ALIASED_POINT_SIZE_RANGE
+				case 0x846E: // ALIASED_LINE_WIDTH_RANGE
+					return new Float32Array(values);
+				default:
+					return values[0];
+			}
+		}
 		switch(pname) {
 			case 0x1F00:
 				return 'LWJGL';
@@ -1719,30 +1614,10 @@ globalThis.gl = {
 				return 'WebGL 2.0 (OpenGL ES 3.0 Chromium)';
 			case 0x8B8C:
 				return 'WebGL GLSL ES 3.00 (OpenGL ES GLSL ES 3.0 Chromium)';
-			case 0x0D33:
-				return 16384;
-			case 0x851C:
-				return 16384;
-			case 0x80E9:
-				return 32;
-			case 0x8872:
-				return 32;
-			case 0x8B4D:
-				return 1024;
-			case 0x8DFD:
-				return 30;
-			case 0x8B4C:
-				return 1024;
-			case 0x8869:
-				return 16;
-			case 0x8DFB:
-				return new Int32Array([16384, 16384]);
-			case 0x846D:
-				return new Float32Array([1, 1024]);
-			case 0x846E:
-				return new Float32Array([1, 1]);
-			case 0x8073:
-				return 24;
+			case 0x9245: // UNMASKED_VENDOR_WEBGL
+				return glState.getVendor();
+			case 0x9246: // UNMASKED_RENDERER_WEBGL
+				return glState.getRenderer();
 			case 0x8D48:
 				return 8;
 			case 0x8D50:
@@ -1761,10 +1636,8 @@ globalThis.gl = {
 			case 0x84E0:
 				return 0x84C0;
 			default:
-				result = 0;
-				break;
+				return 0;
 		}
-		return result;
 	},
 
 
@@ -2027,4 +1900,127 @@ globalThis.gl = {
 	FUNC_REVERSE_SUBTRACT: 0x800B,
 	MIN: 0x8007,
 	MAX: 0x8008,
-}
\ No newline at end of file
+}
+
+/**
+ * Command buffer mode (settings.json "commandBuffer").
+ * Void calls are encoded into an off-heap arena shared with CommandExecutor and replayed in
+ * Java once per frame; every other call flushes the stream first so ordering is preserved.
+ */
+const commandExecutor = Java.type('black.alias.diadem.CommandExecutor');
+if (commandExecutor.isEnabled()) {
+	const arena = new ArrayBuffer(commandExecutor.getArena());
+	const i32 = new Int32Array(arena);
+	const f32 = new Float32Array(arena);
+	// Headroom for the longest scalar command; arrays check their own length
+	const limit = i32.length - 16;
+	const flush = () => commandExecutor.flush();
+
+	// defaults fill omitted arguments the way the immediate calls do (clearDepth() is 1.0)
+	const scalar = (opcode, signature, defaults) => {
+		const floats = [...signature].map(type => type === 'f');
+		const count = signature.length;
+		const put = (at, index, value) => {
+			if (value === undefined) value = defaults[index] || 0;
+			if (floats[index]) f32[at] = value;
+			else i32[at] = value | 0;
+		};
+		return function (a, b, c, d, e, f) {
+			let at = i32[0];
+			if (at + count + 1 > limit) {
+				flush();
+				at = i32[0];
+			}
+			i32[at] = opcode;
+			if (count > 0) put(at + 1, 0, a);
+			if (count > 1) put(at + 2, 1, b);
+			if (count > 2) put(at + 3, 2, c);
+			if (count > 3) put(at + 4, 3, d);
+			if (count > 4) put(at + 5, 4, e);
+			if (count > 5) put(at + 6, 5, f);
+			i32[0] = at + count + 1;
+		};
+	};
+
+	// Uniform arrays: [opcode, location, (transpose), length, data...]
+	const array = (opcode, signature, immediate) => {
+		const transposed = signature.length === 3;
+		const view = signature.endsWith('F') ? f32 : i32;
+		return function (location, a, b) {
+			const value = transposed ? b : a;
+			if (!value || !value.length) return;
+			const words = value.length + 4;
+			let at = i32[0];
+			if (at + words > limit) {
+				flush();
+				at = i32[0];
+				if (at + words > limit) return immediate.apply(gl, arguments);
+			}
+			i32[at++] = opcode;
+			i32[at++] = location | 0;
+			if (transposed) i32[at++] = a ? 1 : 0;
+			i32[at++] = value.length;
+			view.set(value, at);
+			i32[0] = at + value.length;
+		};
+	};
+
+	const recorded = new Set();
+	Java.from(commandExecutor.describe()).forEach((entry, opcode) => {
+		const [name, signature, defaults] = entry.split(':');
+		const immediate = gl[name];
+		gl[name] = /[FI]/.test(signature) ? array(opcode, signature, immediate)
+			: scalar(opcode, signature, defaults ? defaults.split(',').map(Number) : []);
+		recorded.add(name);
+	});
+
+	// Everything else may read state or return a value, so it sees an up-to-date GL
+	Object.keys(gl).forEach(name => {
+		const immediate = gl[name];
+		if (typeof immediate !== 'function' || recorded.has(name)) return;
+		gl[name] = function () {
+			flush();
+			return immediate.apply(gl, arguments);
+		};
+	});
+}
+
+/**
+ * Engine diagnostics, sampled from the Java side once per frame.
+ */
+globalThis.diadem = globalThis.diadem || {};
+diadem.glStateStats = () => ({
+	redundant: Number(glState.getFrameHits()),
+	issued: Number(glState.getFrameMisses())
+});
+diadem.uniformStats = () => ({
+	skipped: Number(uniformCache.getFrameSkipped()),
+	issued: Number(uniformCache.getFrameIssued())
+});
+diadem.commandStats = () => ({
+	commands: Number(commandExecutor.getFrameCommands()),
+	flushes: Number(commandExecutor.getFrameFlushes())
+});
+// Estimated GPU memory by object kind; pass { resources: true } for every live object,
+// largest first, with the callsite that created it
+diadem.gpuMemory = (options) => {
+	const report = {
+		totalBytes: Number(gpuMemory.getTotalBytes()),
+		buffers: { count: gpuMemory.getBufferCount(), bytes: Number(gpuMemory.getBufferBytes()) },
+		textures: { count: gpuMemory.getTextureCount(), bytes: Number(gpuMemory.getTextureBytes()) },
+		renderbuffers: { count: gpuMemory.getRenderbufferCount(), bytes: Number(gpuMemory.getRenderbufferBytes()) }
+	};
+	if (options && options.resources) {
+		report.resources = Java.from(gpuMemory.getResources()).map(resource => ({
+			type: resource.type,
+			id: resource.id,
+			bytes: Number(resource.getBytes()),
+			format: '0x' + resource.getFormat().toString(16),
+			width: resource.getWidth(),
+			height: resource.getHeight(),
+			depth: resource.getDepth(),
+			callsite: resource.callsite
+		}));
+	}
+	return report;
+};